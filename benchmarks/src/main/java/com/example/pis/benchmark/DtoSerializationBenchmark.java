@@ -0,0 +1,64 @@
+package com.example.pis.benchmark;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.example.pis.dto.AirtelResponseDTO;
+import com.example.pis.dto.MtnResponseDTO;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * Jackson serialization of the provider response DTOs returned by the payment endpoints.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class DtoSerializationBenchmark {
+
+    private static final String PROVIDER_BODY =
+            "{\"financialTransactionId\":\"1876543210\",\"externalId\":\"INV-2025-001\",\"amount\":\"5000\","
+            + "\"currency\":\"UGX\",\"payer\":{\"partyIdType\":\"MSISDN\",\"partyId\":\"256700000000\"},"
+            + "\"status\":\"SUCCESSFUL\"}";
+
+    private ObjectMapper mapper;
+    private MtnResponseDTO mtn;
+    private AirtelResponseDTO airtel;
+    private byte[] mtnJson;
+
+    @Setup
+    public void setUp() throws IOException {
+        mapper = new ObjectMapper();
+        mtn = new MtnResponseDTO("202", PROVIDER_BODY);
+        airtel = new AirtelResponseDTO("200", PROVIDER_BODY);
+        mtnJson = mapper.writeValueAsBytes(mtn);
+    }
+
+    @Benchmark
+    public byte[] writeMtnResponse() throws IOException {
+        return mapper.writeValueAsBytes(mtn);
+    }
+
+    @Benchmark
+    public byte[] writeAirtelResponse() throws IOException {
+        return mapper.writeValueAsBytes(airtel);
+    }
+
+    @Benchmark
+    public MtnResponseDTO readMtnResponse() throws IOException {
+        return mapper.readValue(mtnJson, MtnResponseDTO.class);
+    }
+}
@@ -0,0 +1,57 @@
+package com.example.pis.benchmark;
+
+import java.time.Instant;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.GeneratedValue;
+import jakarta.persistence.GenerationType;
+import jakarta.persistence.Id;
+import jakarta.persistence.Index;
+import jakarta.persistence.Table;
+
+/**
+ * Copy of the {@code payment_transactions} mapping with the previous
+ * {@code IDENTITY} key, as the baseline for {@link PaymentInsertBenchmark}.
+ */
+@Entity
+@Table(
+        name = "payment_transactions_identity",
+        indexes = @Index(name = "idx_identity_reference", columnList = "reference", unique = true)
+)
+public class IdentityPaymentTransaction {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(nullable = false, length = 50)
+    private String provider;
+
+    @Column(nullable = false, unique = true, length = 100)
+    private String reference;
+
+    @Column(nullable = false)
+    private Long amount;
+
+    @Column(nullable = false, length = 10)
+    private String currency;
+
+    @Column(nullable = false, length = 30)
+    private String status;
+
+    @Column(name = "created_at", nullable = false, updatable = false)
+    private Instant createdAt = Instant.now();
+
+    public IdentityPaymentTransaction() {}
+
+    public IdentityPaymentTransaction(String provider, String reference, Long amount, String currency) {
+        this.provider = provider;
+        this.reference = reference;
+        this.amount = amount;
+        this.currency = currency;
+        this.status = "PENDING";
+    }
+
+    public Long getId() { return id; }
+}
@@ -0,0 +1,73 @@
+package com.example.pis.benchmark;
+
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.example.pis.entity.Role;
+import com.example.pis.service.JwtService;
+
+/**
+ * {@link JwtService} token generation and per-request verification.
+ *
+ * <p>{@code filterLegacy} is what {@code JwtFilter} used to do per request
+ * (extractUsername, validateToken and extractRole, each a full parse);
+ * {@code verifyUncached} is the single parse, {@code verifyCached} a cache hit.</p>
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@Threads(4)
+@State(Scope.Benchmark)
+public class JwtBenchmark {
+
+    private static final String SECRET = "AAECAwQFBgcICQoLDA0ODxAREhMUFRYXGBkaGxwdHh8=";
+
+    private JwtService cached;
+    private JwtService uncached;
+    private String token;
+
+    @Setup
+    public void setUp() {
+        cached = new JwtService(SECRET, 3_600_000L, "bench-issuer", "bench-audience", JwtService.DEFAULT_CACHE_SIZE);
+        uncached = new JwtService(SECRET, 3_600_000L, "bench-issuer", "bench-audience", 0);
+        token = cached.generateTokenWithClaims("bench-user", Role.USER);
+    }
+
+    @Benchmark
+    public String generateToken() {
+        return uncached.generateTokenWithClaims("bench-user", Role.USER);
+    }
+
+    @Benchmark
+    public Optional<JwtService.VerifiedToken> verifyCached() {
+        return cached.verify(token);
+    }
+
+    @Benchmark
+    public Optional<JwtService.VerifiedToken> verifyUncached() {
+        return uncached.verify(token);
+    }
+
+    @Benchmark
+    public Role filterLegacy() {
+        String username = uncached.extractUsername(token);
+        if (username == null || !uncached.validateToken(token)) {
+            return null;
+        }
+        return uncached.extractRole(token);
+    }
+}
@@ -0,0 +1,67 @@
+package com.example.pis.benchmark;
+
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.example.pis.dto.MomoCollectRequest;
+
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validation;
+import jakarta.validation.Validator;
+import jakarta.validation.ValidatorFactory;
+
+/**
+ * {@link MomoCollectRequest} construction (normalisation and currency check in the
+ * canonical constructor) and Bean Validation of the constructed record.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class MomoCollectRequestBenchmark {
+
+    private ValidatorFactory validatorFactory;
+    private Validator validator;
+    private MomoCollectRequest request;
+
+    @Setup
+    public void setUp() {
+        validatorFactory = Validation.buildDefaultValidatorFactory();
+        validator = validatorFactory.getValidator();
+        request = construct();
+    }
+
+    @TearDown
+    public void tearDown() {
+        validatorFactory.close();
+    }
+
+    @Benchmark
+    public MomoCollectRequest construct() {
+        return new MomoCollectRequest(" MTN ", "256700000000", 5000L, "ugx", " INV-2025-001 ");
+    }
+
+    @Benchmark
+    public Set<ConstraintViolation<MomoCollectRequest>> validate() {
+        return validator.validate(request);
+    }
+
+    @Benchmark
+    public Set<ConstraintViolation<MomoCollectRequest>> constructAndValidate() {
+        return validator.validate(construct());
+    }
+}
@@ -0,0 +1,100 @@
+package com.example.pis.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.hibernate.Transaction;
+import org.hibernate.cfg.Configuration;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.example.pis.entity.PaymentTransaction;
+import com.example.pis.entity.TimeOrderedIdGenerator;
+import com.example.pis.service.PaymentTransactionService;
+
+/**
+ * Bulk insert throughput of PENDING payment transactions, in rows per second.
+ *
+ * <p>Each invocation persists {@value #ROWS} rows in one transaction, as a batch
+ * request does. {@code identity} is the previous {@code IDENTITY} mapping, which
+ * Hibernate inserts one statement at a time whatever {@code batchSize} says;
+ * {@code timeOrdered} is the current {@link PaymentTransaction} mapping, whose IDs
+ * are assigned in memory so the inserts go out in JDBC batches. In-memory H2 has
+ * no network round trip, so the gap against a remote MySQL is larger than shown
+ * here.</p>
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class PaymentInsertBenchmark {
+
+    static final int ROWS = 500;
+
+    @Param({"identity", "timeOrdered"})
+    public String ids;
+
+    /** {@code hibernate.jdbc.batch_size}; 1 disables batching. */
+    @Param({"1", "50"})
+    public int batchSize;
+
+    private SessionFactory sessionFactory;
+    private long next;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        sessionFactory = new Configuration()
+                .addAnnotatedClass(PaymentTransaction.class)
+                .addAnnotatedClass(IdentityPaymentTransaction.class)
+                .setProperty("hibernate.connection.url", "jdbc:h2:mem:insert-bench;DB_CLOSE_DELAY=-1")
+                .setProperty("hibernate.connection.username", "sa")
+                .setProperty("hibernate.hbm2ddl.auto", "create-drop")
+                .setProperty("hibernate.jdbc.batch_size", String.valueOf(batchSize))
+                .setProperty("hibernate.order_inserts", "true")
+                .setProperty(TimeOrderedIdGenerator.NODE_SETTING, "0")
+                .buildSessionFactory();
+    }
+
+    @Setup(Level.Iteration)
+    public void clearTables() {
+        sessionFactory.inTransaction(session -> {
+            session.createMutationQuery("delete from PaymentTransaction").executeUpdate();
+            session.createMutationQuery("delete from IdentityPaymentTransaction").executeUpdate();
+        });
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        sessionFactory.close();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ROWS)
+    public void insertBatch() {
+        try (Session session = sessionFactory.openSession()) {
+            Transaction tx = session.beginTransaction();
+            for (int i = 0; i < ROWS; i++) {
+                String reference = "bench-" + next++;
+                session.persist("identity".equals(ids)
+                        ? new IdentityPaymentTransaction("mtn", reference, 1_000L, "UGX")
+                        : PaymentTransactionService.pending("mtn", "collect", reference, 1_000L, "UGX"));
+            }
+            tx.commit();
+        }
+    }
+}
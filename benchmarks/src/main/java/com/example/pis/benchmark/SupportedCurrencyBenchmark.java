@@ -0,0 +1,41 @@
+package com.example.pis.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.example.pis.enums.SupportedCurrency;
+
+/**
+ * {@link SupportedCurrency} lookups as done for every payment request.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class SupportedCurrencyBenchmark {
+
+    @Param({"UGX", "ugx", "XXX"})
+    public String code;
+
+    @Benchmark
+    public boolean codesContains() {
+        return SupportedCurrency.CODES.contains(code);
+    }
+
+    @Benchmark
+    public boolean isSupported() {
+        return SupportedCurrency.isSupported(code);
+    }
+}
@@ -0,0 +1,119 @@
+package com.example.pis.benchmark;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.InvalidKeyException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.example.pis.security.WebhookSignatureVerifier;
+import com.example.pis.service.WebhookEventIdExtractor;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * MTN/Airtel webhook hot path: HMAC signature verification and event-id extraction.
+ *
+ * <p>The {@code *Legacy} benchmarks reproduce the previous {@code WebhookController}
+ * code (a new {@link Mac} per call over a decoded {@code String} body, and a full
+ * {@code readTree}) so the pooled/streaming versions can be compared against them.
+ * Payload sizes: a bare callback, and callbacks carrying 20 and 200 metadata items
+ * ahead of the id field.</p>
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@Threads(4)
+@State(Scope.Benchmark)
+public class WebhookBenchmark {
+
+    private static final String SECRET = "mtn-webhook-secret";
+
+    @Param({"0", "20", "200"})
+    public int metadataItems;
+
+    private byte[] payload;
+    private byte[] signature;
+    private WebhookSignatureVerifier verifier;
+    private WebhookEventIdExtractor extractor;
+    private ObjectMapper mapper;
+
+    @Setup
+    public void setUp() throws Exception {
+        payload = callback(metadataItems).getBytes(StandardCharsets.UTF_8);
+        Mac mac = Mac.getInstance("HmacSHA256");
+        mac.init(new SecretKeySpec(SECRET.getBytes(StandardCharsets.UTF_8), "HmacSHA256"));
+        signature = mac.doFinal(payload);
+
+        verifier = new WebhookSignatureVerifier(Map.of("mtn", SECRET), 16);
+        mapper = new ObjectMapper();
+        extractor = new WebhookEventIdExtractor(mapper);
+    }
+
+    @Benchmark
+    public boolean verifyPooled() {
+        return verifier.verify("mtn", payload, signature);
+    }
+
+    @Benchmark
+    public boolean verifyLegacy() throws NoSuchAlgorithmException, InvalidKeyException {
+        String body = new String(payload, StandardCharsets.UTF_8);
+        Mac mac = Mac.getInstance("HmacSHA256");
+        mac.init(new SecretKeySpec(SECRET.getBytes(StandardCharsets.UTF_8), "HmacSHA256"));
+        return MessageDigest.isEqual(mac.doFinal(body.getBytes(StandardCharsets.UTF_8)), signature);
+    }
+
+    @Benchmark
+    public Optional<String> extractStreaming() {
+        return extractor.extract(payload);
+    }
+
+    @Benchmark
+    public Optional<String> extractLegacy() throws IOException {
+        JsonNode root = mapper.readTree(new String(payload, StandardCharsets.UTF_8));
+        if (root.has("id")) return Optional.of(root.get("id").asText());
+        if (root.has("eventId")) return Optional.of(root.get("eventId").asText());
+        if (root.has("reference")) return Optional.of(root.get("reference").asText());
+        if (root.has("transactionId")) return Optional.of(root.get("transactionId").asText());
+        return Optional.empty();
+    }
+
+    /** MTN-style collection callback with optional metadata ahead of the reference. */
+    static String callback(int metadataItems) {
+        StringBuilder json = new StringBuilder(256 + metadataItems * 96)
+                .append("{\"financialTransactionId\":\"1876543210\",")
+                .append("\"amount\":\"5000\",\"currency\":\"UGX\",")
+                .append("\"payer\":{\"partyIdType\":\"MSISDN\",\"partyId\":\"256700000000\"},")
+                .append("\"payerMessage\":\"Invoice payment\",\"payeeNote\":\"INV-2025-001\",")
+                .append("\"status\":\"SUCCESSFUL\",")
+                .append("\"metadata\":[");
+        for (int i = 0; i < metadataItems; i++) {
+            if (i > 0) json.append(',');
+            json.append("{\"key\":\"attribute-").append(i)
+                .append("\",\"value\":\"some provider supplied value ").append(i)
+                .append("\",\"id\":").append(i).append('}');
+        }
+        return json.append("],\"reference\":\"INV-2025-001\",\"transactionId\":\"tx-1876543210\"}").toString();
+    }
+}
@@ -0,0 +1,45 @@
+package com.example.pis.config;
+
+import java.time.Duration;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import com.example.pis.repository.ProcessedWebhookEventRepository;
+import com.example.pis.service.EventIdStore;
+import com.example.pis.service.InMemoryEventIdStore;
+import com.example.pis.service.JdbcEventIdStore;
+
+/**
+ * Selects the webhook deduplication store.
+ *
+ * <p>{@code webhook.dedup.store=memory} (default) keeps ids on this node only;
+ * {@code jdbc} shares them across instances through {@code processed_webhook_events}.</p>
+ */
+@Configuration
+public class EventIdStoreConfig {
+
+    @Bean
+    @ConditionalOnProperty(name = "webhook.dedup.store", havingValue = "memory", matchIfMissing = true)
+    public EventIdStore inMemoryEventIdStore(
+            @Value("${webhook.dedup.ttlSeconds:86400}") long ttlSeconds,
+            @Value("${webhook.dedup.maxEntries:100000}") int maxEntries) {
+        return new InMemoryEventIdStore(Duration.ofSeconds(ttlSeconds), maxEntries);
+    }
+
+    @Bean(destroyMethod = "shutdown")
+    @ConditionalOnProperty(name = "webhook.dedup.store", havingValue = "jdbc")
+    public EventIdStore jdbcEventIdStore(
+            ProcessedWebhookEventRepository repository,
+            @Value("${webhook.dedup.ttlSeconds:86400}") long ttlSeconds,
+            @Value("${webhook.dedup.maxEntries:100000}") int maxEntries,
+            @Value("${webhook.dedup.purgeIntervalSeconds:600}") long purgeIntervalSeconds) {
+        return new JdbcEventIdStore(
+                repository,
+                new InMemoryEventIdStore(Duration.ofSeconds(ttlSeconds), maxEntries),
+                Duration.ofSeconds(ttlSeconds),
+                Duration.ofSeconds(purgeIntervalSeconds));
+    }
+}
@@ -0,0 +1,198 @@
+package com.example.pis.config;
+
+import java.util.function.ToIntFunction;
+import java.util.function.ToLongFunction;
+
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import com.example.pis.security.UserDetailsCache;
+import com.example.pis.service.IdempotencyCache;
+import com.example.pis.service.JwtService;
+import com.example.pis.service.MerchantCallbackDispatcher;
+import com.example.pis.service.OutboxRelay;
+import com.example.pis.service.PaymentPipeline;
+import com.example.pis.service.ProviderHttpClientFactory;
+import com.example.pis.service.ProviderHttpClientFactory.PoolStats;
+import com.example.pis.service.ProviderTokenManager;
+import com.example.pis.service.ProviderTokenManager.TokenStats;
+import com.example.pis.service.WebhookJournal;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+
+/**
+ * Publishes the in-process statistics of the token cache, provider HTTP pools,
+ * payment pipeline, idempotency cache, webhook journal and authentication caches as
+ * Micrometer meters.
+ *
+ * <p>Binders run once all singletons are initialised, so every provider that
+ * registered a token fetcher or HTTP pool at startup is included. Repository
+ * ({@code spring.data.repository.invocations}), Hikari and HTTP server metrics
+ * come from Spring Boot's auto-configuration.</p>
+ */
+@Configuration
+public class MetricsConfig {
+
+    @Bean
+    public MeterBinder providerTokenMetrics(ProviderTokenManager tokenManager) {
+        return registry -> tokenManager.providers().forEach(provider -> {
+            tokenCounter(registry, tokenManager, "provider.token.requests", provider, "hit", TokenStats::hits);
+            tokenCounter(registry, tokenManager, "provider.token.requests", provider, "miss", TokenStats::misses);
+            tokenCounter(registry, tokenManager, "provider.token.fetches", provider, "success", TokenStats::refreshes);
+            tokenCounter(registry, tokenManager, "provider.token.fetches", provider, "failure", TokenStats::failures);
+        });
+    }
+
+    @Bean
+    public MeterBinder providerPoolMetrics(ProviderHttpClientFactory clients) {
+        return registry -> clients.providers().forEach(provider -> {
+            poolGauge(registry, clients, provider, "leased", PoolStats::leased);
+            poolGauge(registry, clients, provider, "pending", PoolStats::pending);
+            poolGauge(registry, clients, provider, "available", PoolStats::available);
+            poolGauge(registry, clients, provider, "max", PoolStats::max);
+        });
+    }
+
+    @Bean
+    public MeterBinder paymentPipelineMetrics(PaymentPipeline pipeline) {
+        return registry -> {
+            Gauge.builder("payment.pipeline.queue.depth", pipeline, p -> p.stats().queueDepth())
+                    .description("Async payment jobs waiting for a worker")
+                    .register(registry);
+            Gauge.builder("payment.pipeline.workers.active", pipeline, p -> p.stats().activeWorkers())
+                    .description("Async payment workers running a job")
+                    .register(registry);
+            FunctionCounter.builder("payment.pipeline.jobs", pipeline, p -> p.stats().completed())
+                    .tag("result", "completed").register(registry);
+            FunctionCounter.builder("payment.pipeline.jobs", pipeline, p -> p.stats().failed())
+                    .tag("result", "failed").register(registry);
+            FunctionCounter.builder("payment.pipeline.jobs", pipeline, p -> p.stats().rejected())
+                    .tag("result", "rejected").register(registry);
+        };
+    }
+
+    @Bean
+    public MeterBinder idempotencyCacheMetrics(IdempotencyCache idempotencyCache) {
+        return registry -> {
+            FunctionCounter.builder("payment.idempotency.requests", idempotencyCache, c -> c.stats().hits())
+                    .description("Reference lookups by where they were answered")
+                    .tag("result", "hit").register(registry);
+            FunctionCounter.builder("payment.idempotency.requests", idempotencyCache, c -> c.stats().waits())
+                    .description("Reference lookups by where they were answered")
+                    .tag("result", "wait").register(registry);
+            FunctionCounter.builder("payment.idempotency.requests", idempotencyCache, c -> c.stats().misses())
+                    .description("Reference lookups by where they were answered")
+                    .tag("result", "miss").register(registry);
+            Gauge.builder("payment.idempotency.cache.size", idempotencyCache, c -> c.stats().size())
+                    .register(registry);
+            Gauge.builder("payment.idempotency.inflight", idempotencyCache, c -> c.stats().inFlight())
+                    .description("References claimed by a request still in progress on this node")
+                    .register(registry);
+        };
+    }
+
+    @Bean
+    public MeterBinder webhookJournalMetrics(WebhookJournal journal) {
+        return registry -> {
+            FunctionCounter.builder("webhook.journal.events", journal, j -> j.stats().appended())
+                    .description("Journaled webhooks by processing step on this node")
+                    .tag("result", "appended").register(registry);
+            FunctionCounter.builder("webhook.journal.events", journal, j -> j.stats().applied())
+                    .description("Journaled webhooks by processing step on this node")
+                    .tag("result", "applied").register(registry);
+            FunctionCounter.builder("webhook.journal.events", journal, j -> j.stats().failed())
+                    .description("Journaled webhooks by processing step on this node")
+                    .tag("result", "failed").register(registry);
+            FunctionCounter.builder("webhook.journal.events", journal, j -> j.stats().deferred())
+                    .description("Journaled webhooks by processing step on this node")
+                    .tag("result", "deferred").register(registry);
+            Gauge.builder("webhook.journal.queue.depth", journal, j -> j.stats().queued())
+                    .description("Webhooks queued or being applied on this node")
+                    .register(registry);
+            Gauge.builder("webhook.journal.backlog", journal, j -> j.stats().backlog())
+                    .description("Unprocessed webhooks in the journal, as of the last sweep")
+                    .register(registry);
+            Gauge.builder("webhook.journal.oldest.age", journal, j -> j.stats().oldestUnprocessedAgeMillis() / 1000.0)
+                    .description("Age of the oldest unprocessed webhook, as of the last sweep")
+                    .baseUnit("seconds")
+                    .register(registry);
+        };
+    }
+
+    @Bean
+    public MeterBinder outboxRelayMetrics(OutboxRelay relay) {
+        return registry -> {
+            FunctionCounter.builder("payment.outbox.events", relay, r -> r.stats().dispatched())
+                    .description("Outbox event deliveries on this node")
+                    .tag("result", "dispatched").register(registry);
+            FunctionCounter.builder("payment.outbox.events", relay, r -> r.stats().failed())
+                    .description("Outbox event deliveries on this node")
+                    .tag("result", "failed").register(registry);
+            Gauge.builder("payment.outbox.backlog", relay, r -> r.stats().backlog())
+                    .description("Undispatched payment events, as of the last housekeeping run")
+                    .register(registry);
+            Gauge.builder("payment.outbox.oldest.age", relay, r -> r.stats().oldestUndispatchedAgeMillis() / 1000.0)
+                    .description("Age of the oldest undispatched payment event, as of the last housekeeping run")
+                    .baseUnit("seconds")
+                    .register(registry);
+        };
+    }
+
+    @Bean
+    public MeterBinder merchantCallbackMetrics(MerchantCallbackDispatcher dispatcher) {
+        return registry -> {
+            FunctionCounter.builder("merchant.callback.events", dispatcher, d -> d.stats().queued())
+                    .description("Settled payment events queued for merchant callbacks on this node")
+                    .tag("result", "queued").register(registry);
+            FunctionCounter.builder("merchant.callback.events", dispatcher, d -> d.stats().duplicates())
+                    .description("Settled payment events queued for merchant callbacks on this node")
+                    .tag("result", "duplicate").register(registry);
+            Gauge.builder("merchant.callback.scheduled", dispatcher, d -> d.stats().scheduled())
+                    .description("Merchant callbacks waiting on the timer wheel or a merchant pool on this node")
+                    .register(registry);
+            Gauge.builder("merchant.callback.backlog", dispatcher, d -> d.stats().backlog())
+                    .description("Undelivered merchant callbacks, as of the last sweep")
+                    .register(registry);
+            Gauge.builder("merchant.callback.oldest.age", dispatcher, d -> d.stats().oldestPendingAgeMillis() / 1000.0)
+                    .description("Age of the oldest undelivered merchant callback, as of the last sweep")
+                    .baseUnit("seconds")
+                    .register(registry);
+        };
+    }
+
+    @Bean
+    public MeterBinder authCacheMetrics(JwtService jwtService, UserDetailsCache userDetailsCache) {
+        return registry -> {
+            FunctionCounter.builder("jwt.cache.requests", jwtService, j -> j.cacheStats().hits())
+                    .tag("result", "hit").register(registry);
+            FunctionCounter.builder("jwt.cache.requests", jwtService, j -> j.cacheStats().misses())
+                    .tag("result", "miss").register(registry);
+            Gauge.builder("jwt.cache.size", jwtService, j -> j.cacheStats().size())
+                    .register(registry);
+            FunctionCounter.builder("security.user.cache.requests", userDetailsCache, c -> c.stats().hits())
+                    .tag("result", "hit").register(registry);
+            FunctionCounter.builder("security.user.cache.requests", userDetailsCache, c -> c.stats().misses())
+                    .tag("result", "miss").register(registry);
+            Gauge.builder("security.user.cache.size", userDetailsCache, c -> c.stats().size())
+                    .register(registry);
+        };
+    }
+
+    private static void tokenCounter(MeterRegistry registry, ProviderTokenManager tokenManager, String name,
+                                     String provider, String result, ToLongFunction<TokenStats> value) {
+        FunctionCounter.builder(name, tokenManager, t -> value.applyAsLong(t.stats(provider)))
+                .tags("provider", provider, "result", result)
+                .register(registry);
+    }
+
+    private static void poolGauge(MeterRegistry registry, ProviderHttpClientFactory clients, String provider,
+                                  String state, ToIntFunction<PoolStats> value) {
+        Gauge.builder("provider.http.pool.connections", clients, c -> value.applyAsInt(c.poolStats(provider)))
+                .description("Provider HTTP pool connections by state")
+                .tags("provider", provider, "state", state)
+                .register(registry);
+    }
+}
@@ -0,0 +1,52 @@
+package com.example.pis.config;
+
+import java.net.URI;
+import java.nio.file.Path;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import com.example.pis.service.EventBusOutboxSink;
+import com.example.pis.service.FileOutboxSink;
+import com.example.pis.service.HttpOutboxSink;
+import com.example.pis.service.OutboxSink;
+import com.example.pis.service.ProviderHttpClientFactory;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * Selects where the outbox relay delivers payment lifecycle events.
+ *
+ * <p>{@code payments.outbox.sink=bus} (default) publishes them as in-process
+ * application events; {@code file} appends them to {@code payments.outbox.file.path};
+ * {@code http} POSTs them to {@code payments.outbox.http.url} through a pooled client
+ * configured like a provider under {@code provider.http.outbox.*}.</p>
+ */
+@Configuration
+public class OutboxSinkConfig {
+
+    @Bean
+    @ConditionalOnProperty(name = "payments.outbox.sink", havingValue = "bus", matchIfMissing = true)
+    public OutboxSink eventBusOutboxSink(ApplicationEventPublisher publisher) {
+        return new EventBusOutboxSink(publisher);
+    }
+
+    @Bean
+    @ConditionalOnProperty(name = "payments.outbox.sink", havingValue = "file")
+    public OutboxSink fileOutboxSink(
+            @Value("${payments.outbox.file.path:outbox/payment-events.ndjson}") String path,
+            ObjectMapper mapper) {
+        return new FileOutboxSink(Path.of(path), mapper);
+    }
+
+    @Bean
+    @ConditionalOnProperty(name = "payments.outbox.sink", havingValue = "http")
+    public OutboxSink httpOutboxSink(
+            ProviderHttpClientFactory httpClientFactory,
+            @Value("${payments.outbox.http.url}") String url,
+            ObjectMapper mapper) {
+        return new HttpOutboxSink(httpClientFactory.create("outbox"), URI.create(url), mapper);
+    }
+}
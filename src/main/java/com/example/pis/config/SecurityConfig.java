@@ -2,8 +2,10 @@ package com.example.pis.config;
 
 //import java.util.List;
 
+import org.springframework.boot.actuate.autoconfigure.security.servlet.EndpointRequest;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
 import org.springframework.security.authentication.AuthenticationManager;
 import org.springframework.security.authentication.dao.DaoAuthenticationProvider;
 import org.springframework.security.config.annotation.authentication.configuration.AuthenticationConfiguration;
@@ -13,6 +15,8 @@ import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.security.web.SecurityFilterChain;
 import org.springframework.security.web.authentication.UsernamePasswordAuthenticationFilter;
+import org.springframework.security.web.util.matcher.AndRequestMatcher;
+import org.springframework.security.web.util.matcher.RequestMatcher;
 
 //import com.example.pis.entity.Role;
 import com.example.pis.security.CustomUserDetailsService;
@@ -23,10 +27,12 @@ public class SecurityConfig {
 
     private final JwtFilter jwtFilter;
     private final CustomUserDetailsService customUserDetailsService;
+    private final Environment env;
 
-    public SecurityConfig(JwtFilter jwtFilter, CustomUserDetailsService customUserDetailsService) {
+    public SecurityConfig(JwtFilter jwtFilter, CustomUserDetailsService customUserDetailsService, Environment env) {
         this.jwtFilter = jwtFilter;
         this.customUserDetailsService = customUserDetailsService;
+        this.env = env;
     }
 
     // -------------------------------
@@ -38,6 +44,10 @@ public class SecurityConfig {
             .authorizeHttpRequests(auth -> auth
                 // Public endpoints
                 .requestMatchers("/api/auth/**", "/api/webhooks/**").permitAll()
+                // Health checks
+                .requestMatchers("/actuator/health").permitAll()
+                // Prometheus scrapes without a token only over a separate management port
+                .requestMatchers(new AndRequestMatcher(EndpointRequest.to("prometheus"), onManagementPort())).permitAll()
                 // Example: Only ADMIN can access /api/admin/**
                 .requestMatchers("/api/admin/**").hasRole("ADMIN")
                 // All other requests require authentication
@@ -48,6 +58,17 @@ public class SecurityConfig {
         return http.build();
     }
 
+    /**
+     * Matches requests received on the management port when it differs from the
+     * server port; Spring Boot only publishes {@code local.management.port} then.
+     */
+    private RequestMatcher onManagementPort() {
+        return request -> {
+            Integer port = env.getProperty("local.management.port", Integer.class);
+            return port != null && port == request.getLocalPort();
+        };
+    }
+
     // -------------------------------
     // Authentication Manager
     // -------------------------------
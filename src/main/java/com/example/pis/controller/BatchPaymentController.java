@@ -0,0 +1,96 @@
+package com.example.pis.controller;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.util.Map;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.util.StringUtils;
+import org.springframework.web.bind.annotation.CrossOrigin;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import com.example.pis.dto.BatchItemResult;
+import com.example.pis.dto.BatchPaymentRequest;
+import com.example.pis.service.BatchPaymentService;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * Batch endpoints for MTN and Airtel collections and withdrawals.
+ *
+ * <p>Validation and the PENDING inserts happen before the response starts, so a bad
+ * batch is answered with 400 and nothing persisted. The per-item results are then
+ * streamed as NDJSON, one {@link BatchItemResult} per line, while the provider calls
+ * complete. To resume an interrupted batch, submit it again unchanged.</p>
+ */
+@RestController
+@RequestMapping("/api/payments")
+@CrossOrigin(origins = "${app.cors.allowed-origins}")
+public class BatchPaymentController {
+
+    private final BatchPaymentService batchService;
+    private final ObjectMapper mapper;
+
+    @Value("${app.api.key}")
+    private String configuredApiKey;
+
+    public BatchPaymentController(BatchPaymentService batchService, ObjectMapper mapper) {
+        this.batchService = batchService;
+        this.mapper = mapper;
+    }
+
+    private boolean isAuthorized(String apiKey) {
+        return StringUtils.hasText(apiKey) && apiKey.equals(configuredApiKey);
+    }
+
+    /**
+     * Runs a batch for {@code provider} ({@code mtn} or {@code airtel}) and
+     * {@code operation} ({@code collect} or {@code withdraw}).
+     */
+    @PostMapping("/{provider}/batch/{operation}")
+    public ResponseEntity<StreamingResponseBody> submitBatch(
+            @RequestHeader(value = "X-Api-Key", required = false) String apiKey,
+            @PathVariable String provider,
+            @PathVariable String operation,
+            @RequestBody BatchPaymentRequest request
+    ) throws JsonProcessingException {
+        if (!isAuthorized(apiKey))
+            return json(HttpStatus.UNAUTHORIZED, Map.of("error", "Unauthorized"));
+        if (!BatchPaymentService.supports(provider, operation))
+            return json(HttpStatus.NOT_FOUND, Map.of("error", "Unsupported batch operation",
+                    "provider", provider, "operation", operation));
+
+        BatchPaymentService.Batch batch = batchService.prepare(provider, operation, request);
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_NDJSON)
+                .body(out -> batchService.run(batch, result -> writeLine(out, result)));
+    }
+
+    private void writeLine(OutputStream out, BatchItemResult result) {
+        try {
+            out.write(mapper.writeValueAsBytes(result));
+            out.write('\n');
+            out.flush();
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+    }
+
+    private ResponseEntity<StreamingResponseBody> json(HttpStatus status, Map<String, String> body)
+            throws JsonProcessingException {
+        byte[] bytes = mapper.writeValueAsBytes(body);
+        return ResponseEntity.status(status)
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(out -> out.write(bytes));
+    }
+}
@@ -1,18 +1,20 @@
 package com.example.pis.controller;
 
-import java.time.Instant;
 import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
 import java.util.UUID;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
-import org.springframework.transaction.annotation.Transactional;
 import org.springframework.util.StringUtils;
 import org.springframework.web.bind.annotation.CrossOrigin;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestHeader;
@@ -22,16 +24,28 @@ import org.springframework.web.bind.annotation.RestController;
 import com.example.pis.dto.AirtelResponseDTO;
 import com.example.pis.dto.MomoCollectRequest;
 import com.example.pis.dto.MtnResponseDTO;
+import com.example.pis.dto.PaymentTransactionSummary;
 import com.example.pis.entity.PaymentTransaction;
 import com.example.pis.enums.SupportedCurrency;
 import com.example.pis.exception.PaymentProcessingException;
-import com.example.pis.repository.PaymentTransactionRepository;
+import com.example.pis.exception.ProviderUnavailableException;
 import com.example.pis.service.AirtelService;
 import com.example.pis.service.MtnService;
+import com.example.pis.service.PaymentPipeline;
+import com.example.pis.service.PaymentTransactionService;
+import com.example.pis.service.ProviderGuard;
 import com.example.pis.service.StripeService;
 
 import jakarta.validation.Valid;
 
+/**
+ * Payment endpoints for Stripe, MTN and Airtel.
+ *
+ * <p>Handlers are deliberately not transactional: the PENDING row is committed
+ * before the provider call and the outcome is written afterwards, each through
+ * {@link PaymentTransactionService}, so no database connection is held while
+ * waiting on a provider.</p>
+ */
 @RestController
 @RequestMapping("/api/payments")
 @CrossOrigin(origins = "${app.cors.allowed-origins}")
@@ -42,21 +56,28 @@ public class PaymentController {
     private final StripeService stripeService;
     private final MtnService mtnService;
     private final AirtelService airtelService;
-    private final PaymentTransactionRepository txRepo;
+    private final PaymentTransactionService txService;
+    private final PaymentPipeline pipeline;
 
     @Value("${app.api.key}")
     private String configuredApiKey;
 
+    /** When true, MTN/Airtel collections answer 202 and run on {@link PaymentPipeline}. */
+    @Value("${payments.async.enabled:false}")
+    private boolean asyncEnabled;
+
     public PaymentController(
             StripeService stripeService,
             MtnService mtnService,
             AirtelService airtelService,
-            PaymentTransactionRepository txRepo
+            PaymentTransactionService txService,
+            PaymentPipeline pipeline
     ) {
         this.stripeService = stripeService;
         this.mtnService = mtnService;
         this.airtelService = airtelService;
-        this.txRepo = txRepo;
+        this.txService = txService;
+        this.pipeline = pipeline;
     }
 
     /* ---------- Helpers ---------- */
@@ -80,26 +101,144 @@ public class PaymentController {
         return code;
     }
 
-    private Optional<PaymentTransaction> findExisting(String reference) {
-        return StringUtils.hasText(reference) ? txRepo.findByReference(reference) : Optional.empty();
+    /** Idempotency lookup: reads status and identifiers only, never the full entity. */
+    private Optional<PaymentTransactionSummary> findExisting(String reference) {
+        return txService.findSummary(reference);
+    }
+
+    /**
+     * Claims the reference and commits a PENDING transaction before any provider call.
+     * Returns empty if a concurrent request already claimed the reference, on this node
+     * or (through the unique index) on another. The caller must {@code release} a
+     * returned transaction once its outcome is known.
+     */
+    private Optional<PaymentTransaction> startTransaction(String provider, String operation, String reference,
+                                                          Long amount, String currency) {
+        if (!txService.claim(reference)) {
+            log.info("Concurrent request for claimed reference: ref={}", reference);
+            return Optional.empty();
+        }
+        try {
+            return Optional.of(txService.open(provider, operation, reference, amount, currency));
+        } catch (DataIntegrityViolationException ex) {
+            txService.release(reference, null);
+            log.info("Concurrent request for existing reference: ref={}", reference);
+            return Optional.empty();
+        } catch (RuntimeException ex) {
+            txService.release(reference, null);
+            throw ex;
+        }
+    }
+
+    private Optional<PaymentTransaction> startTransaction(String provider, String operation, MomoCollectRequest req,
+                                                          String currency) {
+        String reference = StringUtils.hasText(req.reference()) ? req.reference() : UUID.randomUUID().toString();
+        return startTransaction(provider, operation, reference, req.amount(), currency);
+    }
+
+    /** Answers with the transaction's current state; waits for it first if another request owns it. */
+    private ResponseEntity<?> concurrentDuplicate(String reference) {
+        return findExisting(reference)
+                .<ResponseEntity<?>>map(ResponseEntity::ok)
+                .orElseGet(() -> ResponseEntity.status(HttpStatus.CONFLICT)
+                        .body(Map.of("error", "Duplicate reference", "reference", reference)));
+    }
+
+    private ResponseEntity<?> existingStripeIntent(PaymentTransactionSummary tx) {
+        log.info("Stripe intent exists: {}", tx.reference());
+        return ResponseEntity.ok(Map.of(
+                "clientSecret", Objects.toString(tx.clientSecret(), ""),
+                "reference", tx.reference(),
+                "status", tx.status()
+        ));
     }
 
-    private PaymentTransaction startTransaction(String provider, MomoCollectRequest req, String currency) {
-        PaymentTransaction tx = new PaymentTransaction();
-        tx.setProvider(provider);
-        tx.setAmount(req.amount());
-        tx.setCurrency(currency);
-        tx.setReference(StringUtils.hasText(req.reference()) ? req.reference() : UUID.randomUUID().toString());
-        tx.setStatus("PENDING");
-        tx.setCreatedAt(Instant.now());
-        txRepo.save(tx);
-        return tx;
+    /**
+     * Hands the provider call to the worker pipeline and answers 202 with the reference.
+     * The client polls {@code GET /api/payments/{reference}} for the outcome.
+     *
+     * <p>Once submitted, {@code tx} belongs to the worker, so the answer and the
+     * release of the claim use a summary taken before the hand-off. Callers must not
+     * touch {@code tx} or release the claim afterwards.</p>
+     */
+    private ResponseEntity<?> acceptAsync(PaymentTransaction tx, String failureMessage, Runnable providerCall) {
+        PaymentTransactionSummary accepted = PaymentTransactionSummary.of(tx);
+        boolean queued = false;
+        try {
+            queued = pipeline.submit(accepted.reference(), () -> {
+                try {
+                    providerCall.run();
+                } catch (RuntimeException ex) {
+                    failTransaction(tx, failureMessage, ex);
+                }
+            });
+            if (!queued) txService.fail(tx);
+        } finally {
+            txService.release(accepted.reference(), queued ? accepted : PaymentTransactionSummary.of(tx));
+        }
+
+        if (!queued) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                    .body(Map.of("error", "Payment queue full, retry later", "reference", accepted.reference()));
+        }
+
+        return ResponseEntity.status(HttpStatus.ACCEPTED).body(Map.of(
+                "reference", accepted.reference(),
+                "status", accepted.status(),
+                "statusUrl", "/api/payments/" + accepted.reference()
+        ));
     }
 
+    /**
+     * Fails the transaction, unless the provider may have carried out the request anyway
+     * (e.g. a timeout): the row then stays unsettled for a callback or
+     * {@link com.example.pis.service.PendingStatusPoller} to settle.
+     */
     private void failTransaction(PaymentTransaction tx, String message, RuntimeException ex) {
-        tx.markFailed();
-        txRepo.save(tx);
-        log.error("{}: ref={}, {}", message, tx.getReference(), ex.getMessage(), ex);
+        if (ProviderGuard.isOutcomeUnknown(ex)) {
+            log.warn("{}: ref={}, outcome unknown, left {} until the provider reports it: {}",
+                    message, tx.getReference(), tx.getStatus(), ex.getMessage());
+            return;
+        }
+        txService.fail(tx);
+        if (ex instanceof ProviderUnavailableException) {
+            log.warn("{}: ref={}, {}", message, tx.getReference(), ex.getMessage());
+        } else {
+            log.error("{}: ref={}, {}", message, tx.getReference(), ex.getMessage(), ex);
+        }
+    }
+
+    /** Fails the transaction if known; a fast-fail from the provider guard is passed through unwrapped. */
+    private PaymentProcessingException providerFailure(PaymentTransaction tx, String message, RuntimeException ex) {
+        failTransaction(tx, message, ex);
+        return ex instanceof ProviderUnavailableException unavailable
+                ? unavailable
+                : new PaymentProcessingException(message, ex);
+    }
+
+    /* ============================================================== 
+       STATUS 
+       ============================================================== */
+
+    @GetMapping("/{reference}")
+    public ResponseEntity<?> getStatus(
+            @RequestHeader(value = "X-Api-Key", required = false) String apiKey,
+            @PathVariable String reference
+    ) {
+        if (!isAuthorized(apiKey))
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body(Map.of("error", "Unauthorized"));
+
+        return findExisting(reference)
+                .<ResponseEntity<?>>map(tx -> ResponseEntity.ok(Map.of(
+                        "reference", tx.reference(),
+                        "provider", tx.provider(),
+                        "status", tx.status(),
+                        "amount", tx.amount(),
+                        "currency", tx.currency(),
+                        "createdAt", tx.createdAt()
+                )))
+                .orElseGet(() -> ResponseEntity.status(HttpStatus.NOT_FOUND)
+                        .body(Map.of("error", "Unknown reference", "reference", reference)));
     }
 
     /* ============================================================== 
@@ -107,7 +246,6 @@ public class PaymentController {
        ============================================================== */
 
     @PostMapping("/stripe/create-payment-intent")
-    @Transactional
     public ResponseEntity<?> createStripeIntent(
             @RequestHeader(value = "X-Api-Key", required = false) String apiKey,
             @Valid @RequestBody MomoCollectRequest req
@@ -115,34 +253,33 @@ public class PaymentController {
         if (!isAuthorized(apiKey))
             return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body(Map.of("error", "Unauthorized"));
 
-        Optional<PaymentTransaction> existing = findExisting(req.reference());
-        if (existing.isPresent()) {
-            log.info("Stripe intent exists: {}", req.reference());
-            return ResponseEntity.ok(Map.of(
-                    "clientSecret", existing.get().getClientSecret(),
-                    "reference", existing.get().getReference(),
-                    "status", existing.get().getStatus()
-            ));
-        }
+        Optional<PaymentTransactionSummary> existing = findExisting(req.reference());
+        if (existing.isPresent()) return existingStripeIntent(existing.get());
 
         String currency = validateCurrency(req.currency());
+        Optional<PaymentTransaction> started = startTransaction("stripe", "intent", req, currency);
+        if (started.isEmpty()) {
+            return findExisting(req.reference())
+                    .map(this::existingStripeIntent)
+                    .orElseGet(() -> concurrentDuplicate(req.reference()));
+        }
+
+        PaymentTransaction tx = started.get();
         try {
-            String clientSecret = stripeService.createPaymentIntent(req.amount(), currency, req.reference());
-            PaymentTransaction tx = startTransaction("stripe", req, currency);
-            tx.setClientSecret(clientSecret);
-            tx.markInitiated();
-            txRepo.save(tx);
+            String clientSecret = stripeService.createPaymentIntent(req.amount(), currency, tx.getReference());
+            txService.markInitiated(tx, clientSecret);
 
             log.info("Stripe intent created: ref={}, amount={}, currency={}", tx.getReference(), req.amount(), currency);
             return ResponseEntity.ok(Map.of("clientSecret", clientSecret, "reference", tx.getReference()));
 
-        } catch (Exception ex) {
-            throw new PaymentProcessingException("Failed to create Stripe payment intent", ex);
+        } catch (RuntimeException ex) {
+            throw providerFailure(tx, "Failed to create Stripe payment intent", ex);
+        } finally {
+            txService.release(tx.getReference(), PaymentTransactionSummary.of(tx));
         }
     }
 
     @PostMapping("/stripe/transfer")
-    @Transactional
     public ResponseEntity<?> stripeTransfer(
             @RequestHeader(value = "X-Api-Key", required = false) String apiKey,
             @RequestBody Map<String, Object> body
@@ -154,24 +291,18 @@ public class PaymentController {
         String currency = validateCurrency((String) body.getOrDefault("currency", "USD"));
         String connectedAcct = (String) body.get("connectedAccountId");
 
+        PaymentTransaction tx = txService.open("stripe", "transfer", "transfer-" + UUID.randomUUID(), amount, currency);
         try {
             String transferId = stripeService.sendTransfer(amount, currency, connectedAcct);
-            PaymentTransaction tx = new PaymentTransaction();
-            tx.setProvider("stripe");
-            tx.setAmount(amount);
-            tx.setCurrency(currency);
-            tx.setReference("transfer-" + UUID.randomUUID());
-            tx.updatePaymentResponse("stripe", "TRANSFER_SUCCESS", transferId, true);
-            txRepo.save(tx);
+            txService.complete(tx, "stripe", "TRANSFER_SUCCESS", transferId, true);
 
             return ResponseEntity.ok(Map.of("transferId", transferId, "reference", tx.getReference()));
-        } catch (Exception ex) {
-            throw new PaymentProcessingException("Stripe transfer failed", ex);
+        } catch (RuntimeException ex) {
+            throw providerFailure(tx, "Stripe transfer failed", ex);
         }
     }
 
     @PostMapping("/stripe/payout")
-    @Transactional
     public ResponseEntity<?> stripePayout(
             @RequestHeader(value = "X-Api-Key", required = false) String apiKey,
             @RequestBody Map<String, Object> body
@@ -182,19 +313,14 @@ public class PaymentController {
         Long amount = ((Number) body.get("amount")).longValue();
         String currency = validateCurrency((String) body.getOrDefault("currency", "USD"));
 
+        PaymentTransaction tx = txService.open("stripe", "payout", "payout-" + UUID.randomUUID(), amount, currency);
         try {
             String payoutId = stripeService.createPayout(amount, currency);
-            PaymentTransaction tx = new PaymentTransaction();
-            tx.setProvider("stripe");
-            tx.setAmount(amount);
-            tx.setCurrency(currency);
-            tx.setReference("payout-" + UUID.randomUUID());
-            tx.updatePaymentResponse("stripe", "PAYOUT_SUCCESS", payoutId, true);
-            txRepo.save(tx);
+            txService.complete(tx, "stripe", "PAYOUT_SUCCESS", payoutId, true);
 
             return ResponseEntity.ok(Map.of("payoutId", payoutId, "reference", tx.getReference()));
-        } catch (Exception ex) {
-            throw new PaymentProcessingException("Stripe payout failed", ex);
+        } catch (RuntimeException ex) {
+            throw providerFailure(tx, "Stripe payout failed", ex);
         }
     }
 
@@ -203,7 +329,6 @@ public class PaymentController {
        ============================================================== */
 
     @PostMapping("/mtn/collect")
-    @Transactional
     public ResponseEntity<?> mtnCollect(
             @RequestHeader(value = "X-Api-Key", required = false) String apiKey,
             @Valid @RequestBody MomoCollectRequest req
@@ -211,34 +336,43 @@ public class PaymentController {
         if (!isAuthorized(apiKey))
             return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body(Map.of("error", "Unauthorized"));
 
-        Optional<PaymentTransaction> existing = findExisting(req.reference());
+        Optional<PaymentTransactionSummary> existing = findExisting(req.reference());
         if (existing.isPresent()) return ResponseEntity.ok(existing.get());
 
         String currency = validateCurrency(req.currency());
-        PaymentTransaction tx = startTransaction("mtn", req, currency);
+        Optional<PaymentTransaction> started = startTransaction("mtn", "collect", req, currency);
+        if (started.isEmpty()) return concurrentDuplicate(req.reference());
+
+        PaymentTransaction tx = started.get();
+        if (asyncEnabled) {
+            return acceptAsync(tx, "Failed to initiate MTN collection", () -> initiateMtnCollection(tx, req, currency));
+        }
         try {
-            MtnResponseDTO response = mtnService.initiateCollection(
-                    String.valueOf(req.amount()),
-                    req.phone(),
-                    tx.getReference(),
-                    "Payment request",
-                    "Payment to merchant",
-                    currency
-            );
-            boolean success = response != null && "SUCCESS".equalsIgnoreCase(response.getBody());
-            tx.updatePaymentResponse("mtn", response != null ? response.toString() : null, null, success);
-            txRepo.save(tx);
-
-            log.info("MTN collect initiated: ref={}, phone={}, currency={}", tx.getReference(), redactPhone(req.phone()), currency);
-            return ResponseEntity.ok(response);
+            return ResponseEntity.ok(initiateMtnCollection(tx, req, currency));
         } catch (RuntimeException ex) {
-            failTransaction(tx, "Failed to initiate MTN collection", ex);
-            throw new PaymentProcessingException("Failed to initiate MTN collection", ex);
+            throw providerFailure(tx, "Failed to initiate MTN collection", ex);
+        } finally {
+            txService.release(tx.getReference(), PaymentTransactionSummary.of(tx));
         }
     }
 
+    private MtnResponseDTO initiateMtnCollection(PaymentTransaction tx, MomoCollectRequest req, String currency) {
+        MtnResponseDTO response = mtnService.initiateCollection(
+                String.valueOf(req.amount()),
+                req.phone(),
+                tx.getReference(),
+                "Payment request",
+                "Payment to merchant",
+                currency
+        );
+        txService.recordSubmission(tx, "mtn", response != null ? response.getStatus() : null,
+                response != null ? response.toString() : null);
+
+        log.info("MTN collect initiated: ref={}, phone={}, currency={}", tx.getReference(), redactPhone(req.phone()), currency);
+        return response;
+    }
+
     @PostMapping("/mtn/withdraw")
-    @Transactional
     public ResponseEntity<?> mtnWithdraw(
             @RequestHeader(value = "X-Api-Key", required = false) String apiKey,
             @Valid @RequestBody MomoCollectRequest req
@@ -246,27 +380,29 @@ public class PaymentController {
         if (!isAuthorized(apiKey))
             return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body(Map.of("error", "Unauthorized"));
 
-        Optional<PaymentTransaction> existing = findExisting(req.reference());
+        Optional<PaymentTransactionSummary> existing = findExisting(req.reference());
         if (existing.isPresent()) return ResponseEntity.ok(existing.get());
 
         String currency = validateCurrency(req.currency());
-        PaymentTransaction tx = startTransaction("mtn", req, currency);
+        Optional<PaymentTransaction> started = startTransaction("mtn", "withdraw", req, currency);
+        if (started.isEmpty()) return concurrentDuplicate(req.reference());
+
+        PaymentTransaction tx = started.get();
         try {
             MtnResponseDTO response = mtnService.initiateWithdrawal(req.phone(), req.amount(), tx.getReference(), currency);
-            boolean success = response != null && "SUCCESS".equalsIgnoreCase(response.getBody());
-            tx.updatePaymentResponse("mtn", response != null ? response.toString() : null, null, success);
-            txRepo.save(tx);
+            txService.recordSubmission(tx, "mtn", response != null ? response.getStatus() : null,
+                    response != null ? response.toString() : null);
 
             log.info("MTN withdraw initiated: ref={}, phone={}, currency={}", tx.getReference(), redactPhone(req.phone()), currency);
             return ResponseEntity.ok(response);
         } catch (RuntimeException ex) {
-            failTransaction(tx, "Failed to initiate MTN withdrawal", ex);
-            throw new PaymentProcessingException("Failed to initiate MTN withdrawal", ex);
+            throw providerFailure(tx, "Failed to initiate MTN withdrawal", ex);
+        } finally {
+            txService.release(tx.getReference(), PaymentTransactionSummary.of(tx));
         }
     }
 
     @PostMapping("/airtel/collect")
-    @Transactional
     public ResponseEntity<?> airtelCollect(
             @RequestHeader(value = "X-Api-Key", required = false) String apiKey,
             @Valid @RequestBody MomoCollectRequest req
@@ -274,27 +410,36 @@ public class PaymentController {
         if (!isAuthorized(apiKey))
             return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body(Map.of("error", "Unauthorized"));
 
-        Optional<PaymentTransaction> existing = findExisting(req.reference());
+        Optional<PaymentTransactionSummary> existing = findExisting(req.reference());
         if (existing.isPresent()) return ResponseEntity.ok(existing.get());
 
         String currency = validateCurrency(req.currency());
-        PaymentTransaction tx = startTransaction("airtel", req, currency);
-        try {
-            AirtelResponseDTO response = airtelService.initiateCollection(req.phone(), req.amount(), tx.getReference(), currency);
-            boolean success = response != null && "SUCCESS".equalsIgnoreCase(response.getBody());
-            tx.updatePaymentResponse("airtel", response != null ? response.toString() : null, null, success);
-            txRepo.save(tx);
+        Optional<PaymentTransaction> started = startTransaction("airtel", "collect", req, currency);
+        if (started.isEmpty()) return concurrentDuplicate(req.reference());
 
-            log.info("Airtel collect initiated: ref={}, phone={}, currency={}", tx.getReference(), redactPhone(req.phone()), currency);
-            return ResponseEntity.ok(response);
+        PaymentTransaction tx = started.get();
+        if (asyncEnabled) {
+            return acceptAsync(tx, "Failed to initiate Airtel collection", () -> initiateAirtelCollection(tx, req, currency));
+        }
+        try {
+            return ResponseEntity.ok(initiateAirtelCollection(tx, req, currency));
         } catch (RuntimeException ex) {
-            failTransaction(tx, "Failed to initiate Airtel collection", ex);
-            throw new PaymentProcessingException("Failed to initiate Airtel collection", ex);
+            throw providerFailure(tx, "Failed to initiate Airtel collection", ex);
+        } finally {
+            txService.release(tx.getReference(), PaymentTransactionSummary.of(tx));
         }
     }
 
+    private AirtelResponseDTO initiateAirtelCollection(PaymentTransaction tx, MomoCollectRequest req, String currency) {
+        AirtelResponseDTO response = airtelService.initiateCollection(req.phone(), req.amount(), tx.getReference(), currency);
+        txService.recordSubmission(tx, "airtel", response != null ? response.getStatus() : null,
+                response != null ? response.toString() : null);
+
+        log.info("Airtel collect initiated: ref={}, phone={}, currency={}", tx.getReference(), redactPhone(req.phone()), currency);
+        return response;
+    }
+
     @PostMapping("/airtel/withdraw")
-    @Transactional
     public ResponseEntity<?> airtelWithdraw(
             @RequestHeader(value = "X-Api-Key", required = false) String apiKey,
             @Valid @RequestBody MomoCollectRequest req
@@ -302,22 +447,25 @@ public class PaymentController {
         if (!isAuthorized(apiKey))
             return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body(Map.of("error", "Unauthorized"));
 
-        Optional<PaymentTransaction> existing = findExisting(req.reference());
+        Optional<PaymentTransactionSummary> existing = findExisting(req.reference());
         if (existing.isPresent()) return ResponseEntity.ok(existing.get());
 
         String currency = validateCurrency(req.currency());
-        PaymentTransaction tx = startTransaction("airtel", req, currency);
+        Optional<PaymentTransaction> started = startTransaction("airtel", "withdraw", req, currency);
+        if (started.isEmpty()) return concurrentDuplicate(req.reference());
+
+        PaymentTransaction tx = started.get();
         try {
             AirtelResponseDTO response = airtelService.initiateWithdrawal(req.phone(), req.amount(), tx.getReference(), currency);
-            boolean success = response != null && "SUCCESS".equalsIgnoreCase(response.getBody());
-            tx.updatePaymentResponse("airtel", response != null ? response.toString() : null, null, success);
-            txRepo.save(tx);
+            txService.recordSubmission(tx, "airtel", response != null ? response.getStatus() : null,
+                    response != null ? response.toString() : null);
 
             log.info("Airtel withdraw initiated: ref={}, phone={}, currency={}", tx.getReference(), redactPhone(req.phone()), currency);
             return ResponseEntity.ok(response);
         } catch (RuntimeException ex) {
-            failTransaction(tx, "Failed to initiate Airtel withdrawal", ex);
-            throw new PaymentProcessingException("Failed to initiate Airtel withdrawal", ex);
+            throw providerFailure(tx, "Failed to initiate Airtel withdrawal", ex);
+        } finally {
+            txService.release(tx.getReference(), PaymentTransactionSummary.of(tx));
         }
     }
 }
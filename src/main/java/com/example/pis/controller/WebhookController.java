@@ -1,18 +1,10 @@
 package com.example.pis.controller;
 
 import java.nio.charset.StandardCharsets;
-import java.security.InvalidKeyException;
-import java.security.MessageDigest;
-import java.security.NoSuchAlgorithmException;
 import java.time.Duration;
 import java.time.Instant;
 import java.util.Base64;
 import java.util.Optional;
-import java.util.Set;
-import java.util.concurrent.ConcurrentHashMap;
-
-import javax.crypto.Mac;
-import javax.crypto.spec.SecretKeySpec;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -24,57 +16,61 @@ import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
 
+import com.example.pis.dto.PaymentStatusUpdate;
 import com.example.pis.exception.BadPayloadException;
-import com.example.pis.exception.CryptographyException;
 import com.example.pis.exception.InvalidSignatureException;
-import com.fasterxml.jackson.core.JsonProcessingException;
-import com.fasterxml.jackson.databind.JsonNode;
-import com.fasterxml.jackson.databind.ObjectMapper;
+import com.example.pis.security.WebhookSignatureVerifier;
+import com.example.pis.service.EventIdStore;
+import com.example.pis.service.PaymentMetrics;
+import com.example.pis.service.PaymentMetrics.WebhookEventResult;
+import com.example.pis.service.WebhookEventIdExtractor;
+import com.example.pis.service.WebhookJournal;
+import com.example.pis.service.WebhookStatusParser;
 import com.stripe.exception.SignatureVerificationException;
 import com.stripe.model.Event;
 import com.stripe.net.Webhook;
 
+/**
+ * Receives provider callbacks. The request thread only verifies the signature, drops
+ * redeliveries by event id and appends the event to the {@link WebhookJournal};
+ * the reported status is applied to the transaction afterwards, by the journal's
+ * consumers. If the event cannot be journaled, its id is forgotten again and an error
+ * returned, so the provider's retry is processed.
+ */
 @RestController
 @RequestMapping("/api/webhooks")
 public class WebhookController {
 
     private static final Logger log = LoggerFactory.getLogger(WebhookController.class);
 
-    private final ObjectMapper mapper; 
     private final EventIdStore eventIdStore; 
+    private final WebhookSignatureVerifier signatureVerifier;
+    private final WebhookEventIdExtractor eventIdExtractor;
+    private final PaymentMetrics metrics;
+    private final WebhookStatusParser statusParser;
+    private final WebhookJournal journal;
 
     private final String stripeWebhookSecret;
-    private final String airtelWebhookSecret;
-    private final String mtnWebhookSecret;
     private final Duration allowedTimestampSkew;
 
     public WebhookController(
-            ObjectMapper mapper,
+            EventIdStore eventIdStore,
+            WebhookSignatureVerifier signatureVerifier,
+            WebhookEventIdExtractor eventIdExtractor,
+            PaymentMetrics metrics,
+            WebhookStatusParser statusParser,
+            WebhookJournal journal,
             @Value("${stripe.webhookSecret}") String stripeWebhookSecret,
-            @Value("${airtel.webhookSecret}") String airtelWebhookSecret,
-            @Value("${mtn.webhookSecret}") String mtnWebhookSecret,
             @Value("${webhook.allowedTimestampSeconds:300}") long allowedTimestampSeconds) {
 
-        this.mapper = mapper;
+        this.eventIdStore = eventIdStore;
+        this.signatureVerifier = signatureVerifier;
+        this.eventIdExtractor = eventIdExtractor;
+        this.metrics = metrics;
+        this.statusParser = statusParser;
+        this.journal = journal;
         this.stripeWebhookSecret = stripeWebhookSecret;
-        this.airtelWebhookSecret = airtelWebhookSecret;
-        this.mtnWebhookSecret = mtnWebhookSecret;
         this.allowedTimestampSkew = Duration.ofSeconds(allowedTimestampSeconds);
-
-        // Inline default implementation of EventIdStore
-        this.eventIdStore = new EventIdStore() {
-            private final Set<String> processed = ConcurrentHashMap.newKeySet();
-
-            @Override
-            public boolean isProcessed(String eventId) {
-                return processed.contains(eventId);
-            }
-
-            @Override
-            public void markProcessed(String eventId) {
-                processed.add(eventId);
-            }
-        };
     }
 
     // ---------------- Stripe Webhook ----------------
@@ -87,18 +83,23 @@ public class WebhookController {
             throw new BadPayloadException("Missing payload or signature");
         }
 
+        long verifyStart = System.nanoTime();
         try {
             Event event = Webhook.constructEvent(payload, sigHeader, stripeWebhookSecret);
+            metrics.recordWebhookVerification("stripe", true, System.nanoTime() - verifyStart);
             log.info("Stripe event received: type={}, id={}", event.getType(), event.getId());
 
-            if (eventIdStore.isProcessed(event.getId())) {
+            Optional<String> eventId = Optional.ofNullable(event.getId());
+            if (!markIfNew("stripe", eventId)) {
                 return ResponseEntity.ok("Already processed");
             }
 
-            eventIdStore.markProcessed(event.getId());
+            append("stripe", eventId, statusParser.parseStripe(event), payload.getBytes(StandardCharsets.UTF_8));
+
             return ResponseEntity.ok("Received");
 
         } catch (SignatureVerificationException e) {
+            metrics.recordWebhookVerification("stripe", false, System.nanoTime() - verifyStart);
             throw new InvalidSignatureException("Invalid Stripe signature", e);
         } catch (IllegalArgumentException e) {
             throw new BadPayloadException("Invalid Stripe payload", e);
@@ -108,7 +109,7 @@ public class WebhookController {
     // ---------------- MTN Webhook ----------------
     @PostMapping("/mtn")
     public ResponseEntity<String> handleMtnWebhook(
-            @RequestBody String payload,
+            @RequestBody byte[] payload,
             @RequestHeader(name = "X-MTN-Signature", required = false) String signature,
             @RequestHeader(name = "X-Request-Timestamp", required = false) String timestampHeader) {
 
@@ -126,22 +127,20 @@ public class WebhookController {
                 throw new InvalidSignatureException("Invalid MTN signature format");
             }
 
-            try {
-                if (!verifyHmacRawBytes(payload.getBytes(StandardCharsets.UTF_8),
-                        mtnWebhookSecret.getBytes(StandardCharsets.UTF_8), expectedBytesOpt.get())) {
-                    throw new InvalidSignatureException("Invalid MTN signature");
-                }
-            } catch (NoSuchAlgorithmException | InvalidKeyException e) {
-                throw new CryptographyException("MTN cryptography error", e);
+            long verifyStart = System.nanoTime();
+            boolean valid = signatureVerifier.verify("mtn", payload, expectedBytesOpt.get());
+            metrics.recordWebhookVerification("mtn", valid, System.nanoTime() - verifyStart);
+            if (!valid) {
+                throw new InvalidSignatureException("Invalid MTN signature");
             }
 
-            Optional<String> externalId = extractEventId(payload);
-            if (externalId.isPresent() && eventIdStore.isProcessed(externalId.get())) {
+            Optional<String> eventId = eventIdExtractor.extract(payload);
+            if (!markIfNew("mtn", eventId)) {
                 return ResponseEntity.ok("Already processed");
             }
 
             log.info("MTN webhook received");
-            externalId.ifPresent(eventIdStore::markProcessed);
+            append("mtn", eventId, statusParser.parse("mtn", payload), payload);
             return ResponseEntity.ok("Received");
 
         } catch (IllegalArgumentException e) {
@@ -152,7 +151,7 @@ public class WebhookController {
     // ---------------- Airtel Webhook ----------------
     @PostMapping("/airtel")
     public ResponseEntity<String> handleAirtelWebhook(
-            @RequestBody String payload,
+            @RequestBody byte[] payload,
             @RequestHeader(name = "X-Airtel-Signature", required = false) String signature,
             @RequestHeader(name = "X-Request-Timestamp", required = false) String timestampHeader) {
 
@@ -170,22 +169,20 @@ public class WebhookController {
                 throw new InvalidSignatureException("Invalid Airtel signature format");
             }
 
-            try {
-                if (!verifyHmacRawBytes(payload.getBytes(StandardCharsets.UTF_8),
-                        airtelWebhookSecret.getBytes(StandardCharsets.UTF_8), expectedBytesOpt.get())) {
-                    throw new InvalidSignatureException("Invalid Airtel signature");
-                }
-            } catch (NoSuchAlgorithmException | InvalidKeyException e) {
-                throw new CryptographyException("Airtel cryptography error", e);
+            long verifyStart = System.nanoTime();
+            boolean valid = signatureVerifier.verify("airtel", payload, expectedBytesOpt.get());
+            metrics.recordWebhookVerification("airtel", valid, System.nanoTime() - verifyStart);
+            if (!valid) {
+                throw new InvalidSignatureException("Invalid Airtel signature");
             }
 
-            Optional<String> externalId = extractEventId(payload);
-            if (externalId.isPresent() && eventIdStore.isProcessed(externalId.get())) {
+            Optional<String> eventId = eventIdExtractor.extract(payload);
+            if (!markIfNew("airtel", eventId)) {
                 return ResponseEntity.ok("Already processed");
             }
 
             log.info("Airtel webhook received");
-            externalId.ifPresent(eventIdStore::markProcessed);
+            append("airtel", eventId, statusParser.parse("airtel", payload), payload);
             return ResponseEntity.ok("Received");
 
         } catch (IllegalArgumentException e) {
@@ -195,6 +192,31 @@ public class WebhookController {
 
     // ---------- Utility Methods ----------
 
+    /** Records the event id and counts the dedup result; events without an id are always processed. */
+    private boolean markIfNew(String provider, Optional<String> eventId) {
+        if (eventId.isEmpty()) {
+            metrics.recordWebhookEvent(provider, WebhookEventResult.NO_ID);
+            return true;
+        }
+        boolean isNew = eventIdStore.markIfNew(provider + ":" + eventId.get());
+        metrics.recordWebhookEvent(provider, isNew ? WebhookEventResult.NEW : WebhookEventResult.DUPLICATE);
+        return isNew;
+    }
+
+    /**
+     * Durably records the event before it is acknowledged. On failure the event id is
+     * forgotten so that the provider's redelivery is not dropped as a duplicate.
+     */
+    private void append(String provider, Optional<String> eventId, Optional<PaymentStatusUpdate> update,
+                        byte[] payload) {
+        try {
+            journal.append(provider, eventId.map(id -> provider + ":" + id).orElse(null), update, payload);
+        } catch (RuntimeException e) {
+            eventId.ifPresent(id -> eventIdStore.forget(provider + ":" + id));
+            throw e;
+        }
+    }
+
     private Optional<byte[]> decodeSignatureToBytes(String signature) {
         if (signature == null) return Optional.empty();
         String s = signature;
@@ -219,14 +241,6 @@ public class WebhookController {
         return Optional.empty();
     }
 
-    private boolean verifyHmacRawBytes(byte[] dataBytes, byte[] secretBytes, byte[] expected)
-            throws NoSuchAlgorithmException, InvalidKeyException {
-        Mac mac = Mac.getInstance("HmacSHA256");
-        mac.init(new SecretKeySpec(secretBytes, "HmacSHA256"));
-        byte[] actual = mac.doFinal(dataBytes);
-        return MessageDigest.isEqual(actual, expected);
-    }
-
     private boolean isTimestampFresh(String timestampHeader) {
         if (timestampHeader == null) return true;
         try {
@@ -244,22 +258,4 @@ public class WebhookController {
             }
         }
     }
-
-    private Optional<String> extractEventId(String payload) {
-        try {
-            JsonNode root = mapper.readTree(payload);
-            if (root.has("id")) return Optional.of(root.get("id").asText());
-            if (root.has("eventId")) return Optional.of(root.get("eventId").asText());
-            if (root.has("reference")) return Optional.of(root.get("reference").asText());
-            if (root.has("transactionId")) return Optional.of(root.get("transactionId").asText());
-        } catch (JsonProcessingException e) {
-            log.debug("Failed to extract event id: {}", e.getMessage());
-        }
-        return Optional.empty();
-    }
-
-    public interface EventIdStore {
-        boolean isProcessed(String eventId);
-        void markProcessed(String eventId);
-    }
 }
@@ -0,0 +1,20 @@
+package com.example.pis.dto;
+
+import com.example.pis.enums.PaymentStatus;
+
+/**
+ * Result of one batch item, streamed back as a line of NDJSON.
+ *
+ * @param reference Item reference
+ * @param status    Transaction status after this run, e.g. SUCCESS, FAILED or PENDING
+ * @param outcome   {@code processed} if the provider was called in this run, {@code existing}
+ *                  if an earlier run already settled it, or {@code deferred} if it is still
+ *                  PENDING and a later resubmission will pick it up
+ * @param error     Why the item failed or was deferred, otherwise null
+ */
+public record BatchItemResult(String reference, PaymentStatus status, String outcome, String error) {
+
+    public static final String PROCESSED = "processed";
+    public static final String EXISTING = "existing";
+    public static final String DEFERRED = "deferred";
+}
@@ -0,0 +1,33 @@
+package com.example.pis.dto;
+
+import java.util.List;
+
+/**
+ * Request payload for a batch of Mobile Money collections or withdrawals.
+ *
+ * <p>The provider and operation come from the URL. Items are not validated on
+ * binding; the whole batch is checked in one pass so that every problem is
+ * reported together. Resubmitting a batch with the same references resumes it.</p>
+ *
+ * <p>Example JSON:
+ * <pre>{@code
+ * {
+ *   "items": [
+ *     { "phone": "256700000000", "amount": 5000, "currency": "UGX", "reference": "PAYROLL-2025-05-001" },
+ *     { "phone": "256700000001", "amount": 7500, "currency": "UGX", "reference": "PAYROLL-2025-05-002" }
+ *   ]
+ * }
+ * }</pre>
+ */
+public record BatchPaymentRequest(List<Item> items) {
+
+    /**
+     * One payment in a batch.
+     *
+     * @param phone     MSISDN in international format without the plus sign
+     * @param amount    Amount in the smallest currency unit
+     * @param currency  Currency code, e.g. UGX
+     * @param reference Unique reference; also the key a resumed batch is matched on
+     */
+    public record Item(String phone, Long amount, String currency, String reference) {}
+}
@@ -0,0 +1,42 @@
+package com.example.pis.dto;
+
+import java.time.Instant;
+
+import com.example.pis.entity.WebhookEvent;
+import com.example.pis.enums.PaymentStatus;
+
+/**
+ * A journaled webhook still to be applied, read without its raw body.
+ *
+ * @param id                    Journal ID; ascending in arrival order
+ * @param provider              Provider name, e.g. mtn
+ * @param orderingKey           Reference or provider transaction ID events are ordered by
+ * @param reference             Client reference, or null
+ * @param providerTransactionId Provider-side transaction ID, or null
+ * @param status                Status reported by the provider
+ * @param receivedAt            When the webhook was acknowledged
+ * @param attempts              Failed attempts to apply it so far
+ */
+public record JournaledWebhookEvent(
+        Long id,
+        String provider,
+        String orderingKey,
+        String reference,
+        String providerTransactionId,
+        PaymentStatus status,
+        Instant receivedAt,
+        int attempts
+) {
+
+    /** Journal entry of an event just appended. */
+    public static JournaledWebhookEvent of(WebhookEvent event) {
+        return new JournaledWebhookEvent(event.getId(), event.getProvider(), event.getOrderingKey(),
+                event.getReference(), event.getProviderTransactionId(), event.getStatus(),
+                event.getReceivedAt(), event.getAttempts());
+    }
+
+    /** The status change to apply. */
+    public PaymentStatusUpdate update() {
+        return new PaymentStatusUpdate(provider, reference, providerTransactionId, status);
+    }
+}
@@ -0,0 +1,41 @@
+package com.example.pis.dto;
+
+import java.time.Instant;
+
+import com.example.pis.entity.PaymentOutboxEvent;
+import com.example.pis.enums.PaymentStatus;
+
+/**
+ * A payment lifecycle event as handed to outbox sinks.
+ *
+ * <p>Delivery is at least once: consumers should treat {@code eventId} as an
+ * idempotency key.</p>
+ *
+ * @param eventId               Outbox ID; ascending per transaction in the order of its changes
+ * @param transactionId         Transaction ID
+ * @param reference             Client reference
+ * @param provider              Provider name, e.g. mtn
+ * @param providerTransactionId Provider-side transaction ID, if known
+ * @param status                Status the transaction moved to
+ * @param amount                Amount in the smallest currency unit
+ * @param currency              Currency code
+ * @param occurredAt            When the change was committed
+ */
+public record OutboxMessage(
+        Long eventId,
+        Long transactionId,
+        String reference,
+        String provider,
+        String providerTransactionId,
+        PaymentStatus status,
+        Long amount,
+        String currency,
+        Instant occurredAt
+) {
+
+    public static OutboxMessage of(PaymentOutboxEvent event) {
+        return new OutboxMessage(event.getId(), event.getTransactionId(), event.getReference(),
+                event.getProvider(), event.getProviderTransactionId(), event.getStatus(), event.getAmount(),
+                event.getCurrency(), event.getOccurredAt());
+    }
+}
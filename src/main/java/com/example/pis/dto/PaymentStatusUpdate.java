@@ -0,0 +1,21 @@
+package com.example.pis.dto;
+
+import com.example.pis.enums.PaymentStatus;
+
+/**
+ * A status change reported by a provider callback.
+ *
+ * <p>The transaction is identified by {@code reference} when the provider echoes it
+ * back, otherwise by {@code providerTransactionId}; at least one is set.</p>
+ *
+ * @param provider              Provider name, e.g. mtn
+ * @param reference             Client reference, or null
+ * @param providerTransactionId Provider-side transaction ID, or null
+ * @param status                Status reported by the provider
+ */
+public record PaymentStatusUpdate(
+        String provider,
+        String reference,
+        String providerTransactionId,
+        PaymentStatus status
+) {}
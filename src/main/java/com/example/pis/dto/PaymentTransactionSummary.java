@@ -0,0 +1,39 @@
+package com.example.pis.dto;
+
+import java.time.Instant;
+
+import com.example.pis.entity.PaymentTransaction;
+import com.example.pis.enums.PaymentStatus;
+
+/**
+ * Status and identifiers of a payment transaction, read without loading the entity.
+ *
+ * @param id                    Transaction ID
+ * @param reference             Client reference
+ * @param provider              Provider name, e.g. mtn
+ * @param providerTransactionId Provider-side transaction ID, if known
+ * @param status                Current status, e.g. PENDING or SUCCESS
+ * @param amount                Amount in the smallest currency unit
+ * @param currency              Currency code
+ * @param clientSecret          Stripe PaymentIntent client secret, for Stripe intents
+ * @param createdAt             When the transaction was opened
+ */
+public record PaymentTransactionSummary(
+        Long id,
+        String reference,
+        String provider,
+        String providerTransactionId,
+        PaymentStatus status,
+        Long amount,
+        String currency,
+        String clientSecret,
+        Instant createdAt
+) {
+
+    /** Summary of an entity already in memory. */
+    public static PaymentTransactionSummary of(PaymentTransaction tx) {
+        return new PaymentTransactionSummary(tx.getId(), tx.getReference(), tx.getProvider(),
+                tx.getProviderTransactionId(), tx.getStatus(), tx.getAmount(), tx.getCurrency(),
+                tx.getClientSecret(), tx.getCreatedAt());
+    }
+}
@@ -0,0 +1,38 @@
+package com.example.pis.dto;
+
+import java.time.Instant;
+
+import com.example.pis.entity.MerchantCallback;
+
+/**
+ * A merchant callback still to be delivered.
+ *
+ * @param id            Callback ID
+ * @param merchant      Merchant ID from {@code payments.callbacks.merchants}
+ * @param eventId       Outbox event reported, sent as the callback's idempotency key
+ * @param payload       JSON body
+ * @param createdAt     When the callback was queued
+ * @param nextAttemptAt When the next attempt is due
+ * @param attempts      Failed attempts so far
+ */
+public record PendingCallback(
+        Long id,
+        String merchant,
+        Long eventId,
+        byte[] payload,
+        Instant createdAt,
+        Instant nextAttemptAt,
+        int attempts
+) {
+
+    /** Callback just queued. */
+    public static PendingCallback of(MerchantCallback callback) {
+        return new PendingCallback(callback.getId(), callback.getMerchant(), callback.getEventId(),
+                callback.getPayload(), callback.getCreatedAt(), callback.getNextAttemptAt(), callback.getAttempts());
+    }
+
+    /** The same callback after another failed attempt. */
+    public PendingCallback retryAt(Instant next) {
+        return new PendingCallback(id, merchant, eventId, payload, createdAt, next, attempts + 1);
+    }
+}
@@ -0,0 +1,24 @@
+package com.example.pis.dto;
+
+import java.time.Instant;
+
+import com.example.pis.enums.PaymentStatus;
+
+/**
+ * A transaction still waiting for its provider outcome, as read by the status poller.
+ *
+ * @param id        Transaction ID
+ * @param reference Client reference
+ * @param provider  Provider name, e.g. mtn
+ * @param operation collect or withdraw; null on rows written before it was recorded
+ * @param status    PENDING or INITIATED
+ * @param createdAt When the transaction was opened
+ */
+public record PendingTransaction(
+        Long id,
+        String reference,
+        String provider,
+        String operation,
+        PaymentStatus status,
+        Instant createdAt
+) {}
@@ -0,0 +1,86 @@
+package com.example.pis.entity;
+
+import java.time.Instant;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.Index;
+import jakarta.persistence.Lob;
+import jakarta.persistence.Table;
+
+/**
+ * A callback owed to a merchant for one settled payment event.
+ *
+ * <p>The body is stored as it will be sent, so every attempt delivers the same bytes.
+ * The unique {@code (merchant, event_id)} index turns the outbox's at-least-once
+ * delivery into one callback per merchant and event. Rows are completed once
+ * delivered or given up on; {@code last_error} tells the two apart.</p>
+ */
+@Entity
+@Table(
+    name = "merchant_callbacks",
+    indexes = {
+        @Index(name = "idx_merchant_callbacks_event", columnList = "merchant, event_id", unique = true),
+        @Index(name = "idx_merchant_callbacks_due", columnList = "completed_at, next_attempt_at")
+    }
+)
+public class MerchantCallback {
+
+    @Id
+    @TimeOrderedId
+    private Long id;
+
+    @Column(nullable = false, length = 50, updatable = false)
+    private String merchant;
+
+    /** Outbox event the callback reports. */
+    @Column(name = "event_id", nullable = false, updatable = false)
+    private Long eventId;
+
+    @Column(nullable = false, length = 100, updatable = false)
+    private String reference;
+
+    @Lob
+    @Column(nullable = false, updatable = false)
+    private byte[] payload;
+
+    @Column(name = "created_at", nullable = false, updatable = false)
+    private Instant createdAt;
+
+    @Column(name = "next_attempt_at", nullable = false)
+    private Instant nextAttemptAt;
+
+    @Column(name = "completed_at")
+    private Instant completedAt;
+
+    @Column(nullable = false)
+    private int attempts;
+
+    @Column(name = "last_error", length = 255)
+    private String lastError;
+
+    protected MerchantCallback() {
+        // JPA requires a no-arg constructor
+    }
+
+    public MerchantCallback(String merchant, Long eventId, String reference, byte[] payload, Instant createdAt) {
+        this.merchant = merchant;
+        this.eventId = eventId;
+        this.reference = reference;
+        this.payload = payload;
+        this.createdAt = createdAt;
+        this.nextAttemptAt = createdAt;
+    }
+
+    public Long getId() { return id; }
+    public String getMerchant() { return merchant; }
+    public Long getEventId() { return eventId; }
+    public String getReference() { return reference; }
+    public byte[] getPayload() { return payload; }
+    public Instant getCreatedAt() { return createdAt; }
+    public Instant getNextAttemptAt() { return nextAttemptAt; }
+    public Instant getCompletedAt() { return completedAt; }
+    public int getAttempts() { return attempts; }
+    public String getLastError() { return lastError; }
+}
@@ -0,0 +1,117 @@
+package com.example.pis.entity;
+
+import java.time.Instant;
+
+import org.hibernate.annotations.JdbcTypeCode;
+import org.hibernate.type.SqlTypes;
+
+import com.example.pis.dto.PaymentTransactionSummary;
+import com.example.pis.enums.PaymentStatus;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.EnumType;
+import jakarta.persistence.Enumerated;
+import jakarta.persistence.Id;
+import jakarta.persistence.Index;
+import jakarta.persistence.Table;
+
+/**
+ * A payment lifecycle event waiting to be relayed, written in the same transaction
+ * as the status change it describes.
+ *
+ * <p>The event carries a snapshot of the transaction as of that change; only the
+ * delivery columns are updated afterwards.</p>
+ */
+@Entity
+@Table(
+    name = "payment_outbox",
+    indexes = {
+        @Index(name = "idx_payment_outbox_undispatched", columnList = "dispatched_at, id")
+    }
+)
+public class PaymentOutboxEvent {
+
+    /** Time-ordered, so ascending IDs relay a transaction's events in the order they were written. */
+    @Id
+    @TimeOrderedId
+    private Long id;
+
+    @Column(name = "transaction_id", nullable = false, updatable = false)
+    private Long transactionId;
+
+    @Column(nullable = false, length = 100, updatable = false)
+    private String reference;
+
+    @Column(nullable = false, length = 20, updatable = false)
+    private String provider;
+
+    @Column(name = "provider_transaction_id", length = 100, updatable = false)
+    private String providerTransactionId;
+
+    @Enumerated(EnumType.STRING)
+    @JdbcTypeCode(SqlTypes.VARCHAR)
+    @Column(nullable = false, length = 30, updatable = false)
+    private PaymentStatus status;
+
+    @Column(nullable = false, updatable = false)
+    private Long amount;
+
+    @Column(nullable = false, length = 10, updatable = false)
+    private String currency;
+
+    @Column(name = "occurred_at", nullable = false, updatable = false)
+    private Instant occurredAt;
+
+    @Column(name = "next_attempt_at", nullable = false)
+    private Instant nextAttemptAt;
+
+    @Column(name = "dispatched_at")
+    private Instant dispatchedAt;
+
+    @Column(nullable = false)
+    private int attempts;
+
+    @Column(name = "last_error", length = 255)
+    private String lastError;
+
+    /** Relay batch that holds the event until {@link #claimedUntil}. */
+    @Column(name = "claim_token", length = 64)
+    private String claimToken;
+
+    @Column(name = "claimed_until")
+    private Instant claimedUntil;
+
+    protected PaymentOutboxEvent() {
+        // JPA requires a no-arg constructor
+    }
+
+    /** @param transaction State of the transaction right after the change */
+    public PaymentOutboxEvent(PaymentTransactionSummary transaction, Instant occurredAt) {
+        this.transactionId = transaction.id();
+        this.reference = transaction.reference();
+        this.provider = transaction.provider();
+        this.providerTransactionId = transaction.providerTransactionId();
+        this.status = transaction.status();
+        this.amount = transaction.amount();
+        this.currency = transaction.currency();
+        this.occurredAt = occurredAt;
+        this.nextAttemptAt = occurredAt;
+    }
+
+    public Long getId() { return id; }
+    public Long getTransactionId() { return transactionId; }
+    public String getReference() { return reference; }
+    public String getProvider() { return provider; }
+    public String getProviderTransactionId() { return providerTransactionId; }
+    public PaymentStatus getStatus() { return status; }
+    public Long getAmount() { return amount; }
+    public String getCurrency() { return currency; }
+    public Instant getOccurredAt() { return occurredAt; }
+    public Instant getNextAttemptAt() { return nextAttemptAt; }
+    public Instant getDispatchedAt() { return dispatchedAt; }
+    public int getAttempts() { return attempts; }
+    public String getLastError() { return lastError; }
+    public String getClaimToken() { return claimToken; }
+    public Instant getClaimedUntil() { return claimedUntil; }
+}
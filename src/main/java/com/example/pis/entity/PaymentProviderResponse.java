@@ -0,0 +1,79 @@
+package com.example.pis.entity;
+
+import java.time.Instant;
+
+import org.springframework.data.domain.Persistable;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.Lob;
+import jakarta.persistence.PostLoad;
+import jakarta.persistence.PostPersist;
+import jakarta.persistence.Table;
+import jakarta.persistence.Transient;
+
+/**
+ * Raw provider response for a {@link PaymentTransaction}, keyed by its ID.
+ *
+ * <p>Kept out of {@code payment_transactions} so that lookups on the payment path
+ * read a narrow row; it is only loaded when explicitly asked for. The body is
+ * stored as UTF-8, gzip-compressed when {@link #getEncoding()} says so.</p>
+ */
+@Entity
+@Table(name = "payment_provider_responses")
+public class PaymentProviderResponse implements Persistable<Long> {
+
+    public static final String IDENTITY = "identity";
+    public static final String GZIP = "gzip";
+
+    @Id
+    @Column(name = "transaction_id")
+    private Long transactionId;
+
+    @Column(nullable = false, length = 50)
+    private String provider;
+
+    @Column(nullable = false, length = 10)
+    private String encoding;
+
+    @Lob
+    @Column(nullable = false)
+    private byte[] body;
+
+    @Column(name = "created_at", nullable = false, updatable = false)
+    private Instant createdAt = Instant.now();
+
+    /** Lets {@code save} persist without first selecting by the assigned ID. */
+    @Transient
+    private boolean isNew = true;
+
+    /* ---------- Constructors ---------- */
+    protected PaymentProviderResponse() {}
+
+    public PaymentProviderResponse(Long transactionId, String provider, String encoding, byte[] body) {
+        this.transactionId = transactionId;
+        this.provider = provider;
+        this.encoding = encoding;
+        this.body = body;
+    }
+
+    /* ---------- Getters ---------- */
+    @Override
+    public Long getId() { return transactionId; }
+
+    public String getProvider() { return provider; }
+
+    public String getEncoding() { return encoding; }
+
+    public byte[] getBody() { return body; }
+
+    public Instant getCreatedAt() { return createdAt; }
+
+    @Override
+    public boolean isNew() { return isNew; }
+
+    @PostLoad
+    @PostPersist
+    void markNotNew() { this.isNew = false; }
+}
@@ -3,10 +3,15 @@ package com.example.pis.entity;
 import java.time.Instant;
 import java.util.Objects;
 
+import org.hibernate.annotations.JdbcTypeCode;
+import org.hibernate.type.SqlTypes;
+
+import com.example.pis.enums.PaymentStatus;
+
 import jakarta.persistence.Column;
 import jakarta.persistence.Entity;
-import jakarta.persistence.GeneratedValue;
-import jakarta.persistence.GenerationType;
+import jakarta.persistence.EnumType;
+import jakarta.persistence.Enumerated;
 import jakarta.persistence.Id;
 import jakarta.persistence.Index;
 import jakarta.persistence.Table;
@@ -16,18 +21,24 @@ import jakarta.persistence.Table;
         name = "payment_transactions",
         indexes = {
             @Index(name = "idx_reference", columnList = "reference", unique = true),
-            @Index(name = "idx_provider_txid", columnList = "provider, provider_transaction_id")
+            @Index(name = "idx_provider_txid", columnList = "provider, provider_transaction_id"),
+            @Index(name = "idx_status_created_at", columnList = "status, created_at")
         }
 )
 public class PaymentTransaction {
 
+    /** Assigned before the insert so inserts can be batched; see {@link TimeOrderedIdGenerator}. */
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @TimeOrderedId
     private Long id;
 
     @Column(nullable = false, length = 50)
     private String provider;
 
+    /** collect, withdraw, intent, transfer or payout; null on rows written before it was recorded. */
+    @Column(length = 20, updatable = false)
+    private String operation;
+
     @Column(name = "provider_transaction_id", length = 100)
     private String providerTransactionId;
 
@@ -40,27 +51,25 @@ public class PaymentTransaction {
     @Column(nullable = false, length = 10)
     private String currency;
 
+    /** Stored by name in a plain VARCHAR, so adding a status needs no schema change. */
+    @Enumerated(EnumType.STRING)
+    @JdbcTypeCode(SqlTypes.VARCHAR)
     @Column(nullable = false, length = 30)
-    private String status;
+    private PaymentStatus status;
 
     @Column(name = "created_at", nullable = false, updatable = false)
     private Instant createdAt = Instant.now();
 
-    // Optional fields to store provider responses
     @Column(name = "client_secret", length = 255)
     private String clientSecret;
 
-    @Column(name = "mtn_response", columnDefinition = "TEXT")
-    private String mtnResponse;
-
-    @Column(name = "airtel_response", columnDefinition = "TEXT")
-    private String airtelResponse;
+    // Raw provider responses live in PaymentProviderResponse, keyed by this ID
 
     /* ---------- Constructors ---------- */
     public PaymentTransaction() {}
 
     public PaymentTransaction(String provider, String providerTransactionId,
-                              String reference, Long amount, String currency, String status) {
+                              String reference, Long amount, String currency, PaymentStatus status) {
         this.provider = provider;
         this.providerTransactionId = providerTransactionId;
         this.reference = reference;
@@ -75,6 +84,9 @@ public class PaymentTransaction {
     public String getProvider() { return provider; }
     public void setProvider(String provider) { this.provider = provider; }
 
+    public String getOperation() { return operation; }
+    public void setOperation(String operation) { this.operation = operation; }
+
     public String getProviderTransactionId() { return providerTransactionId; }
     public void setProviderTransactionId(String providerTransactionId) { this.providerTransactionId = providerTransactionId; }
 
@@ -87,8 +99,8 @@ public class PaymentTransaction {
     public String getCurrency() { return currency; }
     public void setCurrency(String currency) { this.currency = currency; }
 
-    public String getStatus() { return status; }
-    public void setStatus(String status) { this.status = status; }
+    public PaymentStatus getStatus() { return status; }
+    public void setStatus(PaymentStatus status) { this.status = status; }
 
     public Instant getCreatedAt() { return createdAt; }
     public void setCreatedAt(Instant createdAt) { this.createdAt = createdAt; }
@@ -96,43 +108,32 @@ public class PaymentTransaction {
     public String getClientSecret() { return clientSecret; }
     public void setClientSecret(String clientSecret) { this.clientSecret = clientSecret; }
 
-    public String getMtnResponse() { return mtnResponse; }
-    public void setMtnResponse(String mtnResponse) { this.mtnResponse = mtnResponse; }
-
-    public String getAirtelResponse() { return airtelResponse; }
-    public void setAirtelResponse(String airtelResponse) { this.airtelResponse = airtelResponse; }
-
     /* ---------- Payment Update Methods ---------- */
 
     /**
-     * Updates the transaction with provider response and status.
+     * Updates the transaction with the provider outcome and status.
      *
      * @param provider          The payment provider ("mtn", "airtel", "stripe")
-     * @param responseBody      The raw response from the provider
      * @param providerTxId      Provider-specific transaction ID (if any)
      * @param success           True if the transaction succeeded, false otherwise
      */
-    public void updatePaymentResponse(String provider, String responseBody, String providerTxId, boolean success) {
-        if ("mtn".equalsIgnoreCase(provider)) {
-            this.mtnResponse = responseBody;
-        } else if ("airtel".equalsIgnoreCase(provider)) {
-            this.airtelResponse = responseBody;
-        } else if ("stripe".equalsIgnoreCase(provider)) {
+    public void updatePaymentResponse(String provider, String providerTxId, boolean success) {
+        if ("stripe".equalsIgnoreCase(provider)) {
             this.clientSecret = providerTxId; // Use clientSecret as identifier for Stripe
         }
 
         this.providerTransactionId = providerTxId;
-        this.status = success ? "SUCCESS" : "FAILED";
+        this.status = success ? PaymentStatus.SUCCESS : PaymentStatus.FAILED;
     }
 
     /** Marks transaction as initiated */
     public void markInitiated() {
-        this.status = "INITIATED";
+        this.status = PaymentStatus.INITIATED;
     }
 
     /** Marks transaction as failed */
     public void markFailed() {
-        this.status = "FAILED";
+        this.status = PaymentStatus.FAILED;
     }
 
     /* ---------- Utility ---------- */
@@ -141,11 +142,12 @@ public class PaymentTransaction {
         return "PaymentTransaction{" +
                 "id=" + id +
                 ", provider='" + provider + '\'' +
+                ", operation='" + operation + '\'' +
                 ", providerTransactionId='" + providerTransactionId + '\'' +
                 ", reference='" + reference + '\'' +
                 ", amount=" + amount +
                 ", currency='" + currency + '\'' +
-                ", status='" + status + '\'' +
+                ", status=" + status +
                 ", createdAt=" + createdAt +
                 ", clientSecret='" + clientSecret + '\'' +
                 '}';
@@ -0,0 +1,45 @@
+package com.example.pis.entity;
+
+import java.time.Instant;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.Index;
+import jakarta.persistence.Table;
+
+/**
+ * Webhook event id that has been handled by some node.
+ *
+ * <p>The primary key on {@code event_id} is what makes deduplication atomic
+ * across instances: the second insert of the same id fails.</p>
+ */
+@Entity
+@Table(
+    name = "processed_webhook_events",
+    indexes = {
+        @Index(name = "idx_webhook_events_processed_at", columnList = "processed_at")
+    }
+)
+public class ProcessedWebhookEvent {
+
+    /** Provider-scoped event id, e.g. {@code mtn:abc123}. */
+    @Id
+    @Column(name = "event_id", length = 191)
+    private String eventId;
+
+    @Column(name = "processed_at", nullable = false)
+    private Instant processedAt;
+
+    public ProcessedWebhookEvent() {
+        // JPA requires a no-arg constructor
+    }
+
+    public ProcessedWebhookEvent(String eventId, Instant processedAt) {
+        this.eventId = eventId;
+        this.processedAt = processedAt;
+    }
+
+    public String getEventId() { return eventId; }
+    public Instant getProcessedAt() { return processedAt; }
+}
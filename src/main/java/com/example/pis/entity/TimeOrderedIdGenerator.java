@@ -0,0 +1,111 @@
+package com.example.pis.entity;
+
+import java.lang.reflect.Member;
+import java.time.Instant;
+import java.util.EnumSet;
+import java.util.Map;
+import java.util.function.LongSupplier;
+
+import org.hibernate.engine.config.spi.ConfigurationService;
+import org.hibernate.engine.spi.SharedSessionContractImplementor;
+import org.hibernate.generator.BeforeExecutionGenerator;
+import org.hibernate.generator.EventType;
+import org.hibernate.generator.EventTypeSets;
+import org.hibernate.id.factory.spi.CustomIdGeneratorCreationContext;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Generates time-ordered 53-bit IDs in memory, with no database round trip.
+ *
+ * <p>Layout: 41 bits of milliseconds since 2024-01-01, 5 bits of node and 7 bits
+ * of sequence, which keeps IDs exact as JavaScript numbers and leaves room for
+ * 128 IDs per millisecond per node. When a millisecond's sequence runs out, or
+ * the clock steps back, IDs borrow from the next millisecond, so they always
+ * increase on a node. They are far above any {@code IDENTITY} value already in
+ * the table.</p>
+ *
+ * <p>The node comes from the Hibernate setting {@value #NODE_SETTING}
+ * ({@code spring.jpa.properties.pis.ids.node}) and is required: instances sharing a
+ * database must use distinct nodes from 0 to {@value #MAX_NODE}, or their IDs
+ * collide. Only a deployment that declares itself a single instance with
+ * {@value #SINGLE_INSTANCE_SETTING} may leave it unset, and then uses node 0.</p>
+ */
+public class TimeOrderedIdGenerator implements BeforeExecutionGenerator {
+
+    private static final long serialVersionUID = 1L;
+
+    private static final Logger logger = LoggerFactory.getLogger(TimeOrderedIdGenerator.class);
+
+    public static final String NODE_SETTING = "pis.ids.node";
+    public static final String SINGLE_INSTANCE_SETTING = "pis.ids.singleInstance";
+    public static final int MAX_NODE = 31;
+
+    static final long EPOCH_MILLIS = Instant.parse("2024-01-01T00:00:00Z").toEpochMilli();
+    static final int NODE_BITS = 5;
+    static final int SEQUENCE_BITS = 7;
+    private static final long MAX_SEQUENCE = (1L << SEQUENCE_BITS) - 1;
+
+    private final long node;
+    private final transient LongSupplier clock;
+
+    private long lastMillis = -1;
+    private long sequence;
+
+    public TimeOrderedIdGenerator(TimeOrderedId config, Member idMember, CustomIdGeneratorCreationContext context) {
+        this(configuredNode(context.getServiceRegistry().requireService(ConfigurationService.class).getSettings()),
+                System::currentTimeMillis);
+    }
+
+    TimeOrderedIdGenerator(int node, LongSupplier clock) {
+        if (node < 0 || node > MAX_NODE) {
+            throw new IllegalArgumentException(NODE_SETTING + " must be between 0 and " + MAX_NODE + ", was " + node);
+        }
+        this.node = node;
+        this.clock = clock;
+    }
+
+    @Override
+    public Object generate(SharedSessionContractImplementor session, Object owner, Object currentValue,
+                           EventType eventType) {
+        return next();
+    }
+
+    @Override
+    public EnumSet<EventType> getEventTypes() {
+        return EventTypeSets.INSERT_ONLY;
+    }
+
+    /** Next ID for this node. */
+    synchronized long next() {
+        long millis = clock.getAsLong() - EPOCH_MILLIS;
+        if (millis > lastMillis) {
+            lastMillis = millis;
+            sequence = 0;
+        } else if (++sequence > MAX_SEQUENCE) {
+            lastMillis++;
+            sequence = 0;
+        }
+        return (lastMillis << (NODE_BITS + SEQUENCE_BITS)) | (node << SEQUENCE_BITS) | sequence;
+    }
+
+    /**
+     * The configured node.
+     *
+     * @throws IllegalStateException if it is unset and the deployment is not declared a single instance
+     */
+    static int configuredNode(Map<String, Object> settings) {
+        Object value = settings.get(NODE_SETTING);
+        if (value != null && !value.toString().isBlank()) {
+            return Integer.parseInt(value.toString().trim());
+        }
+        Object singleInstance = settings.get(SINGLE_INSTANCE_SETTING);
+        if (singleInstance == null || !Boolean.parseBoolean(singleInstance.toString().trim())) {
+            throw new IllegalStateException(NODE_SETTING + " is required: give each instance sharing the database"
+                    + " its own node from 0 to " + MAX_NODE + ", or set " + SINGLE_INSTANCE_SETTING
+                    + "=true if only one instance runs");
+        }
+        logger.info("{} not set on a single instance, using ID node 0", NODE_SETTING);
+        return 0;
+    }
+}
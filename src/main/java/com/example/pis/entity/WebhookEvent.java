@@ -0,0 +1,121 @@
+package com.example.pis.entity;
+
+import java.time.Instant;
+
+import org.hibernate.annotations.JdbcTypeCode;
+import org.hibernate.type.SqlTypes;
+
+import com.example.pis.dto.PaymentStatusUpdate;
+import com.example.pis.enums.PaymentStatus;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.EnumType;
+import jakarta.persistence.Enumerated;
+import jakarta.persistence.Id;
+import jakarta.persistence.Index;
+import jakarta.persistence.Lob;
+import jakarta.persistence.Table;
+
+/**
+ * A verified provider webhook, journaled before it is acknowledged.
+ *
+ * <p>Rows are appended once and only their processing columns change afterwards.
+ * The raw body is kept as received; the status change read from it at ingestion is
+ * stored alongside so that consumers and replay do not parse it again. Rows without
+ * a status change are written already processed.</p>
+ */
+@Entity
+@Table(
+    name = "webhook_events",
+    indexes = {
+        @Index(name = "idx_webhook_events_unprocessed", columnList = "processed_at, id")
+    }
+)
+public class WebhookEvent {
+
+    /** Time-ordered, so ascending IDs replay events in the order they arrived. */
+    @Id
+    @TimeOrderedId
+    private Long id;
+
+    @Column(nullable = false, length = 20, updatable = false)
+    private String provider;
+
+    /** Provider-scoped event id used for deduplication, if the webhook had one. */
+    @Column(name = "event_key", length = 191, updatable = false)
+    private String eventKey;
+
+    /** Events with the same key are applied one after another, in ID order. */
+    @Column(name = "ordering_key", length = 100, updatable = false)
+    private String orderingKey;
+
+    @Column(length = 100, updatable = false)
+    private String reference;
+
+    @Column(name = "provider_transaction_id", length = 100, updatable = false)
+    private String providerTransactionId;
+
+    @Enumerated(EnumType.STRING)
+    @JdbcTypeCode(SqlTypes.VARCHAR)
+    @Column(length = 30, updatable = false)
+    private PaymentStatus status;
+
+    @Lob
+    @Column(nullable = false, updatable = false)
+    private byte[] payload;
+
+    @Column(name = "received_at", nullable = false, updatable = false)
+    private Instant receivedAt;
+
+    @Column(name = "next_attempt_at", nullable = false)
+    private Instant nextAttemptAt;
+
+    @Column(name = "processed_at")
+    private Instant processedAt;
+
+    @Column(nullable = false)
+    private int attempts;
+
+    @Column(name = "last_error", length = 255)
+    private String lastError;
+
+    protected WebhookEvent() {
+        // JPA requires a no-arg constructor
+    }
+
+    /**
+     * @param update Status change carried by the webhook, or null; without one the
+     *               event is recorded as already processed
+     */
+    public WebhookEvent(String provider, String eventKey, PaymentStatusUpdate update, byte[] payload,
+                        Instant receivedAt) {
+        this.provider = provider;
+        this.eventKey = eventKey;
+        this.payload = payload;
+        this.receivedAt = receivedAt;
+        this.nextAttemptAt = receivedAt;
+        if (update == null) {
+            this.processedAt = receivedAt;
+            return;
+        }
+        this.reference = update.reference();
+        this.providerTransactionId = update.providerTransactionId();
+        this.status = update.status();
+        this.orderingKey = update.reference() != null ? update.reference() : update.providerTransactionId();
+    }
+
+    public Long getId() { return id; }
+    public String getProvider() { return provider; }
+    public String getEventKey() { return eventKey; }
+    public String getOrderingKey() { return orderingKey; }
+    public String getReference() { return reference; }
+    public String getProviderTransactionId() { return providerTransactionId; }
+    public PaymentStatus getStatus() { return status; }
+    public byte[] getPayload() { return payload; }
+    public Instant getReceivedAt() { return receivedAt; }
+    public Instant getNextAttemptAt() { return nextAttemptAt; }
+    public Instant getProcessedAt() { return processedAt; }
+    public int getAttempts() { return attempts; }
+    public String getLastError() { return lastError; }
+}
@@ -0,0 +1,62 @@
+package com.example.pis.enums;
+
+import java.util.EnumSet;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * Lifecycle of a payment transaction.
+ *
+ * <p>PENDING → INITIATED → SUCCESS or FAILED, and SUCCESS → REVERSED; a provider
+ * may also settle a PENDING transaction directly, but only a successful payment can
+ * be reversed. Transitions only move forward.</p>
+ *
+ * <p>Every status update is a compare-and-set on {@link #sources()}: a duplicate or
+ * late callback finds the row already past the states it may move from and updates
+ * nothing, so no row lock is needed.</p>
+ */
+public enum PaymentStatus {
+    PENDING,
+    INITIATED,
+    SUCCESS,
+    FAILED,
+    REVERSED;
+
+    /** Statuses a transaction may be in to move to this one; empty for PENDING. */
+    public Set<PaymentStatus> sources() {
+        return switch (this) {
+            case PENDING -> EnumSet.noneOf(PaymentStatus.class);
+            case INITIATED -> EnumSet.of(PENDING);
+            case SUCCESS, FAILED -> EnumSet.of(PENDING, INITIATED);
+            case REVERSED -> EnumSet.of(SUCCESS);
+        };
+    }
+
+    /** @return true if a transaction in this status may move to {@code next} */
+    public boolean canTransitionTo(PaymentStatus next) {
+        return next.sources().contains(this);
+    }
+
+    /** @return true once the provider has decided the outcome */
+    public boolean isSettled() {
+        return this == SUCCESS || this == FAILED || this == REVERSED;
+    }
+
+    /**
+     * Maps a provider status code to a status, case-insensitively. Covers MTN
+     * (SUCCESSFUL, FAILED, REJECTED, TIMEOUT, PENDING), Airtel (TS, TF, TA, TIP)
+     * and Stripe-style words.
+     *
+     * @return the matching status, or null for unknown or blank codes
+     */
+    public static PaymentStatus fromProviderStatus(String code) {
+        if (code == null) return null;
+        return switch (code.trim().toUpperCase(Locale.ROOT)) {
+            case "SUCCESSFUL", "SUCCESS", "SUCCEEDED", "TS" -> SUCCESS;
+            case "FAILED", "REJECTED", "TIMEOUT", "EXPIRED", "CANCELED", "CANCELLED", "TF" -> FAILED;
+            case "PENDING", "PROCESSING", "TA", "TIP" -> INITIATED;
+            case "REVERSED", "REFUNDED" -> REVERSED;
+            default -> null;
+        };
+    }
+}
@@ -0,0 +1,21 @@
+package com.example.pis.exception;
+
+import java.util.List;
+
+/**
+ * A payment batch was rejected before anything was persisted.
+ */
+public class BatchValidationException extends RuntimeException {
+
+    private final List<String> errors;
+
+    public BatchValidationException(List<String> errors) {
+        super("Invalid batch: " + errors.size() + " error(s)");
+        this.errors = List.copyOf(errors);
+    }
+
+    /** One message per problem, prefixed with the offending item, e.g. {@code items[3].phone}. */
+    public List<String> getErrors() {
+        return errors;
+    }
+}
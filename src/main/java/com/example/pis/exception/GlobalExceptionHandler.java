@@ -4,6 +4,7 @@ import java.util.Map;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.ControllerAdvice;
@@ -13,6 +14,23 @@ import org.springframework.web.bind.annotation.ExceptionHandler;
 public class GlobalExceptionHandler {
     private static final Logger log = LoggerFactory.getLogger(GlobalExceptionHandler.class);
 
+    @ExceptionHandler(ProviderUnavailableException.class)
+    public ResponseEntity<Map<String,String>> handleProviderUnavailable(ProviderUnavailableException ex) {
+        log.warn("Provider unavailable: {}", ex.getMessage());
+        long retryAfterSeconds = Math.max(1, (ex.getRetryAfter().toMillis() + 999) / 1000);
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .header(HttpHeaders.RETRY_AFTER, String.valueOf(retryAfterSeconds))
+                .body(Map.of("error", "Payment provider unavailable", "provider", ex.getProvider(),
+                        "detail", ex.getMessage()));
+    }
+
+    @ExceptionHandler(BatchValidationException.class)
+    public ResponseEntity<Map<String,Object>> handleBatchValidation(BatchValidationException ex) {
+        log.info("{}", ex.getMessage());
+        return ResponseEntity.badRequest()
+                .body(Map.of("error", "Invalid batch", "details", ex.getErrors()));
+    }
+
     @ExceptionHandler(PaymentProcessingException.class)
     public ResponseEntity<Map<String,String>> handlePaymentProcessing(PaymentProcessingException ex) {
         log.error("Payment error: {}", ex.getMessage(), ex);
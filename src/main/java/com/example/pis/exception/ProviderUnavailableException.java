@@ -0,0 +1,27 @@
+package com.example.pis.exception;
+
+import java.time.Duration;
+
+/**
+ * Thrown without calling the provider when its circuit breaker is open or its
+ * bulkhead is full.
+ */
+public class ProviderUnavailableException extends PaymentProcessingException {
+
+    private final String provider;
+    private final Duration retryAfter;
+
+    public ProviderUnavailableException(String provider, String message, Duration retryAfter) {
+        super(message, null);
+        this.provider = provider;
+        this.retryAfter = retryAfter;
+    }
+
+    public String getProvider() {
+        return provider;
+    }
+
+    public Duration getRetryAfter() {
+        return retryAfter;
+    }
+}
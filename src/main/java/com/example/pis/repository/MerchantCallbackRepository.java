@@ -0,0 +1,109 @@
+package com.example.pis.repository;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.Optional;
+
+import org.springframework.data.domain.Limit;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import com.example.pis.dto.PendingCallback;
+import com.example.pis.entity.MerchantCallback;
+
+/**
+ * Repository for queued merchant callbacks.
+ */
+@Repository
+public interface MerchantCallbackRepository extends JpaRepository<MerchantCallback, Long> {
+
+    /**
+     * Page through undelivered callbacks due before {@code dueBefore}, in ID order.
+     * Served by {@code idx_merchant_callbacks_due}.
+     *
+     * @param dueBefore Only callbacks whose next attempt is due before this instant
+     * @param afterId   ID of the last callback already read
+     * @param limit     Page size
+     * @return The next page, ordered by ID
+     */
+    @Query("select new com.example.pis.dto.PendingCallback(" +
+           "c.id, c.merchant, c.eventId, c.payload, c.createdAt, c.nextAttemptAt, c.attempts) " +
+           "from MerchantCallback c where c.completedAt is null and c.nextAttemptAt < :dueBefore " +
+           "and c.id > :afterId order by c.id")
+    List<PendingCallback> findDue(@Param("dueBefore") Instant dueBefore,
+                                  @Param("afterId") Long afterId,
+                                  Limit limit);
+
+    /**
+     * Claims a due callback for one delivery attempt by moving its next attempt to the
+     * end of the lease, so other nodes' sweeps skip it until the lease runs out.
+     *
+     * @param id         Callback ID
+     * @param dueBy      Claim only if the next attempt is due by this instant
+     * @param leaseUntil When the claim lapses if the attempt is never recorded
+     * @return 1 if claimed, 0 if it is completed, not yet due or claimed elsewhere
+     */
+    @Modifying
+    @Transactional
+    @Query("update MerchantCallback c set c.nextAttemptAt = :leaseUntil " +
+           "where c.id = :id and c.completedAt is null and c.nextAttemptAt <= :dueBy")
+    int claim(@Param("id") Long id, @Param("dueBy") Instant dueBy, @Param("leaseUntil") Instant leaseUntil);
+
+    /**
+     * Marks a callback delivered.
+     *
+     * @return 1 if marked, 0 if it had already been completed
+     */
+    @Modifying
+    @Transactional
+    @Query("update MerchantCallback c set c.completedAt = :completedAt, c.lastError = null " +
+           "where c.id = :id and c.completedAt is null")
+    int markDelivered(@Param("id") Long id, @Param("completedAt") Instant completedAt);
+
+    /**
+     * Records a failed attempt and schedules the next one.
+     *
+     * @return 1 if recorded, 0 if it had already been completed
+     */
+    @Modifying
+    @Transactional
+    @Query("update MerchantCallback c set c.attempts = c.attempts + 1, c.lastError = :error, " +
+           "c.nextAttemptAt = :nextAttemptAt where c.id = :id and c.completedAt is null")
+    int markRetry(@Param("id") Long id,
+                  @Param("nextAttemptAt") Instant nextAttemptAt,
+                  @Param("error") String error);
+
+    /**
+     * Gives up on a callback: it is completed and the error kept for inspection.
+     *
+     * @return 1 if recorded, 0 if it had already been completed
+     */
+    @Modifying
+    @Transactional
+    @Query("update MerchantCallback c set c.attempts = c.attempts + 1, c.lastError = :error, " +
+           "c.completedAt = :completedAt where c.id = :id and c.completedAt is null")
+    int markAbandoned(@Param("id") Long id,
+                      @Param("completedAt") Instant completedAt,
+                      @Param("error") String error);
+
+    /** @return number of callbacks not yet completed */
+    long countByCompletedAtIsNull();
+
+    /** @return when the oldest callback not yet completed was queued */
+    @Query("select min(c.createdAt) from MerchantCallback c where c.completedAt is null")
+    Optional<Instant> findOldestPending();
+
+    /**
+     * Deletes completed callbacks older than the retention window.
+     *
+     * @return number of deleted rows
+     */
+    @Modifying
+    @Transactional
+    @Query("delete from MerchantCallback c where c.completedAt is not null and c.createdAt < :cutoff")
+    int deleteCompletedBefore(@Param("cutoff") Instant cutoff);
+}
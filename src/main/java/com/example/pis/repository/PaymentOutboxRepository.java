@@ -0,0 +1,106 @@
+package com.example.pis.repository;
+
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+import org.springframework.data.domain.Limit;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import com.example.pis.entity.PaymentOutboxEvent;
+
+/**
+ * Repository for the payment outbox.
+ */
+@Repository
+public interface PaymentOutboxRepository extends JpaRepository<PaymentOutboxEvent, Long> {
+
+    /**
+     * The oldest undispatched events, due or not, in the order they were written.
+     * Served by {@code idx_payment_outbox_undispatched}.
+     *
+     * @param limit Batch size
+     * @return Undispatched events, ordered by ID
+     */
+    @Query("select e from PaymentOutboxEvent e where e.dispatchedAt is null order by e.id")
+    List<PaymentOutboxEvent> findUndispatched(Limit limit);
+
+    /**
+     * Claims events for one relay batch until {@code claimedUntil}. Events already
+     * dispatched, or claimed by another batch whose claim has not run out, are skipped.
+     *
+     * @return Number of events claimed; {@link #findClaimed} tells which
+     */
+    @Modifying
+    @Transactional
+    @Query("update PaymentOutboxEvent e set e.claimToken = :token, e.claimedUntil = :claimedUntil " +
+           "where e.id in :ids and e.dispatchedAt is null and (e.claimedUntil is null or e.claimedUntil <= :now)")
+    int claim(@Param("ids") Collection<Long> ids,
+              @Param("token") String token,
+              @Param("claimedUntil") Instant claimedUntil,
+              @Param("now") Instant now);
+
+    /** @return IDs among {@code ids} held by the batch {@code token} */
+    @Query("select e.id from PaymentOutboxEvent e where e.id in :ids and e.claimToken = :token")
+    List<Long> findClaimed(@Param("ids") Collection<Long> ids, @Param("token") String token);
+
+    /**
+     * Gives up claimed events that the batch will not deliver.
+     *
+     * @return Number of events released
+     */
+    @Modifying
+    @Transactional
+    @Query("update PaymentOutboxEvent e set e.claimToken = null, e.claimedUntil = null " +
+           "where e.id in :ids and e.claimToken = :token")
+    int release(@Param("ids") Collection<Long> ids, @Param("token") String token);
+
+    /**
+     * Marks events delivered.
+     *
+     * @return Number of events marked; lower than {@code ids.size()} if another relay took over an expired claim
+     *         and got there first
+     */
+    @Modifying
+    @Transactional
+    @Query("update PaymentOutboxEvent e set e.dispatchedAt = :dispatchedAt, e.lastError = null " +
+           "where e.id in :ids and e.dispatchedAt is null")
+    int markDispatched(@Param("ids") Collection<Long> ids, @Param("dispatchedAt") Instant dispatchedAt);
+
+    /**
+     * Records a failed delivery of events, releases their claim and schedules the next attempt.
+     *
+     * @return Number of events updated
+     */
+    @Modifying
+    @Transactional
+    @Query("update PaymentOutboxEvent e set e.attempts = e.attempts + 1, e.lastError = :error, " +
+           "e.nextAttemptAt = :nextAttemptAt, e.claimToken = null, e.claimedUntil = null " +
+           "where e.id in :ids and e.dispatchedAt is null")
+    int markFailed(@Param("ids") Collection<Long> ids,
+                   @Param("nextAttemptAt") Instant nextAttemptAt,
+                   @Param("error") String error);
+
+    /** @return number of events not yet dispatched */
+    long countByDispatchedAtIsNull();
+
+    /** @return when the oldest undispatched event was written */
+    @Query("select min(e.occurredAt) from PaymentOutboxEvent e where e.dispatchedAt is null")
+    Optional<Instant> findOldestUndispatched();
+
+    /**
+     * Deletes dispatched events older than the retention window.
+     *
+     * @return number of deleted rows
+     */
+    @Modifying
+    @Transactional
+    @Query("delete from PaymentOutboxEvent e where e.dispatchedAt is not null and e.occurredAt < :cutoff")
+    int deleteDispatchedBefore(@Param("cutoff") Instant cutoff);
+}
@@ -0,0 +1,13 @@
+package com.example.pis.repository;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+import com.example.pis.entity.PaymentProviderResponse;
+
+/**
+ * Repository for raw provider responses, keyed by payment transaction ID.
+ */
+@Repository
+public interface PaymentProviderResponseRepository extends JpaRepository<PaymentProviderResponse, Long> {
+}
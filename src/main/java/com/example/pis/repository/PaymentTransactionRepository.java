@@ -1,9 +1,19 @@
 package com.example.pis.repository;
 
+import com.example.pis.dto.PaymentTransactionSummary;
+import com.example.pis.dto.PendingTransaction;
 import com.example.pis.entity.PaymentTransaction;
+import com.example.pis.enums.PaymentStatus;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 
 /**
@@ -22,4 +32,148 @@ public interface PaymentTransactionRepository extends JpaRepository<PaymentTrans
      * @return Optional containing the transaction if found, empty otherwise
      */
     Optional<PaymentTransaction> findByReference(String reference);
+
+    /**
+     * Find the status and identifiers of a transaction by reference, as a DTO
+     * projection that bypasses the persistence context.
+     *
+     * @param reference Unique transaction reference
+     * @return Optional containing the summary if found, empty otherwise
+     */
+    @Query("select new com.example.pis.dto.PaymentTransactionSummary(" +
+           "t.id, t.reference, t.provider, t.providerTransactionId, t.status, t.amount, t.currency, " +
+           "t.clientSecret, t.createdAt) from PaymentTransaction t where t.reference = :reference")
+    Optional<PaymentTransactionSummary> findSummaryByReference(@Param("reference") String reference);
+
+    /**
+     * Find all payment transactions whose reference is in the given set.
+     *
+     * @param references Transaction references
+     * @return Matching transactions, in no particular order
+     */
+    List<PaymentTransaction> findByReferenceIn(Collection<String> references);
+
+    /**
+     * Move a transaction to {@code status} in one compare-and-set {@code UPDATE}, without
+     * loading or merging the entity. A row that is no longer in one of {@code from}
+     * (e.g. settled through a webhook or a concurrent request) is left untouched.
+     * Null identifiers keep the values already stored.
+     *
+     * @param id                    Transaction id
+     * @param from                  Statuses the row may be in, normally {@code status.sources()}
+     * @param status                New status
+     * @param providerTransactionId Provider-side id, or null
+     * @param clientSecret          Stripe client secret, or null
+     * @return 1 if the transition was applied, 0 otherwise
+     */
+    @Modifying(flushAutomatically = true)
+    @Query("update PaymentTransaction t set t.status = :status, " +
+           "t.providerTransactionId = coalesce(:providerTransactionId, t.providerTransactionId), " +
+           "t.clientSecret = coalesce(:clientSecret, t.clientSecret) " +
+           "where t.id = :id and t.status in :from")
+    int transition(@Param("id") Long id,
+                   @Param("from") Collection<PaymentStatus> from,
+                   @Param("status") PaymentStatus status,
+                   @Param("providerTransactionId") String providerTransactionId,
+                   @Param("clientSecret") String clientSecret);
+
+    /**
+     * Compare-and-set by client reference, for callbacks that echo it back. Served by
+     * the unique {@code idx_reference} index; the provider must match so one provider's
+     * callback cannot move another provider's transaction.
+     *
+     * @return 1 if the transition was applied, 0 if the row is unknown or not in {@code from}
+     */
+    @Modifying(flushAutomatically = true)
+    @Query("update PaymentTransaction t set t.status = :status, " +
+           "t.providerTransactionId = coalesce(:providerTransactionId, t.providerTransactionId) " +
+           "where t.reference = :reference and t.provider = :provider and t.status in :from")
+    int transitionByReference(@Param("provider") String provider,
+                              @Param("reference") String reference,
+                              @Param("from") Collection<PaymentStatus> from,
+                              @Param("status") PaymentStatus status,
+                              @Param("providerTransactionId") String providerTransactionId);
+
+    /**
+     * Compare-and-set by provider-side id, for callbacks that only carry it. Served by
+     * {@code idx_provider_txid}.
+     *
+     * @return Number of rows moved; 0 if none is known or none is in {@code from}
+     */
+    @Modifying(flushAutomatically = true)
+    @Query("update PaymentTransaction t set t.status = :status " +
+           "where t.provider = :provider and t.providerTransactionId = :providerTransactionId " +
+           "and t.status in :from")
+    int transitionByProviderTransactionId(@Param("provider") String provider,
+                                          @Param("providerTransactionId") String providerTransactionId,
+                                          @Param("from") Collection<PaymentStatus> from,
+                                          @Param("status") PaymentStatus status);
+
+    /**
+     * Find transactions by provider-side id, as DTO projections. Served by {@code idx_provider_txid}.
+     *
+     * @param provider              Provider name
+     * @param providerTransactionId Provider-side transaction id
+     * @return Matching summaries; normally at most one
+     */
+    @Query("select new com.example.pis.dto.PaymentTransactionSummary(" +
+           "t.id, t.reference, t.provider, t.providerTransactionId, t.status, t.amount, t.currency, " +
+           "t.clientSecret, t.createdAt) from PaymentTransaction t " +
+           "where t.provider = :provider and t.providerTransactionId = :providerTransactionId")
+    List<PaymentTransactionSummary> findSummariesByProviderTransactionId(
+            @Param("provider") String provider,
+            @Param("providerTransactionId") String providerTransactionId);
+
+    /**
+     * Find the listed transactions that are in {@code status}, as DTO projections.
+     *
+     * @param ids    Transaction ids
+     * @param status Status to match
+     * @return Matching summaries, in no particular order
+     */
+    @Query("select new com.example.pis.dto.PaymentTransactionSummary(" +
+           "t.id, t.reference, t.provider, t.providerTransactionId, t.status, t.amount, t.currency, " +
+           "t.clientSecret, t.createdAt) from PaymentTransaction t where t.id in :ids and t.status = :status")
+    List<PaymentTransactionSummary> findSummariesByIdInAndStatus(@Param("ids") Collection<Long> ids,
+                                                                 @Param("status") PaymentStatus status);
+
+    /**
+     * Page through transactions in one status, oldest first, for the status poller.
+     * Served by {@code idx_status_created_at}: the scan is a range on
+     * {@code (status, created_at)} that resumes after the last row of the previous page.
+     *
+     * @param status         Status to scan, e.g. PENDING
+     * @param providers      Providers to include
+     * @param afterCreatedAt Creation time of the last row already read
+     * @param afterId        Id of the last row already read
+     * @param before         Only rows created before this instant
+     * @param limit          Page size
+     * @return The next page, ordered by creation time and id
+     */
+    @Query("select new com.example.pis.dto.PendingTransaction(" +
+           "t.id, t.reference, t.provider, t.operation, t.status, t.createdAt) from PaymentTransaction t " +
+           "where t.status = :status and t.provider in :providers and t.createdAt < :before " +
+           "and (t.createdAt > :afterCreatedAt or (t.createdAt = :afterCreatedAt and t.id > :afterId)) " +
+           "order by t.createdAt, t.id")
+    List<PendingTransaction> findPendingPage(@Param("status") PaymentStatus status,
+                                             @Param("providers") Collection<String> providers,
+                                             @Param("afterCreatedAt") Instant afterCreatedAt,
+                                             @Param("afterId") Long afterId,
+                                             @Param("before") Instant before,
+                                             Limit limit);
+
+    /**
+     * Move every listed transaction that is still in one of {@code from} to {@code status},
+     * in a single statement.
+     *
+     * @param ids    Transaction ids
+     * @param from   Statuses a row may be in to be updated, e.g. PENDING and INITIATED
+     * @param status New status
+     * @return Number of rows updated
+     */
+    @Modifying(flushAutomatically = true)
+    @Query("update PaymentTransaction t set t.status = :status where t.id in :ids and t.status in :from")
+    int transitionAll(@Param("ids") Collection<Long> ids,
+                      @Param("from") Collection<PaymentStatus> from,
+                      @Param("status") PaymentStatus status);
 }
@@ -0,0 +1,41 @@
+package com.example.pis.repository;
+
+import java.time.Instant;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import com.example.pis.entity.ProcessedWebhookEvent;
+
+/**
+ * Repository for webhook event ids shared by all instances.
+ */
+@Repository
+public interface ProcessedWebhookEventRepository extends JpaRepository<ProcessedWebhookEvent, String> {
+
+    /**
+     * Inserts an event id without a prior select, so a duplicate surfaces as a
+     * {@link org.springframework.dao.DataIntegrityViolationException} from the database.
+     *
+     * @return number of inserted rows
+     */
+    @Modifying
+    @Transactional
+    @Query(value = "INSERT INTO processed_webhook_events (event_id, processed_at) VALUES (:eventId, :processedAt)",
+            nativeQuery = true)
+    int insert(@Param("eventId") String eventId, @Param("processedAt") Instant processedAt);
+
+    /**
+     * Deletes ids older than the deduplication window.
+     *
+     * @return number of deleted rows
+     */
+    @Modifying
+    @Transactional
+    @Query("DELETE FROM ProcessedWebhookEvent e WHERE e.processedAt < :cutoff")
+    int deleteOlderThan(@Param("cutoff") Instant cutoff);
+}
@@ -0,0 +1,98 @@
+package com.example.pis.repository;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.Optional;
+
+import org.springframework.data.domain.Limit;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import com.example.pis.dto.JournaledWebhookEvent;
+import com.example.pis.entity.WebhookEvent;
+
+/**
+ * Repository for the webhook journal.
+ */
+@Repository
+public interface WebhookEventRepository extends JpaRepository<WebhookEvent, Long> {
+
+    /**
+     * Page through unprocessed events that are due, in arrival order. Served by
+     * {@code idx_webhook_events_unprocessed}.
+     *
+     * @param now            Only events whose next attempt is due by now
+     * @param receivedBefore Only events received before this instant
+     * @param afterId        ID of the last event already read
+     * @param limit          Page size
+     * @return The next page, ordered by ID
+     */
+    @Query("select new com.example.pis.dto.JournaledWebhookEvent(" +
+           "e.id, e.provider, e.orderingKey, e.reference, e.providerTransactionId, e.status, e.receivedAt, " +
+           "e.attempts) from WebhookEvent e " +
+           "where e.processedAt is null and e.id > :afterId and e.nextAttemptAt <= :now " +
+           "and e.receivedAt < :receivedBefore order by e.id")
+    List<JournaledWebhookEvent> findDue(@Param("now") Instant now,
+                                        @Param("receivedBefore") Instant receivedBefore,
+                                        @Param("afterId") Long afterId,
+                                        Limit limit);
+
+    /**
+     * Marks an event processed.
+     *
+     * @return 1 if marked, 0 if it had already been processed
+     */
+    @Modifying
+    @Transactional
+    @Query("update WebhookEvent e set e.processedAt = :processedAt, e.lastError = null " +
+           "where e.id = :id and e.processedAt is null")
+    int markProcessed(@Param("id") Long id, @Param("processedAt") Instant processedAt);
+
+    /**
+     * Records a failed attempt and schedules the next one.
+     *
+     * @return 1 if recorded, 0 if it had already been processed
+     */
+    @Modifying
+    @Transactional
+    @Query("update WebhookEvent e set e.attempts = e.attempts + 1, e.lastError = :error, " +
+           "e.nextAttemptAt = :nextAttemptAt where e.id = :id and e.processedAt is null")
+    int markRetry(@Param("id") Long id,
+                  @Param("nextAttemptAt") Instant nextAttemptAt,
+                  @Param("error") String error);
+
+    /**
+     * Gives up on an event after its last failed attempt: it is marked processed and
+     * the error kept for inspection.
+     *
+     * @return 1 if recorded, 0 if it had already been processed
+     */
+    @Modifying
+    @Transactional
+    @Query("update WebhookEvent e set e.attempts = e.attempts + 1, e.lastError = :error, " +
+           "e.processedAt = :processedAt where e.id = :id and e.processedAt is null")
+    int markAbandoned(@Param("id") Long id,
+                      @Param("processedAt") Instant processedAt,
+                      @Param("error") String error);
+
+    /** @return number of events not yet processed */
+    long countByProcessedAtIsNull();
+
+    /** @return arrival time of the oldest event not yet processed */
+    @Query("select min(e.receivedAt) from WebhookEvent e where e.processedAt is null")
+    Optional<Instant> findOldestUnprocessed();
+
+    /**
+     * Deletes processed events older than the retention window.
+     *
+     * @return number of deleted rows
+     */
+    @Modifying
+    @Transactional
+    @Query("delete from WebhookEvent e where e.processedAt is not null and e.receivedAt < :cutoff")
+    int deleteProcessedBefore(@Param("cutoff") Instant cutoff);
+}
@@ -0,0 +1,60 @@
+package com.example.pis.security;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.Map;
+
+import javax.crypto.Mac;
+
+import org.springframework.util.StringUtils;
+
+import com.example.pis.exception.CryptographyException;
+
+/**
+ * Signs outgoing merchant callbacks with HMAC-SHA256.
+ *
+ * <p>The signature covers {@code <timestamp>.<body>}, so a receiver that checks the
+ * timestamp's freshness also rejects replays. It is sent Base64-encoded, like the
+ * provider signatures {@link WebhookSignatureVerifier} accepts.</p>
+ */
+public class CallbackSigner {
+
+    static final String ALGORITHM = "HmacSHA256";
+
+    private static final byte[] SEPARATOR = {'.'};
+
+    private final Map<String, MacPool> pools = new HashMap<>();
+
+    /**
+     * @param secrets  Signing secret per merchant; blank secrets are skipped
+     * @param poolSize Idle {@link Mac} instances kept per merchant
+     */
+    public CallbackSigner(Map<String, String> secrets, int poolSize) {
+        secrets.forEach((merchant, secret) -> {
+            if (StringUtils.hasText(secret)) {
+                pools.put(merchant, new MacPool(ALGORITHM, secret.getBytes(StandardCharsets.UTF_8), poolSize));
+            }
+        });
+    }
+
+    /**
+     * @param timestamp Epoch seconds sent alongside the signature
+     * @return Base64 signature of {@code <timestamp>.<body>}
+     * @throws CryptographyException if no secret is configured for the merchant
+     */
+    public String sign(String merchant, long timestamp, byte[] body) {
+        MacPool pool = pools.get(merchant);
+        if (pool == null) {
+            throw new CryptographyException("No callback secret configured for " + merchant, null);
+        }
+        Mac mac = pool.acquire();
+        try {
+            mac.update(Long.toString(timestamp).getBytes(StandardCharsets.US_ASCII));
+            mac.update(SEPARATOR);
+            return Base64.getEncoder().encodeToString(mac.doFinal(body));
+        } finally {
+            pool.release(mac);
+        }
+    }
+}
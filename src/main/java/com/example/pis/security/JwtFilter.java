@@ -1,9 +1,10 @@
 package com.example.pis.security;
 
-import com.example.pis.entity.Role;
 import com.example.pis.service.JwtService;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.lang.NonNull;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.GrantedAuthority;
 import org.springframework.security.core.authority.SimpleGrantedAuthority;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.security.core.userdetails.UserDetailsService;
@@ -17,21 +18,36 @@ import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
 
 import java.io.IOException;
+import java.util.Collection;
 import java.util.List;
+import java.util.Optional;
 
 /**
  * JWT filter that intercepts HTTP requests, validates JWT tokens,
  * and sets the Spring Security context if the token is valid.
+ *
+ * <p>With {@code jwt.principalSource=claims} the principal is the token subject
+ * and authorities come from the role claim, so no database lookup is made.
+ * With {@code database} (default) the user is loaded through
+ * {@link UserDetailsCache}, which is a pass-through unless enabled.</p>
  */
 @Component
 public class JwtFilter extends OncePerRequestFilter {
 
     private final JwtService jwtService;
     private final UserDetailsService userDetailsService;
+    private final UserDetailsCache userDetailsCache;
+    private final boolean principalFromClaims;
 
-    public JwtFilter(JwtService jwtService, UserDetailsService userDetailsService) {
+    public JwtFilter(
+            JwtService jwtService,
+            UserDetailsService userDetailsService,
+            UserDetailsCache userDetailsCache,
+            @Value("${jwt.principalSource:database}") String principalSource) {
         this.jwtService = jwtService;
         this.userDetailsService = userDetailsService;
+        this.userDetailsCache = userDetailsCache;
+        this.principalFromClaims = "claims".equalsIgnoreCase(principalSource);
     }
 
     @Override
@@ -43,27 +59,38 @@ public class JwtFilter extends OncePerRequestFilter {
 
         String header = request.getHeader("Authorization");
 
-        if (header != null && header.startsWith("Bearer ")) {
+        if (header != null && header.startsWith("Bearer ")
+                && SecurityContextHolder.getContext().getAuthentication() == null) {
             String token = header.substring(7);
-            String username = jwtService.extractUsername(token);
 
-            if (username != null && SecurityContextHolder.getContext().getAuthentication() == null
-                    && jwtService.validateToken(token)) {
+            // One signature check per token; repeats are answered from the JwtService cache
+            Optional<JwtService.VerifiedToken> verified = jwtService.verify(token);
 
-                // Load user details
-                var userDetails = userDetailsService.loadUserByUsername(username);
+            if (verified.isPresent() && verified.get().username() != null) {
+                JwtService.VerifiedToken jwt = verified.get();
 
-                // Map JWT role claim to Spring Security authority
-                Role role = jwtService.extractRole(token);
-                List<SimpleGrantedAuthority> authorities = List.of(
-                        new SimpleGrantedAuthority("ROLE_" + role.name())
-                );
+                UsernamePasswordAuthenticationToken auth;
+                if (principalFromClaims) {
+                    // Principal and authorities come straight from the verified claims
+                    List<SimpleGrantedAuthority> authorities = jwt.role() != null
+                            ? List.of(new SimpleGrantedAuthority("ROLE_" + jwt.role().name()))
+                            : List.of();
+                    auth = new UsernamePasswordAuthenticationToken(jwt.username(), null, authorities);
+                } else {
+                    // Load user details
+                    var userDetails = userDetailsCache.get(jwt.username(), userDetailsService::loadUserByUsername);
 
-                var auth = new UsernamePasswordAuthenticationToken(
-                        userDetails,
-                        null,
-                        authorities
-                );
+                    // Map JWT role claim to Spring Security authority, falling back to the stored role
+                    Collection<? extends GrantedAuthority> authorities = jwt.role() != null
+                            ? List.of(new SimpleGrantedAuthority("ROLE_" + jwt.role().name()))
+                            : userDetails.getAuthorities();
+
+                    auth = new UsernamePasswordAuthenticationToken(
+                            userDetails,
+                            null,
+                            authorities
+                    );
+                }
                 auth.setDetails(new WebAuthenticationDetailsSource().buildDetails(request));
                 SecurityContextHolder.getContext().setAuthentication(auth);
             }
@@ -0,0 +1,48 @@
+package com.example.pis.security;
+
+import java.security.InvalidKeyException;
+import java.security.NoSuchAlgorithmException;
+import java.util.concurrent.ArrayBlockingQueue;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+
+import com.example.pis.exception.CryptographyException;
+
+/**
+ * Small pool of {@link Mac} instances initialised with one key, so the provider
+ * lookup and key setup happen once per pooled instance rather than once per message.
+ */
+final class MacPool {
+
+    private final String algorithm;
+    private final SecretKeySpec key;
+    private final ArrayBlockingQueue<Mac> idle;
+
+    MacPool(String algorithm, byte[] secret, int size) {
+        this.algorithm = algorithm;
+        this.key = new SecretKeySpec(secret, algorithm);
+        this.idle = new ArrayBlockingQueue<>(Math.max(size, 1));
+        idle.offer(newMac()); // fail fast on startup if the algorithm or key is unusable
+    }
+
+    Mac acquire() {
+        Mac mac = idle.poll();
+        return mac != null ? mac : newMac();
+    }
+
+    void release(Mac mac) {
+        mac.reset();
+        idle.offer(mac); // dropped when the pool is already full
+    }
+
+    private Mac newMac() {
+        try {
+            Mac mac = Mac.getInstance(algorithm);
+            mac.init(key);
+            return mac;
+        } catch (NoSuchAlgorithmException | InvalidKeyException e) {
+            throw new CryptographyException("Unable to initialise " + algorithm, e);
+        }
+    }
+}
@@ -0,0 +1,108 @@
+package com.example.pis.security;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.stereotype.Component;
+
+/**
+ * Optional bounded, TTL-expiring cache of {@link UserDetails} for the JWT filter.
+ *
+ * <p>Used when the principal is loaded from the database
+ * ({@code jwt.principalSource=database}) so that repeat requests from the same
+ * user do not each issue a {@code findByUsername} query. {@link com.example.pis.service.UserService}
+ * invalidates an entry once a change to that user commits; other nodes pick the
+ * change up once their entry expires after {@code security.userCache.ttlSeconds}.
+ * A {@code maxEntries} of 0 disables the cache.</p>
+ */
+@Component
+public class UserDetailsCache {
+
+    private static final long SWEEP_INTERVAL_MS = 1_000;
+
+    private final ConcurrentHashMap<String, Cached> entries = new ConcurrentHashMap<>();
+    private final long ttlMillis;
+    private final int maxEntries;
+    private final Clock clock;
+    private final AtomicLong nextSweepAt = new AtomicLong();
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    @Autowired
+    public UserDetailsCache(
+            @Value("${security.userCache.ttlSeconds:60}") long ttlSeconds,
+            @Value("${security.userCache.maxEntries:0}") int maxEntries) {
+        this(Duration.ofSeconds(ttlSeconds), maxEntries, Clock.systemUTC());
+    }
+
+    UserDetailsCache(Duration ttl, int maxEntries, Clock clock) {
+        this.ttlMillis = ttl.toMillis();
+        this.maxEntries = maxEntries;
+        this.clock = clock;
+    }
+
+    /**
+     * Returns the cached details for {@code username}, loading and caching them on a miss.
+     * Exceptions from {@code loader} (e.g. user not found) are propagated and not cached.
+     */
+    public UserDetails get(String username, Function<String, UserDetails> loader) {
+        if (maxEntries <= 0) {
+            return loader.apply(username);
+        }
+        long now = clock.millis();
+        Cached cached = entries.get(username);
+        if (cached != null && cached.expiresAt > now) {
+            hits.increment();
+            return cached.details;
+        }
+        misses.increment();
+        UserDetails details = loader.apply(username);
+        remember(username, new Cached(details, now + ttlMillis), now);
+        return details;
+    }
+
+    /** Drops the cached details for a user that has changed. */
+    public void invalidate(String username) {
+        entries.remove(username);
+    }
+
+    private void remember(String username, Cached cached, long now) {
+        if (entries.size() >= maxEntries) {
+            long sweepAt = nextSweepAt.get();
+            if (now >= sweepAt && nextSweepAt.compareAndSet(sweepAt, now + SWEEP_INTERVAL_MS)) {
+                entries.values().removeIf(c -> c.expiresAt <= now);
+            }
+            if (entries.size() >= maxEntries) {
+                return;
+            }
+        }
+        entries.put(username, cached);
+    }
+
+    /** Returns hit/miss counts and current size. */
+    public CacheStats stats() {
+        long h = hits.sum();
+        long m = misses.sum();
+        return new CacheStats(h, m, entries.size(), h + m == 0 ? 0 : (double) h / (h + m));
+    }
+
+    private record Cached(UserDetails details, long expiresAt) {}
+
+    /**
+     * User-details cache statistics.
+     *
+     * @param hits     Lookups answered from the cache
+     * @param misses   Lookups that went to the database
+     * @param size     Users currently cached
+     * @param hitRatio hits / (hits + misses)
+     */
+    public record CacheStats(long hits, long misses, int size, double hitRatio) {}
+}
@@ -0,0 +1,79 @@
+package com.example.pis.security;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.HashMap;
+import java.util.Map;
+
+import javax.crypto.Mac;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
+
+import com.example.pis.exception.CryptographyException;
+
+/**
+ * Verifies HMAC-SHA256 webhook signatures against the raw request bytes.
+ *
+ * <p>Each provider secret gets its own small pool of initialised {@link Mac}
+ * instances, so the provider lookup and key setup happen once per pooled
+ * instance rather than once per webhook. A pool is used instead of a
+ * {@code ThreadLocal} because request threads may be virtual and short-lived.</p>
+ */
+@Component
+public class WebhookSignatureVerifier {
+
+    static final String ALGORITHM = "HmacSHA256";
+
+    private final Map<String, MacPool> pools = new HashMap<>();
+
+    @Autowired
+    public WebhookSignatureVerifier(
+            @Value("${mtn.webhookSecret}") String mtnWebhookSecret,
+            @Value("${airtel.webhookSecret}") String airtelWebhookSecret) {
+        this(secrets(mtnWebhookSecret, airtelWebhookSecret), Runtime.getRuntime().availableProcessors() * 2);
+    }
+
+    /**
+     * @param secrets  Webhook secret per provider; blank secrets are skipped
+     * @param poolSize Idle {@link Mac} instances kept per provider
+     */
+    public WebhookSignatureVerifier(Map<String, String> secrets, int poolSize) {
+        secrets.forEach((provider, secret) -> {
+            if (StringUtils.hasText(secret)) {
+                pools.put(provider, new MacPool(ALGORITHM, secret.getBytes(StandardCharsets.UTF_8), poolSize));
+            }
+        });
+    }
+
+    private static Map<String, String> secrets(String mtn, String airtel) {
+        Map<String, String> secrets = new HashMap<>();
+        secrets.put("mtn", mtn);
+        secrets.put("airtel", airtel);
+        return secrets;
+    }
+
+    /**
+     * Computes the HMAC of {@code payload} and compares it in constant time.
+     *
+     * @param provider Provider whose secret signed the payload
+     * @param payload  Raw request body
+     * @param expected Decoded signature from the request header
+     * @return true if the signature matches
+     * @throws CryptographyException if no secret is configured or the MAC cannot be set up
+     */
+    public boolean verify(String provider, byte[] payload, byte[] expected) {
+        MacPool pool = pools.get(provider);
+        if (pool == null) {
+            throw new CryptographyException("No webhook secret configured for " + provider, null);
+        }
+        Mac mac = pool.acquire();
+        try {
+            return MessageDigest.isEqual(mac.doFinal(payload), expected);
+        } finally {
+            pool.release(mac);
+        }
+    }
+}
@@ -0,0 +1,123 @@
+package com.example.pis.service;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.springframework.core.env.Environment;
+import org.springframework.stereotype.Component;
+
+/**
+ * Per-endpoint response timeouts derived from observed provider latency.
+ *
+ * <p>Each provider operation keeps the latencies of its last {@code latencyWindow}
+ * completed calls. Once {@code minSamples} are in, its timeout is the
+ * {@code timeoutPercentile} latency times {@code timeoutMultiplier}, clamped to
+ * [{@code minReadTimeoutMs}, {@code readTimeoutMs}]; until then, and with
+ * {@code adaptiveTimeout=false}, it is {@code readTimeoutMs}. Settings are read
+ * from {@code provider.http.<name>.*}, falling back to {@code provider.http.default.*}.</p>
+ *
+ * <p>{@link ProviderGuard} applies these only to status reads; payment requests,
+ * which are not idempotent, always get {@link #fixedTimeout}.</p>
+ */
+@Component
+public class AdaptiveTimeouts {
+
+    /** Percentiles are re-sorted after this many new samples rather than on every call. */
+    private static final int RECOMPUTE_EVERY = 16;
+
+    private final Environment env;
+    private final Map<String, Settings> settings = new ConcurrentHashMap<>();
+    private final Map<String, Window> windows = new ConcurrentHashMap<>();
+
+    public AdaptiveTimeouts(Environment env) {
+        this.env = env;
+    }
+
+    /** Response timeout to use for the next call to an endpoint. */
+    public Duration timeoutFor(String provider, String operation) {
+        Settings s = settings(provider);
+        if (!s.adaptive) return s.maxTimeout;
+        long p = window(provider, operation).percentileNanos(s.percentile, s.minSamples);
+        if (p < 0) return s.maxTimeout;
+        long nanos = (long) (p * s.multiplier);
+        return Duration.ofNanos(Math.min(Math.max(nanos, s.minTimeout.toNanos()), s.maxTimeout.toNanos()));
+    }
+
+    /** The provider's configured {@code readTimeoutMs}, regardless of observed latency. */
+    public Duration fixedTimeout(String provider) {
+        return settings(provider).maxTimeout;
+    }
+
+    /**
+     * Latency at a percentile for an endpoint, or empty with too few samples.
+     *
+     * @param percentile Percentile between 0 and 100
+     */
+    public Optional<Duration> latency(String provider, String operation, double percentile) {
+        long p = window(provider, operation).percentileNanos(percentile, settings(provider).minSamples);
+        return p < 0 ? Optional.empty() : Optional.of(Duration.ofNanos(p));
+    }
+
+    /** Records how long a completed call took. Timed-out calls should record the timeout they hit. */
+    public void record(String provider, String operation, Duration latency) {
+        window(provider, operation).add(latency.toNanos());
+    }
+
+    private Window window(String provider, String operation) {
+        return windows.computeIfAbsent(provider + '|' + operation, k -> new Window(settings(provider).windowSize));
+    }
+
+    private Settings settings(String provider) {
+        return settings.computeIfAbsent(provider, p -> new Settings(
+                setting(p, "adaptiveTimeout", Boolean.class, true),
+                setting(p, "timeoutPercentile", Double.class, 99.0),
+                setting(p, "timeoutMultiplier", Double.class, 3.0),
+                Duration.ofMillis(setting(p, "minReadTimeoutMs", Integer.class, 1_000)),
+                Duration.ofMillis(setting(p, "readTimeoutMs", Integer.class, 30_000)),
+                setting(p, "latencyWindow", Integer.class, 200),
+                setting(p, "minSamples", Integer.class, 50)));
+    }
+
+    private <T> T setting(String provider, String key, Class<T> type, T defaultValue) {
+        T value = env.getProperty("provider.http." + provider + "." + key, type);
+        if (value != null) return value;
+        return env.getProperty("provider.http.default." + key, type, defaultValue);
+    }
+
+    private record Settings(boolean adaptive, double percentile, double multiplier,
+                            Duration minTimeout, Duration maxTimeout, int windowSize, int minSamples) {}
+
+    /** Ring of recent latencies with a lazily refreshed sorted copy. */
+    private static final class Window {
+        private final long[] samples;
+        private int next;
+        private int count;
+        private int sinceSort = Integer.MAX_VALUE;
+        private long[] sorted = new long[0];
+
+        Window(int size) {
+            this.samples = new long[size];
+        }
+
+        synchronized void add(long nanos) {
+            samples[next] = nanos;
+            next = (next + 1) % samples.length;
+            if (count < samples.length) count++;
+            if (sinceSort != Integer.MAX_VALUE) sinceSort++;
+        }
+
+        synchronized long percentileNanos(double percentile, int minSamples) {
+            if (count < minSamples || count == 0) return -1;
+            if (sinceSort >= RECOMPUTE_EVERY || sorted.length != count) {
+                sorted = Arrays.copyOf(samples, count);
+                Arrays.sort(sorted);
+                sinceSort = 0;
+            }
+            int idx = (int) Math.ceil(percentile / 100.0 * sorted.length) - 1;
+            return sorted[Math.min(Math.max(idx, 0), sorted.length - 1)];
+        }
+    }
+}
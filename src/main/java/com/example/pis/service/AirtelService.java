@@ -11,6 +11,7 @@ import org.springframework.beans.factory.annotation.Value;
 import org.springframework.core.ParameterizedTypeReference;
 import org.springframework.http.*;
 import org.springframework.stereotype.Service;
+import org.springframework.web.client.HttpClientErrorException;
 import org.springframework.web.client.RestTemplate;
 
 import com.example.pis.dto.AirtelResponseDTO;
@@ -25,6 +26,11 @@ public class AirtelService {
 
     private static final Logger logger = LoggerFactory.getLogger(AirtelService.class);
 
+    private static final String PROVIDER = "airtel";
+
+    /** Used when the token response omits {@code expires_in}. */
+    private static final Duration DEFAULT_TOKEN_TTL = Duration.ofSeconds(60);
+
     @Value("${airtel.apiUrl}")
     private String apiUrl;
 
@@ -37,24 +43,38 @@ public class AirtelService {
     @Value("${airtel.apiKey}")
     private String apiKey;
 
+    private final ProviderTokenManager tokenManager;
+    private final ProviderHttpClientFactory httpClientFactory;
+    private final ProviderGuard guard;
+
     private RestTemplate restTemplate;
 
+    public AirtelService(ProviderTokenManager tokenManager, ProviderHttpClientFactory httpClientFactory,
+                          ProviderGuard guard) {
+        this.tokenManager = tokenManager;
+        this.httpClientFactory = httpClientFactory;
+        this.guard = guard;
+    }
+
     @PostConstruct
     public void init() {
         if (apiUrl == null || clientId == null || clientSecret == null || apiKey == null) {
             throw new IllegalStateException("Incomplete Airtel configuration");
         }
 
-        var factory = new org.springframework.http.client.SimpleClientHttpRequestFactory();
-        factory.setConnectTimeout((int) Duration.ofSeconds(10).toMillis());
-        factory.setReadTimeout((int) Duration.ofSeconds(30).toMillis());
-        this.restTemplate = new RestTemplate(factory);
+        this.restTemplate = httpClientFactory.create(PROVIDER);
+        tokenManager.register(PROVIDER, this::fetchToken);
 
         logger.info("AirtelService initialized");
     }
 
-    /** Obtains OAuth token from Airtel API */
+    /** Returns a cached Airtel token, fetching a new one only when needed */
     private String getToken() {
+        return tokenManager.getToken(PROVIDER);
+    }
+
+    /** Obtains OAuth token from Airtel API */
+    private ProviderTokenManager.AccessToken fetchToken() {
         String tokenUrl = apiUrl + "/v1/oauth/token";
 
         HttpHeaders headers = new HttpHeaders();
@@ -63,12 +83,13 @@ public class AirtelService {
 
         HttpEntity<String> request = new HttpEntity<>("grant_type=client_credentials", headers);
 
-        ResponseEntity<Map<String, Object>> response = restTemplate.exchange(
-                tokenUrl,
-                HttpMethod.POST,
-                request,
-                new ParameterizedTypeReference<Map<String, Object>>() {}
-        );
+        ResponseEntity<Map<String, Object>> response = guard.executeIdempotent(PROVIDER, "token",
+                () -> restTemplate.exchange(
+                        tokenUrl,
+                        HttpMethod.POST,
+                        request,
+                        new ParameterizedTypeReference<Map<String, Object>>() {}),
+                PaymentMetrics::httpStatus);
 
         if (!response.getStatusCode().is2xxSuccessful()) {
             throw new IllegalStateException("Failed to obtain Airtel token, status: " + response.getStatusCode());
@@ -80,7 +101,17 @@ public class AirtelService {
         Object token = body.get("access_token");
         if (token == null) throw new IllegalStateException("Airtel token missing access_token");
 
-        return token.toString();
+        return new ProviderTokenManager.AccessToken(token.toString(), parseExpiresIn(body.get("expires_in")));
+    }
+
+    private Duration parseExpiresIn(Object expiresIn) {
+        if (expiresIn == null) return DEFAULT_TOKEN_TTL;
+        try {
+            return Duration.ofSeconds(Long.parseLong(expiresIn.toString().trim()));
+        } catch (NumberFormatException e) {
+            logger.warn("Unparseable Airtel expires_in: {}", expiresIn);
+            return DEFAULT_TOKEN_TTL;
+        }
     }
 
     /** Initiates a collection (payment) request */
@@ -108,7 +139,7 @@ public class AirtelService {
         );
 
         HttpEntity<Map<String, Object>> request = new HttpEntity<>(body, headers);
-        ResponseEntity<String> resp = restTemplate.postForEntity(url, request, String.class);
+        ResponseEntity<String> resp = post("collect", url, request);
 
         int status = resp.getStatusCode().value();
         String respBody = Optional.ofNullable(resp.getBody()).orElse("");
@@ -142,7 +173,7 @@ public class AirtelService {
         );
 
         HttpEntity<Map<String, Object>> request = new HttpEntity<>(body, headers);
-        ResponseEntity<String> resp = restTemplate.postForEntity(url, request, String.class);
+        ResponseEntity<String> resp = post("withdraw", url, request);
 
         int status = resp.getStatusCode().value();
         String respBody = Optional.ofNullable(resp.getBody()).orElse("");
@@ -151,6 +182,64 @@ public class AirtelService {
         return new AirtelResponseDTO(String.valueOf(status), respBody);
     }
 
+    /**
+     * Queries the status of a collection by our reference. The read is idempotent,
+     * so it is retried on provider failures and hedged when {@code hedgeEnabled} is set.
+     */
+    public AirtelResponseDTO getCollectionStatus(String reference) {
+        if (reference == null || reference.isBlank()) throw new IllegalArgumentException("Reference is required");
+
+        String url = apiUrl + "/standard/v1/payments/" + reference;
+
+        HttpHeaders headers = new HttpHeaders();
+        headers.setBearerAuth(getToken());
+        headers.set("Ocp-Apim-Subscription-Key", apiKey);
+        HttpEntity<Void> request = new HttpEntity<>(headers);
+
+        try {
+            ResponseEntity<String> resp = guard.executeHedged(PROVIDER, "status",
+                    () -> restTemplate.exchange(url, HttpMethod.GET, request, String.class), PaymentMetrics::httpStatus);
+            return new AirtelResponseDTO(String.valueOf(resp.getStatusCode().value()),
+                    Optional.ofNullable(resp.getBody()).orElse(""));
+        } catch (HttpClientErrorException.Unauthorized e) {
+            tokenManager.invalidate(PROVIDER);
+            throw e;
+        }
+    }
+
+    /** Queries the status of a withdrawal by our reference; idempotent, so retried and hedged like collections. */
+    public AirtelResponseDTO getWithdrawalStatus(String reference) {
+        if (reference == null || reference.isBlank()) throw new IllegalArgumentException("Reference is required");
+
+        String url = apiUrl + "/standard/v1/disbursements/" + reference;
+
+        HttpHeaders headers = new HttpHeaders();
+        headers.setBearerAuth(getToken());
+        headers.set("Ocp-Apim-Subscription-Key", apiKey);
+        HttpEntity<Void> request = new HttpEntity<>(headers);
+
+        try {
+            ResponseEntity<String> resp = guard.executeHedged(PROVIDER, "status",
+                    () -> restTemplate.exchange(url, HttpMethod.GET, request, String.class), PaymentMetrics::httpStatus);
+            return new AirtelResponseDTO(String.valueOf(resp.getStatusCode().value()),
+                    Optional.ofNullable(resp.getBody()).orElse(""));
+        } catch (HttpClientErrorException.Unauthorized e) {
+            tokenManager.invalidate(PROVIDER);
+            throw e;
+        }
+    }
+
+    /** Posts to Airtel, dropping the cached token if Airtel rejects it */
+    private ResponseEntity<String> post(String operation, String url, HttpEntity<Map<String, Object>> request) {
+        try {
+            return guard.execute(PROVIDER, operation,
+                    () -> restTemplate.postForEntity(url, request, String.class), PaymentMetrics::httpStatus);
+        } catch (HttpClientErrorException.Unauthorized e) {
+            tokenManager.invalidate(PROVIDER);
+            throw e;
+        }
+    }
+
     /** Validates required parameters */
     private void validateRequest(String phone, Long amount, String reference) {
         if (phone == null || phone.isBlank()) throw new IllegalArgumentException("Phone is required");
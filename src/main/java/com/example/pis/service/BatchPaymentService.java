@@ -0,0 +1,416 @@
+package com.example.pis.service;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.env.Environment;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Service;
+import org.springframework.util.StringUtils;
+import org.springframework.web.client.HttpClientErrorException;
+
+import com.example.pis.dto.AirtelResponseDTO;
+import com.example.pis.dto.BatchItemResult;
+import com.example.pis.dto.BatchPaymentRequest;
+import com.example.pis.dto.BatchPaymentRequest.Item;
+import com.example.pis.dto.MtnResponseDTO;
+import com.example.pis.entity.PaymentTransaction;
+import com.example.pis.enums.PaymentStatus;
+import com.example.pis.enums.SupportedCurrency;
+import com.example.pis.exception.BatchValidationException;
+import com.example.pis.exception.ProviderUnavailableException;
+
+import jakarta.annotation.PreDestroy;
+
+/**
+ * Batch Mobile Money collections and withdrawals.
+ *
+ * <p>A batch runs in two steps. {@link #prepare} validates every item in one pass,
+ * inserts the missing PENDING rows with JDBC batching in a single transaction and
+ * works out which items still need a provider call. {@link #run} then fans those
+ * calls out on a per-provider pool of {@code payments.batch.<provider>.parallelism}
+ * threads (falling back to {@code payments.batch.default.parallelism}) and hands
+ * back each result as soon as it is known. The pools are shared by all batches, so
+ * the limit holds however many batches run at once; keep it below the provider's
+ * bulkhead so that single payments still get through.</p>
+ *
+ * <p>Batches are resumable by reference: resubmitting one after a restart reports
+ * settled items without calling the provider again and re-drives only the items
+ * still PENDING. A PENDING item is left alone while it is in flight on this node or
+ * younger than {@code payments.batch.resumeAfterSeconds}, which covers runs on
+ * other nodes. Provider request IDs are derived from the reference, so an item the
+ * provider accepted just before a restart comes back as a duplicate (409) rather
+ * than being paid twice, and stays PENDING until its status is confirmed. An item
+ * whose call timed out or otherwise ended without a clear answer
+ * ({@link ProviderGuard#isOutcomeUnknown}) stays PENDING in the same way.</p>
+ */
+@Service
+public class BatchPaymentService {
+
+    private static final Logger logger = LoggerFactory.getLogger(BatchPaymentService.class);
+
+    private static final Set<String> PROVIDERS = Set.of("mtn", "airtel");
+    private static final Set<String> OPERATIONS = Set.of("collect", "withdraw");
+
+    private static final Pattern PHONE = Pattern.compile("^[0-9]{9,15}$");
+    private static final int MAX_REFERENCE_LENGTH = 64;
+
+    private final MtnService mtnService;
+    private final AirtelService airtelService;
+    private final PaymentTransactionService txService;
+    private final Environment env;
+    private final int maxItems;
+    private final Duration resumeAfter;
+    private final Clock clock;
+    private final Map<String, ExecutorService> executors = new ConcurrentHashMap<>();
+    private final Set<String> inFlight = ConcurrentHashMap.newKeySet();
+
+    @Autowired
+    public BatchPaymentService(MtnService mtnService, AirtelService airtelService,
+                               PaymentTransactionService txService, Environment env,
+                               @Value("${payments.batch.maxItems:1000}") int maxItems,
+                               @Value("${payments.batch.resumeAfterSeconds:60}") long resumeAfterSeconds) {
+        this(mtnService, airtelService, txService, env, maxItems, Duration.ofSeconds(resumeAfterSeconds),
+                Clock.systemUTC());
+    }
+
+    BatchPaymentService(MtnService mtnService, AirtelService airtelService,
+                        PaymentTransactionService txService, Environment env,
+                        int maxItems, Duration resumeAfter, Clock clock) {
+        this.mtnService = mtnService;
+        this.airtelService = airtelService;
+        this.txService = txService;
+        this.env = env;
+        this.maxItems = maxItems;
+        this.resumeAfter = resumeAfter;
+        this.clock = clock;
+    }
+
+    /** True if batches are offered for the provider and operation ({@code collect} or {@code withdraw}). */
+    public static boolean supports(String provider, String operation) {
+        return PROVIDERS.contains(provider) && OPERATIONS.contains(operation);
+    }
+
+    /**
+     * Validates a batch and commits PENDING rows for its new items.
+     *
+     * @throws BatchValidationException listing every invalid item; nothing is persisted
+     */
+    public Batch prepare(String provider, String operation, BatchPaymentRequest request) {
+        if (!supports(provider, operation)) {
+            throw new IllegalArgumentException("Unsupported batch operation: " + provider + "/" + operation);
+        }
+        List<Item> raw = request == null || request.items() == null ? List.of() : request.items();
+        List<String> errors = validate(raw);
+        if (!errors.isEmpty()) throw new BatchValidationException(errors);
+
+        List<Item> items = raw.stream().map(BatchPaymentService::normalize).toList();
+        List<String> references = items.stream().map(Item::reference).toList();
+
+        Map<String, PaymentTransaction> existing = byReference(txService.findAll(references));
+        errors = conflicts(provider, operation, items, existing);
+        if (!errors.isEmpty()) throw new BatchValidationException(errors);
+
+        List<PaymentTransaction> fresh = items.stream()
+                .filter(item -> !existing.containsKey(item.reference()))
+                .map(item -> PaymentTransactionService.pending(provider, operation, item.reference(), item.amount(), item.currency()))
+                .toList();
+        Set<String> inserted = fresh.isEmpty() ? Set.of() : insert(fresh);
+        Map<String, PaymentTransaction> current;
+        if (inserted.size() == fresh.size()) {
+            current = new HashMap<>(existing);
+            fresh.forEach(tx -> current.put(tx.getReference(), tx));
+        } else {
+            current = byReference(txService.findAll(references));
+        }
+
+        Instant resumable = clock.instant().minus(resumeAfter);
+        List<BatchItemResult> settled = new ArrayList<>();
+        List<Work> work = new ArrayList<>();
+        for (Item item : items) {
+            PaymentTransaction tx = current.get(item.reference());
+            if (tx == null) {
+                settled.add(new BatchItemResult(item.reference(), null, BatchItemResult.DEFERRED,
+                        "Transaction not found; resubmit the batch"));
+            } else if (tx.getStatus() != PaymentStatus.PENDING) {
+                settled.add(result(tx, BatchItemResult.EXISTING, null));
+            } else if (inserted.contains(item.reference()) || tx.getCreatedAt().isBefore(resumable)) {
+                work.add(new Work(item, tx));
+            } else {
+                settled.add(result(tx, BatchItemResult.DEFERRED, "Still in progress; resubmit later to resume"));
+            }
+        }
+
+        logger.info("Batch {} {} prepared: items={}, new={}, resumed={}, settled={}", provider, operation,
+                items.size(), inserted.size(), work.size() - inserted.size(), settled.size());
+        return new Batch(provider, operation, settled, work);
+    }
+
+    /**
+     * Runs a prepared batch, passing each item's result to {@code sink} on the calling
+     * thread: settled items first, then the rest in completion order. If {@code sink}
+     * throws, e.g. because the client went away, this returns early but the provider
+     * calls already queued still run and record their outcome.
+     */
+    public void run(Batch batch, Consumer<BatchItemResult> sink) {
+        batch.settled.forEach(sink);
+
+        CompletionService<BatchItemResult> completions = new ExecutorCompletionService<>(executor(batch.provider));
+        int submitted = 0;
+        for (Work work : batch.work) {
+            String reference = work.tx.getReference();
+            if (!inFlight.add(reference)) {
+                sink.accept(result(work.tx, BatchItemResult.DEFERRED, "Already in progress"));
+                continue;
+            }
+            try {
+                completions.submit(() -> {
+                    try {
+                        return execute(batch, work);
+                    } finally {
+                        inFlight.remove(reference);
+                    }
+                });
+                submitted++;
+            } catch (RuntimeException ex) {
+                inFlight.remove(reference);
+                throw ex;
+            }
+        }
+
+        for (int i = 0; i < submitted; i++) {
+            try {
+                sink.accept(completions.take().get());
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                logger.warn("Batch {} {} interrupted with {} item(s) outstanding",
+                        batch.provider, batch.operation, submitted - i);
+                return;
+            } catch (ExecutionException ex) {
+                logger.error("Batch {} {} item failed: {}", batch.provider, batch.operation,
+                        ex.getCause().getMessage(), ex.getCause());
+            }
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        for (ExecutorService executor : executors.values()) executor.shutdown();
+        for (Map.Entry<String, ExecutorService> entry : executors.entrySet()) {
+            if (!entry.getValue().awaitTermination(30, TimeUnit.SECONDS)) {
+                logger.warn("Batch pool for {} did not drain in time; unfinished items stay PENDING", entry.getKey());
+                entry.getValue().shutdownNow();
+            }
+        }
+    }
+
+    private BatchItemResult execute(Batch batch, Work work) {
+        PaymentTransaction tx = work.tx;
+        try {
+            Sent sent = send(batch.provider, batch.operation, work.item);
+            txService.recordSubmission(tx, batch.provider, sent.httpStatus(), sent.response());
+            return result(tx, BatchItemResult.PROCESSED, null);
+        } catch (ProviderUnavailableException ex) {
+            return result(tx, BatchItemResult.DEFERRED, "Provider unavailable; resubmit the batch to resume");
+        } catch (HttpClientErrorException.Conflict ex) {
+            return result(tx, BatchItemResult.DEFERRED, "Already submitted to the provider; awaiting its status");
+        } catch (RuntimeException ex) {
+            if (ProviderGuard.isOutcomeUnknown(ex)) {
+                logger.warn("Batch {} {} item outcome unknown: ref={}, {}", batch.provider, batch.operation,
+                        tx.getReference(), ex.getMessage());
+                return result(tx, BatchItemResult.DEFERRED, "Outcome unknown; awaiting the provider's status");
+            }
+            txService.fail(tx);
+            logger.warn("Batch {} {} item failed: ref={}, {}", batch.provider, batch.operation,
+                    tx.getReference(), ex.getMessage());
+            return result(tx, BatchItemResult.PROCESSED, "Provider call failed");
+        }
+    }
+
+    /** Calls the provider; its answer is recorded the same way as for the single-payment endpoints. */
+    private Sent send(String provider, String operation, Item item) {
+        switch (provider + "/" + operation) {
+            case "mtn/collect" -> {
+                MtnResponseDTO r = mtnService.initiateCollection(String.valueOf(item.amount()), item.phone(),
+                        item.reference(), "Payment request", "Payment to merchant", item.currency());
+                return r == null ? Sent.NONE : new Sent(r.getStatus(), r.toString());
+            }
+            case "mtn/withdraw" -> {
+                MtnResponseDTO r = mtnService.initiateWithdrawal(item.phone(), item.amount(), item.reference(), item.currency());
+                return r == null ? Sent.NONE : new Sent(r.getStatus(), r.toString());
+            }
+            case "airtel/collect" -> {
+                AirtelResponseDTO r = airtelService.initiateCollection(item.phone(), item.amount(), item.reference(), item.currency());
+                return r == null ? Sent.NONE : new Sent(r.getStatus(), r.toString());
+            }
+            case "airtel/withdraw" -> {
+                AirtelResponseDTO r = airtelService.initiateWithdrawal(item.phone(), item.amount(), item.reference(), item.currency());
+                return r == null ? Sent.NONE : new Sent(r.getStatus(), r.toString());
+            }
+            default -> throw new IllegalArgumentException("Unsupported batch operation: " + provider + "/" + operation);
+        }
+    }
+
+    /** Inserts new rows in one batch, falling back to one by one if another request claimed a reference first. */
+    private Set<String> insert(List<PaymentTransaction> fresh) {
+        try {
+            txService.openAll(fresh);
+            return fresh.stream().map(PaymentTransaction::getReference).collect(Collectors.toSet());
+        } catch (DataIntegrityViolationException ex) {
+            logger.info("Batch insert raced with another request, inserting {} rows one by one", fresh.size());
+            Set<String> inserted = new HashSet<>();
+            for (PaymentTransaction tx : fresh) {
+                try {
+                    txService.open(tx.getProvider(), tx.getOperation(), tx.getReference(), tx.getAmount(), tx.getCurrency());
+                    inserted.add(tx.getReference());
+                } catch (DataIntegrityViolationException duplicate) {
+                    logger.info("Concurrent request for existing reference: ref={}", tx.getReference());
+                }
+            }
+            return inserted;
+        }
+    }
+
+    private List<String> validate(List<Item> items) {
+        List<String> errors = new ArrayList<>();
+        if (items.isEmpty()) {
+            errors.add("items: At least one item is required");
+            return errors;
+        }
+        if (items.size() > maxItems) {
+            errors.add("items: A batch cannot exceed " + maxItems + " items");
+            return errors;
+        }
+
+        Set<String> references = new HashSet<>();
+        for (int i = 0; i < items.size(); i++) {
+            Item item = items.get(i);
+            String at = "items[" + i + "]";
+            if (item == null) {
+                errors.add(at + ": Item is required");
+                continue;
+            }
+            if (item.phone() == null || !PHONE.matcher(item.phone().trim()).matches()) {
+                errors.add(at + ".phone: Phone number must contain 9–15 digits");
+            }
+            if (item.amount() == null || item.amount() < 1) {
+                errors.add(at + ".amount: Amount must be greater than 0");
+            }
+            if (item.currency() == null || !SupportedCurrency.isSupported(item.currency().trim())) {
+                errors.add(at + ".currency: Unsupported currency: " + item.currency());
+            }
+            if (!StringUtils.hasText(item.reference())) {
+                errors.add(at + ".reference: Reference is required");
+            } else if (item.reference().trim().length() > MAX_REFERENCE_LENGTH) {
+                errors.add(at + ".reference: Reference cannot exceed " + MAX_REFERENCE_LENGTH + " characters");
+            } else if (!references.add(item.reference().trim())) {
+                errors.add(at + ".reference: Duplicate reference in batch: " + item.reference().trim());
+            }
+        }
+        return errors;
+    }
+
+    /**
+     * References already used for a different payment cannot be resumed. That includes
+     * the other operation, so a collection is never re-driven as a withdrawal, and rows
+     * without a recorded operation.
+     */
+    private static List<String> conflicts(String provider, String operation, List<Item> items,
+                                          Map<String, PaymentTransaction> existing) {
+        List<String> errors = new ArrayList<>();
+        for (int i = 0; i < items.size(); i++) {
+            Item item = items.get(i);
+            PaymentTransaction tx = existing.get(item.reference());
+            if (tx != null && (!provider.equals(tx.getProvider())
+                    || !operation.equals(tx.getOperation())
+                    || !item.amount().equals(tx.getAmount())
+                    || !item.currency().equals(tx.getCurrency()))) {
+                errors.add("items[" + i + "].reference: Reference already used by a different payment: " + item.reference());
+            }
+        }
+        return errors;
+    }
+
+    private static Item normalize(Item item) {
+        return new Item(item.phone().trim(), item.amount(), item.currency().trim().toUpperCase(), item.reference().trim());
+    }
+
+    private static Map<String, PaymentTransaction> byReference(List<PaymentTransaction> transactions) {
+        return transactions.stream().collect(Collectors.toMap(PaymentTransaction::getReference, Function.identity()));
+    }
+
+    private static BatchItemResult result(PaymentTransaction tx, String outcome, String error) {
+        return new BatchItemResult(tx.getReference(), tx.getStatus(), outcome, error);
+    }
+
+    private ExecutorService executor(String provider) {
+        return executors.computeIfAbsent(provider, p -> {
+            AtomicInteger threadCount = new AtomicInteger();
+            return Executors.newFixedThreadPool(intSetting(p, "parallelism", 8), r -> {
+                Thread t = new Thread(r, "payment-batch-" + p + "-" + threadCount.incrementAndGet());
+                t.setDaemon(true);
+                return t;
+            });
+        });
+    }
+
+    private int intSetting(String provider, String key, int defaultValue) {
+        Integer value = env.getProperty("payments.batch." + provider + "." + key, Integer.class);
+        if (value != null) return value;
+        return env.getProperty("payments.batch.default." + key, Integer.class, defaultValue);
+    }
+
+    /** A validated batch whose PENDING rows are committed, ready for {@link #run}. */
+    public static final class Batch {
+        private final String provider;
+        private final String operation;
+        private final List<BatchItemResult> settled;
+        private final List<Work> work;
+
+        private Batch(String provider, String operation, List<BatchItemResult> settled, List<Work> work) {
+            this.provider = provider;
+            this.operation = operation;
+            this.settled = settled;
+            this.work = work;
+        }
+
+        /** Number of items in the batch. */
+        public int size() {
+            return settled.size() + work.size();
+        }
+
+        /** Number of items that need a provider call. */
+        public int pending() {
+            return work.size();
+        }
+    }
+
+    private record Work(Item item, PaymentTransaction tx) {}
+
+    private record Sent(String httpStatus, String response) {
+        static final Sent NONE = new Sent(null, null);
+    }
+}
@@ -0,0 +1,33 @@
+package com.example.pis.service;
+
+import java.util.List;
+
+import org.springframework.context.ApplicationEventPublisher;
+
+import com.example.pis.dto.OutboxMessage;
+
+/**
+ * {@link OutboxSink} that publishes each message as an application event, for
+ * in-process consumers declaring {@code @EventListener void on(OutboxMessage m)}.
+ *
+ * <p>Listeners run synchronously on the relay thread; one that throws fails the
+ * batch, which is then redelivered to every listener.</p>
+ */
+public class EventBusOutboxSink implements OutboxSink {
+
+    private final ApplicationEventPublisher publisher;
+
+    public EventBusOutboxSink(ApplicationEventPublisher publisher) {
+        this.publisher = publisher;
+    }
+
+    @Override
+    public String name() {
+        return "bus";
+    }
+
+    @Override
+    public void publish(List<OutboxMessage> messages) {
+        messages.forEach(publisher::publishEvent);
+    }
+}
@@ -0,0 +1,25 @@
+package com.example.pis.service;
+
+/**
+ * Remembers which webhook deliveries have already been handled.
+ *
+ * <p>Providers retry deliveries, and several nodes may receive the same event.
+ * {@link #markIfNew} checks and records an id in one atomic step, so exactly one
+ * of any number of concurrent deliveries is told to process it.</p>
+ */
+public interface EventIdStore {
+
+    /**
+     * Records an event id if it has not been seen yet.
+     *
+     * @param eventId Provider-scoped event id
+     * @return true if the caller is the first to see this id and should process it
+     */
+    boolean markIfNew(String eventId);
+
+    /**
+     * Forgets an event id so a later redelivery is processed again,
+     * e.g. when handling failed after {@link #markIfNew} succeeded.
+     */
+    void forget(String eventId);
+}
@@ -0,0 +1,58 @@
+package com.example.pis.service;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+
+import com.example.pis.dto.OutboxMessage;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * {@link OutboxSink} that appends messages to a local file as newline-delimited JSON,
+ * standing in for a message queue. Each batch is written with one append and forced
+ * to disk before the relay marks it dispatched.
+ */
+public class FileOutboxSink implements OutboxSink {
+
+    private final Path path;
+    private final ObjectMapper mapper;
+
+    public FileOutboxSink(Path path, ObjectMapper mapper) {
+        this.path = path;
+        this.mapper = mapper;
+    }
+
+    @Override
+    public String name() {
+        return "file";
+    }
+
+    @Override
+    public void publish(List<OutboxMessage> messages) {
+        try {
+            ByteArrayOutputStream buffer = new ByteArrayOutputStream(messages.size() * 256);
+            for (OutboxMessage message : messages) {
+                buffer.write(mapper.writeValueAsBytes(message));
+                buffer.write('\n');
+            }
+            Path parent = path.toAbsolutePath().getParent();
+            if (parent != null) Files.createDirectories(parent);
+            try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                    StandardOpenOption.APPEND)) {
+                ByteBuffer bytes = ByteBuffer.wrap(buffer.toByteArray());
+                while (bytes.hasRemaining()) {
+                    channel.write(bytes);
+                }
+                channel.force(false);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not append outbox events to " + path, e);
+        }
+    }
+}
@@ -0,0 +1,45 @@
+package com.example.pis.service;
+
+import java.net.URI;
+import java.util.List;
+
+import org.springframework.http.MediaType;
+import org.springframework.http.RequestEntity;
+import org.springframework.web.client.RestTemplate;
+
+import com.example.pis.dto.OutboxMessage;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * {@link OutboxSink} that POSTs each batch as one JSON array. Any 2xx response
+ * acknowledges the whole batch; anything else, or no response, fails it.
+ */
+public class HttpOutboxSink implements OutboxSink {
+
+    private final RestTemplate restTemplate;
+    private final URI url;
+    private final ObjectMapper mapper;
+
+    public HttpOutboxSink(RestTemplate restTemplate, URI url, ObjectMapper mapper) {
+        this.restTemplate = restTemplate;
+        this.url = url;
+        this.mapper = mapper;
+    }
+
+    @Override
+    public String name() {
+        return "http";
+    }
+
+    @Override
+    public void publish(List<OutboxMessage> messages) {
+        byte[] body;
+        try {
+            body = mapper.writeValueAsBytes(messages);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Could not serialize outbox events", e);
+        }
+        restTemplate.exchange(RequestEntity.post(url).contentType(MediaType.APPLICATION_JSON).body(body), Void.class);
+    }
+}
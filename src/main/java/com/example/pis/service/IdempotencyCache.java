@@ -0,0 +1,206 @@
+package com.example.pis.service;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
+
+import com.example.pis.dto.PaymentTransactionSummary;
+import com.example.pis.enums.PaymentStatus;
+
+/**
+ * In-process first tier of the payment idempotency check, in front of the unique
+ * {@code idx_reference} index.
+ *
+ * <p>Recently seen references map to their {@link PaymentTransactionSummary}.
+ * Settled outcomes ({@link PaymentStatus#isSettled()}) are kept for {@code ttlSeconds};
+ * PENDING and INITIATED ones only for {@code pendingTtlSeconds}, because a webhook or
+ * another node may move them on. Transitions made through {@link PaymentTransactionService}
+ * on this node are written through immediately. The cache holds at most
+ * {@code maxEntries} references and evicts the oldest first; 0 disables it.</p>
+ *
+ * <p>A request that is about to open a transaction first {@link #claim}s its
+ * reference. Duplicates arriving on this node meanwhile wait in {@link #find}
+ * for the owner's {@link #release} instead of racing it into the unique index,
+ * for at most {@code waitTimeoutSeconds}. Duplicates on other nodes still meet
+ * the index.</p>
+ */
+@Component
+public class IdempotencyCache {
+
+    private static final Logger log = LoggerFactory.getLogger(IdempotencyCache.class);
+
+    private final ConcurrentHashMap<String, Cached> entries = new ConcurrentHashMap<>();
+    private final ConcurrentLinkedQueue<Marked> insertionOrder = new ConcurrentLinkedQueue<>();
+    private final ConcurrentHashMap<String, CompletableFuture<PaymentTransactionSummary>> inFlight =
+            new ConcurrentHashMap<>();
+    private final long ttlMillis;
+    private final long pendingTtlMillis;
+    private final int maxEntries;
+    private final long waitTimeoutMillis;
+    private final Clock clock;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder waits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    @Autowired
+    public IdempotencyCache(
+            @Value("${payments.idempotency.ttlSeconds:600}") long ttlSeconds,
+            @Value("${payments.idempotency.pendingTtlSeconds:5}") long pendingTtlSeconds,
+            @Value("${payments.idempotency.maxEntries:10000}") int maxEntries,
+            @Value("${payments.idempotency.waitTimeoutSeconds:30}") long waitTimeoutSeconds) {
+        this(Duration.ofSeconds(ttlSeconds), Duration.ofSeconds(pendingTtlSeconds), maxEntries,
+                Duration.ofSeconds(waitTimeoutSeconds), Clock.systemUTC());
+    }
+
+    IdempotencyCache(Duration ttl, Duration pendingTtl, int maxEntries, Duration waitTimeout, Clock clock) {
+        this.ttlMillis = ttl.toMillis();
+        this.pendingTtlMillis = pendingTtl.toMillis();
+        this.maxEntries = maxEntries;
+        this.waitTimeoutMillis = waitTimeout.toMillis();
+        this.clock = clock;
+    }
+
+    /**
+     * Returns the transaction for {@code reference}: the outcome of a request on this
+     * node that currently owns the reference (waiting for it), else the cached entry,
+     * else {@code loader}'s result. Unknown references are not cached.
+     */
+    public Optional<PaymentTransactionSummary> find(String reference,
+                                                    Function<String, Optional<PaymentTransactionSummary>> loader) {
+        if (!StringUtils.hasText(reference)) {
+            return loader.apply(reference);
+        }
+        CompletableFuture<PaymentTransactionSummary> owner = inFlight.get(reference);
+        PaymentTransactionSummary outcome = owner != null ? await(reference, owner) : null;
+        if (outcome != null) {
+            waits.increment();
+            return Optional.of(outcome);
+        }
+        PaymentTransactionSummary cached = cached(reference);
+        if (cached != null) {
+            hits.increment();
+            return Optional.of(cached);
+        }
+        misses.increment();
+        Optional<PaymentTransactionSummary> loaded = loader.apply(reference);
+        loaded.ifPresent(this::put);
+        return loaded;
+    }
+
+    /**
+     * Claims {@code reference} for a request about to open its transaction.
+     *
+     * @return false if another request on this node owns it or it is already cached;
+     *         the caller should then answer with {@link #find}
+     */
+    public boolean claim(String reference) {
+        if (!StringUtils.hasText(reference)) return true;
+        if (cached(reference) != null) return false;
+        return inFlight.putIfAbsent(reference, new CompletableFuture<>()) == null;
+    }
+
+    /**
+     * Ends a claim and hands {@code outcome} to waiting duplicates. A null outcome
+     * (e.g. the insert failed) sends them to the database instead. Nothing is cached
+     * here: only committed states reach the cache, through {@link #put}.
+     */
+    public void release(String reference, PaymentTransactionSummary outcome) {
+        if (!StringUtils.hasText(reference)) return;
+        CompletableFuture<PaymentTransactionSummary> owner = inFlight.remove(reference);
+        if (owner != null) owner.complete(outcome);
+    }
+
+    /** Caches the current state of a transaction, replacing any older entry. */
+    public void put(PaymentTransactionSummary summary) {
+        if (maxEntries <= 0 || !StringUtils.hasText(summary.reference())) return;
+        long now = clock.millis();
+        long ttl = summary.status().isSettled() ? ttlMillis : pendingTtlMillis;
+        Cached cached = new Cached(summary, now + ttl);
+        entries.put(summary.reference(), cached);
+        insertionOrder.add(new Marked(summary.reference(), cached));
+        evict(now);
+    }
+
+    /** Drops the cached state of a reference, e.g. after a bulk update that did not read it back. */
+    public void invalidate(String reference) {
+        // The stale queue entry is skipped on eviction because it no longer matches
+        entries.remove(reference);
+    }
+
+    /** Returns hit/wait/miss counts, current size and the number of claimed references. */
+    public IdempotencyStats stats() {
+        long h = hits.sum();
+        long w = waits.sum();
+        long m = misses.sum();
+        long total = h + w + m;
+        return new IdempotencyStats(h, w, m, entries.size(), inFlight.size(),
+                total == 0 ? 0 : (double) (h + w) / total);
+    }
+
+    private PaymentTransactionSummary cached(String reference) {
+        Cached cached = entries.get(reference);
+        if (cached == null) return null;
+        if (cached.expiresAt > clock.millis()) return cached.summary;
+        entries.remove(reference, cached);
+        return null;
+    }
+
+    private PaymentTransactionSummary await(String reference, CompletableFuture<PaymentTransactionSummary> owner) {
+        try {
+            return owner.get(waitTimeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException ex) {
+            log.info("Gave up waiting for in-flight request: ref={}", reference);
+            return null;
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            return null;
+        } catch (ExecutionException ex) {
+            return null;
+        }
+    }
+
+    private void evict(long now) {
+        Marked head;
+        while ((head = insertionOrder.peek()) != null
+                && (head.cached.expiresAt <= now || entries.size() > maxEntries
+                    || entries.get(head.reference) != head.cached)) {
+            head = insertionOrder.poll();
+            if (head != null) {
+                // Only remove if the reference was not cached again since
+                entries.remove(head.reference, head.cached);
+            }
+        }
+    }
+
+    private record Cached(PaymentTransactionSummary summary, long expiresAt) {}
+
+    private record Marked(String reference, Cached cached) {}
+
+    /**
+     * Idempotency cache statistics.
+     *
+     * @param hits     Lookups answered from the cache
+     * @param waits    Lookups answered by waiting for an in-flight request with the same reference
+     * @param misses   Lookups that went to the database
+     * @param size     References currently cached
+     * @param inFlight References currently claimed by a request on this node
+     * @param hitRatio (hits + waits) / all lookups
+     */
+    public record IdempotencyStats(long hits, long waits, long misses, int size, int inFlight, double hitRatio) {}
+}
@@ -0,0 +1,80 @@
+package com.example.pis.service;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Node-local {@link EventIdStore} with TTL and size-bounded eviction.
+ *
+ * <p>Ids are kept in insertion order alongside the map. Because every entry has
+ * the same TTL, the oldest entry is also the first to expire, so each insert
+ * evicts from the head of the queue until nothing expired is left and the store
+ * is back within {@code maxEntries}.</p>
+ */
+public class InMemoryEventIdStore implements EventIdStore {
+
+    private final ConcurrentHashMap<String, Long> expiries = new ConcurrentHashMap<>();
+    private final ConcurrentLinkedQueue<Marked> insertionOrder = new ConcurrentLinkedQueue<>();
+    private final long ttlMillis;
+    private final int maxEntries;
+    private final Clock clock;
+
+    public InMemoryEventIdStore(Duration ttl, int maxEntries) {
+        this(ttl, maxEntries, Clock.systemUTC());
+    }
+
+    InMemoryEventIdStore(Duration ttl, int maxEntries, Clock clock) {
+        if (maxEntries <= 0) {
+            throw new IllegalArgumentException("maxEntries must be positive");
+        }
+        this.ttlMillis = ttl.toMillis();
+        this.maxEntries = maxEntries;
+        this.clock = clock;
+    }
+
+    @Override
+    public boolean markIfNew(String eventId) {
+        long now = clock.millis();
+        long expiresAt = now + ttlMillis;
+        boolean[] added = new boolean[1];
+        expiries.compute(eventId, (id, existing) -> {
+            if (existing != null && existing > now) {
+                return existing;
+            }
+            added[0] = true;
+            return expiresAt;
+        });
+        if (added[0]) {
+            insertionOrder.add(new Marked(eventId, expiresAt));
+            evict(now);
+        }
+        return added[0];
+    }
+
+    @Override
+    public void forget(String eventId) {
+        // The stale queue entry is skipped on eviction because its expiry no longer matches
+        expiries.remove(eventId);
+    }
+
+    /** Number of ids currently remembered. */
+    public int size() {
+        return expiries.size();
+    }
+
+    private void evict(long now) {
+        Marked head;
+        while ((head = insertionOrder.peek()) != null
+                && (head.expiresAt <= now || expiries.size() > maxEntries)) {
+            head = insertionOrder.poll();
+            if (head != null) {
+                // Only remove if the id was not re-marked with a newer expiry since
+                expiries.remove(head.eventId, head.expiresAt);
+            }
+        }
+    }
+
+    private record Marked(String eventId, Long expiresAt) {}
+}
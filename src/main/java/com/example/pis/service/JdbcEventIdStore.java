@@ -0,0 +1,95 @@
+package com.example.pis.service;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.dao.DataIntegrityViolationException;
+
+import com.example.pis.repository.ProcessedWebhookEventRepository;
+
+/**
+ * {@link EventIdStore} shared by all instances through the database.
+ *
+ * <p>The primary key on {@code processed_webhook_events.event_id} decides which
+ * delivery wins: the insert either succeeds or fails with a duplicate-key error,
+ * so no separate read is needed. A node-local {@link InMemoryEventIdStore} in
+ * front absorbs redeliveries of ids this node inserted without a round trip; ids
+ * another node inserted are always checked against the table.
+ * Rows older than the TTL are purged periodically.</p>
+ */
+public class JdbcEventIdStore implements EventIdStore {
+
+    private static final Logger logger = LoggerFactory.getLogger(JdbcEventIdStore.class);
+
+    private final ProcessedWebhookEventRepository repository;
+    private final InMemoryEventIdStore front;
+    private final Duration ttl;
+    private final Clock clock;
+    private final ScheduledExecutorService purger;
+
+    public JdbcEventIdStore(ProcessedWebhookEventRepository repository, InMemoryEventIdStore front,
+                            Duration ttl, Duration purgeInterval) {
+        this(repository, front, ttl, purgeInterval, Clock.systemUTC());
+    }
+
+    JdbcEventIdStore(ProcessedWebhookEventRepository repository, InMemoryEventIdStore front,
+                     Duration ttl, Duration purgeInterval, Clock clock) {
+        this.repository = repository;
+        this.front = front;
+        this.ttl = ttl;
+        this.clock = clock;
+        this.purger = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "webhook-event-purge");
+            t.setDaemon(true);
+            return t;
+        });
+        long intervalMs = purgeInterval.toMillis();
+        purger.scheduleWithFixedDelay(this::purgeExpired, intervalMs, intervalMs, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public boolean markIfNew(String eventId) {
+        if (!front.markIfNew(eventId)) {
+            return false;
+        }
+        try {
+            repository.insert(eventId, clock.instant());
+            return true;
+        } catch (DataIntegrityViolationException duplicate) {
+            // Another node recorded it first. Only that node may forget it, so the front
+            // must not keep answering for it or a retry after the other node's forget is lost.
+            front.forget(eventId);
+            return false;
+        } catch (RuntimeException ex) {
+            front.forget(eventId);
+            throw ex;
+        }
+    }
+
+    @Override
+    public void forget(String eventId) {
+        front.forget(eventId);
+        repository.deleteById(eventId);
+    }
+
+    /** Deletes rows that have left the deduplication window. */
+    void purgeExpired() {
+        try {
+            int deleted = repository.deleteOlderThan(clock.instant().minus(ttl));
+            if (deleted > 0) {
+                logger.debug("Purged {} expired webhook event ids", deleted);
+            }
+        } catch (RuntimeException ex) {
+            logger.warn("Failed to purge webhook event ids: {}", ex.getMessage());
+        }
+    }
+
+    public void shutdown() {
+        purger.shutdownNow();
+    }
+}
@@ -1,15 +1,28 @@
 package com.example.pis.service;
 
+import java.nio.charset.StandardCharsets;
 import java.security.Key;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Clock;
+import java.time.Instant;
+import java.util.Base64;
 import java.util.Date;
 import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
 
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
 import com.example.pis.entity.Role;
 
+import io.jsonwebtoken.Claims;
 import io.jsonwebtoken.JwtException;
+import io.jsonwebtoken.JwtParser;
 import io.jsonwebtoken.Jwts;
 import io.jsonwebtoken.SignatureAlgorithm;
 import io.jsonwebtoken.security.Keys;
@@ -20,29 +33,61 @@ import io.jsonwebtoken.security.Keys;
  * - Configurable expiration, issuer, and audience
  * - Validation and extraction helpers
  * - Supports optional claims (e.g., role as enum)
+ * - Single-parse {@link #verify} with a bounded cache of verified tokens
  */
 @Service
 public class JwtService {
 
-    private final byte[] secretKeyBytes;
+    /** Default number of verified tokens remembered by {@link #verify}. */
+    public static final int DEFAULT_CACHE_SIZE = 10_000;
+
+    private static final long CACHE_SWEEP_INTERVAL_MS = 1_000;
+
+    private final Key signingKey;
+    private final JwtParser parser;
     private final long expirationMs;
     private final String issuer;
     private final String audience;
 
+    private final int cacheMaxEntries;
+    private final Clock clock;
+    private final ConcurrentHashMap<String, VerifiedToken> verifiedTokens = new ConcurrentHashMap<>();
+    private final AtomicLong nextSweepAt = new AtomicLong();
+    private final LongAdder cacheHits = new LongAdder();
+    private final LongAdder cacheMisses = new LongAdder();
+
+    public JwtService(String secret, long expirationMs, String issuer, String audience) {
+        this(secret, expirationMs, issuer, audience, DEFAULT_CACHE_SIZE, Clock.systemUTC());
+    }
+
+    @Autowired
     public JwtService(
             @Value("${jwt.secret}") String secret,
             @Value("${jwt.expiration-ms}") long expirationMs,
             @Value("${jwt.issuer}") String issuer,
-            @Value("${jwt.audience}") String audience) {
-        // Decode Base64 256-bit secret for HS256
-        this.secretKeyBytes = java.util.Base64.getDecoder().decode(secret);
+            @Value("${jwt.audience}") String audience,
+            @Value("${jwt.cache.maxEntries:" + DEFAULT_CACHE_SIZE + "}") int cacheMaxEntries) {
+        this(secret, expirationMs, issuer, audience, cacheMaxEntries, Clock.systemUTC());
+    }
+
+    JwtService(String secret, long expirationMs, String issuer, String audience, int cacheMaxEntries, Clock clock) {
+        // Decode Base64 256-bit secret for HS256; key and parser are immutable and thread-safe
+        this.signingKey = Keys.hmacShaKeyFor(Base64.getDecoder().decode(secret));
+        this.parser = Jwts.parserBuilder()
+                .setSigningKey(signingKey)
+                .setAllowedClockSkewSeconds(60)
+                .requireIssuer(issuer)
+                .requireAudience(audience)
+                .build();
         this.expirationMs = expirationMs;
         this.issuer = issuer;
         this.audience = audience;
+        this.cacheMaxEntries = cacheMaxEntries;
+        this.clock = clock;
     }
 
     private Key getSigningKey() {
-        return Keys.hmacShaKeyFor(secretKeyBytes);
+        return signingKey;
     }
 
     /** Generate JWT token with username as subject. */
@@ -72,51 +117,123 @@ public class JwtService {
                 .compact();
     }
 
-    /** Validate token signature, expiration, issuer, and audience. */
-    public boolean validateToken(String token) {
+    /**
+     * Verifies a token once and returns its subject, role and expiry.
+     *
+     * <p>Verified tokens are remembered until their {@code exp}, keyed by a
+     * SHA-256 hash of the token, so repeat requests with the same token skip
+     * signature verification and claims parsing. The cache holds at most
+     * {@code jwt.cache.maxEntries} tokens; when it is full, new tokens are
+     * verified but not cached until expired entries have been swept.</p>
+     *
+     * @return the verified token, or empty if the signature, expiry, issuer,
+     *         audience or role claim is invalid
+     */
+    public Optional<VerifiedToken> verify(String token) {
+        if (token == null || token.isBlank()) {
+            return Optional.empty();
+        }
+        long now = clock.millis();
+        String key = cacheMaxEntries > 0 ? hash(token) : null;
+        if (key != null) {
+            VerifiedToken cached = verifiedTokens.get(key);
+            if (cached != null && cached.expiresAt().toEpochMilli() > now) {
+                cacheHits.increment();
+                return Optional.of(cached);
+            }
+            cacheMisses.increment();
+        }
+
+        VerifiedToken verified;
         try {
-            Jwts.parserBuilder()
-                .setSigningKey(getSigningKey())
-                .setAllowedClockSkewSeconds(60)
-                .requireIssuer(issuer)
-                .requireAudience(audience)
-                .build()
-                .parseClaimsJws(token);
-            return true;
+            Claims claims = parser.parseClaimsJws(token).getBody();
+            String role = claims.get("role", String.class);
+            verified = new VerifiedToken(
+                    claims.getSubject(),
+                    role != null ? Role.valueOf(role) : null,
+                    claims.getExpiration() != null ? claims.getExpiration().toInstant() : null);
         } catch (JwtException | IllegalArgumentException e) {
-            return false;
+            return Optional.empty();
         }
+
+        if (key != null && verified.expiresAt() != null) {
+            remember(key, verified, now);
+        }
+        return Optional.of(verified);
+    }
+
+    private void remember(String key, VerifiedToken verified, long now) {
+        if (verifiedTokens.size() >= cacheMaxEntries) {
+            long sweepAt = nextSweepAt.get();
+            if (now >= sweepAt && nextSweepAt.compareAndSet(sweepAt, now + CACHE_SWEEP_INTERVAL_MS)) {
+                verifiedTokens.values().removeIf(t -> t.expiresAt().toEpochMilli() <= now);
+            }
+            if (verifiedTokens.size() >= cacheMaxEntries) {
+                return;
+            }
+        }
+        verifiedTokens.put(key, verified);
+    }
+
+    private static String hash(String token) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(token.getBytes(StandardCharsets.US_ASCII));
+            return Base64.getEncoder().encodeToString(digest);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    /** Returns hit/miss counts and size of the verified-token cache. */
+    public TokenCacheStats cacheStats() {
+        long hits = cacheHits.sum();
+        long misses = cacheMisses.sum();
+        long lookups = hits + misses;
+        return new TokenCacheStats(hits, misses, verifiedTokens.size(), lookups == 0 ? 0 : (double) hits / lookups);
+    }
+
+    /** Validate token signature, expiration, issuer, and audience. */
+    public boolean validateToken(String token) {
+        return verify(token).isPresent();
     }
 
     /** Extract username (subject) from token. */
     public String extractUsername(String token) {
-        return Jwts.parserBuilder()
-                .setSigningKey(getSigningKey())
-                .build()
-                .parseClaimsJws(token)
-                .getBody()
-                .getSubject();
+        return claims(token).getSubject();
     }
 
     /** Extract role claim and convert back to Role enum. */
     public Role extractRole(String token) {
-        String roleString = Jwts.parserBuilder()
-                .setSigningKey(getSigningKey())
-                .build()
-                .parseClaimsJws(token)
-                .getBody()
-                .get("role", String.class);
+        String roleString = claims(token).get("role", String.class);
 
         return Role.valueOf(roleString);
     }
 
     /** Extract any custom claim as String. */
     public String extractClaim(String token, String claimKey) {
-        return Jwts.parserBuilder()
-                .setSigningKey(getSigningKey())
-                .build()
-                .parseClaimsJws(token)
-                .getBody()
-                .get(claimKey, String.class);
+        return claims(token).get(claimKey, String.class);
     }
+
+    private Claims claims(String token) {
+        return parser.parseClaimsJws(token).getBody();
+    }
+
+    /**
+     * Result of a successful {@link #verify}.
+     *
+     * @param username  Token subject
+     * @param role      Role claim, or null if the token has none
+     * @param expiresAt Token expiry
+     */
+    public record VerifiedToken(String username, Role role, Instant expiresAt) {}
+
+    /**
+     * Verified-token cache statistics.
+     *
+     * @param hits     Lookups answered from the cache
+     * @param misses   Lookups that verified the signature
+     * @param size     Tokens currently cached
+     * @param hitRatio hits / (hits + misses)
+     */
+    public record TokenCacheStats(long hits, long misses, int size, double hitRatio) {}
 }
@@ -0,0 +1,427 @@
+package com.example.pis.service;
+
+import java.net.URI;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Collectors;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.env.Environment;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.Limit;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.RequestEntity;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
+import org.springframework.web.client.RestClientException;
+import org.springframework.web.client.RestClientResponseException;
+import org.springframework.web.client.RestTemplate;
+
+import com.example.pis.dto.OutboxMessage;
+import com.example.pis.dto.PendingCallback;
+import com.example.pis.entity.MerchantCallback;
+import com.example.pis.repository.MerchantCallbackRepository;
+import com.example.pis.security.CallbackSigner;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+
+/**
+ * Delivers signed HTTP callbacks to merchants when a payment settles.
+ *
+ * <p>Merchants are listed in {@code payments.callbacks.merchants}; each has a
+ * {@code payments.callbacks.<id>.url}, a {@code secret} and a {@code referencePrefix}
+ * limiting it to its own references. Settled events
+ * (SUCCESS, FAILED, REVERSED) are handed over by {@link OutboxRelay}, whichever
+ * {@link OutboxSink} is configured, and queued in {@code merchant_callbacks} before
+ * the relay marks them dispatched, so a
+ * pending callback survives a restart; the unique {@code (merchant, event_id)} index
+ * drops redelivered events. Provider webhooks never wait on a merchant.</p>
+ *
+ * <p>Due callbacks are held in a {@link TimerWheel} and handed to the merchant's own
+ * pool of {@code payments.callbacks.<id>.concurrency} threads (default
+ * {@code payments.callbacks.default.concurrency}), so a slow merchant only delays
+ * its own callbacks. Requests go through the pooled {@code callbacks} client from
+ * {@link ProviderHttpClientFactory} and carry {@code X-Callback-Id} (the event ID, for
+ * deduplication), {@code X-Request-Timestamp} and {@code X-Callback-Signature}, see
+ * {@link CallbackSigner}. A 2xx response completes the callback; timeouts, 408, 425,
+ * 429 and 5xx are retried with exponential backoff from {@code initialBackoffMillis}
+ * to {@code maxBackoffSeconds}, up to {@code maxAttempts}; other responses are not
+ * retried.</p>
+ *
+ * <p>Only callbacks due within the next {@code sweepIntervalSeconds} are kept in
+ * memory, at most {@code maxScheduled}. Each sweep loads the next ones from the table,
+ * including any left behind by a crash, and purges completed callbacks older than
+ * {@code retentionHours}. Every node may deliver: an attempt first claims its row by
+ * moving {@code next_attempt_at} {@code leaseSeconds} ahead, so a callback loaded by
+ * several sweeps is sent by the node that claims it and, if that node dies mid-request,
+ * by a sweep once the lease runs out. The lease must outlast the {@code callbacks}
+ * client's read timeout.</p>
+ */
+@Component
+public class MerchantCallbackDispatcher {
+
+    private static final Logger logger = LoggerFactory.getLogger(MerchantCallbackDispatcher.class);
+
+    private static final int MAX_ERROR_LENGTH = 255;
+
+    private final MerchantCallbackRepository repository;
+    private final PaymentMetrics metrics;
+    private final ObjectMapper mapper;
+    private final Clock clock;
+
+    private final Map<String, Merchant> merchants;
+    private final CallbackSigner signer;
+    private final RestTemplate restTemplate;
+
+    private final boolean enabled;
+    private final Duration tick;
+    private final Duration lease;
+    private final int wheelSlots;
+    private final Duration sweepInterval;
+    private final int sweepBatchSize;
+    private final int maxScheduled;
+    private final int maxAttempts;
+    private final long initialBackoffMs;
+    private final long maxBackoffMs;
+    private final Duration retention;
+
+    private TimerWheel wheel;
+    private ScheduledExecutorService sweeper;
+    /** Callbacks in the wheel or a merchant pool on this node, so sweeps do not schedule them twice. */
+    private final Set<Long> scheduled = ConcurrentHashMap.newKeySet();
+
+    private final LongAdder queued = new LongAdder();
+    private final LongAdder duplicates = new LongAdder();
+    private final LongAdder delivered = new LongAdder();
+    private final LongAdder retried = new LongAdder();
+    private final LongAdder abandoned = new LongAdder();
+    private volatile long backlog;
+    private volatile Instant oldestPending;
+
+    @Autowired
+    public MerchantCallbackDispatcher(MerchantCallbackRepository repository, ProviderHttpClientFactory httpClientFactory,
+                                      PaymentMetrics metrics, ObjectMapper mapper, Environment env) {
+        this(repository, httpClientFactory, metrics, mapper, env, Clock.systemUTC());
+    }
+
+    MerchantCallbackDispatcher(MerchantCallbackRepository repository, ProviderHttpClientFactory httpClientFactory,
+                               PaymentMetrics metrics, ObjectMapper mapper, Environment env, Clock clock) {
+        this.repository = repository;
+        this.metrics = metrics;
+        this.mapper = mapper;
+        this.clock = clock;
+        this.merchants = merchants(env);
+        this.signer = new CallbackSigner(merchants.values().stream()
+                .collect(Collectors.toMap(Merchant::id, Merchant::secret)), Runtime.getRuntime().availableProcessors());
+        this.restTemplate = merchants.isEmpty() ? null : httpClientFactory.create("callbacks", false);
+        this.enabled = env.getProperty("payments.callbacks.enabled", Boolean.class, true);
+        this.tick = Duration.ofMillis(env.getProperty("payments.callbacks.tickMillis", Long.class, 100L));
+        this.lease = Duration.ofSeconds(env.getProperty("payments.callbacks.leaseSeconds", Long.class, 60L));
+        this.wheelSlots = env.getProperty("payments.callbacks.wheelSlots", Integer.class, 512);
+        this.sweepInterval = Duration.ofSeconds(env.getProperty("payments.callbacks.sweepIntervalSeconds", Long.class, 30L));
+        this.sweepBatchSize = env.getProperty("payments.callbacks.sweepBatchSize", Integer.class, 500);
+        this.maxScheduled = env.getProperty("payments.callbacks.maxScheduled", Integer.class, 10_000);
+        this.maxAttempts = env.getProperty("payments.callbacks.maxAttempts", Integer.class, 12);
+        this.initialBackoffMs = env.getProperty("payments.callbacks.initialBackoffMillis", Long.class, 5000L);
+        this.maxBackoffMs = env.getProperty("payments.callbacks.maxBackoffSeconds", Long.class, 3600L) * 1000;
+        this.retention = Duration.ofHours(env.getProperty("payments.callbacks.retentionHours", Long.class, 168L));
+    }
+
+    private static Map<String, Merchant> merchants(Environment env) {
+        int defaultConcurrency = env.getProperty("payments.callbacks.default.concurrency", Integer.class, 4);
+        Map<String, Merchant> merchants = new LinkedHashMap<>();
+        for (String id : env.getProperty("payments.callbacks.merchants", String[].class, new String[0])) {
+            id = id.trim();
+            if (id.isEmpty()) continue;
+            String prefix = "payments.callbacks." + id + ".";
+            String url = env.getProperty(prefix + "url");
+            String secret = env.getProperty(prefix + "secret");
+            String referencePrefix = env.getProperty(prefix + "referencePrefix");
+            if (!StringUtils.hasText(url) || !StringUtils.hasText(secret) || !StringUtils.hasText(referencePrefix)) {
+                // A blank prefix would send every merchant's payments to this one
+                throw new IllegalStateException("Merchant " + id + " needs " + prefix + "url, " + prefix + "secret and "
+                        + prefix + "referencePrefix");
+            }
+            merchants.put(id, new Merchant(id, URI.create(url), secret, referencePrefix,
+                    env.getProperty(prefix + "concurrency", Integer.class, defaultConcurrency)));
+        }
+        return merchants;
+    }
+
+    @PostConstruct
+    public void start() {
+        if (merchants.isEmpty()) {
+            logger.info("No merchants configured for payment callbacks");
+            return;
+        }
+        if (!enabled) {
+            logger.info("Merchant callback delivery disabled; callbacks are only queued on this node");
+            return;
+        }
+        wheel = new TimerWheel("callback-timer", tick, wheelSlots);
+        merchants.values().forEach(Merchant::start);
+        sweeper = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "callback-sweep");
+            t.setDaemon(true);
+            return t;
+        });
+        sweeper.scheduleWithFixedDelay(() -> {
+            try {
+                sweep();
+            } catch (RuntimeException ex) {
+                logger.warn("Merchant callback sweep failed: {}", ex.getMessage(), ex);
+            }
+        }, 0, sweepInterval.toMillis(), TimeUnit.MILLISECONDS);
+        logger.info("Merchant callbacks started for {}", merchants.keySet());
+    }
+
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        if (sweeper != null) sweeper.shutdownNow();
+        if (wheel != null) wheel.close();
+        // Undelivered callbacks stay in the table and are picked up again after restart
+        for (Merchant merchant : merchants.values()) {
+            merchant.shutdown();
+        }
+    }
+
+    /**
+     * Queues a callback to every merchant subscribed to a settled payment event.
+     * Runs on the outbox relay thread; if it throws, the relay redelivers the event.
+     */
+    public void onPaymentEvent(OutboxMessage event) {
+        if (event.status() == null || !event.status().isSettled() || merchants.isEmpty()) return;
+        byte[] payload = null;
+        for (Merchant merchant : merchants.values()) {
+            if (!event.reference().startsWith(merchant.referencePrefix())) continue;
+            if (payload == null) payload = serialize(event);
+            MerchantCallback callback = new MerchantCallback(merchant.id(), event.eventId(), event.reference(),
+                    payload, clock.instant());
+            try {
+                repository.save(callback);
+            } catch (DataIntegrityViolationException duplicate) {
+                // Already queued from an earlier delivery of the same event
+                duplicates.increment();
+                continue;
+            }
+            queued.increment();
+            if (wheel != null && scheduled.size() < maxScheduled) {
+                schedule(PendingCallback.of(callback), Duration.ZERO);
+            }
+        }
+    }
+
+    private byte[] serialize(OutboxMessage event) {
+        try {
+            return mapper.writeValueAsBytes(event);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Could not serialize payment event " + event.eventId(), e);
+        }
+    }
+
+    /**
+     * Schedules undelivered callbacks due before the next sweep, refreshes the backlog
+     * figures and purges expired completed callbacks.
+     *
+     * @return Number of callbacks scheduled
+     */
+    public int sweep() {
+        Instant now = clock.instant();
+        int count = 0;
+        long afterId = Long.MIN_VALUE;
+        while (scheduled.size() < maxScheduled) {
+            List<PendingCallback> page = repository.findDue(now.plus(sweepInterval), afterId, Limit.of(sweepBatchSize));
+            for (PendingCallback callback : page) {
+                if (scheduled.size() >= maxScheduled) break;
+                if (!merchants.containsKey(callback.merchant()) || scheduled.contains(callback.id())) continue;
+                schedule(callback, Duration.between(now, callback.nextAttemptAt()));
+                count++;
+            }
+            if (page.size() < sweepBatchSize) break;
+            afterId = page.get(page.size() - 1).id();
+        }
+
+        backlog = repository.countByCompletedAtIsNull();
+        oldestPending = repository.findOldestPending().orElse(null);
+        int purged = repository.deleteCompletedBefore(now.minus(retention));
+        if (purged > 0) {
+            logger.debug("Purged {} completed merchant callbacks", purged);
+        }
+        return count;
+    }
+
+    private void schedule(PendingCallback callback, Duration delay) {
+        if (!scheduled.add(callback.id())) return;
+        wheel.schedule(() -> submit(callback), delay);
+    }
+
+    /** Runs on the wheel thread: hands the callback to its merchant's pool. */
+    private void submit(PendingCallback callback) {
+        Merchant merchant = merchants.get(callback.merchant());
+        try {
+            merchant.pool().execute(() -> deliver(merchant, callback));
+        } catch (RejectedExecutionException ex) {
+            // Shutting down; the next start picks it up from the table
+            scheduled.remove(callback.id());
+        }
+    }
+
+    void deliver(Merchant merchant, PendingCallback callback) {
+        long start = System.nanoTime();
+        boolean keepScheduled = false;
+        try {
+            Instant claimedAt = clock.instant();
+            if (repository.claim(callback.id(), claimedAt.plus(tick), claimedAt.plus(lease)) == 0) {
+                // Completed or claimed by another node since it was scheduled here
+                return;
+            }
+            long timestamp = claimedAt.getEpochSecond();
+            RequestEntity<byte[]> request = RequestEntity.post(merchant.url())
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .header("X-Callback-Id", String.valueOf(callback.eventId()))
+                    .header("X-Request-Timestamp", String.valueOf(timestamp))
+                    .header("X-Callback-Signature", signer.sign(merchant.id(), timestamp, callback.payload()))
+                    .body(callback.payload());
+            restTemplate.exchange(request, Void.class);
+            Instant now = clock.instant();
+            repository.markDelivered(callback.id(), now);
+            delivered.increment();
+            metrics.recordCallback(merchant.id(), "delivered", System.nanoTime() - start);
+            metrics.recordCallbackDelay(merchant.id(), Duration.between(callback.createdAt(), now));
+        } catch (RestClientResponseException ex) {
+            int status = ex.getStatusCode().value();
+            keepScheduled = recordFailure(merchant, callback, "HTTP " + status, retryable(status), start);
+        } catch (RestClientException ex) {
+            keepScheduled = recordFailure(merchant, callback, String.valueOf(ex.getMessage()), true, start);
+        } catch (RuntimeException ex) {
+            // The callback stays due in the table and the next sweep picks it up again
+            logger.warn("Delivering callback {} to {} failed: {}", callback.id(), merchant.id(), ex.getMessage(), ex);
+        } finally {
+            if (!keepScheduled) scheduled.remove(callback.id());
+        }
+    }
+
+    private static boolean retryable(int status) {
+        return status >= 500 || status == HttpStatus.REQUEST_TIMEOUT.value()
+                || status == HttpStatus.TOO_EARLY.value() || status == HttpStatus.TOO_MANY_REQUESTS.value();
+    }
+
+    /** @return true if the retry was put straight back on the wheel */
+    private boolean recordFailure(Merchant merchant, PendingCallback callback, String error, boolean retryable,
+                                  long start) {
+        if (error.length() > MAX_ERROR_LENGTH) error = error.substring(0, MAX_ERROR_LENGTH);
+        int attempts = callback.attempts() + 1;
+        Instant now = clock.instant();
+        try {
+            if (!retryable || attempts >= maxAttempts) {
+                repository.markAbandoned(callback.id(), now, error);
+                abandoned.increment();
+                metrics.recordCallback(merchant.id(), "abandoned", System.nanoTime() - start);
+                logger.error("Giving up on callback {} to {} for event {} after {} attempts: {}", callback.id(),
+                        merchant.id(), callback.eventId(), attempts, error);
+                return false;
+            }
+            long delay = Math.min(maxBackoffMs, initialBackoffMs << Math.min(attempts - 1, 20));
+            Instant next = now.plusMillis(delay);
+            repository.markRetry(callback.id(), next, error);
+            retried.increment();
+            metrics.recordCallback(merchant.id(), "retry", System.nanoTime() - start);
+            logger.warn("Callback {} to {} failed (attempt {}), retrying in {} ms: {}", callback.id(), merchant.id(),
+                    attempts, delay, error);
+            if (delay > sweepInterval.toMillis()) {
+                return false; // reloaded by the sweep before it is due
+            }
+            wheel.schedule(() -> submit(callback.retryAt(next)), Duration.ofMillis(delay));
+            return true;
+        } catch (RuntimeException ex) {
+            // The callback stays due in the table and the next sweep picks it up again
+            logger.warn("Could not record failure of callback {}: {}", callback.id(), ex.getMessage());
+            return false;
+        }
+    }
+
+    /** Returns callback counts and how far delivery is behind. */
+    public CallbackStats stats() {
+        Instant oldest = oldestPending;
+        return new CallbackStats(queued.sum(), duplicates.sum(), delivered.sum(), retried.sum(), abandoned.sum(),
+                wheel != null ? wheel.pending() : 0, scheduled.size(), backlog,
+                oldest == null ? 0 : Math.max(0, Duration.between(oldest, clock.instant()).toMillis()));
+    }
+
+    /**
+     * Merchant callback statistics.
+     *
+     * @param queued                 Callbacks queued on this node
+     * @param duplicates             Redelivered events that were already queued
+     * @param delivered              Callbacks delivered by this node
+     * @param retried                Failed attempts that were rescheduled
+     * @param abandoned              Callbacks given up on
+     * @param timers                 Callbacks waiting in the timer wheel
+     * @param scheduled              Callbacks in the wheel or a merchant pool
+     * @param backlog                Undelivered callbacks, as of the last sweep
+     * @param oldestPendingAgeMillis Age of the oldest undelivered callback, as of the last sweep
+     */
+    public record CallbackStats(long queued, long duplicates, long delivered, long retried, long abandoned,
+                                int timers, int scheduled, long backlog, long oldestPendingAgeMillis) {}
+
+    /** A configured merchant endpoint and its delivery pool. */
+    static final class Merchant {
+        private final String id;
+        private final URI url;
+        private final String secret;
+        private final String referencePrefix;
+        private final int concurrency;
+        private ThreadPoolExecutor pool;
+
+        Merchant(String id, URI url, String secret, String referencePrefix, int concurrency) {
+            this.id = id;
+            this.url = url;
+            this.secret = secret;
+            this.referencePrefix = referencePrefix;
+            this.concurrency = Math.max(concurrency, 1);
+        }
+
+        void start() {
+            AtomicInteger threads = new AtomicInteger();
+            pool = new ThreadPoolExecutor(concurrency, concurrency, 60, TimeUnit.SECONDS, new LinkedBlockingQueue<>(),
+                    r -> {
+                        Thread t = new Thread(r, "callback-" + id + "-" + threads.incrementAndGet());
+                        t.setDaemon(true);
+                        return t;
+                    });
+            pool.allowCoreThreadTimeOut(true);
+        }
+
+        void shutdown() throws InterruptedException {
+            if (pool == null) return;
+            pool.shutdownNow();
+            pool.awaitTermination(5, TimeUnit.SECONDS);
+        }
+
+        String id() { return id; }
+        URI url() { return url; }
+        String secret() { return secret; }
+        String referencePrefix() { return referencePrefix; }
+        ThreadPoolExecutor pool() { return pool; }
+    }
+}
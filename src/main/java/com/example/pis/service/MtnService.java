@@ -1,5 +1,6 @@
 package com.example.pis.service;
 
+import java.nio.charset.StandardCharsets;
 import java.time.Duration;
 import java.util.Map;
 import java.util.Optional;
@@ -15,6 +16,7 @@ import org.springframework.http.HttpMethod;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Service;
+import org.springframework.web.client.HttpClientErrorException;
 import org.springframework.web.client.RestTemplate;
 
 import com.example.pis.dto.MtnResponseDTO;
@@ -29,6 +31,11 @@ public class MtnService {
 
     private static final Logger logger = LoggerFactory.getLogger(MtnService.class);
 
+    private static final String PROVIDER = "mtn";
+
+    /** Used when the token response omits {@code expires_in}. */
+    private static final Duration DEFAULT_TOKEN_TTL = Duration.ofSeconds(60);
+
     @Value("${mtn.clientId}")
     private String clientId;
 
@@ -41,24 +48,38 @@ public class MtnService {
     @Value("${mtn.subscriptionKey}")
     private String subscriptionKey;
 
+    private final ProviderTokenManager tokenManager;
+    private final ProviderHttpClientFactory httpClientFactory;
+    private final ProviderGuard guard;
+
     private RestTemplate restTemplate;
 
+    public MtnService(ProviderTokenManager tokenManager, ProviderHttpClientFactory httpClientFactory,
+                       ProviderGuard guard) {
+        this.tokenManager = tokenManager;
+        this.httpClientFactory = httpClientFactory;
+        this.guard = guard;
+    }
+
     @PostConstruct
     public void init() {
         if (clientId == null || clientSecret == null || apiUrl == null || subscriptionKey == null) {
             throw new IllegalStateException("Incomplete MTN configuration");
         }
 
-        var factory = new org.springframework.http.client.SimpleClientHttpRequestFactory();
-        factory.setConnectTimeout((int) Duration.ofSeconds(10).toMillis());
-        factory.setReadTimeout((int) Duration.ofSeconds(30).toMillis());
-        this.restTemplate = new RestTemplate(factory);
+        this.restTemplate = httpClientFactory.create(PROVIDER);
+        tokenManager.register(PROVIDER, this::fetchAccessToken);
 
         logger.info("MtnService initialized successfully");
     }
 
-    /** Fetches an access token from MTN API using client credentials */
+    /** Returns a cached MTN access token, fetching a new one only when needed */
     public String getAccessToken() {
+        return tokenManager.getToken(PROVIDER);
+    }
+
+    /** Fetches an access token from MTN API using client credentials */
+    private ProviderTokenManager.AccessToken fetchAccessToken() {
         String tokenUrl = apiUrl + "/token/";
         HttpHeaders headers = new HttpHeaders();
         headers.setBasicAuth(clientId.trim(), clientSecret.trim());
@@ -67,12 +88,13 @@ public class MtnService {
 
         HttpEntity<String> request = new HttpEntity<>("grant_type=client_credentials", headers);
 
-        ResponseEntity<Map<String, Object>> response = restTemplate.exchange(
-                tokenUrl,
-                HttpMethod.POST,
-                request,
-                new ParameterizedTypeReference<>() {}
-        );
+        ResponseEntity<Map<String, Object>> response = guard.executeIdempotent(PROVIDER, "token",
+                () -> restTemplate.exchange(
+                        tokenUrl,
+                        HttpMethod.POST,
+                        request,
+                        new ParameterizedTypeReference<Map<String, Object>>() {}),
+                PaymentMetrics::httpStatus);
 
         if (!response.getStatusCode().is2xxSuccessful()) {
             throw new IllegalStateException("Failed to get MTN token");
@@ -86,7 +108,17 @@ public class MtnService {
             throw new IllegalStateException("MTN token response missing access_token");
         }
 
-        return accessToken.toString();
+        return new ProviderTokenManager.AccessToken(accessToken.toString(), parseExpiresIn(body.get("expires_in")));
+    }
+
+    private Duration parseExpiresIn(Object expiresIn) {
+        if (expiresIn == null) return DEFAULT_TOKEN_TTL;
+        try {
+            return Duration.ofSeconds(Long.parseLong(expiresIn.toString().trim()));
+        } catch (NumberFormatException e) {
+            logger.warn("Unparseable MTN expires_in: {}", expiresIn);
+            return DEFAULT_TOKEN_TTL;
+        }
     }
 
     /** Initiates a collection (payment request) on MTN Mobile Money */
@@ -101,7 +133,7 @@ public class MtnService {
 
         HttpHeaders headers = new HttpHeaders();
         headers.setBearerAuth(token);
-        headers.set("X-Reference-Id", UUID.randomUUID().toString());
+        headers.set("X-Reference-Id", collectionReferenceId(externalId));
         headers.set("X-Target-Environment", "sandbox");
         headers.set("Ocp-Apim-Subscription-Key", subscriptionKey);
         headers.setContentType(MediaType.APPLICATION_JSON);
@@ -116,7 +148,7 @@ public class MtnService {
         );
 
         HttpEntity<Map<String, Object>> request = new HttpEntity<>(body, headers);
-        ResponseEntity<String> resp = restTemplate.postForEntity(url, request, String.class);
+        ResponseEntity<String> resp = post("collect", url, request);
 
         int status = resp.getStatusCode().value();
         String respBody = Optional.ofNullable(resp.getBody()).orElse("");
@@ -137,7 +169,7 @@ public class MtnService {
 
         HttpHeaders headers = new HttpHeaders();
         headers.setBearerAuth(token);
-        headers.set("X-Reference-Id", UUID.randomUUID().toString());
+        headers.set("X-Reference-Id", disbursementReferenceId(reference));
         headers.set("X-Target-Environment", "sandbox");
         headers.set("Ocp-Apim-Subscription-Key", subscriptionKey);
         headers.setContentType(MediaType.APPLICATION_JSON);
@@ -150,7 +182,7 @@ public class MtnService {
         );
 
         HttpEntity<Map<String, Object>> request = new HttpEntity<>(body, headers);
-        ResponseEntity<String> resp = restTemplate.postForEntity(url, request, String.class);
+        ResponseEntity<String> resp = post("withdraw", url, request);
 
         int status = resp.getStatusCode().value();
         String respBody = Optional.ofNullable(resp.getBody()).orElse("");
@@ -159,6 +191,76 @@ public class MtnService {
         return new MtnResponseDTO(String.valueOf(status), respBody);
     }
 
+    /**
+     * Queries the status of a collection by our external ID. The read is idempotent,
+     * so it is retried on provider failures and hedged when {@code hedgeEnabled} is set.
+     */
+    public MtnResponseDTO getCollectionStatus(String externalId) {
+        if (externalId == null || externalId.isBlank()) throw new IllegalArgumentException("External ID is required");
+
+        String url = apiUrl + "/requesttopay/" + collectionReferenceId(externalId);
+
+        HttpHeaders headers = new HttpHeaders();
+        headers.setBearerAuth(getAccessToken());
+        headers.set("X-Target-Environment", "sandbox");
+        headers.set("Ocp-Apim-Subscription-Key", subscriptionKey);
+        HttpEntity<Void> request = new HttpEntity<>(headers);
+
+        try {
+            ResponseEntity<String> resp = guard.executeHedged(PROVIDER, "status",
+                    () -> restTemplate.exchange(url, HttpMethod.GET, request, String.class), PaymentMetrics::httpStatus);
+            return new MtnResponseDTO(String.valueOf(resp.getStatusCode().value()),
+                    Optional.ofNullable(resp.getBody()).orElse(""));
+        } catch (HttpClientErrorException.Unauthorized e) {
+            tokenManager.invalidate(PROVIDER);
+            throw e;
+        }
+    }
+
+    /** Queries the status of a withdrawal by our reference; idempotent, so retried and hedged like collections. */
+    public MtnResponseDTO getWithdrawalStatus(String reference) {
+        if (reference == null || reference.isBlank()) throw new IllegalArgumentException("Reference is required");
+
+        String url = apiUrl + "/disbursement/" + disbursementReferenceId(reference);
+
+        HttpHeaders headers = new HttpHeaders();
+        headers.setBearerAuth(getAccessToken());
+        headers.set("X-Target-Environment", "sandbox");
+        headers.set("Ocp-Apim-Subscription-Key", subscriptionKey);
+        HttpEntity<Void> request = new HttpEntity<>(headers);
+
+        try {
+            ResponseEntity<String> resp = guard.executeHedged(PROVIDER, "status",
+                    () -> restTemplate.exchange(url, HttpMethod.GET, request, String.class), PaymentMetrics::httpStatus);
+            return new MtnResponseDTO(String.valueOf(resp.getStatusCode().value()),
+                    Optional.ofNullable(resp.getBody()).orElse(""));
+        } catch (HttpClientErrorException.Unauthorized e) {
+            tokenManager.invalidate(PROVIDER);
+            throw e;
+        }
+    }
+
+    /** MTN X-Reference-Id of a collection, derived from our external ID so its status can be queried later */
+    static String collectionReferenceId(String externalId) {
+        return UUID.nameUUIDFromBytes(("mtn-collection:" + externalId).getBytes(StandardCharsets.UTF_8)).toString();
+    }
+
+    /** MTN X-Reference-Id of a withdrawal; a retried withdrawal is rejected by MTN as a duplicate instead of paid twice */
+    static String disbursementReferenceId(String reference) {
+        return UUID.nameUUIDFromBytes(("mtn-disbursement:" + reference).getBytes(StandardCharsets.UTF_8)).toString();
+    }
+
+    /** Posts to MTN, dropping the cached token if MTN rejects it */
+    private ResponseEntity<String> post(String operation, String url, HttpEntity<Map<String, Object>> request) {
+        try {
+            return guard.execute(PROVIDER, operation,
+                    () -> restTemplate.postForEntity(url, request, String.class), PaymentMetrics::httpStatus);
+        } catch (HttpClientErrorException.Unauthorized e) {
+            tokenManager.invalidate(PROVIDER);
+            throw e;
+        }
+    }
+
     /** Basic request validation */
     private void validateRequest(String amount, String msisdn, String externalId) {
         if (amount == null || amount.isBlank()) throw new IllegalArgumentException("Amount is required");
@@ -0,0 +1,270 @@
+package com.example.pis.service;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.env.Environment;
+import org.springframework.data.domain.Limit;
+import org.springframework.stereotype.Component;
+
+import com.example.pis.dto.OutboxMessage;
+import com.example.pis.entity.PaymentOutboxEvent;
+import com.example.pis.repository.PaymentOutboxRepository;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+
+/**
+ * Drains {@code payment_outbox} into the configured {@link OutboxSink}.
+ *
+ * <p>Every {@code payments.outbox.pollIntervalMillis} the relay reads up to
+ * {@code batchSize} undispatched events in ID order, queues their merchant callbacks
+ * with {@link MerchantCallbackDispatcher}, hands them to the sink as one batch and
+ * marks them dispatched once both return, whichever sink is configured; a full batch is
+ * followed by the next one straight away. Delivery is at least once: a crash between
+ * the sink accepting a batch and the mark redelivers it.</p>
+ *
+ * <p>If the sink fails, the whole batch is retried with exponential backoff from
+ * {@code initialBackoffSeconds} to {@code maxBackoffSeconds}; events are never
+ * abandoned. An event whose retry is not yet due holds back every later event for
+ * the same reference, so each reference's events reach the sink in the order they
+ * were committed. Dispatched events are deleted after {@code retentionHours}.</p>
+ *
+ * <p>Relays may run on several nodes. Before publishing, a relay claims its batch
+ * for {@code claimSeconds} ({@code claim_token}, {@code claimed_until}); an event
+ * claimed by another relay holds back every later event for its reference, exactly
+ * like one awaiting a retry, until it is dispatched or the claim runs out. Each
+ * reference's events therefore reach the sink once and in order as long as a batch
+ * is published within {@code claimSeconds}, which must exceed the sink's timeout.
+ * Events claimed by a relay that crashed are picked up again once the claim
+ * expires.</p>
+ */
+@Component
+public class OutboxRelay {
+
+    private static final Logger logger = LoggerFactory.getLogger(OutboxRelay.class);
+
+    private static final int MAX_ERROR_LENGTH = 255;
+
+    private final PaymentOutboxRepository repository;
+    private final OutboxSink sink;
+    private final MerchantCallbackDispatcher callbacks;
+    private final PaymentMetrics metrics;
+    private final Clock clock;
+
+    private final boolean enabled;
+    private final Duration pollInterval;
+    private final int batchSize;
+    private final long initialBackoffMs;
+    private final long maxBackoffMs;
+    private final Duration housekeepingInterval;
+    private final Duration retention;
+    private final Duration claimDuration;
+    private final String relayId = UUID.randomUUID().toString();
+    private final AtomicLong claims = new AtomicLong();
+
+    private ScheduledExecutorService scheduler;
+
+    private final LongAdder dispatched = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+    private final LongAdder batches = new LongAdder();
+    private volatile long backlog;
+    private volatile Instant oldestUndispatched;
+
+    @Autowired
+    public OutboxRelay(PaymentOutboxRepository repository, OutboxSink sink, MerchantCallbackDispatcher callbacks,
+                       PaymentMetrics metrics, Environment env) {
+        this(repository, sink, callbacks, metrics, env, Clock.systemUTC());
+    }
+
+    OutboxRelay(PaymentOutboxRepository repository, OutboxSink sink, MerchantCallbackDispatcher callbacks,
+                PaymentMetrics metrics, Environment env, Clock clock) {
+        this.repository = repository;
+        this.sink = sink;
+        this.callbacks = callbacks;
+        this.metrics = metrics;
+        this.clock = clock;
+        this.enabled = env.getProperty("payments.outbox.relayEnabled", Boolean.class, true);
+        this.pollInterval = Duration.ofMillis(env.getProperty("payments.outbox.pollIntervalMillis", Long.class, 200L));
+        this.batchSize = env.getProperty("payments.outbox.batchSize", Integer.class, 200);
+        this.initialBackoffMs = env.getProperty("payments.outbox.initialBackoffSeconds", Long.class, 1L) * 1000;
+        this.maxBackoffMs = env.getProperty("payments.outbox.maxBackoffSeconds", Long.class, 300L) * 1000;
+        this.housekeepingInterval = Duration.ofSeconds(
+                env.getProperty("payments.outbox.housekeepingIntervalSeconds", Long.class, 10L));
+        this.retention = Duration.ofHours(env.getProperty("payments.outbox.retentionHours", Long.class, 168L));
+        this.claimDuration = Duration.ofSeconds(env.getProperty("payments.outbox.claimSeconds", Long.class, 60L));
+    }
+
+    @PostConstruct
+    public void start() {
+        if (!enabled) {
+            logger.info("Outbox relay disabled; payment events are not delivered from this node");
+            return;
+        }
+        scheduler = Executors.newScheduledThreadPool(2, r -> {
+            Thread t = new Thread(r, "outbox-relay");
+            t.setDaemon(true);
+            return t;
+        });
+        scheduler.scheduleWithFixedDelay(this::drain, 0, pollInterval.toMillis(), TimeUnit.MILLISECONDS);
+        scheduler.scheduleWithFixedDelay(() -> {
+            try {
+                housekeeping();
+            } catch (RuntimeException ex) {
+                logger.warn("Outbox housekeeping failed: {}", ex.getMessage(), ex);
+            }
+        }, 0, housekeepingInterval.toMillis(), TimeUnit.MILLISECONDS);
+        logger.info("Outbox relay started: sink={}, batchSize={}", sink.name(), batchSize);
+    }
+
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        if (scheduler == null) return;
+        scheduler.shutdownNow();
+        scheduler.awaitTermination(5, TimeUnit.SECONDS);
+    }
+
+    /** Relays batches until one comes back short, held back or failed. */
+    private void drain() {
+        try {
+            while (!Thread.currentThread().isInterrupted() && relayBatch() == batchSize) {
+                // keep going while the outbox is backed up
+            }
+        } catch (RuntimeException ex) {
+            logger.warn("Outbox relay failed: {}", ex.getMessage(), ex);
+        }
+    }
+
+    /**
+     * Claims and delivers the due events among the oldest {@code batchSize} undispatched ones.
+     *
+     * @return Number of events delivered
+     */
+    int relayBatch() {
+        List<PaymentOutboxEvent> undispatched = repository.findUndispatched(Limit.of(batchSize));
+        Instant now = clock.instant();
+        Set<String> held = new HashSet<>();
+        List<PaymentOutboxEvent> candidates = new ArrayList<>(undispatched.size());
+        for (PaymentOutboxEvent event : undispatched) {
+            if (held.contains(event.getReference())) continue;
+            boolean claimedElsewhere = event.getClaimedUntil() != null && event.getClaimedUntil().isAfter(now);
+            if (event.getNextAttemptAt().isAfter(now) || claimedElsewhere) {
+                held.add(event.getReference());
+                continue;
+            }
+            candidates.add(event);
+        }
+        if (candidates.isEmpty()) return 0;
+
+        List<PaymentOutboxEvent> due = claim(candidates, now);
+        if (due.isEmpty()) return 0;
+
+        List<Long> ids = due.stream().map(PaymentOutboxEvent::getId).toList();
+        long start = System.nanoTime();
+        try {
+            List<OutboxMessage> messages = due.stream().map(OutboxMessage::of).toList();
+            messages.forEach(callbacks::onPaymentEvent);
+            sink.publish(messages);
+        } catch (RuntimeException ex) {
+            failed.add(due.size());
+            recordFailure(due, ids, ex);
+            return 0;
+        }
+        metrics.recordOutboxBatch(sink.name(), System.nanoTime() - start);
+        Instant dispatchedAt = clock.instant();
+        repository.markDispatched(ids, dispatchedAt);
+        dispatched.add(due.size());
+        batches.increment();
+        for (PaymentOutboxEvent event : due) {
+            metrics.recordOutboxLag(sink.name(), Duration.between(event.getOccurredAt(), dispatchedAt));
+        }
+        return due.size();
+    }
+
+    /**
+     * Claims {@code candidates} as one batch and returns the ones won, in order. An event
+     * another relay claimed first holds back the later events for its reference; those
+     * are released again.
+     */
+    private List<PaymentOutboxEvent> claim(List<PaymentOutboxEvent> candidates, Instant now) {
+        String token = relayId + ":" + claims.incrementAndGet();
+        List<Long> ids = candidates.stream().map(PaymentOutboxEvent::getId).toList();
+        repository.claim(ids, token, now.plus(claimDuration), now);
+        Set<Long> won = new HashSet<>(repository.findClaimed(ids, token));
+
+        Set<String> lost = new HashSet<>();
+        List<PaymentOutboxEvent> claimed = new ArrayList<>(won.size());
+        List<Long> released = new ArrayList<>();
+        for (PaymentOutboxEvent event : candidates) {
+            if (!won.contains(event.getId())) {
+                lost.add(event.getReference());
+            } else if (lost.contains(event.getReference())) {
+                released.add(event.getId());
+            } else {
+                claimed.add(event);
+            }
+        }
+        if (!released.isEmpty()) {
+            repository.release(released, token);
+        }
+        return claimed;
+    }
+
+    private void recordFailure(List<PaymentOutboxEvent> due, List<Long> ids, RuntimeException cause) {
+        String error = String.valueOf(cause.getMessage());
+        if (error.length() > MAX_ERROR_LENGTH) error = error.substring(0, MAX_ERROR_LENGTH);
+        int attempts = due.stream().mapToInt(PaymentOutboxEvent::getAttempts).max().orElse(0) + 1;
+        long delay = Math.min(maxBackoffMs, initialBackoffMs << Math.min(attempts - 1, 20));
+        try {
+            repository.markFailed(ids, clock.instant().plusMillis(delay), error);
+        } catch (RuntimeException ex) {
+            // The events stay due and are retried on the next poll
+            logger.warn("Could not record failed delivery of {} outbox events: {}", ids.size(), ex.getMessage());
+        }
+        logger.warn("Delivering {} outbox events to {} failed (attempt {}), retrying in {} ms: {}",
+                ids.size(), sink.name(), attempts, delay, error);
+    }
+
+    /** Refreshes the backlog figures and purges expired dispatched events. */
+    void housekeeping() {
+        backlog = repository.countByDispatchedAtIsNull();
+        oldestUndispatched = repository.findOldestUndispatched().orElse(null);
+        int purged = repository.deleteDispatchedBefore(clock.instant().minus(retention));
+        if (purged > 0) {
+            logger.debug("Purged {} dispatched outbox events", purged);
+        }
+    }
+
+    /** Returns delivery counts and how far the relay is behind. */
+    public RelayStats stats() {
+        Instant oldest = oldestUndispatched;
+        return new RelayStats(dispatched.sum(), failed.sum(), batches.sum(), backlog,
+                oldest == null ? 0 : Math.max(0, Duration.between(oldest, clock.instant()).toMillis()));
+    }
+
+    /**
+     * Outbox relay statistics.
+     *
+     * @param dispatched                  Events delivered by this node
+     * @param failed                      Event deliveries that failed and were rescheduled
+     * @param batches                     Batches delivered by this node
+     * @param backlog                     Undispatched events, as of the last housekeeping run
+     * @param oldestUndispatchedAgeMillis Age of the oldest undispatched event, as of the last housekeeping run
+     */
+    public record RelayStats(long dispatched, long failed, long batches, long backlog,
+                             long oldestUndispatchedAgeMillis) {}
+}
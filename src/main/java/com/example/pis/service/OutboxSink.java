@@ -0,0 +1,22 @@
+package com.example.pis.service;
+
+import java.util.List;
+
+import com.example.pis.dto.OutboxMessage;
+
+/**
+ * Destination of payment lifecycle events relayed from the outbox, selected with
+ * {@code payments.outbox.sink}.
+ */
+public interface OutboxSink {
+
+    /** Short name for logs and metrics, e.g. {@code http}. */
+    String name();
+
+    /**
+     * Delivers a batch, preserving its order. Returning normally means every message
+     * was accepted; throwing means none may be assumed delivered and the whole batch
+     * is retried, so a sink may see some messages more than once.
+     */
+    void publish(List<OutboxMessage> messages);
+}
@@ -0,0 +1,302 @@
+package com.example.pis.service;
+
+import java.io.InterruptedIOException;
+import java.time.Duration;
+import java.util.Locale;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.ToIntFunction;
+
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Component;
+import org.springframework.web.client.RestClientResponseException;
+
+import com.example.pis.exception.ProviderTimeoutException;
+import com.example.pis.service.PaymentTransactionService.StatusUpdateResult;
+import com.example.pis.service.ProviderCircuitBreaker.State;
+import com.stripe.exception.StripeException;
+import com.stripe.model.StripeObject;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+/**
+ * Micrometer instrumentation for provider calls and inbound webhooks.
+ *
+ * <p>Every provider call is timed into {@value #PROVIDER_REQUESTS} with the tags
+ * {@code provider}, {@code operation}, {@code outcome} and {@code status}; the
+ * timer's count doubles as the per-outcome, per-status counter. Tag values come
+ * from small fixed sets only: references, phone numbers and account IDs must
+ * never be passed in here.</p>
+ */
+@Component
+public class PaymentMetrics {
+
+    public static final String PROVIDER_REQUESTS = "payment.provider.requests";
+    public static final String PROVIDER_IN_FLIGHT = "payment.provider.inflight";
+    public static final String WEBHOOK_VERIFICATION = "webhook.signature.verification";
+    public static final String WEBHOOK_EVENTS = "webhook.events";
+    public static final String WEBHOOK_STATUS_UPDATES = "webhook.status.updates";
+    public static final String WEBHOOK_LAG = "webhook.journal.lag";
+    public static final String OUTBOX_LAG = "payment.outbox.lag";
+    public static final String OUTBOX_BATCH = "payment.outbox.batch";
+    public static final String MERCHANT_CALLBACKS = "merchant.callback.requests";
+    public static final String MERCHANT_CALLBACK_DELAY = "merchant.callback.delay";
+    public static final String CIRCUIT_STATE = "provider.circuit.state";
+    public static final String CIRCUIT_TRANSITIONS = "provider.circuit.transitions";
+    public static final String BULKHEAD_AVAILABLE = "provider.bulkhead.available";
+    public static final String CALLS_REJECTED = "provider.calls.rejected";
+    public static final String CALL_RETRIES = "provider.call.retries";
+    public static final String CALL_HEDGES = "provider.call.hedges";
+
+    /** Status tag value when no HTTP status is known, e.g. on a timeout. */
+    public static final String NO_STATUS = "none";
+
+    private static final int UNKNOWN = -1;
+
+    private static final Duration MIN_EXPECTED = Duration.ofMillis(5);
+    private static final Duration MAX_EXPECTED = Duration.ofSeconds(60);
+
+    private final MeterRegistry registry;
+    private final ConcurrentMap<String, AtomicInteger> inFlight = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, Timer> providerTimers = new ConcurrentHashMap<>();
+
+    public PaymentMetrics(MeterRegistry registry) {
+        this.registry = registry;
+    }
+
+    /** A provider call that may throw a checked exception, e.g. {@link StripeException}. */
+    @FunctionalInterface
+    public interface ProviderCall<T, E extends Exception> {
+        T call() throws E;
+    }
+
+    /** Outcome of looking up a webhook event id in the dedup store. */
+    public enum WebhookEventResult {
+        NEW, DUPLICATE, NO_ID;
+
+        private final String tag = name().toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * Times a provider call and tracks it as in flight while it runs.
+     *
+     * @param provider  Provider name, e.g. {@code mtn}
+     * @param operation Operation name, e.g. {@code collect}
+     * @param call      The provider call
+     * @param statusOf  Extracts the HTTP status from a successful result, or -1 if unknown
+     * @return the call's result
+     */
+    public <T, E extends Exception> T recordProviderCall(String provider, String operation,
+                                                         ProviderCall<T, E> call,
+                                                         ToIntFunction<? super T> statusOf) throws E {
+        AtomicInteger active = inFlight(provider);
+        active.incrementAndGet();
+        long start = System.nanoTime();
+        String outcome = "error";
+        int status = UNKNOWN;
+        try {
+            T result = call.call();
+            status = statusOf.applyAsInt(result);
+            outcome = status == UNKNOWN ? "success" : outcomeOf(status);
+            return result;
+        } catch (Exception ex) {
+            status = statusOf(ex);
+            outcome = status != UNKNOWN ? outcomeOf(status) : isTimeout(ex) ? "timeout" : "error";
+            throw ex;
+        } finally {
+            active.decrementAndGet();
+            providerTimer(provider, operation, outcome, status)
+                    .record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    /** Status extractor for RestTemplate responses. */
+    public static int httpStatus(ResponseEntity<?> response) {
+        return response.getStatusCode().value();
+    }
+
+    /** Status extractor for Stripe API objects. */
+    public static int stripeStatus(StripeObject object) {
+        return object.getLastResponse() != null ? object.getLastResponse().code() : UNKNOWN;
+    }
+
+    /** Records how long a webhook signature check took and whether it passed. */
+    public void recordWebhookVerification(String provider, boolean valid, long nanos) {
+        Timer.builder(WEBHOOK_VERIFICATION)
+                .description("Webhook signature verification latency")
+                .tags("provider", provider, "result", valid ? "valid" : "invalid")
+                .register(registry)
+                .record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    /** Counts a verified webhook by dedup result. */
+    public void recordWebhookEvent(String provider, WebhookEventResult result) {
+        Counter.builder(WEBHOOK_EVENTS)
+                .description("Verified webhooks by deduplication result")
+                .tags("provider", provider, "result", result.tag)
+                .register(registry)
+                .increment();
+    }
+
+    /** Counts a webhook status update by whether it was applied, stale or unmatched. */
+    public void recordStatusUpdate(String provider, StatusUpdateResult result) {
+        Counter.builder(WEBHOOK_STATUS_UPDATES)
+                .description("Webhook status updates by compare-and-set result")
+                .tags("provider", provider, "result", result.name().toLowerCase(Locale.ROOT))
+                .register(registry)
+                .increment();
+    }
+
+    /** Records how long a webhook waited between acknowledgement and being applied. */
+    public void recordWebhookLag(String provider, Duration lag) {
+        Timer.builder(WEBHOOK_LAG)
+                .description("Time from webhook acknowledgement to its status change being applied")
+                .tags("provider", provider)
+                .register(registry)
+                .record(lag);
+    }
+
+    /** Records how long a payment event waited between its commit and delivery to the sink. */
+    public void recordOutboxLag(String sink, Duration lag) {
+        Timer.builder(OUTBOX_LAG)
+                .description("Time from a payment status change committing to its event being delivered")
+                .tags("sink", sink)
+                .register(registry)
+                .record(lag);
+    }
+
+    /** Records how long the sink took to accept one outbox batch. */
+    public void recordOutboxBatch(String sink, long nanos) {
+        Timer.builder(OUTBOX_BATCH)
+                .description("Outbox batch delivery latency")
+                .tags("sink", sink)
+                .register(registry)
+                .record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    /** Records one merchant callback attempt by outcome: {@code delivered}, {@code retry} or {@code abandoned}. */
+    public void recordCallback(String merchant, String result, long nanos) {
+        Timer.builder(MERCHANT_CALLBACKS)
+                .description("Merchant callback attempts by outcome")
+                .tags("merchant", merchant, "result", result)
+                .register(registry)
+                .record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    /** Records how long a merchant callback took from being queued to being delivered. */
+    public void recordCallbackDelay(String merchant, Duration delay) {
+        Timer.builder(MERCHANT_CALLBACK_DELAY)
+                .description("Time from a payment settling to its merchant callback being delivered")
+                .tags("merchant", merchant)
+                .register(registry)
+                .record(delay);
+    }
+
+    /** Publishes a provider's breaker state (1 for the current state, 0 otherwise) and free bulkhead permits. */
+    public void bindProviderGuard(String provider, ProviderCircuitBreaker breaker, Semaphore bulkhead) {
+        for (State state : State.values()) {
+            Gauge.builder(CIRCUIT_STATE, breaker, b -> b.state() == state ? 1 : 0)
+                    .description("Circuit breaker state")
+                    .tags("provider", provider, "state", state.name().toLowerCase(Locale.ROOT))
+                    .register(registry);
+        }
+        Gauge.builder(BULKHEAD_AVAILABLE, bulkhead, Semaphore::availablePermits)
+                .description("Free provider bulkhead permits")
+                .tag("provider", provider)
+                .register(registry);
+    }
+
+    /** Counts a circuit breaker state change. */
+    public void recordCircuitTransition(String provider, State from, State to) {
+        Counter.builder(CIRCUIT_TRANSITIONS)
+                .description("Circuit breaker state transitions")
+                .tags("provider", provider,
+                        "from", from.name().toLowerCase(Locale.ROOT),
+                        "to", to.name().toLowerCase(Locale.ROOT))
+                .register(registry)
+                .increment();
+    }
+
+    /** Counts a call refused by the breaker ({@code circuit_open}) or bulkhead ({@code bulkhead_full}). */
+    public void recordRejectedCall(String provider, String reason) {
+        Counter.builder(CALLS_REJECTED)
+                .description("Provider calls refused without reaching the provider")
+                .tags("provider", provider, "reason", reason)
+                .register(registry)
+                .increment();
+    }
+
+    /** Counts a retry of an idempotent provider call. */
+    public void recordRetry(String provider, String operation) {
+        Counter.builder(CALL_RETRIES)
+                .description("Retried idempotent provider calls")
+                .tags("provider", provider, "operation", operation)
+                .register(registry)
+                .increment();
+    }
+
+    /** Counts a hedged call by which attempt answered first ({@code primary}, {@code hedge} or {@code none}). */
+    public void recordHedge(String provider, String operation, String winner) {
+        Counter.builder(CALL_HEDGES)
+                .description("Hedged provider calls by winning attempt")
+                .tags("provider", provider, "operation", operation, "winner", winner)
+                .register(registry)
+                .increment();
+    }
+
+    private AtomicInteger inFlight(String provider) {
+        return inFlight.computeIfAbsent(provider, p -> {
+            AtomicInteger counter = new AtomicInteger();
+            Gauge.builder(PROVIDER_IN_FLIGHT, counter, AtomicInteger::get)
+                    .description("Provider calls currently in flight")
+                    .tag("provider", p)
+                    .register(registry);
+            return counter;
+        });
+    }
+
+    private Timer providerTimer(String provider, String operation, String outcome, int status) {
+        String statusTag = status == UNKNOWN ? NO_STATUS : String.valueOf(status);
+        return providerTimers.computeIfAbsent(provider + '|' + operation + '|' + outcome + '|' + statusTag,
+                key -> Timer.builder(PROVIDER_REQUESTS)
+                        .description("Provider call latency by operation, outcome and HTTP status")
+                        .tags("provider", provider, "operation", operation,
+                                "outcome", outcome, "status", statusTag)
+                        .publishPercentileHistogram()
+                        .minimumExpectedValue(MIN_EXPECTED)
+                        .maximumExpectedValue(MAX_EXPECTED)
+                        .register(registry));
+    }
+
+    private static String outcomeOf(int status) {
+        if (status >= 500) return "server_error";
+        if (status >= 400) return "client_error";
+        return "success";
+    }
+
+    /** HTTP status carried by a provider exception, or -1 if there is none. */
+    static int statusOf(Exception ex) {
+        if (ex instanceof RestClientResponseException e) {
+            return e.getStatusCode().value();
+        }
+        if (ex instanceof StripeException e && e.getStatusCode() != null) {
+            return e.getStatusCode();
+        }
+        return UNKNOWN;
+    }
+
+    /** True if a timeout anywhere in the cause chain ended the call. */
+    static boolean isTimeout(Throwable ex) {
+        for (Throwable t = ex; t != null; t = t.getCause()) {
+            // SocketTimeoutException and the pool's ConnectionRequestTimeoutException are both InterruptedIOExceptions
+            if (t instanceof InterruptedIOException || t instanceof ProviderTimeoutException) return true;
+        }
+        return false;
+    }
+}
@@ -0,0 +1,220 @@
+package com.example.pis.service;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Stream;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.task.VirtualThreadTaskExecutor;
+import org.springframework.stereotype.Component;
+
+import jakarta.annotation.PreDestroy;
+
+/**
+ * Bounded worker pipeline for asynchronous payment initiation.
+ *
+ * <p>The controller commits a PENDING transaction, hands the provider call to
+ * {@link #submit} and answers 202 straight away. A full queue is reported back
+ * to the caller instead of growing without limit.</p>
+ *
+ * <p>On shutdown new jobs are rejected (the controller fails their transactions
+ * and answers 503) while the accepted ones drain, for up to
+ * {@code payments.async.drainSeconds}. Jobs still queued or running after that are
+ * dropped and their references logged: their transactions are left PENDING, the
+ * queued ones without the provider ever having been called.</p>
+ *
+ * <p>With {@code spring.threads.virtual.enabled=true} on Java 21 the workers are
+ * virtual threads, so {@code payments.async.virtualWorkers} blocking provider
+ * calls can be in flight without a matching number of OS threads.</p>
+ */
+@Component
+public class PaymentPipeline {
+
+    private static final Logger logger = LoggerFactory.getLogger(PaymentPipeline.class);
+
+    private static final boolean VIRTUAL_THREADS_AVAILABLE = Runtime.version().feature() >= 21;
+
+    private final ThreadPoolExecutor executor;
+    private final int queueCapacity;
+    private final Duration drainTimeout;
+    /** References of jobs a worker is running, for the shutdown report. */
+    private final Set<String> running = ConcurrentHashMap.newKeySet();
+
+    private final LongAdder completed = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder latencyNanos = new LongAdder();
+    private final AtomicLong maxLatencyNanos = new AtomicLong();
+
+    @Autowired
+    public PaymentPipeline(
+            @Value("${payments.async.workers:16}") int workers,
+            @Value("${payments.async.queueCapacity:1000}") int queueCapacity,
+            @Value("${spring.threads.virtual.enabled:false}") boolean virtualThreads,
+            @Value("${payments.async.virtualWorkers:1000}") int virtualWorkers,
+            @Value("${payments.async.drainSeconds:120}") long drainSeconds) {
+        this(virtualThreadsEnabled(virtualThreads) ? virtualWorkers : workers,
+                queueCapacity, virtualThreads && VIRTUAL_THREADS_AVAILABLE, Duration.ofSeconds(drainSeconds));
+    }
+
+    /**
+     * @param workers        Maximum concurrent provider calls
+     * @param queueCapacity  Jobs that may wait for a worker
+     * @param virtualThreads Run workers on virtual threads (requires Java 21)
+     */
+    public PaymentPipeline(int workers, int queueCapacity, boolean virtualThreads) {
+        this(workers, queueCapacity, virtualThreads, Duration.ofSeconds(120));
+    }
+
+    /**
+     * @param workers        Maximum concurrent provider calls
+     * @param queueCapacity  Jobs that may wait for a worker
+     * @param virtualThreads Run workers on virtual threads (requires Java 21)
+     * @param drainTimeout   How long shutdown waits for accepted jobs to finish
+     */
+    public PaymentPipeline(int workers, int queueCapacity, boolean virtualThreads, Duration drainTimeout) {
+        if (virtualThreads && !VIRTUAL_THREADS_AVAILABLE) {
+            throw new IllegalStateException("Virtual threads require Java 21");
+        }
+        this.queueCapacity = queueCapacity;
+        this.drainTimeout = drainTimeout;
+        this.executor = new ThreadPoolExecutor(
+                workers, workers,
+                60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                virtualThreads ? new VirtualThreadTaskExecutor("payment-vworker-").getVirtualThreadFactory() : platformThreads());
+        logger.info("PaymentPipeline started: workers={}, queueCapacity={}, virtualThreads={}",
+                workers, queueCapacity, virtualThreads);
+    }
+
+    private static ThreadFactory platformThreads() {
+        AtomicInteger threadCount = new AtomicInteger();
+        return r -> {
+            Thread t = new Thread(r, "payment-worker-" + threadCount.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        };
+    }
+
+    private static boolean virtualThreadsEnabled(boolean requested) {
+        if (!requested || VIRTUAL_THREADS_AVAILABLE) return requested;
+        logger.warn("Virtual threads requested but runtime is Java {}, using platform threads",
+                Runtime.version().feature());
+        return false;
+    }
+
+    /**
+     * Queues a provider call for a transaction.
+     *
+     * @param reference Transaction reference, used for logging only
+     * @param job       Provider call plus outcome persistence
+     * @return false if the pipeline is saturated or shutting down and the job was not accepted
+     */
+    public boolean submit(String reference, Runnable job) {
+        long acceptedAt = System.nanoTime();
+        try {
+            executor.execute(new Job(reference, () -> {
+                running.add(reference);
+                try {
+                    job.run();
+                    completed.increment();
+                } catch (RuntimeException ex) {
+                    failed.increment();
+                    logger.error("Async payment job failed: ref={}, {}", reference, ex.getMessage(), ex);
+                } finally {
+                    running.remove(reference);
+                    long nanos = System.nanoTime() - acceptedAt;
+                    latencyNanos.add(nanos);
+                    maxLatencyNanos.accumulateAndGet(nanos, Math::max);
+                }
+            }));
+            return true;
+        } catch (RejectedExecutionException ex) {
+            rejected.increment();
+            if (executor.isShutdown()) {
+                logger.warn("Payment pipeline shutting down, rejecting ref={}", reference);
+            } else {
+                logger.warn("Payment pipeline saturated, rejecting ref={}", reference);
+            }
+            return false;
+        }
+    }
+
+    /** Returns a snapshot of queue depth, worker utilisation and end-to-end latency. */
+    public PipelineStats stats() {
+        long done = completed.sum() + failed.sum();
+        return new PipelineStats(
+                executor.getQueue().size(),
+                queueCapacity,
+                executor.getActiveCount(),
+                executor.getMaximumPoolSize(),
+                completed.sum(),
+                failed.sum(),
+                rejected.sum(),
+                done == 0 ? 0 : TimeUnit.NANOSECONDS.toMillis(latencyNanos.sum() / done),
+                TimeUnit.NANOSECONDS.toMillis(maxLatencyNanos.get())
+        );
+    }
+
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        drain();
+    }
+
+    /**
+     * Stops accepting jobs and waits up to the drain timeout for the accepted ones.
+     *
+     * @return References of the jobs dropped because the drain timed out
+     */
+    List<String> drain() throws InterruptedException {
+        executor.shutdown();
+        logger.info("PaymentPipeline draining {} queued and {} running jobs", executor.getQueue().size(),
+                running.size());
+        if (executor.awaitTermination(drainTimeout.toMillis(), TimeUnit.MILLISECONDS)) {
+            return List.of();
+        }
+        List<String> interrupted = List.copyOf(running);
+        List<String> queued = executor.shutdownNow().stream().map(job -> ((Job) job).reference()).toList();
+        logger.error("PaymentPipeline did not drain within {} ms; transactions left PENDING: "
+                + "not sent to the provider {}, interrupted mid-call {}", drainTimeout.toMillis(), queued, interrupted);
+        return Stream.concat(queued.stream(), interrupted.stream()).toList();
+    }
+
+    /** An accepted job, so that a timed-out drain can report the references it drops. */
+    private record Job(String reference, Runnable task) implements Runnable {
+        @Override
+        public void run() {
+            task.run();
+        }
+    }
+
+    /**
+     * Pipeline statistics.
+     *
+     * @param queueDepth       Jobs waiting for a worker
+     * @param queueCapacity    Maximum queued jobs
+     * @param activeWorkers    Workers currently running a job
+     * @param workers          Total workers
+     * @param completed        Jobs finished without error
+     * @param failed           Jobs that threw
+     * @param rejected         Jobs refused because the queue was full
+     * @param avgLatencyMillis Mean time from acceptance to completion
+     * @param maxLatencyMillis Worst time from acceptance to completion
+     */
+    public record PipelineStats(int queueDepth, int queueCapacity, int activeWorkers, int workers,
+                                long completed, long failed, long rejected,
+                                long avgLatencyMillis, long maxLatencyMillis) {}
+}
@@ -0,0 +1,384 @@
+package com.example.pis.service;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.data.domain.Limit;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.util.StringUtils;
+
+import com.example.pis.dto.PaymentStatusUpdate;
+import com.example.pis.dto.PaymentTransactionSummary;
+import com.example.pis.dto.PendingTransaction;
+import com.example.pis.entity.PaymentOutboxEvent;
+import com.example.pis.entity.PaymentTransaction;
+import com.example.pis.enums.PaymentStatus;
+import com.example.pis.repository.PaymentOutboxRepository;
+import com.example.pis.repository.PaymentTransactionRepository;
+
+/**
+ * Short, self-contained persistence phases for the payment flow.
+ *
+ * <p>Each method runs in its own transaction so that no database connection is
+ * held while a provider call is in progress:
+ * <ol>
+ *   <li>{@link #open} inserts the PENDING row and commits</li>
+ *   <li>the caller talks to the provider outside any transaction</li>
+ *   <li>{@link #complete}, {@link #markInitiated}, {@link #recordSubmission} or {@link #fail}
+ *       records the outcome</li>
+ * </ol>
+ * A second request racing on the same reference loses on the unique
+ * {@code idx_reference} index and receives a
+ * {@link org.springframework.dao.DataIntegrityViolationException} from {@link #open}.</p>
+ *
+ * <p>A payment therefore costs one {@code INSERT} and one guarded
+ * {@code UPDATE ... WHERE status IN (...)}; phase 3 never merges the whole entity.
+ * Like provider callbacks applied through {@link #apply}, every transition is a
+ * compare-and-set on {@link PaymentStatus#sources()}. If the row has already moved
+ * past them, the update matches nothing, the in-memory transaction is refreshed
+ * from the database and the phase reports {@code false}.</p>
+ *
+ * <p>Reference lookups go through {@link IdempotencyCache} first, and every applied
+ * transition is written through to it.</p>
+ *
+ * <p>Every new transaction and every applied transition also inserts a
+ * {@code payment_outbox} row in the same database transaction, so a lifecycle event
+ * exists if and only if the change committed. {@link OutboxRelay} delivers them.</p>
+ */
+@Service
+public class PaymentTransactionService {
+
+    /** Keeps {@code IN} lists well below database parameter limits. */
+    private static final int LOOKUP_CHUNK = 500;
+
+    /** Statuses that still await the provider's outcome. */
+    public static final List<PaymentStatus> UNSETTLED = List.of(PaymentStatus.PENDING, PaymentStatus.INITIATED);
+
+    private static final Logger log = LoggerFactory.getLogger(PaymentTransactionService.class);
+
+    private final PaymentTransactionRepository txRepo;
+    private final ProviderResponseStore responses;
+    private final IdempotencyCache idempotency;
+    private final PaymentOutboxRepository outbox;
+
+    public PaymentTransactionService(PaymentTransactionRepository txRepo, ProviderResponseStore responses,
+                                     IdempotencyCache idempotency, PaymentOutboxRepository outbox) {
+        this.txRepo = txRepo;
+        this.responses = responses;
+        this.idempotency = idempotency;
+        this.outbox = outbox;
+    }
+
+    /** Looks up a transaction by reference; empty for blank references. */
+    @Transactional(readOnly = true)
+    public Optional<PaymentTransaction> find(String reference) {
+        return StringUtils.hasText(reference) ? txRepo.findByReference(reference) : Optional.empty();
+    }
+
+    /**
+     * Status and identifiers for a reference, without loading the entity; empty for blank
+     * references. Served from {@link IdempotencyCache} when possible, so this method opens
+     * no transaction of its own; the repository query runs in a read-only one on a miss.
+     */
+    public Optional<PaymentTransactionSummary> findSummary(String reference) {
+        return StringUtils.hasText(reference)
+                ? idempotency.find(reference, txRepo::findSummaryByReference)
+                : Optional.empty();
+    }
+
+    /**
+     * Claims {@code reference} on this node before {@link #open}. While claimed,
+     * {@link #findSummary} callers for the same reference wait for {@link #release}.
+     *
+     * @return false if the reference is already claimed or known
+     */
+    public boolean claim(String reference) {
+        return idempotency.claim(reference);
+    }
+
+    /** Ends a claim, handing {@code summary} (or nothing, if null) to waiting duplicates. */
+    public void release(String reference, PaymentTransactionSummary summary) {
+        idempotency.release(reference, summary);
+    }
+
+    /** Looks up transactions by reference, {@value #LOOKUP_CHUNK} references per query. */
+    @Transactional(readOnly = true)
+    public List<PaymentTransaction> findAll(List<String> references) {
+        List<PaymentTransaction> found = new ArrayList<>(references.size());
+        for (int i = 0; i < references.size(); i += LOOKUP_CHUNK) {
+            found.addAll(txRepo.findByReferenceIn(references.subList(i, Math.min(i + LOOKUP_CHUNK, references.size()))));
+        }
+        return found;
+    }
+
+    /**
+     * One page of transactions in {@code status} created before {@code before}, oldest
+     * first, resuming after the row ({@code afterCreatedAt}, {@code afterId}).
+     */
+    @Transactional(readOnly = true)
+    public List<PendingTransaction> findPending(PaymentStatus status, Collection<String> providers, Instant afterCreatedAt,
+                                                Long afterId, Instant before, int limit) {
+        return txRepo.findPendingPage(status, providers, afterCreatedAt, afterId, before, Limit.of(limit));
+    }
+
+    /**
+     * Moves the given transactions to {@code status} if they are still in one of its
+     * {@link PaymentStatus#sources()}, with one guarded {@code UPDATE} per
+     * {@value #LOOKUP_CHUNK} rows. The rows found in {@code status} afterwards are read
+     * back for the outbox; a row a callback moved to the same status concurrently is
+     * reported twice, which at-least-once consumers already tolerate.
+     *
+     * @return Number of rows updated
+     */
+    @Transactional
+    public int settleAll(PaymentStatus status, List<PendingTransaction> transactions) {
+        Set<PaymentStatus> from = status.sources();
+        int updated = 0;
+        for (int i = 0; i < transactions.size(); i += LOOKUP_CHUNK) {
+            List<PendingTransaction> chunk = transactions.subList(i, Math.min(i + LOOKUP_CHUNK, transactions.size()));
+            List<Long> ids = chunk.stream().map(PendingTransaction::id).toList();
+            int moved = txRepo.transitionAll(ids, from, status);
+            if (moved > 0) {
+                recordAll(txRepo.findSummariesByIdInAndStatus(ids, status));
+            }
+            updated += moved;
+        }
+        List<String> references = transactions.stream().map(PendingTransaction::reference).toList();
+        afterCommit(() -> references.forEach(idempotency::invalidate));
+        return updated;
+    }
+
+    /** Phase 1: persists a PENDING transaction and commits. */
+    @Transactional
+    public PaymentTransaction open(String provider, String operation, String reference, Long amount, String currency) {
+        PaymentTransaction tx = pending(provider, operation, reference, amount, currency);
+        txRepo.save(tx);
+        PaymentTransactionSummary summary = PaymentTransactionSummary.of(tx);
+        record(summary);
+        cacheAfterCommit(summary);
+        return tx;
+    }
+
+    /**
+     * Phase 1 for a batch: persists PENDING transactions in one transaction. IDs are
+     * assigned in memory, so Hibernate sends the inserts in JDBC batches of
+     * {@code hibernate.jdbc.batch_size}.
+     */
+    @Transactional
+    public void openAll(List<PaymentTransaction> transactions) {
+        txRepo.saveAll(transactions);
+        recordAll(transactions.stream().map(PaymentTransactionSummary::of).toList());
+    }
+
+    /** New, unsaved PENDING transaction. */
+    public static PaymentTransaction pending(String provider, String operation, String reference, Long amount,
+                                             String currency) {
+        PaymentTransaction tx = new PaymentTransaction();
+        tx.setProvider(provider);
+        tx.setOperation(operation);
+        tx.setAmount(amount);
+        tx.setCurrency(currency);
+        tx.setReference(reference);
+        tx.setStatus(PaymentStatus.PENDING);
+        tx.setCreatedAt(Instant.now());
+        return tx;
+    }
+
+    /**
+     * Phase 3: records the final status, plus the raw provider response in its own table.
+     *
+     * @return false if the transaction had already been settled; nothing is written then
+     */
+    @Transactional
+    public boolean complete(PaymentTransaction tx, String provider, String responseBody, String providerTxId, boolean success) {
+        tx.updatePaymentResponse(provider, providerTxId, success);
+        if (!transition(tx)) return false;
+        if (responseBody != null) {
+            responses.save(tx, provider, responseBody);
+        }
+        return true;
+    }
+
+    /**
+     * Phase 3 for flows the provider confirms later (e.g. Stripe PaymentIntents).
+     *
+     * @return false if the transaction was no longer PENDING
+     */
+    @Transactional
+    public boolean markInitiated(PaymentTransaction tx, String clientSecret) {
+        tx.setClientSecret(clientSecret);
+        tx.markInitiated();
+        return transition(tx);
+    }
+
+    /**
+     * Phase 3 for MTN and Airtel requests. These providers only acknowledge a request
+     * synchronously (MTN answers 202 with an empty body) and report the outcome later
+     * through a callback or {@link PendingStatusPoller}, so an acknowledged request moves
+     * to INITIATED and only an explicit rejection, a non-2xx status, to FAILED. The raw
+     * response is stored either way.
+     *
+     * @param httpStatus Status code the provider answered with; null if there was no response
+     * @return false if the transaction had already moved on; nothing is written then
+     */
+    @Transactional
+    public boolean recordSubmission(PaymentTransaction tx, String provider, String httpStatus, String responseBody) {
+        if (isAccepted(httpStatus)) {
+            tx.markInitiated();
+        } else {
+            tx.markFailed();
+        }
+        if (!transition(tx)) return false;
+        if (responseBody != null) {
+            responses.save(tx, provider, responseBody);
+        }
+        return true;
+    }
+
+    private static boolean isAccepted(String httpStatus) {
+        try {
+            int code = Integer.parseInt(String.valueOf(httpStatus).trim());
+            return code >= 200 && code < 300;
+        } catch (NumberFormatException ex) {
+            return false;
+        }
+    }
+
+    /**
+     * Phase 3 when the provider call failed.
+     *
+     * @return false if the transaction had already been settled
+     */
+    @Transactional
+    public boolean fail(PaymentTransaction tx) {
+        tx.markFailed();
+        return transition(tx);
+    }
+
+    /**
+     * Applies a provider-reported status with one compare-and-set {@code UPDATE}, keyed
+     * on the reference if the callback carries one, else on the provider-side id.
+     * Duplicate and out-of-order callbacks find the row outside the status's
+     * {@link PaymentStatus#sources()} and change nothing; no row is locked or read
+     * before the write.
+     *
+     * <p>The write is followed by one DTO read either way. An applied update reads the
+     * row back because its outbox event carries the amount, currency and ID, which a
+     * callback does not, and MySQL has no {@code UPDATE ... RETURNING}; the summary then
+     * also primes {@link IdempotencyCache}. An update that matched nothing reads the row
+     * to tell a stale callback from one for a transaction not yet known, which
+     * {@link WebhookJournal} retries with backoff.</p>
+     *
+     * @return whether the update was applied, was stale, or matched no transaction
+     */
+    @Transactional
+    public StatusUpdateResult apply(PaymentStatusUpdate update) {
+        PaymentStatus status = update.status();
+        if (StringUtils.hasText(update.reference())) {
+            int updated = txRepo.transitionByReference(update.provider(), update.reference(), status.sources(),
+                    status, update.providerTransactionId());
+            if (updated > 0) {
+                txRepo.findSummaryByReference(update.reference()).ifPresent(summary -> {
+                    record(summary);
+                    cacheAfterCommit(summary);
+                });
+                return StatusUpdateResult.APPLIED;
+            }
+            return txRepo.findSummaryByReference(update.reference())
+                    .filter(summary -> summary.provider().equals(update.provider()))
+                    .map(summary -> stale(update, summary))
+                    .orElse(StatusUpdateResult.UNKNOWN);
+        }
+        if (!StringUtils.hasText(update.providerTransactionId())) {
+            return StatusUpdateResult.UNKNOWN;
+        }
+
+        int updated = txRepo.transitionByProviderTransactionId(update.provider(), update.providerTransactionId(),
+                status.sources(), status);
+        List<PaymentTransactionSummary> matches =
+                txRepo.findSummariesByProviderTransactionId(update.provider(), update.providerTransactionId());
+        if (updated > 0) {
+            List<PaymentTransactionSummary> moved = matches.stream().filter(m -> m.status() == status).toList();
+            recordAll(moved);
+            moved.forEach(this::cacheAfterCommit);
+            return StatusUpdateResult.APPLIED;
+        }
+        return matches.isEmpty() ? StatusUpdateResult.UNKNOWN : stale(update, matches.get(0));
+    }
+
+    private static StatusUpdateResult stale(PaymentStatusUpdate update, PaymentTransactionSummary current) {
+        log.debug("Ignoring {} for {} transaction {}: already {}", update.status(), update.provider(),
+                current.reference(), current.status());
+        return StatusUpdateResult.STALE;
+    }
+
+    /** Applies the in-memory outcome of {@code tx} if its row may still move there, else resyncs {@code tx}. */
+    private boolean transition(PaymentTransaction tx) {
+        PaymentStatus attempted = tx.getStatus();
+        int updated = txRepo.transition(tx.getId(), attempted.sources(), attempted,
+                tx.getProviderTransactionId(), tx.getClientSecret());
+        if (updated == 1) {
+            PaymentTransactionSummary summary = PaymentTransactionSummary.of(tx);
+            record(summary);
+            cacheAfterCommit(summary);
+            return true;
+        }
+
+        txRepo.findSummaryByReference(tx.getReference()).ifPresent(current -> {
+            tx.setStatus(current.status());
+            tx.setProviderTransactionId(current.providerTransactionId());
+            tx.setClientSecret(current.clientSecret());
+        });
+        log.info("Transaction {} already moved on (now {}); not applying {}",
+                tx.getReference(), tx.getStatus(), attempted);
+        return false;
+    }
+
+    /** Adds the lifecycle event for a change to the current transaction's outbox rows. */
+    private void record(PaymentTransactionSummary summary) {
+        outbox.save(new PaymentOutboxEvent(summary, Instant.now()));
+    }
+
+    private void recordAll(List<PaymentTransactionSummary> summaries) {
+        if (summaries.isEmpty()) return;
+        Instant now = Instant.now();
+        outbox.saveAll(summaries.stream().map(summary -> new PaymentOutboxEvent(summary, now)).toList());
+    }
+
+    /** Writes through to the idempotency cache once the current transaction has committed. */
+    private void cacheAfterCommit(PaymentTransactionSummary summary) {
+        afterCommit(() -> idempotency.put(summary));
+    }
+
+    private static void afterCommit(Runnable action) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            action.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                action.run();
+            }
+        });
+    }
+
+    /** Outcome of {@link #apply}. */
+    public enum StatusUpdateResult {
+        /** The transaction moved to the reported status. */
+        APPLIED,
+        /** The transaction was already in, or past, the reported status. */
+        STALE,
+        /** No transaction of that provider matched. */
+        UNKNOWN
+    }
+}
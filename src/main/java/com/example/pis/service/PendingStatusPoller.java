@@ -0,0 +1,281 @@
+package com.example.pis.service;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.env.Environment;
+import org.springframework.stereotype.Component;
+
+import com.example.pis.dto.PendingTransaction;
+import com.example.pis.enums.PaymentStatus;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+
+/**
+ * Settles MTN and Airtel transactions whose provider callback never arrived.
+ *
+ * <p>Every {@code payments.poller.intervalSeconds} the poller pages through PENDING
+ * and INITIATED rows older than {@code minAgeSeconds} and younger than
+ * {@code maxAgeHours}, oldest first, using {@code idx_status_created_at}. Due rows
+ * are grouped per provider and their status is read on a per-provider pool of
+ * {@code payments.poller.<provider>.concurrency} threads (falling back to
+ * {@code payments.poller.default.concurrency}). Settled outcomes are written with
+ * one guarded update per status; rows the provider still reports as in progress,
+ * or whose lookup failed, are retried after an exponential backoff starting at
+ * {@code initialBackoffSeconds} and capped at {@code maxBackoffSeconds}.</p>
+ *
+ * <p>Backoff state is node-local. Status reads are idempotent and the update only
+ * applies to unsettled rows, so several nodes polling is safe but wasteful; set
+ * {@code payments.poller.enabled=false} on all but one. Rows older than
+ * {@code maxAgeHours} are no longer polled and are left for reconciliation.</p>
+ */
+@Component
+public class PendingStatusPoller {
+
+    private static final Logger logger = LoggerFactory.getLogger(PendingStatusPoller.class);
+
+    static final List<String> PROVIDERS = List.of("mtn", "airtel");
+
+    private final PaymentTransactionService txService;
+    private final MtnService mtnService;
+    private final AirtelService airtelService;
+    private final ObjectMapper mapper;
+    private final Environment env;
+    private final Clock clock;
+
+    private final boolean enabled;
+    private final Duration interval;
+    private final Duration minAge;
+    private final Duration maxAge;
+    private final int pageSize;
+    private final int maxPerCycle;
+    private final int maxScannedPerCycle;
+    private final long initialBackoffMs;
+    private final long maxBackoffMs;
+
+    private final Map<Long, Backoff> backoffs = new ConcurrentHashMap<>();
+    private final Map<String, ExecutorService> executors = new ConcurrentHashMap<>();
+    private ScheduledExecutorService scheduler;
+
+    @Autowired
+    public PendingStatusPoller(PaymentTransactionService txService, MtnService mtnService,
+                               AirtelService airtelService, ObjectMapper mapper, Environment env) {
+        this(txService, mtnService, airtelService, mapper, env, Clock.systemUTC());
+    }
+
+    PendingStatusPoller(PaymentTransactionService txService, MtnService mtnService, AirtelService airtelService,
+                        ObjectMapper mapper, Environment env, Clock clock) {
+        this.txService = txService;
+        this.mtnService = mtnService;
+        this.airtelService = airtelService;
+        this.mapper = mapper;
+        this.env = env;
+        this.clock = clock;
+        this.enabled = env.getProperty("payments.poller.enabled", Boolean.class, true);
+        this.interval = Duration.ofSeconds(env.getProperty("payments.poller.intervalSeconds", Long.class, 30L));
+        this.minAge = Duration.ofSeconds(env.getProperty("payments.poller.minAgeSeconds", Long.class, 60L));
+        this.maxAge = Duration.ofHours(env.getProperty("payments.poller.maxAgeHours", Long.class, 72L));
+        this.pageSize = env.getProperty("payments.poller.pageSize", Integer.class, 200);
+        this.maxPerCycle = env.getProperty("payments.poller.maxPerCycle", Integer.class, 500);
+        this.maxScannedPerCycle = env.getProperty("payments.poller.maxScannedPerCycle", Integer.class, 10_000);
+        this.initialBackoffMs = env.getProperty("payments.poller.initialBackoffSeconds", Long.class, 30L) * 1000;
+        this.maxBackoffMs = env.getProperty("payments.poller.maxBackoffSeconds", Long.class, 1800L) * 1000;
+    }
+
+    @PostConstruct
+    public void start() {
+        if (!enabled) {
+            logger.info("Pending status poller disabled");
+            return;
+        }
+        scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "payment-status-poller");
+            t.setDaemon(true);
+            return t;
+        });
+        long intervalMs = interval.toMillis();
+        scheduler.scheduleWithFixedDelay(() -> {
+            try {
+                poll();
+            } catch (RuntimeException ex) {
+                logger.warn("Pending status poll failed: {}", ex.getMessage(), ex);
+            }
+        }, intervalMs, intervalMs, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        if (scheduler != null) scheduler.shutdownNow();
+        executors.values().forEach(ExecutorService::shutdownNow);
+        for (ExecutorService executor : executors.values()) {
+            executor.awaitTermination(5, TimeUnit.SECONDS);
+        }
+    }
+
+    /** Runs one polling cycle: scan, query providers, write settled outcomes. */
+    public Cycle poll() {
+        Instant now = clock.instant();
+        long nowMs = now.toEpochMilli();
+        backoffs.values().removeIf(b -> b.createdAt.isBefore(now.minus(maxAge)));
+
+        List<PendingTransaction> due = scan(now, nowMs);
+        List<Check> checks = new ArrayList<>(due.size());
+        for (PendingTransaction tx : due) {
+            checks.add(new Check(tx, executor(tx.provider()).submit(() -> check(tx))));
+        }
+
+        Map<PaymentStatus, List<PendingTransaction>> settled = new LinkedHashMap<>();
+        int errors = 0;
+        for (Check check : checks) {
+            PendingTransaction tx = check.tx;
+            try {
+                PaymentStatus status = check.outcome.get();
+                if (status != null) {
+                    settled.computeIfAbsent(status, s -> new ArrayList<>()).add(tx);
+                    backoffs.remove(tx.id());
+                } else {
+                    backOff(tx, nowMs);
+                }
+            } catch (ExecutionException ex) {
+                errors++;
+                backOff(tx, nowMs);
+                logger.debug("Status check failed: ref={}, {}", tx.reference(), ex.getCause().getMessage());
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+
+        int updated = 0;
+        for (Map.Entry<PaymentStatus, List<PendingTransaction>> entry : settled.entrySet()) {
+            updated += txService.settleAll(entry.getKey(), entry.getValue());
+        }
+        if (!due.isEmpty()) {
+            logger.info("Polled {} pending transactions: {} settled, {} lookups failed", due.size(), updated, errors);
+        }
+        return new Cycle(due.size(), updated, errors);
+    }
+
+    /** Pages through unsettled rows in the polling window, collecting those whose backoff has elapsed. */
+    private List<PendingTransaction> scan(Instant now, long nowMs) {
+        Instant before = now.minus(minAge);
+        List<PendingTransaction> due = new ArrayList<>();
+        int scanned = 0;
+        for (PaymentStatus status : PaymentTransactionService.UNSETTLED) {
+            Instant afterCreatedAt = now.minus(maxAge);
+            long afterId = Long.MIN_VALUE;
+            while (due.size() < maxPerCycle && scanned < maxScannedPerCycle) {
+                List<PendingTransaction> page =
+                        txService.findPending(status, PROVIDERS, afterCreatedAt, afterId, before, pageSize);
+                scanned += page.size();
+                for (PendingTransaction tx : page) {
+                    if (due.size() < maxPerCycle && isDue(tx, nowMs)) due.add(tx);
+                }
+                if (page.size() < pageSize) break;
+                PendingTransaction last = page.get(page.size() - 1);
+                afterCreatedAt = last.createdAt();
+                afterId = last.id();
+            }
+        }
+        return due;
+    }
+
+    /** @return the settled status once the provider has decided the outcome, else null */
+    private PaymentStatus check(PendingTransaction tx) {
+        boolean withdrawal = "withdraw".equals(tx.operation());
+        String body = switch (tx.provider()) {
+            case "mtn" -> withdrawal
+                    ? mtnService.getWithdrawalStatus(tx.reference()).getBody()
+                    : mtnService.getCollectionStatus(tx.reference()).getBody();
+            case "airtel" -> withdrawal
+                    ? airtelService.getWithdrawalStatus(tx.reference()).getBody()
+                    : airtelService.getCollectionStatus(tx.reference()).getBody();
+            default -> throw new IllegalArgumentException("Unsupported provider: " + tx.provider());
+        };
+        return settledStatus(tx.provider(), body);
+    }
+
+    /**
+     * Maps a provider status body to a settled status; null while in progress or unreadable.
+     * MTN reports a top-level {@code status}; Airtel reports {@code data.transaction.status}
+     * as TS (success), TF (failed) or TA/TIP (in progress).
+     */
+    PaymentStatus settledStatus(String provider, String body) {
+        if (body == null || body.isBlank()) return null;
+        JsonNode root;
+        try {
+            root = mapper.readTree(body);
+        } catch (JsonProcessingException ex) {
+            logger.debug("Unreadable {} status body: {}", provider, ex.getOriginalMessage());
+            return null;
+        }
+        JsonNode status = "airtel".equals(provider)
+                ? root.path("data").path("transaction").path("status")
+                : root.path("status");
+        PaymentStatus mapped = PaymentStatus.fromProviderStatus(status.asText(""));
+        return mapped != null && mapped.isSettled() ? mapped : null;
+    }
+
+    private boolean isDue(PendingTransaction tx, long nowMs) {
+        Backoff backoff = backoffs.get(tx.id());
+        return backoff == null || backoff.nextAt <= nowMs;
+    }
+
+    private void backOff(PendingTransaction tx, long nowMs) {
+        backoffs.compute(tx.id(), (id, previous) -> {
+            int attempts = previous == null ? 1 : previous.attempts + 1;
+            long delay = Math.min(maxBackoffMs, initialBackoffMs << Math.min(attempts - 1, 20));
+            return new Backoff(attempts, nowMs + delay, tx.createdAt());
+        });
+    }
+
+    private ExecutorService executor(String provider) {
+        return executors.computeIfAbsent(provider, p -> {
+            AtomicInteger threadCount = new AtomicInteger();
+            return Executors.newFixedThreadPool(intSetting(p, "concurrency", 4), r -> {
+                Thread t = new Thread(r, "payment-poller-" + p + "-" + threadCount.incrementAndGet());
+                t.setDaemon(true);
+                return t;
+            });
+        });
+    }
+
+    private int intSetting(String provider, String key, int defaultValue) {
+        Integer value = env.getProperty("payments.poller." + provider + "." + key, Integer.class);
+        if (value != null) return value;
+        return env.getProperty("payments.poller.default." + key, Integer.class, defaultValue);
+    }
+
+    private record Check(PendingTransaction tx, Future<PaymentStatus> outcome) {}
+
+    private record Backoff(int attempts, long nextAt, Instant createdAt) {}
+
+    /**
+     * Result of one polling cycle.
+     *
+     * @param checked Transactions whose status was queried
+     * @param settled Transactions moved to a settled status
+     * @param errors  Status queries that failed
+     */
+    public record Cycle(int checked, int settled, int errors) {}
+}
@@ -0,0 +1,151 @@
+package com.example.pis.service;
+
+import java.time.Clock;
+import java.time.Duration;
+
+/**
+ * Count-based circuit breaker for one provider.
+ *
+ * <p>The outcomes of the last {@code windowSize} calls are kept in a ring. Once at
+ * least {@code minimumCalls} have been recorded, the breaker opens when the
+ * failure rate or the slow-call rate reaches its threshold. After
+ * {@code openDuration} it lets {@code halfOpenCalls} trial calls through and
+ * closes again only if those stay under both thresholds.</p>
+ *
+ * <p>State changes are rare and calls are I/O bound, so a monitor is enough.</p>
+ */
+public class ProviderCircuitBreaker {
+
+    public enum State { CLOSED, OPEN, HALF_OPEN }
+
+    /** Notified after every state change, outside the breaker's lock. */
+    @FunctionalInterface
+    public interface TransitionListener {
+        void onTransition(State from, State to);
+    }
+
+    /**
+     * Breaker thresholds.
+     *
+     * @param windowSize           Calls kept in the sliding window
+     * @param minimumCalls         Calls needed before the rates are evaluated
+     * @param failureRateThreshold Failure percentage that opens the breaker
+     * @param slowCallRateThreshold Slow-call percentage that opens the breaker
+     * @param slowCallDuration     Calls at least this long count as slow
+     * @param openDuration         Time spent open before trial calls are allowed
+     * @param halfOpenCalls        Trial calls allowed while half-open
+     */
+    public record Settings(int windowSize, int minimumCalls, int failureRateThreshold, int slowCallRateThreshold,
+                           Duration slowCallDuration, Duration openDuration, int halfOpenCalls) {}
+
+    private final Settings settings;
+    private final Clock clock;
+    private final TransitionListener listener;
+
+    // Ring of outcomes; bit 0 = failed, bit 1 = slow
+    private final byte[] window;
+    private int next;
+    private int recorded;
+    private int failures;
+    private int slowCalls;
+
+    private State state = State.CLOSED;
+    private long openUntil;
+    private int halfOpenPermits;
+
+    public ProviderCircuitBreaker(Settings settings, Clock clock, TransitionListener listener) {
+        this.settings = settings;
+        this.clock = clock;
+        this.listener = listener;
+        this.window = new byte[settings.windowSize()];
+    }
+
+    /** Returns true if a call may proceed; a granted call must be followed by {@link #onResult}. */
+    public boolean tryAcquirePermission() {
+        State from = null;
+        synchronized (this) {
+            if (state == State.CLOSED) return true;
+            if (state == State.OPEN) {
+                if (clock.millis() < openUntil) return false;
+                from = transition(State.HALF_OPEN);
+            }
+            if (halfOpenPermits == 0) return false;
+            halfOpenPermits--;
+        }
+        fireTransition(from, State.HALF_OPEN);
+        return true;
+    }
+
+    /**
+     * Records the outcome of a permitted call.
+     *
+     * @param failed   The provider failed or could not be reached
+     * @param duration Call duration, compared against the slow-call threshold
+     */
+    public void onResult(boolean failed, Duration duration) {
+        boolean slow = duration.compareTo(settings.slowCallDuration()) >= 0;
+        State from = null;
+        State to = null;
+        synchronized (this) {
+            if (state == State.OPEN) return; // late result from before the breaker opened
+            record(failed, slow);
+
+            if (state == State.HALF_OPEN) {
+                if (recorded >= settings.halfOpenCalls()) {
+                    to = thresholdExceeded() ? State.OPEN : State.CLOSED;
+                }
+            } else if (recorded >= settings.minimumCalls() && thresholdExceeded()) {
+                to = State.OPEN;
+            }
+            if (to != null) from = transition(to);
+        }
+        if (to != null) fireTransition(from, to);
+    }
+
+    public synchronized State state() {
+        return state;
+    }
+
+    /** Time left before an open breaker allows trial calls. */
+    public synchronized Duration retryAfter() {
+        return state == State.OPEN
+                ? Duration.ofMillis(Math.max(openUntil - clock.millis(), 0))
+                : Duration.ZERO;
+    }
+
+    private boolean thresholdExceeded() {
+        return failures * 100 >= settings.failureRateThreshold() * recorded
+                || slowCalls * 100 >= settings.slowCallRateThreshold() * recorded;
+    }
+
+    private void record(boolean failed, boolean slow) {
+        if (recorded == window.length) {
+            byte evicted = window[next];
+            if ((evicted & 1) != 0) failures--;
+            if ((evicted & 2) != 0) slowCalls--;
+        } else {
+            recorded++;
+        }
+        window[next] = (byte) ((failed ? 1 : 0) | (slow ? 2 : 0));
+        next = (next + 1) % window.length;
+        if (failed) failures++;
+        if (slow) slowCalls++;
+    }
+
+    /** Switches state and starts a fresh window; returns the previous state. */
+    private State transition(State to) {
+        State from = state;
+        state = to;
+        next = 0;
+        recorded = 0;
+        failures = 0;
+        slowCalls = 0;
+        if (to == State.OPEN) openUntil = clock.millis() + settings.openDuration().toMillis();
+        if (to == State.HALF_OPEN) halfOpenPermits = settings.halfOpenCalls();
+        return from;
+    }
+
+    private void fireTransition(State from, State to) {
+        if (from != null && from != to) listener.onTransition(from, to);
+    }
+}
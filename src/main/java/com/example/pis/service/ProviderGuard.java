@@ -0,0 +1,341 @@
+package com.example.pis.service;
+
+import java.io.IOException;
+import java.time.Clock;
+import java.time.Duration;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+import java.util.function.ToIntFunction;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.env.Environment;
+import org.springframework.stereotype.Component;
+import org.springframework.web.client.ResourceAccessException;
+
+import com.example.pis.exception.ProviderUnavailableException;
+import com.example.pis.service.PaymentMetrics.ProviderCall;
+import com.example.pis.service.ProviderCircuitBreaker.State;
+import com.stripe.exception.ApiConnectionException;
+
+import jakarta.annotation.PreDestroy;
+
+/**
+ * Circuit breaker plus concurrency bulkhead in front of every provider call.
+ *
+ * <p>Each provider gets its own breaker and bulkhead, so a degraded provider fails
+ * fast with {@link ProviderUnavailableException} instead of tying up request
+ * threads that the other providers need. Settings are read per provider from
+ * {@code provider.resilience.<name>.*}, falling back to
+ * {@code provider.resilience.default.*}.</p>
+ *
+ * <p>Timeouts, connection errors, 5xx and 429 responses count as failures; other
+ * 4xx responses mean the provider is up and count as successes. Idempotent calls
+ * can additionally be retried with jittered backoff ({@code retry*} settings) and
+ * status reads hedged after a latency percentile ({@code hedge*} settings).</p>
+ *
+ * <p>Only status reads use the {@link AdaptiveTimeouts adaptive response timeout}.
+ * Every other call, above all the non-idempotent payment requests, waits the full
+ * {@code readTimeoutMs}: a payment request cut short may still be carried out by the
+ * provider, see {@link #isOutcomeUnknown}.</p>
+ */
+@Component
+public class ProviderGuard {
+
+    private static final Logger logger = LoggerFactory.getLogger(ProviderGuard.class);
+
+    private final Environment env;
+    private final PaymentMetrics metrics;
+    private final AdaptiveTimeouts timeouts;
+    private final Clock clock;
+    private final Map<String, Guard> guards = new ConcurrentHashMap<>();
+    private final ExecutorService hedgeExecutor;
+
+    @Autowired
+    public ProviderGuard(Environment env, PaymentMetrics metrics, AdaptiveTimeouts timeouts) {
+        this(env, metrics, timeouts, Clock.systemUTC());
+    }
+
+    ProviderGuard(Environment env, PaymentMetrics metrics, AdaptiveTimeouts timeouts, Clock clock) {
+        this.env = env;
+        this.metrics = metrics;
+        this.timeouts = timeouts;
+        this.clock = clock;
+        AtomicInteger threadCount = new AtomicInteger();
+        this.hedgeExecutor = Executors.newCachedThreadPool(r -> {
+            Thread t = new Thread(r, "provider-hedge-" + threadCount.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    /**
+     * Runs a provider call through the provider's bulkhead and circuit breaker,
+     * timing it with {@link PaymentMetrics#recordProviderCall}. HTTP requests made by
+     * the call use the provider's fixed {@code readTimeoutMs}.
+     *
+     * @throws ProviderUnavailableException if the breaker is open or the bulkhead is full
+     */
+    public <T, E extends Exception> T execute(String provider, String operation,
+                                              ProviderCall<T, E> call,
+                                              ToIntFunction<? super T> statusOf) throws E {
+        return execute(provider, operation, call, statusOf, false);
+    }
+
+    private <T, E extends Exception> T execute(String provider, String operation, ProviderCall<T, E> call,
+                                               ToIntFunction<? super T> statusOf, boolean adaptiveTimeout) throws E {
+        Guard guard = guard(provider);
+        if (!guard.acquireBulkhead()) {
+            metrics.recordRejectedCall(provider, "bulkhead_full");
+            throw new ProviderUnavailableException(provider,
+                    "Too many concurrent calls to " + provider, Duration.ZERO);
+        }
+        try {
+            if (!guard.breaker.tryAcquirePermission()) {
+                metrics.recordRejectedCall(provider, "circuit_open");
+                throw new ProviderUnavailableException(provider,
+                        "Circuit breaker open for " + provider, guard.breaker.retryAfter());
+            }
+            Duration timeout = adaptiveTimeout
+                    ? timeouts.timeoutFor(provider, operation)
+                    : timeouts.fixedTimeout(provider);
+            long start = System.nanoTime();
+            boolean failed = true;
+            try {
+                T result = ProviderHttpClientFactory.withResponseTimeout(timeout,
+                        () -> metrics.recordProviderCall(provider, operation, call, statusOf));
+                failed = false;
+                timeouts.record(provider, operation, Duration.ofNanos(System.nanoTime() - start));
+                return result;
+            } catch (Exception ex) {
+                failed = isProviderFailure(ex);
+                if (!failed) {
+                    timeouts.record(provider, operation, Duration.ofNanos(System.nanoTime() - start));
+                } else if (PaymentMetrics.isTimeout(ex)) {
+                    // Let the window see that the limit was hit so the timeout can grow back
+                    timeouts.record(provider, operation, timeout);
+                }
+                throw ex;
+            } finally {
+                guard.breaker.onResult(failed, Duration.ofNanos(System.nanoTime() - start));
+            }
+        } finally {
+            guard.bulkhead.release();
+        }
+    }
+
+    /**
+     * Like {@link #execute}, but retries provider failures with exponential backoff and
+     * full jitter. Only for idempotent calls such as token fetches and status queries;
+     * an open breaker or full bulkhead is never retried.
+     */
+    public <T, E extends Exception> T executeIdempotent(String provider, String operation,
+                                                        ProviderCall<T, E> call,
+                                                        ToIntFunction<? super T> statusOf) throws E {
+        return executeIdempotent(provider, operation, call, statusOf, false);
+    }
+
+    private <T, E extends Exception> T executeIdempotent(String provider, String operation, ProviderCall<T, E> call,
+                                                         ToIntFunction<? super T> statusOf,
+                                                         boolean adaptiveTimeout) throws E {
+        Guard guard = guard(provider);
+        for (int attempt = 1; ; attempt++) {
+            try {
+                return execute(provider, operation, call, statusOf, adaptiveTimeout);
+            } catch (ProviderUnavailableException ex) {
+                throw ex;
+            } catch (Exception ex) {
+                if (attempt >= guard.retryMaxAttempts || !isProviderFailure(ex)) throw ex;
+                long cap = Math.min(guard.retryMaxDelayMs, guard.retryBaseDelayMs << Math.min(attempt - 1, 20));
+                long delayMs = ThreadLocalRandom.current().nextLong(cap + 1);
+                metrics.recordRetry(provider, operation);
+                logger.debug("Retrying provider={} operation={} in {}ms after attempt {}: {}",
+                        provider, operation, delayMs, attempt, ex.getMessage());
+                try {
+                    Thread.sleep(delayMs);
+                } catch (InterruptedException ie) {
+                    Thread.currentThread().interrupt();
+                    throw ex;
+                }
+            }
+        }
+    }
+
+    /**
+     * Idempotent status read with an optional hedge: when {@code hedgeEnabled} is set and
+     * the first attempt has not answered by the endpoint's {@code hedgePercentile} latency,
+     * a second attempt is started and the first successful answer wins. Without enough
+     * latency samples it falls back to {@link #executeIdempotent}. Attempts use the
+     * endpoint's adaptive response timeout.
+     */
+    public <T> T executeHedged(String provider, String operation, Supplier<T> call,
+                               ToIntFunction<? super T> statusOf) {
+        Guard guard = guard(provider);
+        Optional<Duration> hedgeAfter = guard.hedgeEnabled
+                ? timeouts.latency(provider, operation, guard.hedgePercentile)
+                : Optional.empty();
+        if (hedgeAfter.isEmpty()) {
+            return executeIdempotent(provider, operation, call::get, statusOf, true);
+        }
+
+        long delayNanos = Math.max(hedgeAfter.get().toNanos(), TimeUnit.MILLISECONDS.toNanos(guard.hedgeMinDelayMs));
+        CompletableFuture<T> primary = attempt(provider, operation, call, statusOf);
+        try {
+            return primary.get(delayNanos, TimeUnit.NANOSECONDS);
+        } catch (TimeoutException slow) {
+            return race(provider, operation, primary, attempt(provider, operation, call, statusOf));
+        } catch (ExecutionException ex) {
+            throw unwrap(ex.getCause());
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted waiting for " + provider + " " + operation, ex);
+        }
+    }
+
+    /**
+     * True if a failed call may still have been carried out by the provider: it timed
+     * out or broke off with an I/O error after the request may have gone out, or the
+     * provider answered 5xx, 408, or 409 (a request with the same ID already exists).
+     * A payment that failed this way must stay unsettled until a callback or
+     * {@link PendingStatusPoller} reports its outcome. Rejections, calls refused by the
+     * breaker or bulkhead, and invalid requests are known not to have been carried out.
+     */
+    public static boolean isOutcomeUnknown(Throwable ex) {
+        for (Throwable t = ex; t != null; t = t.getCause()) {
+            if (t instanceof ProviderUnavailableException) return false;
+            if (t instanceof ResourceAccessException || t instanceof IOException
+                    || t instanceof ApiConnectionException || PaymentMetrics.isTimeout(t)) {
+                return true;
+            }
+            int status = t instanceof Exception e ? PaymentMetrics.statusOf(e) : -1;
+            if (status > 0) return status >= 500 || status == 408 || status == 409;
+        }
+        return false;
+    }
+
+    /** Current breaker state for a provider. */
+    public State state(String provider) {
+        return guard(provider).breaker.state();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        hedgeExecutor.shutdownNow();
+    }
+
+    private <T> CompletableFuture<T> attempt(String provider, String operation, Supplier<T> call,
+                                             ToIntFunction<? super T> statusOf) {
+        return CompletableFuture.supplyAsync(() -> execute(provider, operation, call::get, statusOf, true),
+                hedgeExecutor);
+    }
+
+    /** Waits for the first successful attempt; fails only if both fail. The loser is left to finish. */
+    private <T> T race(String provider, String operation, CompletableFuture<T> primary, CompletableFuture<T> hedge) {
+        CompletableFuture<Boolean> hedgeWon = new CompletableFuture<>();
+        CompletableFuture<T> winner = new CompletableFuture<>();
+        AtomicInteger failures = new AtomicInteger();
+        primary.whenComplete((result, ex) -> settle(winner, hedgeWon, failures, false, result, ex));
+        hedge.whenComplete((result, ex) -> settle(winner, hedgeWon, failures, true, result, ex));
+        try {
+            T result = winner.join();
+            metrics.recordHedge(provider, operation, hedgeWon.getNow(false) ? "hedge" : "primary");
+            return result;
+        } catch (CompletionException ex) {
+            metrics.recordHedge(provider, operation, "none");
+            throw unwrap(ex.getCause());
+        }
+    }
+
+    private static <T> void settle(CompletableFuture<T> winner, CompletableFuture<Boolean> hedgeWon,
+                                   AtomicInteger failures, boolean isHedge, T result, Throwable ex) {
+        if (ex == null) {
+            if (winner.complete(result)) hedgeWon.complete(isHedge);
+        } else if (failures.incrementAndGet() == 2) {
+            winner.completeExceptionally(ex instanceof CompletionException ? ex.getCause() : ex);
+        }
+    }
+
+    private static RuntimeException unwrap(Throwable cause) {
+        if (cause instanceof RuntimeException re) return re;
+        if (cause instanceof Error err) throw err;
+        return new IllegalStateException(cause);
+    }
+
+    private static boolean isProviderFailure(Exception ex) {
+        int status = PaymentMetrics.statusOf(ex);
+        return status < 400 || status >= 500 || status == 429;
+    }
+
+    private Guard guard(String provider) {
+        return guards.computeIfAbsent(provider, this::createGuard);
+    }
+
+    private Guard createGuard(String provider) {
+        var settings = new ProviderCircuitBreaker.Settings(
+                intSetting(provider, "windowSize", 20),
+                intSetting(provider, "minimumCalls", 10),
+                intSetting(provider, "failureRateThreshold", 50),
+                intSetting(provider, "slowCallRateThreshold", 80),
+                Duration.ofMillis(intSetting(provider, "slowCallMs", 5_000)),
+                Duration.ofSeconds(intSetting(provider, "openSeconds", 30)),
+                intSetting(provider, "halfOpenCalls", 3));
+        int maxConcurrentCalls = intSetting(provider, "maxConcurrentCalls", 50);
+        long maxWaitMs = intSetting(provider, "maxWaitMs", 0);
+
+        ProviderCircuitBreaker breaker = new ProviderCircuitBreaker(settings, clock, (from, to) -> {
+            logger.warn("Circuit breaker for provider={} moved {} -> {}", provider, from, to);
+            metrics.recordCircuitTransition(provider, from, to);
+        });
+        Semaphore bulkhead = new Semaphore(maxConcurrentCalls);
+        metrics.bindProviderGuard(provider, breaker, bulkhead);
+
+        logger.info("Provider guard for provider={} created: window={}, failureRate={}%, slowCall={}ms, maxConcurrentCalls={}",
+                provider, settings.windowSize(), settings.failureRateThreshold(),
+                settings.slowCallDuration().toMillis(), maxConcurrentCalls);
+        return new Guard(breaker, bulkhead, maxWaitMs,
+                intSetting(provider, "retryMaxAttempts", 3),
+                intSetting(provider, "retryBaseDelayMs", 100),
+                intSetting(provider, "retryMaxDelayMs", 2_000),
+                env.getProperty(key(provider, "hedgeEnabled"), Boolean.class,
+                        env.getProperty(key("default", "hedgeEnabled"), Boolean.class, false)),
+                intSetting(provider, "hedgePercentile", 95),
+                intSetting(provider, "hedgeMinDelayMs", 50));
+    }
+
+    private int intSetting(String provider, String key, int defaultValue) {
+        Integer value = env.getProperty(key(provider, key), Integer.class);
+        if (value != null) return value;
+        return env.getProperty(key("default", key), Integer.class, defaultValue);
+    }
+
+    private static String key(String provider, String key) {
+        return "provider.resilience." + provider + "." + key;
+    }
+
+    private record Guard(ProviderCircuitBreaker breaker, Semaphore bulkhead, long maxWaitMs,
+                         int retryMaxAttempts, long retryBaseDelayMs, long retryMaxDelayMs,
+                         boolean hedgeEnabled, int hedgePercentile, long hedgeMinDelayMs) {
+        boolean acquireBulkhead() {
+            if (maxWaitMs <= 0) return bulkhead.tryAcquire();
+            try {
+                return bulkhead.tryAcquire(maxWaitMs, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return false;
+            }
+        }
+    }
+}
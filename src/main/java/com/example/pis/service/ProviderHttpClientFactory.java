@@ -0,0 +1,175 @@
+package com.example.pis.service;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.apache.hc.client5.http.config.ConnectionConfig;
+import org.apache.hc.client5.http.config.RequestConfig;
+import org.apache.hc.client5.http.impl.classic.CloseableHttpClient;
+import org.apache.hc.client5.http.impl.classic.HttpClientBuilder;
+import org.apache.hc.client5.http.impl.classic.HttpClients;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManager;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManagerBuilder;
+import org.apache.hc.client5.http.protocol.HttpClientContext;
+import org.apache.hc.core5.util.TimeValue;
+import org.apache.hc.core5.util.Timeout;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.core.env.Environment;
+import org.springframework.http.client.HttpComponentsClientHttpRequestFactory;
+import org.springframework.stereotype.Component;
+import org.springframework.web.client.RestTemplate;
+
+import com.example.pis.service.PaymentMetrics.ProviderCall;
+
+import jakarta.annotation.PreDestroy;
+
+/**
+ * Builds pooled, keep-alive {@link RestTemplate}s for outbound provider calls.
+ *
+ * <p>Each provider gets its own connection pool so a slow provider cannot starve
+ * another one of sockets. Settings are read per provider from
+ * {@code provider.http.<name>.*}, falling back to {@code provider.http.default.*}.</p>
+ */
+@Component
+public class ProviderHttpClientFactory {
+
+    private static final Logger logger = LoggerFactory.getLogger(ProviderHttpClientFactory.class);
+
+    /** Response timeout for requests issued by the current thread, see {@link #withResponseTimeout}. */
+    private static final ThreadLocal<Duration> RESPONSE_TIMEOUT = new ThreadLocal<>();
+
+    private final Environment env;
+    private final Map<String, Pool> pools = new ConcurrentHashMap<>();
+
+    public ProviderHttpClientFactory(Environment env) {
+        this.env = env;
+    }
+
+    /** Creates the RestTemplate for a provider, backed by a dedicated connection pool. */
+    public RestTemplate create(String provider) {
+        return create(provider, true);
+    }
+
+    /**
+     * Creates the RestTemplate for a provider, backed by a dedicated connection pool.
+     *
+     * @param automaticRetries false for callers that schedule their own retries; the client
+     *                         then never resends a request after an I/O error or a 429/503
+     */
+    public RestTemplate create(String provider, boolean automaticRetries) {
+        int maxTotal = intSetting(provider, "maxConnections", 50);
+        int maxPerRoute = intSetting(provider, "maxConnectionsPerRoute", maxTotal);
+        Duration connectTimeout = Duration.ofMillis(intSetting(provider, "connectTimeoutMs", 10_000));
+        Duration readTimeout = Duration.ofMillis(intSetting(provider, "readTimeoutMs", 30_000));
+        Duration acquireTimeout = Duration.ofMillis(intSetting(provider, "acquireTimeoutMs", 5_000));
+        long idleEvictSeconds = intSetting(provider, "idleEvictSeconds", 30);
+        long ttlSeconds = intSetting(provider, "connectionTtlSeconds", 300);
+
+        PoolingHttpClientConnectionManager connectionManager = PoolingHttpClientConnectionManagerBuilder.create()
+                .setMaxConnTotal(maxTotal)
+                .setMaxConnPerRoute(maxPerRoute)
+                .setDefaultConnectionConfig(ConnectionConfig.custom()
+                        .setConnectTimeout(Timeout.of(connectTimeout))
+                        .setSocketTimeout(Timeout.of(readTimeout))
+                        .setTimeToLive(TimeValue.ofSeconds(ttlSeconds))
+                        .setValidateAfterInactivity(TimeValue.ofSeconds(2))
+                        .build())
+                .build();
+
+        HttpClientBuilder builder = HttpClients.custom()
+                .setConnectionManager(connectionManager)
+                .evictExpiredConnections()
+                .evictIdleConnections(TimeValue.ofSeconds(idleEvictSeconds));
+        if (!automaticRetries) {
+            builder.disableAutomaticRetries();
+        }
+        CloseableHttpClient httpClient = builder.build();
+
+        var factory = new HttpComponentsClientHttpRequestFactory(httpClient);
+        factory.setConnectionRequestTimeout(acquireTimeout);
+        factory.setReadTimeout(readTimeout);
+        factory.setHttpContextFactory((method, uri) -> {
+            Duration responseTimeout = RESPONSE_TIMEOUT.get();
+            if (responseTimeout == null) return null;
+            HttpClientContext context = HttpClientContext.create();
+            context.setRequestConfig(RequestConfig.custom()
+                    .setConnectionRequestTimeout(Timeout.of(acquireTimeout))
+                    .setResponseTimeout(Timeout.of(responseTimeout))
+                    .build());
+            return context;
+        });
+
+        Pool previous = pools.put(provider, new Pool(connectionManager, httpClient));
+        if (previous != null) previous.close();
+
+        logger.info("HTTP pool for provider={} created: maxConnections={}, maxPerRoute={}, idleEvict={}s",
+                provider, maxTotal, maxPerRoute, idleEvictSeconds);
+        return new RestTemplate(factory);
+    }
+
+    /**
+     * Runs a call with a per-request response timeout that replaces {@code readTimeoutMs}
+     * for every request the call makes on this thread.
+     */
+    public static <T, E extends Exception> T withResponseTimeout(Duration timeout, ProviderCall<T, E> call) throws E {
+        Duration previous = RESPONSE_TIMEOUT.get();
+        RESPONSE_TIMEOUT.set(timeout);
+        try {
+            return call.call();
+        } finally {
+            if (previous == null) RESPONSE_TIMEOUT.remove();
+            else RESPONSE_TIMEOUT.set(previous);
+        }
+    }
+
+    /** Returns the current pool usage for a provider. */
+    public PoolStats poolStats(String provider) {
+        Pool pool = pools.get(provider);
+        if (pool == null) {
+            throw new IllegalStateException("No HTTP pool for provider " + provider);
+        }
+        var stats = pool.connectionManager.getTotalStats();
+        return new PoolStats(stats.getLeased(), stats.getPending(), stats.getAvailable(), stats.getMax());
+    }
+
+    /** Providers with a live pool. */
+    public Set<String> providers() {
+        return Set.copyOf(pools.keySet());
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        pools.values().forEach(Pool::close);
+        pools.clear();
+    }
+
+    private int intSetting(String provider, String key, int defaultValue) {
+        Integer value = env.getProperty("provider.http." + provider + "." + key, Integer.class);
+        if (value != null) return value;
+        return env.getProperty("provider.http.default." + key, Integer.class, defaultValue);
+    }
+
+    /**
+     * Snapshot of a provider connection pool.
+     *
+     * @param leased    Connections currently in use
+     * @param pending   Requests waiting for a connection
+     * @param available Idle connections ready for reuse
+     * @param max       Pool capacity
+     */
+    public record PoolStats(int leased, int pending, int available, int max) {}
+
+    private record Pool(PoolingHttpClientConnectionManager connectionManager, CloseableHttpClient httpClient) {
+        void close() {
+            try {
+                httpClient.close();
+            } catch (IOException e) {
+                logger.warn("Failed to close HTTP client: {}", e.getMessage());
+            }
+        }
+    }
+}
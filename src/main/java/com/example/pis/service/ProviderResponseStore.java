@@ -0,0 +1,82 @@
+package com.example.pis.service;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Optional;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import com.example.pis.entity.PaymentProviderResponse;
+import com.example.pis.entity.PaymentTransaction;
+import com.example.pis.repository.PaymentProviderResponseRepository;
+
+/**
+ * Stores raw provider responses apart from their transaction.
+ *
+ * <p>With {@code payments.responses.compress=true}, bodies of at least
+ * {@code payments.responses.compressMinBytes} are gzip-compressed; smaller ones
+ * rarely shrink enough to be worth it.</p>
+ */
+@Service
+public class ProviderResponseStore {
+
+    private final PaymentProviderResponseRepository repository;
+    private final boolean compress;
+    private final int compressMinBytes;
+
+    public ProviderResponseStore(PaymentProviderResponseRepository repository,
+                                 @Value("${payments.responses.compress:true}") boolean compress,
+                                 @Value("${payments.responses.compressMinBytes:512}") int compressMinBytes) {
+        this.repository = repository;
+        this.compress = compress;
+        this.compressMinBytes = compressMinBytes;
+    }
+
+    /** Stores a transaction's provider response; joins the caller's transaction. */
+    @Transactional
+    public void save(PaymentTransaction tx, String provider, String body) {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        boolean gzip = compress && bytes.length >= compressMinBytes;
+        repository.save(new PaymentProviderResponse(tx.getId(), provider,
+                gzip ? PaymentProviderResponse.GZIP : PaymentProviderResponse.IDENTITY,
+                gzip ? gzip(bytes) : bytes));
+    }
+
+    /** The raw provider response of a transaction, if one was stored. */
+    @Transactional(readOnly = true)
+    public Optional<String> find(Long transactionId) {
+        return repository.findById(transactionId).map(ProviderResponseStore::decode);
+    }
+
+    static String decode(PaymentProviderResponse response) {
+        byte[] bytes = PaymentProviderResponse.GZIP.equals(response.getEncoding())
+                ? gunzip(response.getBody())
+                : response.getBody();
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    static byte[] gzip(byte[] bytes) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(bytes.length / 2 + 32);
+        try (GZIPOutputStream gzip = new GZIPOutputStream(out)) {
+            gzip.write(bytes);
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+        return out.toByteArray();
+    }
+
+    static byte[] gunzip(byte[] bytes) {
+        try (GZIPInputStream gzip = new GZIPInputStream(new ByteArrayInputStream(bytes))) {
+            return gzip.readAllBytes();
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+    }
+}
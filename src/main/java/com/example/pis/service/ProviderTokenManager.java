@@ -0,0 +1,268 @@
+package com.example.pis.service;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import jakarta.annotation.PreDestroy;
+
+/**
+ * Caches OAuth access tokens for the mobile-money providers.
+ *
+ * <ul>
+ *   <li>A token is served from memory until {@code expirySkew} before its {@code expires_in}; tokens
+ *       that do not outlive the skew are used for half their lifetime, and at least one second</li>
+ *   <li>A background refresh is scheduled {@code refreshAhead} before expiry</li>
+ *   <li>Concurrent callers on a cold or expired cache share one in-flight fetch</li>
+ * </ul>
+ */
+@Component
+public class ProviderTokenManager {
+
+    private static final Logger logger = LoggerFactory.getLogger(ProviderTokenManager.class);
+
+    /** Delay before retrying a failed background refresh while the old token is still usable. */
+    private static final Duration RETRY_DELAY = Duration.ofSeconds(5);
+
+    /** Floor on the refresh delay, so a provider issuing very short-lived tokens is not polled in a loop. */
+    private static final Duration MIN_REFRESH_DELAY = Duration.ofSeconds(1);
+
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+    private final Duration expirySkew;
+    private final Duration refreshAhead;
+    private final Clock clock;
+    private final ScheduledExecutorService scheduler;
+
+    @Autowired
+    public ProviderTokenManager(
+            @Value("${provider.token.expirySkewSeconds:30}") long expirySkewSeconds,
+            @Value("${provider.token.refreshAheadSeconds:60}") long refreshAheadSeconds) {
+        this(Duration.ofSeconds(expirySkewSeconds), Duration.ofSeconds(refreshAheadSeconds), Clock.systemUTC());
+    }
+
+    ProviderTokenManager(Duration expirySkew, Duration refreshAhead, Clock clock) {
+        this.expirySkew = expirySkew;
+        this.refreshAhead = refreshAhead;
+        this.clock = clock;
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "provider-token-refresh");
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    /**
+     * Registers the token fetcher for a provider. The fetcher performs the actual
+     * round trip to the provider's token endpoint.
+     */
+    public void register(String provider, Supplier<AccessToken> fetcher) {
+        entries.put(provider, new Entry(provider, fetcher));
+    }
+
+    /** Returns a usable access token, fetching one only if the cache is cold or expired. */
+    public String getToken(String provider) {
+        Entry entry = entry(provider);
+        CachedToken cached = entry.current;
+        long now = clock.millis();
+
+        if (cached != null && now < cached.usableUntil) {
+            entry.hits.increment();
+            if (now >= cached.refreshAt) {
+                scheduleRefresh(entry, 0);
+            }
+            return cached.value;
+        }
+
+        entry.misses.increment();
+        return entry.load().value;
+    }
+
+    /** Drops the cached token, e.g. after the provider rejected it with 401. */
+    public void invalidate(String provider) {
+        Entry entry = entries.get(provider);
+        if (entry != null) {
+            entry.current = null;
+            logger.info("Access token invalidated for provider={}", provider);
+        }
+    }
+
+    /** Returns a snapshot of cache and refresh statistics for a provider. */
+    public TokenStats stats(String provider) {
+        Entry entry = entry(provider);
+        long refreshes = entry.refreshes.sum();
+        long totalNanos = entry.refreshNanos.sum();
+        return new TokenStats(
+                entry.hits.sum(),
+                entry.misses.sum(),
+                refreshes,
+                entry.failures.sum(),
+                refreshes == 0 ? 0 : TimeUnit.NANOSECONDS.toMillis(totalNanos / refreshes),
+                TimeUnit.NANOSECONDS.toMillis(entry.maxRefreshNanos.get())
+        );
+    }
+
+    /** Providers with a registered token fetcher. */
+    public Set<String> providers() {
+        return Set.copyOf(entries.keySet());
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        scheduler.shutdownNow();
+    }
+
+    private Entry entry(String provider) {
+        Entry entry = entries.get(provider);
+        if (entry == null) {
+            throw new IllegalStateException("No token fetcher registered for provider " + provider);
+        }
+        return entry;
+    }
+
+    private void scheduleRefresh(Entry entry, long delayMs) {
+        if (scheduler.isShutdown() || !entry.refreshPending.compareAndSet(false, true)) return;
+        scheduler.schedule(() -> {
+            entry.refreshPending.set(false);
+            CachedToken current = entry.current;
+            if (current != null && clock.millis() < current.refreshAt) {
+                return; // already refreshed by a caller
+            }
+            try {
+                entry.load();
+            } catch (RuntimeException ex) {
+                CachedToken cached = entry.current;
+                if (cached != null && clock.millis() < cached.usableUntil) {
+                    scheduleRefresh(entry, RETRY_DELAY.toMillis());
+                }
+                logger.warn("Background token refresh failed for provider={}: {}", entry.provider, ex.getMessage());
+            }
+        }, Math.max(delayMs, 0), TimeUnit.MILLISECONDS);
+    }
+
+    /* ---------- Types ---------- */
+
+    /**
+     * Token as returned by a provider.
+     *
+     * @param value     The bearer token
+     * @param expiresIn Lifetime reported by the provider ({@code expires_in})
+     */
+    public record AccessToken(String value, Duration expiresIn) {}
+
+    /**
+     * Cache statistics for one provider.
+     *
+     * @param hits             Calls served from the cache
+     * @param misses           Calls that had to wait for a fetch
+     * @param refreshes        Successful fetches from the token endpoint
+     * @param failures         Failed fetches from the token endpoint
+     * @param avgRefreshMillis Mean token endpoint latency
+     * @param maxRefreshMillis Worst token endpoint latency
+     */
+    public record TokenStats(long hits, long misses, long refreshes, long failures,
+                             long avgRefreshMillis, long maxRefreshMillis) {}
+
+    private record CachedToken(String value, long usableUntil, long refreshAt) {}
+
+    private final class Entry {
+        private final String provider;
+        private final Supplier<AccessToken> fetcher;
+        private final LongAdder hits = new LongAdder();
+        private final LongAdder misses = new LongAdder();
+        private final LongAdder refreshes = new LongAdder();
+        private final LongAdder failures = new LongAdder();
+        private final LongAdder refreshNanos = new LongAdder();
+        private final AtomicLong maxRefreshNanos = new AtomicLong();
+        private final AtomicBoolean refreshPending = new AtomicBoolean();
+
+        private volatile CachedToken current;
+        private CompletableFuture<CachedToken> inflight;
+
+        Entry(String provider, Supplier<AccessToken> fetcher) {
+            this.provider = provider;
+            this.fetcher = fetcher;
+        }
+
+        /** Joins the in-flight fetch or becomes its owner. */
+        CachedToken load() {
+            CompletableFuture<CachedToken> future;
+            boolean owner = false;
+            synchronized (this) {
+                future = inflight;
+                if (future == null) {
+                    future = new CompletableFuture<>();
+                    inflight = future;
+                    owner = true;
+                }
+            }
+
+            if (owner) {
+                fetch(future);
+            }
+
+            try {
+                return future.join();
+            } catch (CompletionException ex) {
+                if (ex.getCause() instanceof RuntimeException re) throw re;
+                throw new IllegalStateException("Token fetch failed for provider " + provider, ex.getCause());
+            }
+        }
+
+        private void fetch(CompletableFuture<CachedToken> future) {
+            long start = System.nanoTime();
+            try {
+                AccessToken token = fetcher.get();
+                long now = clock.millis();
+                long lifetime = token.expiresIn().toMillis();
+                long usableFor = lifetime - expirySkew.toMillis();
+                if (usableFor < MIN_REFRESH_DELAY.toMillis()) {
+                    // The skew would expire the token on arrival; use the first half of its lifetime instead
+                    usableFor = Math.max(lifetime / 2, MIN_REFRESH_DELAY.toMillis());
+                    logger.warn("Provider {} issued a token valid for {} ms, within the {} s expiry skew; "
+                            + "using it for {} ms", provider, lifetime, expirySkew.toSeconds(), usableFor);
+                }
+                long refreshIn = Math.min(Math.max(lifetime - refreshAhead.toMillis(), lifetime / 2), usableFor);
+                refreshIn = Math.max(refreshIn, MIN_REFRESH_DELAY.toMillis());
+                CachedToken cached = new CachedToken(token.value(), now + usableFor, now + refreshIn);
+
+                current = cached;
+                recordLatency(System.nanoTime() - start);
+                refreshes.increment();
+                synchronized (this) {
+                    inflight = null;
+                }
+                future.complete(cached);
+                scheduleRefresh(this, cached.refreshAt - now);
+                logger.debug("Access token refreshed for provider={}, expiresIn={}s", provider, lifetime / 1000);
+            } catch (RuntimeException ex) {
+                failures.increment();
+                synchronized (this) {
+                    inflight = null;
+                }
+                future.completeExceptionally(ex);
+            }
+        }
+
+        private void recordLatency(long nanos) {
+            refreshNanos.add(nanos);
+            maxRefreshNanos.accumulateAndGet(nanos, Math::max);
+        }
+    }
+}
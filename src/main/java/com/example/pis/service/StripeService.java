@@ -31,9 +31,21 @@ public class StripeService {
 
     private static final Logger logger = LoggerFactory.getLogger(StripeService.class);
 
+    private static final String PROVIDER = "stripe";
+
     @Value("${stripe.secret}")
     private String stripeSecret;
 
+    /** Optional API base override, e.g. a local stub for load testing. */
+    @Value("${stripe.apiBase:}")
+    private String apiBase;
+
+    private final ProviderGuard guard;
+
+    public StripeService(ProviderGuard guard) {
+        this.guard = guard;
+    }
+
     @PostConstruct
     public void init() {
         if (stripeSecret == null || stripeSecret.isBlank()) {
@@ -41,6 +53,10 @@ public class StripeService {
             throw new IllegalStateException("Stripe secret key not configured.");
         }
         Stripe.apiKey = stripeSecret.trim();
+        if (apiBase != null && !apiBase.isBlank()) {
+            Stripe.overrideApiBase(apiBase.trim());
+            logger.warn("Stripe API base overridden: {}", apiBase.trim());
+        }
         logger.info("Stripe API key initialized successfully.");
     }
 
@@ -59,13 +75,18 @@ public class StripeService {
         params.put("amount", amount);
         params.put("currency", currency.toUpperCase());
         params.put("payment_method_types", List.of("card"));
+        if (referenceId != null) {
+            // Lets payment_intent.* webhooks be matched to the transaction
+            params.put("metadata", Map.of("reference", referenceId));
+        }
 
         try {
             RequestOptions requestOptions = RequestOptions.builder()
                     .setIdempotencyKey(referenceId != null ? referenceId : UUID.randomUUID().toString())
                     .build();
 
-            PaymentIntent paymentIntent = PaymentIntent.create(params, requestOptions);
+            PaymentIntent paymentIntent = guard.execute(PROVIDER, "intent",
+                    () -> PaymentIntent.create(params, requestOptions), PaymentMetrics::stripeStatus);
 
             logger.info("Stripe PaymentIntent created. ID={}, Amount={}, Currency={}, Reference={}",
                     paymentIntent.getId(), amount, currency.toUpperCase(), referenceId);
@@ -94,7 +115,8 @@ public class StripeService {
         params.put("destination", connectedAcct);
 
         try {
-            Transfer transfer = Transfer.create(params);
+            Transfer transfer = guard.execute(PROVIDER, "transfer",
+                    () -> Transfer.create(params), PaymentMetrics::stripeStatus);
             logger.info("Stripe Transfer successful. ID={}, Amount={}, Currency={}, Destination={}",
                     transfer.getId(), amount, currency.toUpperCase(), connectedAcct);
             return transfer.getId();
@@ -119,7 +141,8 @@ public class StripeService {
         params.put("currency", currency.toUpperCase());
 
         try {
-            Payout payout = Payout.create(params);
+            Payout payout = guard.execute(PROVIDER, "payout",
+                    () -> Payout.create(params), PaymentMetrics::stripeStatus);
             logger.info("Stripe Payout created. ID={}, Amount={}, Currency={}",
                     payout.getId(), amount, currency.toUpperCase());
             return payout.getId();
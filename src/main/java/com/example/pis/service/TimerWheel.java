@@ -0,0 +1,139 @@
+package com.example.pis.service;
+
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Hashed timer wheel: one thread drives any number of delayed tasks.
+ *
+ * <p>Time is divided into ticks of {@code tick} length and a task lands in the slot
+ * of the tick it is due in, modulo the number of slots; tasks more than one
+ * revolution away also count down the remaining rounds. Scheduling is a lock-free
+ * enqueue and each tick only visits one slot, so cost does not grow with the number
+ * of pending tasks the way a heap-based {@code ScheduledExecutorService} does. Tasks
+ * fire up to one tick late, never early.</p>
+ *
+ * <p>Tasks run on the wheel thread and must be short, typically a hand-off to an
+ * executor. Pending tasks are dropped on {@link #close}.</p>
+ */
+public final class TimerWheel implements AutoCloseable {
+
+    private static final Logger logger = LoggerFactory.getLogger(TimerWheel.class);
+
+    private final long tickNanos;
+    private final ArrayDeque<Timeout>[] slots;
+    private final int mask;
+    private final Queue<Timeout> added = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger pending = new AtomicInteger();
+    private final Thread worker;
+    private final long startNanos;
+    private volatile boolean closed;
+
+    /**
+     * @param tick  Resolution; tasks fire on the first tick at or after their deadline
+     * @param slots Wheel size, rounded up to a power of two
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    public TimerWheel(String name, Duration tick, int slots) {
+        this.tickNanos = Math.max(tick.toNanos(), TimeUnit.MILLISECONDS.toNanos(1));
+        int size = Integer.highestOneBit(Math.max(slots, 2) - 1) << 1;
+        this.slots = new ArrayDeque[size];
+        for (int i = 0; i < size; i++) {
+            this.slots[i] = new ArrayDeque<>();
+        }
+        this.mask = size - 1;
+        this.startNanos = System.nanoTime();
+        this.worker = new Thread(this::run, name);
+        this.worker.setDaemon(true);
+        this.worker.start();
+    }
+
+    /** Runs {@code task} on the wheel thread once {@code delay} has elapsed; non-positive delays fire on the next tick. */
+    public void schedule(Runnable task, Duration delay) {
+        if (closed) throw new IllegalStateException("Timer wheel closed");
+        long deadline = System.nanoTime() - startNanos + Math.max(0, delay.toNanos());
+        pending.incrementAndGet();
+        added.add(new Timeout(task, deadline));
+    }
+
+    /** @return tasks scheduled and not yet fired */
+    public int pending() {
+        return pending.get();
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        worker.interrupt();
+        try {
+            worker.join(TimeUnit.SECONDS.toMillis(5));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void run() {
+        long tick = 0;
+        while (!closed) {
+            long tickDeadline = (tick + 1) * tickNanos;
+            long sleepNanos = tickDeadline - (System.nanoTime() - startNanos);
+            if (sleepNanos > 0) {
+                try {
+                    TimeUnit.NANOSECONDS.sleep(sleepNanos);
+                } catch (InterruptedException e) {
+                    return;
+                }
+            }
+            transferAdded(tick);
+            expire(slots[(int) (tick & mask)]);
+            tick++;
+        }
+    }
+
+    /** Places newly scheduled tasks into their slots; overdue ones go into the current tick's slot. */
+    private void transferAdded(long currentTick) {
+        Timeout timeout;
+        while ((timeout = added.poll()) != null) {
+            long dueTick = Math.max(currentTick, timeout.deadlineNanos / tickNanos);
+            timeout.rounds = (dueTick - currentTick) / slots.length;
+            slots[(int) (dueTick & mask)].add(timeout);
+        }
+    }
+
+    private void expire(ArrayDeque<Timeout> slot) {
+        Iterator<Timeout> it = slot.iterator();
+        while (it.hasNext()) {
+            Timeout timeout = it.next();
+            if (timeout.rounds > 0) {
+                timeout.rounds--;
+                continue;
+            }
+            it.remove();
+            pending.decrementAndGet();
+            try {
+                timeout.task.run();
+            } catch (RuntimeException ex) {
+                logger.warn("Timer task failed: {}", ex.getMessage(), ex);
+            }
+        }
+    }
+
+    private static final class Timeout {
+        private final Runnable task;
+        private final long deadlineNanos;
+        private long rounds;
+
+        Timeout(Runnable task, long deadlineNanos) {
+            this.task = task;
+            this.deadlineNanos = deadlineNanos;
+        }
+    }
+}
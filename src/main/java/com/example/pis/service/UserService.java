@@ -8,12 +8,15 @@ import org.springframework.dao.DataAccessException;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
 import com.example.pis.dto.UserRequestDTO;
 import com.example.pis.dto.UserResponseDTO;
 import com.example.pis.entity.Role;
 import com.example.pis.entity.User;
 import com.example.pis.repository.UserRepository;
+import com.example.pis.security.UserDetailsCache;
 
 /**
  * Service layer for managing users:
@@ -21,6 +24,7 @@ import com.example.pis.repository.UserRepository;
  * - Credential validation
  * - JWT token generation with role claims
  * - Safe user lookups
+ * - Invalidation of cached user details once a user change commits
  */
 @Service
 public class UserService {
@@ -30,11 +34,14 @@ public class UserService {
     private final UserRepository repo;
     private final PasswordEncoder passwordEncoder;
     private final JwtService jwtService;
+    private final UserDetailsCache userDetailsCache;
 
-    public UserService(UserRepository repo, PasswordEncoder passwordEncoder, JwtService jwtService) {
+    public UserService(UserRepository repo, PasswordEncoder passwordEncoder, JwtService jwtService,
+                       UserDetailsCache userDetailsCache) {
         this.repo = repo;
         this.passwordEncoder = passwordEncoder;
         this.jwtService = jwtService;
+        this.userDetailsCache = userDetailsCache;
     }
 
     /**
@@ -62,6 +69,7 @@ public class UserService {
 
         try {
             repo.save(user);
+            afterCommit(() -> userDetailsCache.invalidate(username));
             log.info("User registered successfully: {} (role: {})", username, role);
         } catch (DataAccessException ex) {
             log.error("Database error during registration for user {}", username, ex);
@@ -105,4 +113,21 @@ public class UserService {
     public Optional<User> getUserByUsername(String username) {
         return repo.findByUsername(username.trim());
     }
+
+    /**
+     * Runs {@code action} once the current transaction has committed, so that a
+     * concurrent request cannot reload and cache the row as it was before the change.
+     */
+    private static void afterCommit(Runnable action) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            action.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                action.run();
+            }
+        });
+    }
 }
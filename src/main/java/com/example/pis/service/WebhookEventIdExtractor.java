@@ -0,0 +1,91 @@
+package com.example.pis.service;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Optional;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * Finds the deduplication key of a provider webhook without building a JSON tree.
+ *
+ * <p>Streams the top-level fields of the raw body. A real event id, {@code id} or
+ * else {@code eventId}, is the key as is. Bodies without one are keyed on the
+ * payment, {@code reference} or else {@code transactionId}, together with
+ * {@code status}: a redelivered callback is still recognised, while the next status
+ * of the same payment gets a key of its own. Without a status there is no key, and
+ * the compare-and-set status transition alone makes the event idempotent. Nested
+ * objects and arrays are skipped unread, and parsing stops as soon as {@code id} is
+ * seen or the body ends.</p>
+ */
+@Component
+public class WebhookEventIdExtractor {
+
+    private static final Logger logger = LoggerFactory.getLogger(WebhookEventIdExtractor.class);
+
+    /** Event id fields, most preferred first. */
+    static final List<String> ID_FIELDS = List.of("id", "eventId");
+
+    /** Payment fields used with {@link #STATUS_FIELD} when there is no event id, most preferred first. */
+    static final List<String> PAYMENT_FIELDS = List.of("reference", "transactionId");
+
+    static final String STATUS_FIELD = "status";
+
+    private final JsonFactory jsonFactory;
+
+    public WebhookEventIdExtractor(ObjectMapper mapper) {
+        this.jsonFactory = mapper.getFactory();
+    }
+
+    /**
+     * @param payload Raw webhook body, the same bytes that were HMAC-verified
+     * @return the event id, else {@code <payment>@<status>}, or empty if the body is not a
+     *         JSON object or has neither
+     */
+    public Optional<String> extract(byte[] payload) {
+        try (JsonParser parser = jsonFactory.createParser(payload)) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                return Optional.empty();
+            }
+            String id = null;
+            int idRank = ID_FIELDS.size();
+            String payment = null;
+            int paymentRank = PAYMENT_FIELDS.size();
+            String status = null;
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String name = parser.currentName();
+                JsonToken value = parser.nextToken();
+                if (value.isStructStart()) {
+                    parser.skipChildren();
+                    continue;
+                }
+                int rank = ID_FIELDS.indexOf(name);
+                if (rank >= 0 && rank < idRank) {
+                    id = parser.getText();
+                    idRank = rank;
+                    if (rank == 0) break;
+                    continue;
+                }
+                rank = PAYMENT_FIELDS.indexOf(name);
+                if (rank >= 0 && rank < paymentRank) {
+                    payment = parser.getText();
+                    paymentRank = rank;
+                } else if (STATUS_FIELD.equals(name)) {
+                    status = parser.getText();
+                }
+            }
+            if (id != null) return Optional.of(id);
+            return payment != null && status != null ? Optional.of(payment + "@" + status) : Optional.empty();
+        } catch (IOException e) {
+            logger.debug("Failed to extract event id: {}", e.getMessage());
+            return Optional.empty();
+        }
+    }
+}
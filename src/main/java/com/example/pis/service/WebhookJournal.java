@@ -0,0 +1,295 @@
+package com.example.pis.service;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.env.Environment;
+import org.springframework.data.domain.Limit;
+import org.springframework.stereotype.Component;
+
+import com.example.pis.dto.JournaledWebhookEvent;
+import com.example.pis.dto.PaymentStatusUpdate;
+import com.example.pis.entity.WebhookEvent;
+import com.example.pis.repository.WebhookEventRepository;
+import com.example.pis.service.PaymentTransactionService.StatusUpdateResult;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+
+/**
+ * Durable hand-off between webhook acknowledgement and applying the webhook.
+ *
+ * <p>{@link #append} inserts the verified event into {@code webhook_events} and
+ * returns as soon as that commits, so the controller acknowledges after one insert
+ * however slow the payment tables are. The status change is then applied by one of
+ * {@code webhook.journal.consumers} single-threaded lanes, chosen by hashing the
+ * reference (or provider transaction ID): events for the same transaction are
+ * applied one at a time, in arrival order, while different transactions proceed in
+ * parallel. Each lane queues at most {@code webhook.journal.queueCapacity} events.</p>
+ *
+ * <p>Every {@code webhook.journal.sweepIntervalSeconds} a sweep re-dispatches
+ * unprocessed events older than {@code replayAfterSeconds}: those a full lane
+ * could not take, those whose attempt failed or matched no transaction and are due
+ * again (exponential backoff from {@code initialBackoffSeconds} to
+ * {@code maxBackoffSeconds}, abandoned after {@code maxAttempts}), and, in the first
+ * sweep after startup, everything a crash left behind. A callback can overtake the
+ * commit of the payment it reports, so an event for an unknown transaction stays
+ * unprocessed until the transaction appears or the attempts run out. Applying is a compare-and-set, so an event applied twice (a crash
+ * between applying and marking it processed, or two nodes sweeping the same row)
+ * changes nothing the second time. Processed events are deleted after
+ * {@code retentionHours}. Set {@code webhook.journal.sweepEnabled=false} to turn
+ * sweeps off on a node.</p>
+ */
+@Component
+public class WebhookJournal {
+
+    private static final Logger logger = LoggerFactory.getLogger(WebhookJournal.class);
+
+    private static final int MAX_ERROR_LENGTH = 255;
+
+    private final WebhookEventRepository repository;
+    private final PaymentTransactionService txService;
+    private final PaymentMetrics metrics;
+    private final Clock clock;
+
+    private final int queueCapacity;
+    private final boolean sweepEnabled;
+    private final Duration sweepInterval;
+    private final Duration replayAfter;
+    private final int sweepBatchSize;
+    private final int maxAttempts;
+    private final long initialBackoffMs;
+    private final long maxBackoffMs;
+    private final Duration retention;
+
+    private final ThreadPoolExecutor[] lanes;
+    /** Events queued or running on this node, so sweeps do not queue them twice. */
+    private final Set<Long> dispatched = ConcurrentHashMap.newKeySet();
+    private ScheduledExecutorService sweeper;
+    private volatile boolean replayed;
+
+    private final LongAdder appended = new LongAdder();
+    private final LongAdder applied = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+    private final LongAdder deferred = new LongAdder();
+    private volatile long backlog;
+    private volatile Instant oldestUnprocessed;
+
+    @Autowired
+    public WebhookJournal(WebhookEventRepository repository, PaymentTransactionService txService,
+                          PaymentMetrics metrics, Environment env) {
+        this(repository, txService, metrics, env, Clock.systemUTC());
+    }
+
+    WebhookJournal(WebhookEventRepository repository, PaymentTransactionService txService,
+                   PaymentMetrics metrics, Environment env, Clock clock) {
+        this.repository = repository;
+        this.txService = txService;
+        this.metrics = metrics;
+        this.clock = clock;
+        int consumers = env.getProperty("webhook.journal.consumers", Integer.class, 4);
+        this.queueCapacity = env.getProperty("webhook.journal.queueCapacity", Integer.class, 1000);
+        this.sweepEnabled = env.getProperty("webhook.journal.sweepEnabled", Boolean.class, true);
+        this.sweepInterval = Duration.ofSeconds(env.getProperty("webhook.journal.sweepIntervalSeconds", Long.class, 10L));
+        this.replayAfter = Duration.ofSeconds(env.getProperty("webhook.journal.replayAfterSeconds", Long.class, 30L));
+        this.sweepBatchSize = env.getProperty("webhook.journal.sweepBatchSize", Integer.class, 500);
+        this.maxAttempts = env.getProperty("webhook.journal.maxAttempts", Integer.class, 10);
+        this.initialBackoffMs = env.getProperty("webhook.journal.initialBackoffSeconds", Long.class, 5L) * 1000;
+        this.maxBackoffMs = env.getProperty("webhook.journal.maxBackoffSeconds", Long.class, 600L) * 1000;
+        this.retention = Duration.ofHours(env.getProperty("webhook.journal.retentionHours", Long.class, 168L));
+        this.lanes = new ThreadPoolExecutor[consumers];
+        for (int i = 0; i < consumers; i++) {
+            String name = "webhook-consumer-" + (i + 1);
+            lanes[i] = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS,
+                    new ArrayBlockingQueue<>(queueCapacity), r -> {
+                        Thread t = new Thread(r, name);
+                        t.setDaemon(true);
+                        return t;
+                    });
+        }
+    }
+
+    @PostConstruct
+    public void start() {
+        if (!sweepEnabled) {
+            logger.info("Webhook journal sweep disabled; unprocessed events are not replayed on this node");
+            return;
+        }
+        sweeper = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "webhook-journal-sweep");
+            t.setDaemon(true);
+            return t;
+        });
+        sweeper.scheduleWithFixedDelay(() -> {
+            try {
+                sweep();
+            } catch (RuntimeException ex) {
+                logger.warn("Webhook journal sweep failed: {}", ex.getMessage(), ex);
+            }
+        }, 0, sweepInterval.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        if (sweeper != null) sweeper.shutdownNow();
+        // Queued events stay unprocessed in the journal and are replayed after restart
+        for (ThreadPoolExecutor lane : lanes) {
+            lane.shutdownNow();
+        }
+        for (ThreadPoolExecutor lane : lanes) {
+            lane.awaitTermination(5, TimeUnit.SECONDS);
+        }
+    }
+
+    /**
+     * Journals a verified webhook and queues its status change, if any. Returns once
+     * the insert has committed; the change is applied asynchronously.
+     *
+     * @param eventKey Provider-scoped event id used for deduplication, or null
+     * @param update   Status change parsed from the payload
+     * @param payload  Raw body as received
+     */
+    public void append(String provider, String eventKey, Optional<PaymentStatusUpdate> update, byte[] payload) {
+        WebhookEvent event = new WebhookEvent(provider, eventKey, update.orElse(null), payload, clock.instant());
+        repository.save(event);
+        appended.increment();
+        if (update.isPresent() && !dispatch(JournaledWebhookEvent.of(event))) {
+            logger.info("Webhook consumers busy; {} event {} left for the next sweep", provider, event.getId());
+        }
+    }
+
+    /**
+     * Re-dispatches due unprocessed events in arrival order, refreshes the backlog
+     * figures and purges expired processed events. The first sweep replays every
+     * unprocessed event, however recent.
+     *
+     * @return Number of events dispatched
+     */
+    public int sweep() {
+        Instant now = clock.instant();
+        Instant receivedBefore = replayed ? now.minus(replayAfter) : now;
+        int queued = 0;
+        long afterId = Long.MIN_VALUE;
+        sweep:
+        while (true) {
+            List<JournaledWebhookEvent> page = repository.findDue(now, receivedBefore, afterId, Limit.of(sweepBatchSize));
+            for (JournaledWebhookEvent event : page) {
+                if (dispatched.contains(event.id())) continue;
+                if (!dispatch(event)) break sweep;
+                queued++;
+            }
+            if (page.size() < sweepBatchSize) break;
+            afterId = page.get(page.size() - 1).id();
+        }
+        if (!replayed) {
+            replayed = true;
+            if (queued > 0) logger.info("Replaying {} unprocessed webhook events from the journal", queued);
+        }
+
+        backlog = repository.countByProcessedAtIsNull();
+        oldestUnprocessed = repository.findOldestUnprocessed().orElse(null);
+        int purged = repository.deleteProcessedBefore(now.minus(retention));
+        if (purged > 0) {
+            logger.debug("Purged {} processed webhook events", purged);
+        }
+        return queued;
+    }
+
+    /** @return false if the event's lane is full; it stays in the journal for a later sweep */
+    private boolean dispatch(JournaledWebhookEvent event) {
+        if (!dispatched.add(event.id())) return true;
+        ThreadPoolExecutor lane = lanes[Math.floorMod(event.orderingKey().hashCode(), lanes.length)];
+        try {
+            lane.execute(() -> consume(event));
+            return true;
+        } catch (RejectedExecutionException ex) {
+            dispatched.remove(event.id());
+            deferred.increment();
+            return false;
+        }
+    }
+
+    void consume(JournaledWebhookEvent event) {
+        try {
+            StatusUpdateResult result = txService.apply(event.update());
+            metrics.recordStatusUpdate(event.provider(), result);
+            if (result == StatusUpdateResult.UNKNOWN) {
+                // Possibly ahead of the transaction's own commit; try again later
+                recordFailure(event, "Unknown transaction: ref=" + event.reference() + ", providerTxId="
+                        + event.providerTransactionId(), null);
+                return;
+            }
+            repository.markProcessed(event.id(), clock.instant());
+            applied.increment();
+            metrics.recordWebhookLag(event.provider(), Duration.between(event.receivedAt(), clock.instant()));
+        } catch (RuntimeException ex) {
+            failed.increment();
+            recordFailure(event, String.valueOf(ex.getMessage()), ex);
+        } finally {
+            dispatched.remove(event.id());
+        }
+    }
+
+    /** @param cause The exception thrown while applying, or null if the event matched no transaction */
+    private void recordFailure(JournaledWebhookEvent event, String error, RuntimeException cause) {
+        if (error.length() > MAX_ERROR_LENGTH) error = error.substring(0, MAX_ERROR_LENGTH);
+        int attempts = event.attempts() + 1;
+        try {
+            if (attempts >= maxAttempts) {
+                repository.markAbandoned(event.id(), clock.instant(), error);
+                logger.error("Giving up on {} webhook event {} after {} attempts: {}", event.provider(), event.id(),
+                        attempts, error, cause);
+            } else {
+                long delay = Math.min(maxBackoffMs, initialBackoffMs << Math.min(attempts - 1, 20));
+                repository.markRetry(event.id(), clock.instant().plusMillis(delay), error);
+                logger.warn("Applying {} webhook event {} failed (attempt {}), retrying in {} ms: {}",
+                        event.provider(), event.id(), attempts, delay, error);
+            }
+        } catch (RuntimeException ex) {
+            // The event stays due and the next sweep picks it up again
+            logger.warn("Could not record failure of webhook event {}: {}", event.id(), ex.getMessage());
+        }
+    }
+
+    /** Returns event counts, queue depth and how far consumers are behind. */
+    public JournalStats stats() {
+        int queued = 0;
+        for (ThreadPoolExecutor lane : lanes) {
+            queued += lane.getQueue().size() + lane.getActiveCount();
+        }
+        Instant oldest = oldestUnprocessed;
+        return new JournalStats(appended.sum(), applied.sum(), failed.sum(), deferred.sum(), queued,
+                lanes.length * queueCapacity, backlog,
+                oldest == null ? 0 : Math.max(0, Duration.between(oldest, clock.instant()).toMillis()));
+    }
+
+    /**
+     * Webhook journal statistics.
+     *
+     * @param appended                   Events journaled on this node
+     * @param applied                    Events applied by consumers on this node
+     * @param failed                     Attempts to apply an event that threw
+     * @param deferred                   Events left for a sweep because their lane was full
+     * @param queued                     Events queued or being applied on this node
+     * @param capacity                   Total lane capacity
+     * @param backlog                    Unprocessed events in the journal, as of the last sweep
+     * @param oldestUnprocessedAgeMillis Age of the oldest unprocessed event, as of the last sweep
+     */
+    public record JournalStats(long appended, long applied, long failed, long deferred, int queued, int capacity,
+                               long backlog, long oldestUnprocessedAgeMillis) {}
+}
@@ -0,0 +1,141 @@
+package com.example.pis.service;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
+
+import com.example.pis.dto.PaymentStatusUpdate;
+import com.example.pis.enums.PaymentStatus;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.stripe.model.Charge;
+import com.stripe.model.Event;
+import com.stripe.model.PaymentIntent;
+import com.stripe.model.StripeObject;
+
+/**
+ * Reads the status change out of a verified provider webhook.
+ *
+ * <ul>
+ *   <li>MTN: top-level {@code externalId} (or {@code reference}),
+ *       {@code financialTransactionId} and {@code status}</li>
+ *   <li>Airtel: {@code transaction.id}, {@code transaction.airtel_money_id} and
+ *       {@code transaction.status_code}; flat MTN-style bodies are also accepted</li>
+ *   <li>Stripe: {@code payment_intent.*} events keyed on the {@code reference}
+ *       metadata set by {@link StripeService}, and fully refunded charges keyed on
+ *       their PaymentIntent id</li>
+ * </ul>
+ * Bodies without a known status or any identifier yield nothing. MTN and Airtel
+ * bodies are read with one streaming pass that keeps only these scalar fields and
+ * skips everything else, so no tree is built per callback.
+ */
+@Component
+public class WebhookStatusParser {
+
+    private static final Logger logger = LoggerFactory.getLogger(WebhookStatusParser.class);
+
+    private final ObjectMapper mapper;
+
+    public WebhookStatusParser(ObjectMapper mapper) {
+        this.mapper = mapper;
+    }
+
+    /**
+     * @param provider mtn or airtel
+     * @param payload  Raw webhook body, the same bytes that were HMAC-verified
+     */
+    public Optional<PaymentStatusUpdate> parse(String provider, byte[] payload) {
+        Fields root = new Fields();
+        Fields transaction = null;
+        try (JsonParser parser = mapper.getFactory().createParser(payload)) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) return Optional.empty();
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.currentName();
+                JsonToken value = parser.nextToken();
+                if (value == JsonToken.START_OBJECT && "transaction".equals(field) && "airtel".equals(provider)) {
+                    transaction = new Fields();
+                    while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                        String nested = parser.currentName();
+                        transaction.read(nested, parser.nextToken(), parser);
+                    }
+                } else {
+                    root.read(field, value, parser);
+                }
+            }
+        } catch (IOException e) {
+            logger.debug("Unreadable {} webhook body: {}", provider, e.getMessage());
+            return Optional.empty();
+        }
+
+        if (transaction != null) {
+            return update(provider, transaction.get("id"), transaction.get("airtel_money_id"),
+                    transaction.get("status_code"));
+        }
+        String reference = root.get("externalId");
+        return update(provider, reference != null ? reference : root.get("reference"),
+                root.get("financialTransactionId"), root.get("status"));
+    }
+
+    /** @param event Stripe event whose signature has been verified */
+    public Optional<PaymentStatusUpdate> parseStripe(Event event) {
+        StripeObject object = event.getDataObjectDeserializer().getObject().orElse(null);
+        if (object instanceof PaymentIntent intent) {
+            PaymentStatus status = switch (event.getType()) {
+                case "payment_intent.succeeded" -> PaymentStatus.SUCCESS;
+                case "payment_intent.payment_failed", "payment_intent.canceled" -> PaymentStatus.FAILED;
+                case "payment_intent.processing" -> PaymentStatus.INITIATED;
+                default -> null;
+            };
+            Map<String, String> metadata = intent.getMetadata();
+            String reference = metadata != null ? metadata.get("reference") : null;
+            return update("stripe", reference, intent.getId(), status);
+        }
+        if (object instanceof Charge charge && "charge.refunded".equals(event.getType())
+                && Boolean.TRUE.equals(charge.getRefunded())) {
+            return update("stripe", null, charge.getPaymentIntent(), PaymentStatus.REVERSED);
+        }
+        return Optional.empty();
+    }
+
+    private static Optional<PaymentStatusUpdate> update(String provider, String reference,
+                                                        String providerTransactionId, String code) {
+        return update(provider, reference, providerTransactionId, PaymentStatus.fromProviderStatus(code));
+    }
+
+    private static Optional<PaymentStatusUpdate> update(String provider, String reference,
+                                                        String providerTransactionId, PaymentStatus status) {
+        if (status == null || status == PaymentStatus.PENDING
+                || (!StringUtils.hasText(reference) && !StringUtils.hasText(providerTransactionId))) {
+            return Optional.empty();
+        }
+        return Optional.of(new PaymentStatusUpdate(provider, reference, providerTransactionId, status));
+    }
+
+    /** Scalar fields of one JSON object that the parser looks at; nested values are skipped. */
+    private static final class Fields {
+        private static final Set<String> NAMES = Set.of("externalId", "reference", "financialTransactionId", "status",
+                "id", "airtel_money_id", "status_code");
+
+        private final Map<String, String> values = new HashMap<>();
+
+        void read(String field, JsonToken value, JsonParser parser) throws IOException {
+            if (value.isStructStart()) {
+                parser.skipChildren();
+            } else if (value.isScalarValue() && NAMES.contains(field)) {
+                values.put(field, parser.getValueAsString());
+            }
+        }
+
+        String get(String field) {
+            return values.get(field);
+        }
+    }
+}
@@ -0,0 +1,129 @@
+package com.example.pis.controller;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import javax.sql.DataSource;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.when;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.user;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+
+import com.example.pis.dto.MomoCollectRequest;
+import com.example.pis.dto.MtnResponseDTO;
+import com.example.pis.repository.PaymentTransactionRepository;
+import com.example.pis.service.AirtelService;
+import com.example.pis.service.MtnService;
+import com.example.pis.service.StripeService;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.HikariPoolMXBean;
+
+/**
+ * Load test for the connection footprint of the payment flow.
+ *
+ * <p>Parks more concurrent MTN collections inside a slow provider call than the
+ * Hikari pool has connections, then checks that none of them is holding a
+ * connection while it waits. If the flow held a transaction across the provider
+ * call, only {@code maximumPoolSize} requests could ever reach the provider.</p>
+ */
+@SpringBootTest
+@ActiveProfiles("test")
+@AutoConfigureMockMvc
+class PaymentControllerConnectionPoolTest {
+
+    private static final int CONCURRENT_REQUESTS = 25;
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private DataSource dataSource;
+
+    @Autowired
+    private PaymentTransactionRepository txRepo;
+
+    @MockitoBean
+    private MtnService mtnService;
+
+    @MockitoBean
+    private AirtelService airtelService;
+
+    @MockitoBean
+    private StripeService stripeService;
+
+    @Value("${app.api.key}")
+    private String apiKey;
+
+    private final ObjectMapper mapper = new ObjectMapper();
+
+    @SuppressWarnings("unused")
+    @BeforeEach
+    void setUp() {
+        txRepo.deleteAll();
+    }
+
+    @Test
+    void slowProvider_doesNotHoldDatabaseConnections() throws Exception {
+        HikariPoolMXBean pool = dataSource.unwrap(HikariDataSource.class).getHikariPoolMXBean();
+        int poolSize = dataSource.unwrap(HikariDataSource.class).getMaximumPoolSize();
+        assertTrue(CONCURRENT_REQUESTS > poolSize, "Test needs more requests than pooled connections");
+
+        CountDownLatch inProvider = new CountDownLatch(CONCURRENT_REQUESTS);
+        CountDownLatch release = new CountDownLatch(1);
+        when(mtnService.initiateCollection(anyString(), anyString(), anyString(), anyString(), anyString(), anyString()))
+                .thenAnswer(invocation -> {
+                    inProvider.countDown();
+                    release.await(30, TimeUnit.SECONDS);
+                    return new MtnResponseDTO("202", "");
+                });
+
+        ExecutorService clients = Executors.newFixedThreadPool(CONCURRENT_REQUESTS);
+        List<Future<MvcResult>> results = new ArrayList<>();
+        int activeWhileProviderSlow;
+        try {
+            for (int i = 0; i < CONCURRENT_REQUESTS; i++) {
+                String body = mapper.writeValueAsString(
+                        new MomoCollectRequest("mtn", "256700000" + String.format("%03d", i), 1000L, "UGX", "pool-" + i));
+                results.add(clients.submit(() -> mockMvc.perform(post("/api/payments/mtn/collect")
+                                .with(user("load-test"))
+                                .header("X-Api-Key", apiKey)
+                                .contentType(MediaType.APPLICATION_JSON)
+                                .content(body))
+                        .andReturn()));
+            }
+
+            assertTrue(inProvider.await(20, TimeUnit.SECONDS),
+                    "All requests should reach the provider while the pool has only " + poolSize + " connections");
+            activeWhileProviderSlow = pool.getActiveConnections();
+        } finally {
+            release.countDown();
+            clients.shutdown();
+        }
+
+        for (Future<MvcResult> result : results) {
+            assertEquals(200, result.get(30, TimeUnit.SECONDS).getResponse().getStatus());
+        }
+        assertEquals(0, activeWhileProviderSlow, "No connection should be leased during the provider call");
+        assertEquals(CONCURRENT_REQUESTS, txRepo.count());
+    }
+}
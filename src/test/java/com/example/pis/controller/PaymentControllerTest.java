@@ -3,16 +3,37 @@ package com.example.pis.controller;
 import com.example.pis.dto.AirtelResponseDTO;
 import com.example.pis.dto.MomoCollectRequest;
 import com.example.pis.dto.MtnResponseDTO;
+import com.example.pis.dto.PaymentTransactionSummary;
+import com.example.pis.enums.PaymentStatus;
+import com.example.pis.exception.PaymentProcessingException;
+import com.example.pis.repository.PaymentOutboxRepository;
 import com.example.pis.repository.PaymentTransactionRepository;
 import com.example.pis.service.AirtelService;
+import com.example.pis.service.IdempotencyCache;
 import com.example.pis.service.MtnService;
+import com.example.pis.service.PaymentPipeline;
+import com.example.pis.service.PaymentTransactionService;
+import com.example.pis.service.ProviderResponseStore;
 import com.example.pis.service.StripeService;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
-
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.client.ResourceAccessException;
+
+import java.net.SocketTimeoutException;
+import java.time.Instant;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 import java.util.Map;
 import java.util.Objects;
+import java.util.Optional;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.*;
@@ -24,6 +45,8 @@ class PaymentControllerTest {
     private MtnService mtnService;
     private AirtelService airtelService;
     private PaymentTransactionRepository txRepo;
+    private PaymentPipeline pipeline;
+    private ProviderResponseStore responses;
     private PaymentController controller;
 
     @SuppressWarnings("unused")
@@ -33,8 +56,14 @@ class PaymentControllerTest {
         mtnService = mock(MtnService.class);
         airtelService = mock(AirtelService.class);
         txRepo = mock(PaymentTransactionRepository.class);
-
-        controller = new PaymentController(stripeService, mtnService, airtelService, txRepo);
+        pipeline = mock(PaymentPipeline.class);
+        responses = mock(ProviderResponseStore.class);
+        when(txRepo.transition(any(), any(), any(), any(), any())).thenReturn(1);
+
+        controller = new PaymentController(stripeService, mtnService, airtelService,
+                new PaymentTransactionService(txRepo, responses, new IdempotencyCache(600, 5, 100, 5),
+                        mock(PaymentOutboxRepository.class)), pipeline);
+        ReflectionTestUtils.setField(controller, "configuredApiKey", "dummy-api-key");
     }
 
     /* ---------------- Stripe ---------------- */
@@ -53,7 +82,8 @@ class PaymentControllerTest {
 
         assertEquals("secret123", Objects.requireNonNull(body.get("clientSecret"), "clientSecret should not be null"));
         assertEquals("ref123", Objects.requireNonNull(body.get("reference"), "reference should not be null"));
-        verify(txRepo, times(1)).save(any());
+        verify(txRepo, times(1)).save(any()); // PENDING insert
+        verify(txRepo, times(1)).transition(any(), any(), any(), any(), any()); // guarded outcome
     }
 
     @SuppressWarnings("unchecked")
@@ -73,7 +103,8 @@ class PaymentControllerTest {
 
         assertEquals("transfer_123", Objects.requireNonNull(respBody.get("transferId"), "transferId should not be null"));
         assertNotNull(respBody.get("reference"), "reference should not be null");
-        verify(txRepo, times(1)).save(any());
+        verify(txRepo, times(1)).save(any()); // PENDING insert
+        verify(txRepo, times(1)).transition(any(), any(), any(), any(), any()); // guarded outcome
     }
 
     @SuppressWarnings("unchecked")
@@ -89,7 +120,101 @@ class PaymentControllerTest {
 
         assertEquals("payout_456", Objects.requireNonNull(respBody.get("payoutId"), "payoutId should not be null"));
         assertNotNull(respBody.get("reference"), "reference should not be null");
+        verify(txRepo, times(1)).save(any()); // PENDING insert
+        verify(txRepo, times(1)).transition(any(), any(), any(), any(), any()); // guarded outcome
+    }
+
+    @Test
+    void mtnCollect_providerFailure_marksTransactionFailed() {
+        MomoCollectRequest req = new MomoCollectRequest("mtn", "256700123456", 500L, "UGX", "refMtnFail");
+
+        when(mtnService.initiateCollection(anyString(), anyString(), anyString(), anyString(), anyString(), anyString()))
+                .thenThrow(new IllegalStateException("Failed to get MTN token"));
+
+        assertThrows(PaymentProcessingException.class, () -> controller.mtnCollect("dummy-api-key", req));
+        verify(txRepo, times(1)).save(argThat(tx -> "refMtnFail".equals(tx.getReference())));
+        verify(txRepo, times(1)).transition(any(), any(), eq(PaymentStatus.FAILED), isNull(), isNull());
+    }
+
+    @Test
+    void mtnCollect_timedOutRequest_staysPendingForThePoller() {
+        MomoCollectRequest req = new MomoCollectRequest("mtn", "256700123456", 500L, "UGX", "refMtnTimeout");
+        when(mtnService.initiateCollection(anyString(), anyString(), anyString(), anyString(), anyString(), anyString()))
+                .thenThrow(new ResourceAccessException("Read timed out", new SocketTimeoutException()));
+
+        assertThrows(PaymentProcessingException.class, () -> controller.mtnCollect("dummy-api-key", req));
+        verify(txRepo, never()).transition(any(), any(), any(), any(), any());
+    }
+
+    @Test
+    void mtnCollect_acceptedRequest_isInitiatedUntilTheProviderReportsTheOutcome() {
+        MomoCollectRequest req = new MomoCollectRequest("mtn", "256700123456", 500L, "UGX", "refMtnAccepted");
+        when(mtnService.initiateCollection(anyString(), anyString(), anyString(), anyString(), anyString(), anyString()))
+                .thenReturn(new MtnResponseDTO("202", ""));
+
+        controller.mtnCollect("dummy-api-key", req);
+
+        verify(txRepo, times(1)).transition(any(), eq(PaymentStatus.INITIATED.sources()), eq(PaymentStatus.INITIATED),
+                isNull(), isNull());
+        verify(responses, times(1)).save(any(), eq("mtn"), anyString());
+    }
+
+    @Test
+    void airtelCollect_rejectedRequest_marksTransactionFailed() {
+        MomoCollectRequest req = new MomoCollectRequest("airtel", "256700123456", 500L, "UGX", "refAirtelRejected");
+        when(airtelService.initiateCollection(anyString(), anyLong(), anyString(), anyString()))
+                .thenReturn(new AirtelResponseDTO("400", "{\"message\":\"Invalid MSISDN\"}"));
+
+        controller.airtelCollect("dummy-api-key", req);
+
+        verify(txRepo, times(1)).transition(any(), any(), eq(PaymentStatus.FAILED), isNull(), isNull());
+    }
+
+    @Test
+    void mtnCollect_concurrentDuplicate_returnsExistingWithoutCallingProvider() {
+        MomoCollectRequest req = new MomoCollectRequest("mtn", "256700123456", 500L, "UGX", "refMtnDup");
+        PaymentTransactionSummary existing = summary("refMtnDup", PaymentStatus.PENDING);
+
+        when(txRepo.findSummaryByReference("refMtnDup")).thenReturn(Optional.empty()).thenReturn(Optional.of(existing));
+        when(txRepo.save(any())).thenThrow(new DataIntegrityViolationException("idx_reference"));
+
+        ResponseEntity<?> response = controller.mtnCollect("dummy-api-key", req);
+
+        assertSame(existing, response.getBody());
+        verifyNoInteractions(mtnService);
+    }
+
+    @Test
+    void mtnCollect_inFlightDuplicate_waitsForFirstRequestInsteadOfInserting() throws Exception {
+        MomoCollectRequest req = new MomoCollectRequest("mtn", "256700123456", 500L, "UGX", "refMtnInFlight");
+        CountDownLatch inProvider = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        when(txRepo.findSummaryByReference("refMtnInFlight")).thenReturn(Optional.empty());
+        when(mtnService.initiateCollection(anyString(), anyString(), anyString(), anyString(), anyString(), anyString()))
+                .thenAnswer(invocation -> {
+                    inProvider.countDown();
+                    release.await(5, TimeUnit.SECONDS);
+                    return new MtnResponseDTO("202", "SUCCESS");
+                });
+
+        ExecutorService first = Executors.newSingleThreadExecutor();
+        try {
+            Future<ResponseEntity<?>> owner = first.submit(() -> controller.mtnCollect("dummy-api-key", req));
+            assertTrue(inProvider.await(5, TimeUnit.SECONDS));
+
+            CompletableFuture<ResponseEntity<?>> duplicate =
+                    CompletableFuture.supplyAsync(() -> controller.mtnCollect("dummy-api-key", req));
+            release.countDown();
+
+            assertEquals(HttpStatus.OK, owner.get(5, TimeUnit.SECONDS).getStatusCode());
+            PaymentTransactionSummary body = (PaymentTransactionSummary) duplicate.get(5, TimeUnit.SECONDS).getBody();
+            assertEquals(PaymentStatus.INITIATED, Objects.requireNonNull(body).status());
+        } finally {
+            first.shutdown();
+        }
         verify(txRepo, times(1)).save(any());
+        verify(mtnService, times(1))
+                .initiateCollection(anyString(), anyString(), anyString(), anyString(), anyString(), anyString());
     }
 
     /* ---------------- MTN Collection ---------------- */
@@ -108,7 +233,8 @@ class PaymentControllerTest {
         assertEquals("SUCCESS", Objects.requireNonNull(body.getStatus(), "Status should not be null"));
         assertEquals("Payment initiated", Objects.requireNonNull(body.getBody(), "Body text should not be null"));
 
-        verify(txRepo, times(1)).save(any());
+        verify(txRepo, times(1)).save(any()); // PENDING insert
+        verify(txRepo, times(1)).transition(any(), any(), any(), any(), any()); // guarded outcome
         verify(mtnService, times(1))
                 .initiateCollection(anyString(), anyString(), anyString(), anyString(), anyString(), anyString());
     }
@@ -127,11 +253,92 @@ class PaymentControllerTest {
         assertEquals("SUCCESS", Objects.requireNonNull(body.getStatus(), "Status should not be null"));
         assertEquals("Withdrawal initiated", Objects.requireNonNull(body.getBody(), "Body text should not be null"));
 
-        verify(txRepo, times(1)).save(any());
+        verify(txRepo, times(1)).save(any()); // PENDING insert
+        verify(txRepo, times(1)).transition(any(), any(), any(), any(), any()); // guarded outcome
         verify(mtnService, times(1))
                 .initiateWithdrawal(anyString(), anyLong(), anyString(), anyString());
     }
 
+    @SuppressWarnings("unchecked")
+    @Test
+    void mtnCollect_asyncMode_returnsAcceptedAndQueuesProviderCall() {
+        ReflectionTestUtils.setField(controller, "asyncEnabled", true);
+        MomoCollectRequest req = new MomoCollectRequest("mtn", "256700123456", 500L, "UGX", "refMtnAsync");
+        when(pipeline.submit(eq("refMtnAsync"), any())).thenReturn(true);
+
+        ResponseEntity<?> response = controller.mtnCollect("dummy-api-key", req);
+        Map<String, Object> body = Objects.requireNonNull((Map<String, Object>) response.getBody());
+
+        assertEquals(HttpStatus.ACCEPTED, response.getStatusCode());
+        assertEquals("refMtnAsync", body.get("reference"));
+        assertEquals(PaymentStatus.PENDING, body.get("status"));
+        verify(txRepo, times(1)).save(any());
+        verifyNoInteractions(mtnService);
+    }
+
+    @SuppressWarnings("unchecked")
+    @Test
+    void mtnCollect_asyncMode_answersFromTheStateBeforeTheWorkerRan() {
+        ReflectionTestUtils.setField(controller, "asyncEnabled", true);
+        MomoCollectRequest req = new MomoCollectRequest("mtn", "256700123456", 500L, "UGX", "refMtnFast");
+        when(mtnService.initiateCollection(anyString(), anyString(), anyString(), anyString(), anyString(), anyString()))
+                .thenReturn(new MtnResponseDTO("202", ""));
+        // The worker finishes before the request thread answers
+        when(pipeline.submit(eq("refMtnFast"), any())).thenAnswer(invocation -> {
+            invocation.<Runnable>getArgument(1).run();
+            return true;
+        });
+
+        ResponseEntity<?> response = controller.mtnCollect("dummy-api-key", req);
+        Map<String, Object> body = Objects.requireNonNull((Map<String, Object>) response.getBody());
+
+        assertEquals(HttpStatus.ACCEPTED, response.getStatusCode());
+        assertEquals(PaymentStatus.PENDING, body.get("status"));
+        verify(mtnService).initiateCollection(anyString(), anyString(), eq("refMtnFast"), anyString(), anyString(),
+                anyString());
+    }
+
+    @Test
+    void mtnCollect_asyncModeSaturated_returnsServiceUnavailable() {
+        ReflectionTestUtils.setField(controller, "asyncEnabled", true);
+        MomoCollectRequest req = new MomoCollectRequest("mtn", "256700123456", 500L, "UGX", "refMtnBusy");
+        when(pipeline.submit(anyString(), any())).thenReturn(false);
+
+        ResponseEntity<?> response = controller.mtnCollect("dummy-api-key", req);
+
+        assertEquals(HttpStatus.SERVICE_UNAVAILABLE, response.getStatusCode());
+        verifyNoInteractions(mtnService);
+    }
+
+    @Test
+    void mtnCollect_rowNoLongerPending_keepsExistingOutcomeAndSkipsResponse() {
+        MomoCollectRequest req = new MomoCollectRequest("mtn", "256700123456", 500L, "UGX", "refMtnLate");
+        when(mtnService.initiateCollection(anyString(), anyString(), anyString(), anyString(), anyString(), anyString()))
+                .thenReturn(new MtnResponseDTO("202", ""));
+        when(txRepo.transition(any(), any(), any(), any(), any())).thenReturn(0);
+        when(txRepo.findSummaryByReference("refMtnLate"))
+                .thenReturn(Optional.empty())
+                .thenReturn(Optional.of(summary("refMtnLate", PaymentStatus.SUCCESS)));
+
+        controller.mtnCollect("dummy-api-key", req);
+
+        verify(txRepo, times(1)).save(any());
+        verify(txRepo, times(2)).findSummaryByReference("refMtnLate");
+        verifyNoInteractions(responses);
+    }
+
+    @SuppressWarnings("unchecked")
+    @Test
+    void getStatus_returnsTransactionStatus() {
+        when(txRepo.findSummaryByReference("refStatus")).thenReturn(Optional.of(summary("refStatus", PaymentStatus.INITIATED)));
+
+        ResponseEntity<?> response = controller.getStatus("dummy-api-key", "refStatus");
+        Map<String, Object> body = Objects.requireNonNull((Map<String, Object>) response.getBody());
+
+        assertEquals(PaymentStatus.INITIATED, body.get("status"));
+        assertEquals(HttpStatus.NOT_FOUND, controller.getStatus("dummy-api-key", "unknown").getStatusCode());
+    }
+
     /* ---------------- Airtel Collection ---------------- */
 
     @Test
@@ -148,7 +355,8 @@ class PaymentControllerTest {
         assertEquals("SUCCESS", Objects.requireNonNull(body.getStatus(), "Status should not be null"));
         assertEquals("Payment initiated", Objects.requireNonNull(body.getBody(), "Body text should not be null"));
 
-        verify(txRepo, times(1)).save(any());
+        verify(txRepo, times(1)).save(any()); // PENDING insert
+        verify(txRepo, times(1)).transition(any(), any(), any(), any(), any()); // guarded outcome
         verify(airtelService, times(1))
                 .initiateCollection(anyString(), anyLong(), anyString(), anyString());
     }
@@ -167,8 +375,13 @@ class PaymentControllerTest {
         assertEquals("SUCCESS", Objects.requireNonNull(body.getStatus(), "Status should not be null"));
         assertEquals("Withdrawal initiated", Objects.requireNonNull(body.getBody(), "Body text should not be null"));
 
-        verify(txRepo, times(1)).save(any());
+        verify(txRepo, times(1)).save(any()); // PENDING insert
+        verify(txRepo, times(1)).transition(any(), any(), any(), any(), any()); // guarded outcome
         verify(airtelService, times(1))
                 .initiateWithdrawal(anyString(), anyLong(), anyString(), anyString());
     }
+
+    private static PaymentTransactionSummary summary(String reference, PaymentStatus status) {
+        return new PaymentTransactionSummary(1L, reference, "mtn", null, status, 500L, "UGX", null, Instant.now());
+    }
 }
@@ -0,0 +1,169 @@
+package com.example.pis.controller;
+
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.when;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+
+import com.example.pis.dto.AirtelResponseDTO;
+import com.example.pis.dto.MomoCollectRequest;
+import com.example.pis.dto.MtnResponseDTO;
+import com.example.pis.enums.PaymentStatus;
+import com.example.pis.exception.PaymentProcessingException;
+import com.example.pis.repository.PaymentProviderResponseRepository;
+import com.example.pis.repository.PaymentTransactionRepository;
+import com.example.pis.service.AirtelService;
+import com.example.pis.service.MtnService;
+import com.example.pis.service.StripeService;
+
+import jakarta.persistence.EntityManagerFactory;
+
+/**
+ * Counts the JDBC statements each payment endpoint sends, via Hibernate statistics.
+ *
+ * <p>The synchronous flow is: duplicate lookup (DTO select), PENDING insert, guarded
+ * {@code UPDATE ... WHERE status IN (...)}, and the raw response insert where the
+ * provider returned a body, plus one {@code payment_outbox} insert with each of the
+ * insert and the update. A regression to entity merges shows up here as an extra
+ * select per payment.</p>
+ */
+@SpringBootTest(properties = {
+        "spring.jpa.properties.hibernate.generate_statistics=true",
+        "logging.level.org.hibernate.engine.internal.StatisticalLoggingSessionEventListener=WARN"
+})
+@ActiveProfiles("test")
+class PaymentStatementCountTest {
+
+    @Autowired
+    private PaymentController controller;
+
+    @Autowired
+    private PaymentTransactionRepository txRepo;
+
+    @Autowired
+    private PaymentProviderResponseRepository responseRepo;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @MockitoBean
+    private MtnService mtnService;
+
+    @MockitoBean
+    private AirtelService airtelService;
+
+    @MockitoBean
+    private StripeService stripeService;
+
+    @Value("${app.api.key}")
+    private String apiKey;
+
+    private Statistics statistics;
+
+    @SuppressWarnings("unused")
+    @BeforeEach
+    void setUp() {
+        responseRepo.deleteAll();
+        txRepo.deleteAll();
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+    }
+
+    @Test
+    void mtnCollect_lookupInsertUpdateAndResponse() {
+        when(mtnService.initiateCollection(anyString(), anyString(), anyString(), anyString(), anyString(), anyString()))
+                .thenReturn(new MtnResponseDTO("202", ""));
+
+        controller.mtnCollect(apiKey, new MomoCollectRequest("mtn", "256700000001", 1000L, "UGX", "stmt-mtn-c"));
+
+        assertStatements(6);
+        // MTN only acknowledges the request; the callback or the status poller settles it
+        assertEquals(PaymentStatus.INITIATED, txRepo.findByReference("stmt-mtn-c").orElseThrow().getStatus());
+    }
+
+    @Test
+    void mtnWithdraw_lookupInsertUpdateAndResponse() {
+        when(mtnService.initiateWithdrawal(anyString(), anyLong(), anyString(), anyString()))
+                .thenReturn(new MtnResponseDTO("202", ""));
+
+        controller.mtnWithdraw(apiKey, new MomoCollectRequest("mtn", "256700000001", 1000L, "UGX", "stmt-mtn-w"));
+
+        assertStatements(6);
+    }
+
+    @Test
+    void airtelCollect_lookupInsertUpdateAndResponse() {
+        when(airtelService.initiateCollection(anyString(), anyLong(), anyString(), anyString()))
+                .thenReturn(new AirtelResponseDTO("200", "Payment initiated"));
+
+        controller.airtelCollect(apiKey, new MomoCollectRequest("airtel", "256700000001", 1000L, "UGX", "stmt-airtel-c"));
+
+        assertStatements(6);
+    }
+
+    @Test
+    void airtelWithdraw_lookupInsertUpdateAndResponse() {
+        when(airtelService.initiateWithdrawal(anyString(), anyLong(), anyString(), anyString()))
+                .thenReturn(new AirtelResponseDTO("200", "Withdrawal initiated"));
+
+        controller.airtelWithdraw(apiKey, new MomoCollectRequest("airtel", "256700000001", 1000L, "UGX", "stmt-airtel-w"));
+
+        assertStatements(6);
+    }
+
+    @Test
+    void stripeIntent_lookupInsertAndUpdate() {
+        when(stripeService.createPaymentIntent(anyLong(), anyString(), anyString())).thenReturn("secret_123");
+
+        controller.createStripeIntent(apiKey, new MomoCollectRequest("stripe", "256700000001", 1000L, "USD", "stmt-stripe"));
+
+        assertStatements(5);
+        assertEquals("secret_123", txRepo.findByReference("stmt-stripe").orElseThrow().getClientSecret());
+    }
+
+    @Test
+    void stripeTransfer_insertUpdateAndResponse() {
+        when(stripeService.sendTransfer(anyLong(), anyString(), anyString())).thenReturn("tr_123");
+
+        controller.stripeTransfer(apiKey, Map.of("amount", 500L, "currency", "USD", "connectedAccountId", "acct_1"));
+
+        assertStatements(5);
+    }
+
+    @Test
+    void stripePayout_insertUpdateAndResponse() {
+        when(stripeService.createPayout(anyLong(), anyString())).thenReturn("po_123");
+
+        controller.stripePayout(apiKey, Map.of("amount", 700L, "currency", "USD"));
+
+        assertStatements(5);
+    }
+
+    @Test
+    void providerFailure_lookupInsertAndUpdate() {
+        when(mtnService.initiateCollection(anyString(), anyString(), anyString(), anyString(), anyString(), anyString()))
+                .thenThrow(new IllegalStateException("Failed to get MTN token"));
+
+        assertThrows(PaymentProcessingException.class, () -> controller.mtnCollect(apiKey,
+                new MomoCollectRequest("mtn", "256700000001", 1000L, "UGX", "stmt-mtn-fail")));
+
+        assertStatements(5);
+        assertEquals(PaymentStatus.FAILED, txRepo.findByReference("stmt-mtn-fail").orElseThrow().getStatus());
+    }
+
+    private void assertStatements(long expected) {
+        assertEquals(expected, statistics.getPrepareStatementCount(), "JDBC statements for one payment");
+    }
+}
@@ -0,0 +1,90 @@
+package com.example.pis.entity;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Unit tests for TimeOrderedIdGenerator layout, ordering and uniqueness.
+ */
+class TimeOrderedIdGeneratorTest {
+
+    private static final long JS_MAX_SAFE_INTEGER = (1L << 53) - 1;
+
+    private final AtomicLong now = new AtomicLong(TimeOrderedIdGenerator.EPOCH_MILLIS + 1_000);
+
+    @Test
+    void encodesTimeNodeAndSequence() {
+        TimeOrderedIdGenerator generator = new TimeOrderedIdGenerator(5, now::get);
+
+        long first = generator.next();
+        long second = generator.next();
+
+        assertEquals(1_000, first >>> 12);
+        assertEquals(5, (first >>> 7) & 31);
+        assertEquals(0, first & 127);
+        assertEquals(first + 1, second);
+    }
+
+    @Test
+    void keepsIncreasingWhenTheSequenceRunsOutOrTheClockStepsBack() {
+        TimeOrderedIdGenerator generator = new TimeOrderedIdGenerator(0, now::get);
+
+        long previous = generator.next();
+        for (int i = 0; i < 1_000; i++) {
+            if (i == 500) now.addAndGet(-10);
+            long id = generator.next();
+            assertTrue(id > previous, "IDs must increase");
+            previous = id;
+        }
+    }
+
+    @Test
+    void staysWithinJavaScriptSafeIntegersForDecades() {
+        now.set(TimeOrderedIdGenerator.EPOCH_MILLIS + TimeUnit.DAYS.toMillis(365L * 60));
+        long id = new TimeOrderedIdGenerator(TimeOrderedIdGenerator.MAX_NODE, now::get).next();
+
+        assertTrue(id <= JS_MAX_SAFE_INTEGER);
+    }
+
+    @Test
+    void isUniqueAcrossThreads() throws InterruptedException {
+        TimeOrderedIdGenerator generator = new TimeOrderedIdGenerator(1, System::currentTimeMillis);
+        Set<Long> ids = ConcurrentHashMap.newKeySet();
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        for (int t = 0; t < 4; t++) {
+            executor.execute(() -> {
+                for (int i = 0; i < 10_000; i++) ids.add(generator.next());
+            });
+        }
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+
+        assertEquals(40_000, ids.size());
+    }
+
+    @Test
+    void requiresTheNodeUnlessDeclaredASingleInstance() {
+        assertThrows(IllegalStateException.class, () -> TimeOrderedIdGenerator.configuredNode(Map.of()));
+        assertThrows(IllegalStateException.class, () -> TimeOrderedIdGenerator.configuredNode(
+                Map.of(TimeOrderedIdGenerator.NODE_SETTING, " ", TimeOrderedIdGenerator.SINGLE_INSTANCE_SETTING, "false")));
+
+        assertEquals(0, TimeOrderedIdGenerator.configuredNode(
+                Map.of(TimeOrderedIdGenerator.SINGLE_INSTANCE_SETTING, "true")));
+        assertEquals(7, TimeOrderedIdGenerator.configuredNode(Map.of(TimeOrderedIdGenerator.NODE_SETTING, "7")));
+    }
+
+    @Test
+    void rejectsNodesOutOfRange() {
+        assertThrows(IllegalArgumentException.class, () -> new TimeOrderedIdGenerator(32, now::get));
+    }
+}
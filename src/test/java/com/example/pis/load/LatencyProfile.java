@@ -0,0 +1,46 @@
+package com.example.pis.load;
+
+import java.util.Locale;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Latency distribution for a stub provider endpoint.
+ *
+ * <p>Parsed from a spec string:
+ * <ul>
+ *   <li>{@code fixed:50} - always 50 ms</li>
+ *   <li>{@code uniform:20:200} - uniformly between 20 and 200 ms</li>
+ *   <li>{@code lognormal:80:600} - log-normal with median 80 ms and p99 600 ms,
+ *       the usual shape of real provider latency</li>
+ * </ul>
+ */
+public interface LatencyProfile {
+
+    /** z-score of the 99th percentile of a standard normal distribution. */
+    double Z_99 = 2.326;
+
+    long sampleMillis();
+
+    static LatencyProfile parse(String spec) {
+        String[] parts = spec.trim().toLowerCase(Locale.ROOT).split(":");
+        switch (parts[0]) {
+            case "fixed" -> {
+                long millis = Long.parseLong(parts[1]);
+                return () -> millis;
+            }
+            case "uniform" -> {
+                long min = Long.parseLong(parts[1]);
+                long max = Long.parseLong(parts[2]);
+                return () -> ThreadLocalRandom.current().nextLong(min, max + 1);
+            }
+            case "lognormal" -> {
+                double median = Double.parseDouble(parts[1]);
+                double p99 = Double.parseDouble(parts[2]);
+                double mu = Math.log(median);
+                double sigma = (Math.log(p99) - mu) / Z_99;
+                return () -> Math.round(Math.exp(mu + sigma * ThreadLocalRandom.current().nextGaussian()));
+            }
+            default -> throw new IllegalArgumentException("Unknown latency profile: " + spec);
+        }
+    }
+}
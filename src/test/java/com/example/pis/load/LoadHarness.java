@@ -0,0 +1,419 @@
+package com.example.pis.load;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import com.example.pis.PisApplication;
+import com.example.pis.entity.Role;
+import com.example.pis.entity.User;
+import com.example.pis.repository.UserRepository;
+import com.example.pis.service.JwtService;
+import com.stripe.Stripe;
+
+/**
+ * End-to-end load harness for {@code /api/payments/*} and {@code /api/webhooks/*}.
+ *
+ * <p>Starts {@link StubProviderServer} and the full application on a random port
+ * against an in-memory H2 database, then drives a weighted request mix from a
+ * fixed number of concurrent clients and prints throughput, p50/p99/p999 latency
+ * and the error breakdown per endpoint.</p>
+ *
+ * <p>Webhooks carry each provider's own body shape (MTN {@code externalId} and
+ * {@code financialTransactionId}, Airtel {@code transaction.id} and
+ * {@code transaction.status_code}, a signed Stripe {@code payment_intent.succeeded}
+ * event) for the provider's most recently created transaction, so they are applied
+ * rather than journaled for an unknown reference.</p>
+ *
+ * <pre>{@code
+ * mvn test-compile exec:java -Dexec.classpathScope=test \
+ *     -Dexec.mainClass=com.example.pis.load.LoadHarness \
+ *     -Dexec.args="--duration=60 --warmup=10 --concurrency=64 \
+ *                  --mix=mtnCollect=40,airtelCollect=20,stripeIntent=10,status=10,mtnWebhook=10,airtelWebhook=5,stripeWebhook=5 \
+ *                  --mtn.latency=lognormal:80:600 --mtn.errorRate=0.02 \
+ *                  --airtel.latency=uniform:50:300 --stripe.latency=fixed:120 \
+ *                  --payments.async.enabled=true"
+ * }</pre>
+ *
+ * <p>Options that are not harness options ({@code duration}, {@code warmup},
+ * {@code concurrency}, {@code mix}, {@code <provider>.latency},
+ * {@code <provider>.errorRate}) are passed to the application as properties.</p>
+ */
+public final class LoadHarness {
+
+    private static final String API_KEY = "load-api-key";
+    private static final String USERNAME = "load-harness";
+    private static final String MTN_WEBHOOK_SECRET = "load-mtn-webhook-secret";
+    private static final String AIRTEL_WEBHOOK_SECRET = "load-airtel-webhook-secret";
+    private static final String STRIPE_WEBHOOK_SECRET = "whsec_load";
+    private static final String DEFAULT_MIX =
+            "mtnCollect=35,airtelCollect=25,stripeIntent=10,status=10,mtnWebhook=10,airtelWebhook=5,stripeWebhook=5";
+
+    /** Endpoints the harness can drive, keyed by their name in {@code --mix}. */
+    enum Scenario {
+        MTN_COLLECT("mtnCollect", "POST /api/payments/mtn/collect", "mtn"),
+        AIRTEL_COLLECT("airtelCollect", "POST /api/payments/airtel/collect", "airtel"),
+        STRIPE_INTENT("stripeIntent", "POST /api/payments/stripe/create-payment-intent", "stripe"),
+        STATUS("status", "GET  /api/payments/{reference}", null),
+        MTN_WEBHOOK("mtnWebhook", "POST /api/webhooks/mtn", null),
+        AIRTEL_WEBHOOK("airtelWebhook", "POST /api/webhooks/airtel", null),
+        STRIPE_WEBHOOK("stripeWebhook", "POST /api/webhooks/stripe", null);
+
+        final String key;
+        final String label;
+        /** Provider of the transaction this scenario creates, or null */
+        final String provider;
+
+        Scenario(String key, String label, String provider) {
+            this.key = key;
+            this.label = label;
+            this.provider = provider;
+        }
+
+        static Scenario byKey(String key) {
+            return Arrays.stream(values()).filter(s -> s.key.equals(key)).findFirst()
+                    .orElseThrow(() -> new IllegalArgumentException("Unknown scenario: " + key));
+        }
+    }
+
+    private final String baseUrl;
+    private final String jwt;
+    private final HttpClient client;
+    private final AtomicLong sequence = new AtomicLong();
+    private final AtomicReference<String> lastReference = new AtomicReference<>("none");
+    /** Most recent reference created per provider, targeted by that provider's webhooks. */
+    private final Map<String, AtomicReference<String>> lastByProvider = Map.of(
+            "mtn", new AtomicReference<>("none"),
+            "airtel", new AtomicReference<>("none"),
+            "stripe", new AtomicReference<>("none"));
+    private final String runId = Long.toString(System.currentTimeMillis(), 36);
+
+    private LoadHarness(String baseUrl, String jwt, int concurrency) {
+        this.baseUrl = baseUrl;
+        this.jwt = jwt;
+        this.client = HttpClient.newBuilder()
+                .executor(Executors.newFixedThreadPool(Math.max(4, concurrency / 4), r -> {
+                    Thread t = new Thread(r, "load-client");
+                    t.setDaemon(true);
+                    return t;
+                }))
+                .connectTimeout(Duration.ofSeconds(5))
+                .build();
+    }
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = parseOptions(args);
+        int durationSeconds = Integer.parseInt(take(options, "duration", "30"));
+        int warmupSeconds = Integer.parseInt(take(options, "warmup", "5"));
+        int concurrency = Integer.parseInt(take(options, "concurrency", "32"));
+        Map<Scenario, Integer> mix = parseMix(take(options, "mix", DEFAULT_MIX));
+
+        try (StubProviderServer stubs = StubProviderServer.start(
+                behaviour(options, "mtn", "lognormal:80:600"),
+                behaviour(options, "airtel", "lognormal:100:800"),
+                behaviour(options, "stripe", "lognormal:150:700"))) {
+
+            Map<String, Object> properties = new HashMap<>(applicationProperties());
+            properties.putAll(stubs.providerProperties());
+            properties.putAll(options);
+
+            // As command-line arguments, so they override application.properties
+            String[] appArgs = properties.entrySet().stream()
+                    .map(e -> "--" + e.getKey() + "=" + e.getValue())
+                    .toArray(String[]::new);
+            try (ConfigurableApplicationContext app = new SpringApplicationBuilder(PisApplication.class).run(appArgs)) {
+                int port = app.getEnvironment().getRequiredProperty("local.server.port", Integer.class);
+                app.getBean(UserRepository.class).save(
+                        new User(USERNAME, "not-used", USERNAME + "@example.com", Role.ADMIN));
+                String jwt = app.getBean(JwtService.class).generateTokenWithClaims(USERNAME, Role.ADMIN);
+
+                LoadHarness harness = new LoadHarness("http://localhost:" + port, jwt, concurrency);
+                System.out.printf("Warming up for %ds with %d clients...%n", warmupSeconds, concurrency);
+                harness.run(mix, concurrency, Duration.ofSeconds(warmupSeconds));
+                System.out.printf("Measuring for %ds with %d clients, mix %s%n", durationSeconds, concurrency, mix);
+                Map<Scenario, EndpointStats> stats = harness.run(mix, concurrency, Duration.ofSeconds(durationSeconds));
+                report(stats, durationSeconds);
+            }
+        }
+    }
+
+    /** Closed-loop run: each client sends its next request as soon as the previous one returns. */
+    private Map<Scenario, EndpointStats> run(Map<Scenario, Integer> mix, int concurrency, Duration duration)
+            throws InterruptedException {
+        Map<Scenario, EndpointStats> stats = new EnumMap<>(Scenario.class);
+        mix.keySet().forEach(s -> stats.put(s, new EndpointStats()));
+        Scenario[] wheel = weightedWheel(mix);
+        long deadline = System.nanoTime() + duration.toNanos();
+
+        ExecutorService clients = Executors.newFixedThreadPool(concurrency);
+        for (int i = 0; i < concurrency; i++) {
+            clients.execute(() -> {
+                while (System.nanoTime() < deadline) {
+                    Scenario scenario = wheel[ThreadLocalRandom.current().nextInt(wheel.length)];
+                    send(scenario, stats.get(scenario));
+                }
+            });
+        }
+        clients.shutdown();
+        clients.awaitTermination(duration.toSeconds() + 60, TimeUnit.SECONDS);
+        return stats;
+    }
+
+    private void send(Scenario scenario, EndpointStats stats) {
+        long start = System.nanoTime();
+        String outcome;
+        try {
+            String reference = "load-" + runId + "-" + sequence.incrementAndGet();
+            HttpResponse<String> response = client.send(request(scenario, reference), HttpResponse.BodyHandlers.ofString());
+            outcome = String.valueOf(response.statusCode());
+            if (scenario.provider != null && response.statusCode() / 100 == 2) {
+                // Only committed transactions are read back or targeted by webhooks
+                lastReference.set(reference);
+                lastByProvider.get(scenario.provider).set(reference);
+            }
+        } catch (IOException e) {
+            outcome = e.getClass().getSimpleName();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return;
+        }
+        stats.record(System.nanoTime() - start, outcome);
+    }
+
+    private HttpRequest request(Scenario scenario, String reference) {
+        return switch (scenario) {
+            case MTN_COLLECT -> payment("/api/payments/mtn/collect", collectBody("mtn", reference, "UGX"));
+            case AIRTEL_COLLECT -> payment("/api/payments/airtel/collect", collectBody("airtel", reference, "UGX"));
+            case STRIPE_INTENT -> payment("/api/payments/stripe/create-payment-intent",
+                    collectBody("stripe", reference, "USD"));
+            case STATUS -> authorized(HttpRequest.newBuilder(URI.create(baseUrl + "/api/payments/" + lastReference.get())))
+                    .GET().build();
+            case MTN_WEBHOOK -> webhook("/api/webhooks/mtn", "X-MTN-Signature", MTN_WEBHOOK_SECRET,
+                    "{\"externalId\":\"" + lastByProvider.get("mtn").get() + "\",\"financialTransactionId\":\""
+                            + sequence.get() + "\",\"status\":\"SUCCESSFUL\"}");
+            case AIRTEL_WEBHOOK -> webhook("/api/webhooks/airtel", "X-Airtel-Signature", AIRTEL_WEBHOOK_SECRET,
+                    "{\"transaction\":{\"id\":\"" + lastByProvider.get("airtel").get() + "\",\"message\":\"Paid\","
+                            + "\"status_code\":\"TS\",\"airtel_money_id\":\"MP" + sequence.get() + "\"}}");
+            case STRIPE_WEBHOOK -> stripeWebhook(lastByProvider.get("stripe").get());
+        };
+    }
+
+    private HttpRequest payment(String path, String body) {
+        return authorized(HttpRequest.newBuilder(URI.create(baseUrl + path)))
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(body))
+                .build();
+    }
+
+    private HttpRequest.Builder authorized(HttpRequest.Builder builder) {
+        return builder.timeout(Duration.ofSeconds(30))
+                .header("Authorization", "Bearer " + jwt)
+                .header("X-Api-Key", API_KEY);
+    }
+
+    private HttpRequest webhook(String path, String signatureHeader, String secret, String json) {
+        byte[] body = json.getBytes(StandardCharsets.UTF_8);
+        return HttpRequest.newBuilder(URI.create(baseUrl + path))
+                .timeout(Duration.ofSeconds(30))
+                .header("Content-Type", "application/json")
+                .header(signatureHeader, "sha256=" + Base64.getEncoder().encodeToString(hmac(secret, body)))
+                .header("X-Request-Timestamp", String.valueOf(Instant.now().getEpochSecond()))
+                .POST(HttpRequest.BodyPublishers.ofByteArray(body))
+                .build();
+    }
+
+    /** A {@code payment_intent.succeeded} event signed the way Stripe signs webhooks. */
+    private HttpRequest stripeWebhook(String reference) {
+        long timestamp = Instant.now().getEpochSecond();
+        long n = sequence.get();
+        String body = "{\"id\":\"evt_load" + n + "\",\"object\":\"event\",\"api_version\":\"" + Stripe.API_VERSION
+                + "\",\"created\":" + timestamp + ",\"type\":\"payment_intent.succeeded\",\"data\":{\"object\":"
+                + "{\"id\":\"pi_load" + n + "\",\"object\":\"payment_intent\",\"amount\":1000,\"currency\":\"usd\","
+                + "\"status\":\"succeeded\",\"metadata\":{\"reference\":\"" + reference + "\"}}}}";
+        byte[] signature = hmac(STRIPE_WEBHOOK_SECRET, (timestamp + "." + body).getBytes(StandardCharsets.UTF_8));
+        return HttpRequest.newBuilder(URI.create(baseUrl + "/api/webhooks/stripe"))
+                .timeout(Duration.ofSeconds(30))
+                .header("Content-Type", "application/json")
+                .header("Stripe-Signature", "t=" + timestamp + ",v1=" + HexFormat.of().formatHex(signature))
+                .POST(HttpRequest.BodyPublishers.ofString(body))
+                .build();
+    }
+
+    private static String collectBody(String provider, String reference, String currency) {
+        long amount = ThreadLocalRandom.current().nextLong(500, 500_000);
+        return "{\"provider\":\"" + provider + "\",\"phone\":\"256700" + ThreadLocalRandom.current().nextInt(100_000, 999_999)
+                + "\",\"amount\":" + amount + ",\"currency\":\"" + currency + "\",\"reference\":\"" + reference + "\"}";
+    }
+
+    private static byte[] hmac(String secret, byte[] body) {
+        try {
+            Mac mac = Mac.getInstance("HmacSHA256");
+            mac.init(new SecretKeySpec(secret.getBytes(StandardCharsets.UTF_8), "HmacSHA256"));
+            return mac.doFinal(body);
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static Map<String, Object> applicationProperties() {
+        Map<String, Object> p = new HashMap<>();
+        p.put("server.port", "0");
+        p.put("spring.datasource.url", "jdbc:h2:mem:loadharness;DB_CLOSE_DELAY=-1");
+        p.put("spring.datasource.driver-class-name", "org.h2.Driver");
+        p.put("spring.datasource.username", "sa");
+        p.put("spring.datasource.password", "");
+        p.put("spring.jpa.hibernate.ddl-auto", "create-drop");
+        p.put("spring.jpa.show-sql", "false");
+        p.put("spring.jpa.properties.hibernate.dialect", "org.hibernate.dialect.H2Dialect");
+        p.put("spring.jpa.properties.pis.ids.singleInstance", "true");
+        p.put("logging.level.root", "WARN");
+        p.put("jwt.secret", "AAECAwQFBgcICQoLDA0ODxAREhMUFRYXGBkaGxwdHh8=");
+        p.put("jwt.expiration-ms", "86400000");
+        p.put("jwt.issuer", "load-harness");
+        p.put("jwt.audience", "load-harness");
+        p.put("app.api.key", API_KEY);
+        p.put("stripe.secret", "sk_test_load");
+        p.put("stripe.webhookSecret", STRIPE_WEBHOOK_SECRET);
+        p.put("mtn.clientId", "load");
+        p.put("mtn.clientSecret", "load");
+        p.put("mtn.subscriptionKey", "load");
+        p.put("mtn.webhookSecret", MTN_WEBHOOK_SECRET);
+        p.put("airtel.clientId", "load");
+        p.put("airtel.clientSecret", "load");
+        p.put("airtel.apiKey", "load");
+        p.put("airtel.webhookSecret", AIRTEL_WEBHOOK_SECRET);
+        p.put("CORS_ALLOWED_ORIGINS", "http://localhost");
+        p.put("cors.allowed-origins", "http://localhost");
+        p.put("app.cors.allowed-origins", "http://localhost");
+        return p;
+    }
+
+    private static StubProviderServer.Behaviour behaviour(Map<String, String> options, String provider, String defaultLatency) {
+        return StubProviderServer.Behaviour.of(
+                take(options, provider + ".latency", defaultLatency),
+                Double.parseDouble(take(options, provider + ".errorRate", "0")));
+    }
+
+    private static Map<String, String> parseOptions(String[] args) {
+        Map<String, String> options = new LinkedHashMap<>();
+        for (String arg : args) {
+            if (!arg.startsWith("--") || !arg.contains("=")) {
+                throw new IllegalArgumentException("Expected --key=value, got " + arg);
+            }
+            int eq = arg.indexOf('=');
+            options.put(arg.substring(2, eq), arg.substring(eq + 1));
+        }
+        return options;
+    }
+
+    private static String take(Map<String, String> options, String key, String defaultValue) {
+        String value = options.remove(key);
+        return value != null ? value : defaultValue;
+    }
+
+    private static Map<Scenario, Integer> parseMix(String spec) {
+        Map<Scenario, Integer> mix = new EnumMap<>(Scenario.class);
+        for (String entry : spec.split(",")) {
+            String[] kv = entry.trim().split("=");
+            int weight = Integer.parseInt(kv[1]);
+            if (weight > 0) {
+                mix.put(Scenario.byKey(kv[0]), weight);
+            }
+        }
+        if (mix.isEmpty()) {
+            throw new IllegalArgumentException("Request mix is empty: " + spec);
+        }
+        return mix;
+    }
+
+    private static Scenario[] weightedWheel(Map<Scenario, Integer> mix) {
+        List<Scenario> wheel = new ArrayList<>();
+        mix.forEach((scenario, weight) -> {
+            for (int i = 0; i < weight; i++) wheel.add(scenario);
+        });
+        return wheel.toArray(Scenario[]::new);
+    }
+
+    private static void report(Map<Scenario, EndpointStats> stats, int durationSeconds) {
+        System.out.printf("%n%-48s %9s %9s %9s %9s %9s %9s %8s  %s%n",
+                "endpoint", "requests", "req/s", "p50 ms", "p99 ms", "p999 ms", "max ms", "errors", "outcomes");
+        stats.forEach((scenario, s) -> {
+            long[] sorted = s.sortedLatencies();
+            if (sorted.length == 0) return;
+            Map<String, Long> outcomes = s.outcomes();
+            long errors = outcomes.entrySet().stream()
+                    .filter(e -> !e.getKey().startsWith("2"))
+                    .mapToLong(Map.Entry::getValue)
+                    .sum();
+            System.out.printf("%-48s %9d %9.1f %9.1f %9.1f %9.1f %9.1f %7.2f%%  %s%n",
+                    scenario.label, sorted.length, (double) sorted.length / durationSeconds,
+                    percentileMillis(sorted, 0.50), percentileMillis(sorted, 0.99), percentileMillis(sorted, 0.999),
+                    sorted[sorted.length - 1] / 1e6, 100.0 * errors / sorted.length, outcomes);
+        });
+    }
+
+    private static double percentileMillis(long[] sorted, double percentile) {
+        int idx = (int) Math.ceil(percentile * sorted.length) - 1;
+        return sorted[Math.max(idx, 0)] / 1e6;
+    }
+
+    /** Latencies and response outcomes (status code or exception name) for one endpoint. */
+    static final class EndpointStats {
+        private long[] latencies = new long[1024];
+        private int count;
+        private final ConcurrentHashMap<String, LongAdder> outcomes = new ConcurrentHashMap<>();
+
+        synchronized void recordLatency(long nanos) {
+            if (count == latencies.length) {
+                latencies = Arrays.copyOf(latencies, count * 2);
+            }
+            latencies[count++] = nanos;
+        }
+
+        void record(long nanos, String outcome) {
+            recordLatency(nanos);
+            outcomes.computeIfAbsent(outcome, k -> new LongAdder()).increment();
+        }
+
+        synchronized long[] sortedLatencies() {
+            long[] sorted = Arrays.copyOf(latencies, count);
+            Arrays.sort(sorted);
+            return sorted;
+        }
+
+        Map<String, Long> outcomes() {
+            Map<String, Long> snapshot = new TreeMap<>();
+            outcomes.forEach((k, v) -> snapshot.put(k, v.sum()));
+            return snapshot;
+        }
+    }
+}
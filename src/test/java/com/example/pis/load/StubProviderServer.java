@@ -0,0 +1,157 @@
+package com.example.pis.load;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * Embedded stand-ins for the MTN, Airtel and Stripe endpoints the services call.
+ *
+ * <p>Serves, under one port:
+ * <ul>
+ *   <li>{@code /mtn/token/}, {@code /mtn/requesttopay}, {@code /mtn/disbursement}, and
+ *       {@code GET /mtn/requesttopay/{id}}, {@code GET /mtn/disbursement/{id}}</li>
+ *   <li>{@code /airtel/v1/oauth/token}, {@code /airtel/collection/v1_0/requesttopay},
+ *       {@code /airtel/disbursement/v1_0/transfer}, and
+ *       {@code GET /airtel/standard/v1/payments/{id}},
+ *       {@code GET /airtel/standard/v1/disbursements/{id}}</li>
+ *   <li>{@code /stripe/v1/payment_intents}</li>
+ * </ul>
+ * Status reads report every transaction as successful, in the provider's own shape
+ * (MTN: top-level {@code status}; Airtel: {@code data.transaction.status}).
+ * Each provider has its own {@link Behaviour}: a latency distribution and the
+ * share of calls answered with an error status. Token endpoints always answer
+ * immediately so that token caching does not distort the numbers.</p>
+ */
+public final class StubProviderServer implements AutoCloseable {
+
+    /**
+     * @param latency     Delay before answering
+     * @param errorRate   Share of calls (0..1) answered with {@code errorStatus}
+     * @param errorStatus HTTP status used for injected errors
+     */
+    public record Behaviour(LatencyProfile latency, double errorRate, int errorStatus) {
+
+        public static Behaviour of(String latencySpec, double errorRate) {
+            return new Behaviour(LatencyProfile.parse(latencySpec), errorRate, 503);
+        }
+    }
+
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private final AtomicInteger stripeSequence = new AtomicInteger();
+
+    private StubProviderServer(Behaviour mtn, Behaviour airtel, Behaviour stripe) throws IOException {
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 4096);
+        executor = Executors.newCachedThreadPool(r -> {
+            Thread t = new Thread(r, "stub-provider");
+            t.setDaemon(true);
+            return t;
+        });
+        server.setExecutor(executor);
+
+        String token = "{\"access_token\":\"stub-token\",\"token_type\":\"Bearer\",\"expires_in\":3600}";
+        String momoAccepted = "{\"status\":\"PENDING\"}";
+
+        server.createContext("/mtn/token/", exchange -> respond(exchange, null, 200, () -> token));
+        server.createContext("/mtn/requesttopay", exchange -> mtnRequest(exchange, mtn, momoAccepted));
+        server.createContext("/mtn/disbursement", exchange -> mtnRequest(exchange, mtn, momoAccepted));
+
+        server.createContext("/airtel/v1/oauth/token", exchange -> respond(exchange, null, 200, () -> token));
+        server.createContext("/airtel/collection/v1_0/requesttopay", exchange -> respond(exchange, airtel, 202, () -> momoAccepted));
+        server.createContext("/airtel/disbursement/v1_0/transfer", exchange -> respond(exchange, airtel, 202, () -> momoAccepted));
+        server.createContext("/airtel/standard/v1/payments/", exchange -> respond(exchange, airtel, 200,
+                () -> airtelStatus(lastSegment(exchange))));
+        server.createContext("/airtel/standard/v1/disbursements/", exchange -> respond(exchange, airtel, 200,
+                () -> airtelStatus(lastSegment(exchange))));
+
+        server.createContext("/stripe/v1/payment_intents", exchange -> respond(exchange, stripe, 200, () -> {
+            String id = "pi_stub" + stripeSequence.incrementAndGet();
+            return "{\"id\":\"" + id + "\",\"object\":\"payment_intent\",\"amount\":1000,\"currency\":\"usd\","
+                    + "\"status\":\"requires_payment_method\",\"client_secret\":\"" + id + "_secret_"
+                    + UUID.randomUUID().toString().replace("-", "") + "\"}";
+        }));
+        server.start();
+    }
+
+    public static StubProviderServer start(Behaviour mtn, Behaviour airtel, Behaviour stripe) throws IOException {
+        return new StubProviderServer(mtn, airtel, stripe);
+    }
+
+    /** Base URL for a provider prefix, e.g. {@code url("mtn")}. */
+    public String url(String provider) {
+        return "http://localhost:" + server.getAddress().getPort() + "/" + provider;
+    }
+
+    /** Submissions are accepted with 202; {@code GET .../{id}} reads the status. */
+    private static void mtnRequest(HttpExchange exchange, Behaviour mtn, String accepted) throws IOException {
+        if ("GET".equals(exchange.getRequestMethod())) {
+            respond(exchange, mtn, 200, () -> "{\"financialTransactionId\":\"" + Math.abs(lastSegment(exchange).hashCode())
+                    + "\",\"status\":\"SUCCESSFUL\"}");
+        } else {
+            respond(exchange, mtn, 202, () -> accepted);
+        }
+    }
+
+    private static String airtelStatus(String reference) {
+        return "{\"data\":{\"transaction\":{\"id\":\"" + reference + "\",\"airtel_money_id\":\"MP"
+                + Math.abs(reference.hashCode()) + "\",\"status\":\"TS\"}},"
+                + "\"status\":{\"code\":\"200\",\"success\":true}}";
+    }
+
+    private static String lastSegment(HttpExchange exchange) {
+        String path = exchange.getRequestURI().getPath();
+        return path.substring(path.lastIndexOf('/') + 1);
+    }
+
+    private static void respond(HttpExchange exchange, Behaviour behaviour, int status, Supplier<String> body) throws IOException {
+        try {
+            exchange.getRequestBody().readAllBytes();
+            int code = status;
+            String response;
+            if (behaviour != null) {
+                Thread.sleep(Math.max(0, behaviour.latency().sampleMillis()));
+                if (ThreadLocalRandom.current().nextDouble() < behaviour.errorRate()) {
+                    code = behaviour.errorStatus();
+                }
+            }
+            response = code == status ? body.get() : "{\"error\":\"injected\"}";
+            byte[] bytes = response.getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().add("Content-Type", "application/json");
+            exchange.getResponseHeaders().add("Request-Id", "req_stub");
+            exchange.sendResponseHeaders(code, bytes.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(bytes);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            exchange.close();
+        }
+    }
+
+    /** Application properties that point the services at this server. */
+    public Map<String, Object> providerProperties() {
+        return Map.of(
+                "mtn.apiUrl", url("mtn"),
+                "airtel.apiUrl", url("airtel"),
+                "stripe.apiBase", url("stripe"));
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+}
@@ -0,0 +1,133 @@
+package com.example.pis.load;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.springframework.core.task.VirtualThreadTaskExecutor;
+import org.springframework.mock.env.MockEnvironment;
+import org.springframework.web.client.RestTemplate;
+
+import com.example.pis.service.PaymentPipeline;
+import com.example.pis.service.ProviderHttpClientFactory;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * Compares platform and virtual worker threads for blocking provider I/O.
+ *
+ * <p>Drives 1k and 10k concurrent in-flight payments through {@link PaymentPipeline}
+ * and the pooled provider HTTP client against a local stub that answers after a
+ * fixed delay, and prints throughput and latency percentiles per mode.</p>
+ *
+ * <p>Requires Java 21:
+ * <pre>{@code
+ * mvn -Pjava21 test-compile exec:java -Dexec.classpathScope=test \
+ *     -Dexec.mainClass=com.example.pis.load.VirtualThreadBenchmark \
+ *     -Dexec.args="200 200"   # provider delay ms, platform worker count
+ * }</pre>
+ */
+public final class VirtualThreadBenchmark {
+
+    private static final int[] IN_FLIGHT = {1_000, 10_000};
+
+    private VirtualThreadBenchmark() {}
+
+    public static void main(String[] args) throws Exception {
+        int providerDelayMs = args.length > 0 ? Integer.parseInt(args[0]) : 200;
+        int platformWorkers = args.length > 1 ? Integer.parseInt(args[1]) : 200;
+
+        HttpServer stub = startSlowProvider(providerDelayMs);
+        String url = "http://localhost:" + stub.getAddress().getPort() + "/requesttopay";
+        try {
+            System.out.printf("%-9s %9s %12s %9s %9s %9s %7s%n",
+                    "mode", "inFlight", "payments/s", "p50 ms", "p99 ms", "max ms", "errors");
+            for (int inFlight : IN_FLIGHT) {
+                print("platform", inFlight, run(url, inFlight, platformWorkers, false));
+                print("virtual", inFlight, run(url, inFlight, inFlight, true));
+            }
+        } finally {
+            stub.stop(0);
+        }
+    }
+
+    private static Result run(String url, int inFlight, int workers, boolean virtualThreads) throws Exception {
+        MockEnvironment env = new MockEnvironment()
+                .withProperty("provider.http.stub.maxConnections", String.valueOf(inFlight))
+                .withProperty("provider.http.stub.acquireTimeoutMs", "120000");
+        ProviderHttpClientFactory clients = new ProviderHttpClientFactory(env);
+        RestTemplate restTemplate = clients.create("stub");
+        PaymentPipeline pipeline = new PaymentPipeline(workers, inFlight, virtualThreads);
+
+        long[] latencies = new long[inFlight];
+        AtomicInteger errors = new AtomicInteger();
+        CountDownLatch done = new CountDownLatch(inFlight);
+        Map<String, Object> body = Map.of("amount", "1000", "currency", "UGX");
+
+        long start = System.nanoTime();
+        for (int i = 0; i < inFlight; i++) {
+            int idx = i;
+            long submitted = System.nanoTime();
+            pipeline.submit("bench-" + i, () -> {
+                try {
+                    restTemplate.postForEntity(url, body, String.class);
+                } catch (RuntimeException ex) {
+                    errors.incrementAndGet();
+                } finally {
+                    latencies[idx] = System.nanoTime() - submitted;
+                    done.countDown();
+                }
+            });
+        }
+        done.await(10, TimeUnit.MINUTES);
+        long wallNanos = System.nanoTime() - start;
+
+        pipeline.shutdown();
+        clients.shutdown();
+        return new Result(inFlight / (wallNanos / 1e9), latencies, errors.get());
+    }
+
+    private static HttpServer startSlowProvider(int delayMs) throws IOException {
+        HttpServer server = HttpServer.create(new InetSocketAddress("localhost", 0), 16_384);
+        server.setExecutor(new VirtualThreadTaskExecutor("stub-provider-"));
+        byte[] response = "{\"status\":\"PENDING\"}".getBytes(StandardCharsets.UTF_8);
+        server.createContext("/", exchange -> {
+            try {
+                exchange.getRequestBody().readAllBytes();
+                Thread.sleep(delayMs);
+                exchange.getResponseHeaders().add("Content-Type", "application/json");
+                exchange.sendResponseHeaders(202, response.length);
+                try (OutputStream out = exchange.getResponseBody()) {
+                    out.write(response);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                exchange.close();
+            }
+        });
+        server.start();
+        return server;
+    }
+
+    private static void print(String mode, int inFlight, Result result) {
+        long[] sorted = result.latencies.clone();
+        Arrays.sort(sorted);
+        System.out.printf("%-9s %9d %12.0f %9d %9d %9d %7d%n",
+                mode, inFlight, result.throughput,
+                percentileMillis(sorted, 0.50), percentileMillis(sorted, 0.99),
+                TimeUnit.NANOSECONDS.toMillis(sorted[sorted.length - 1]), result.errors);
+    }
+
+    private static long percentileMillis(long[] sorted, double percentile) {
+        int idx = (int) Math.ceil(percentile * sorted.length) - 1;
+        return TimeUnit.NANOSECONDS.toMillis(sorted[Math.max(idx, 0)]);
+    }
+
+    private record Result(double throughput, long[] latencies, int errors) {}
+}
@@ -0,0 +1,137 @@
+package com.example.pis.security;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import static org.mockito.Mockito.clearInvocations;
+import static org.mockito.Mockito.mockingDetails;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.context.bean.override.mockito.MockitoSpyBean;
+import org.springframework.test.web.servlet.MockMvc;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+
+import com.example.pis.entity.Role;
+import com.example.pis.entity.User;
+import com.example.pis.repository.UserRepository;
+import com.example.pis.service.JwtService;
+
+/**
+ * Load test for the database cost of JWT authentication.
+ *
+ * <p>Sends the same bearer token from several concurrent clients and counts
+ * {@code UserRepository.findByUsername} calls, i.e. user queries per API call,
+ * for each {@code jwt.principalSource} mode.</p>
+ */
+@SpringBootTest
+@ActiveProfiles("test")
+@AutoConfigureMockMvc
+class JwtFilterDbLoadTest {
+
+    private static final int CLIENTS = 8;
+    private static final int REQUESTS = 400;
+    private static final String USERNAME = "load-user";
+
+    private static final Logger logger = LoggerFactory.getLogger(JwtFilterDbLoadTest.class);
+
+    @Nested
+    @TestPropertySource(properties = {"jwt.principalSource=database", "security.userCache.maxEntries=0"})
+    class DatabasePrincipal extends LoadRun {
+        @Test
+        void queriesUserOnEveryRequest() throws Exception {
+            assertEquals(REQUESTS, userLookupsFor(REQUESTS, "database"));
+        }
+    }
+
+    @Nested
+    @TestPropertySource(properties = {"jwt.principalSource=database", "security.userCache.maxEntries=1000"})
+    class CachedDatabasePrincipal extends LoadRun {
+        @Test
+        void queriesUserOncePerTtl() throws Exception {
+            long lookups = userLookupsFor(REQUESTS, "database+cache");
+            assertTrue(lookups >= 1 && lookups <= CLIENTS,
+                    "Only first concurrent misses should hit the database, got " + lookups);
+        }
+    }
+
+    @Nested
+    @TestPropertySource(properties = "jwt.principalSource=claims")
+    class ClaimsPrincipal extends LoadRun {
+        @Test
+        void neverQueriesUser() throws Exception {
+            assertEquals(0, userLookupsFor(REQUESTS, "claims"));
+        }
+    }
+
+    /**
+     * Injected per nested class, so the filter under test is the one built from that
+     * class's {@code @TestPropertySource} rather than the enclosing class's context.
+     */
+    abstract class LoadRun {
+
+        @Autowired
+        private MockMvc mockMvc;
+
+        @Autowired
+        private JwtService jwtService;
+
+        @MockitoSpyBean
+        private UserRepository userRepository;
+
+        @Value("${app.api.key}")
+        private String apiKey;
+
+        @SuppressWarnings("unused")
+        @BeforeEach
+        void setUp() {
+            userRepository.deleteAll();
+            userRepository.save(new User(USERNAME, "not-used", USERNAME + "@example.com", Role.USER));
+            clearInvocations(userRepository);
+        }
+
+        long userLookupsFor(int requests, String mode) throws Exception {
+            String token = jwtService.generateTokenWithClaims(USERNAME, Role.USER);
+            ExecutorService clients = Executors.newFixedThreadPool(CLIENTS);
+            List<Future<Integer>> statuses = new ArrayList<>();
+            long start = System.nanoTime();
+            try {
+                for (int i = 0; i < requests; i++) {
+                    statuses.add(clients.submit(() -> mockMvc.perform(get("/api/payments/no-such-reference")
+                                    .header("Authorization", "Bearer " + token)
+                                    .header("X-Api-Key", apiKey))
+                            .andReturn().getResponse().getStatus()));
+                }
+                for (Future<Integer> status : statuses) {
+                    // 404 means the request was authenticated and reached the controller
+                    assertEquals(404, status.get(30, TimeUnit.SECONDS));
+                }
+            } finally {
+                clients.shutdown();
+            }
+            double seconds = (System.nanoTime() - start) / 1e9;
+
+            long lookups = mockingDetails(userRepository).getInvocations().stream()
+                    .filter(invocation -> invocation.getMethod().getName().equals("findByUsername"))
+                    .count();
+            logger.info("principalSource={} requests={} user queries={} ({}/request, {} queries/s)",
+                    mode, requests, lookups, String.format("%.2f", (double) lookups / requests),
+                    String.format("%.0f", lookups / seconds));
+            return lookups;
+        }
+    }
+}
@@ -1,6 +1,8 @@
 package com.example.pis.security;
 
 import java.io.IOException;
+import java.time.Instant;
+import java.util.Optional;
 
 import org.junit.jupiter.api.AfterEach;
 import static org.junit.jupiter.api.Assertions.assertEquals;
@@ -9,10 +11,9 @@ import static org.junit.jupiter.api.Assertions.assertNull;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
-import static org.mockito.ArgumentMatchers.any;
-import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 import org.mockito.MockitoAnnotations;
@@ -21,6 +22,9 @@ import org.springframework.mock.web.MockHttpServletRequest;
 import org.springframework.mock.web.MockHttpServletResponse;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.core.userdetails.User;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.security.core.userdetails.UserDetailsService;
 
 import com.example.pis.entity.Role;
 import com.example.pis.service.JwtService;
@@ -37,8 +41,10 @@ class JwtFilterUnitTest {
     @Mock
     private JwtService jwtService;  // Mocked service to simulate JWT operations
 
-    @InjectMocks
-    private JwtFilter jwtFilter;    // The filter we are testing
+    @Mock
+    private UserDetailsService userDetailsService;  // Only used in database principal mode
+
+    private JwtFilter jwtFilter;    // The filter we are testing (claims principal mode)
 
     /**
      * Setup method runs before each test. Initializes Mockito mocks and clears
@@ -48,6 +54,7 @@ class JwtFilterUnitTest {
     @BeforeEach
     void setUp() {
         MockitoAnnotations.openMocks(this);
+        jwtFilter = new JwtFilter(jwtService, userDetailsService, new UserDetailsCache(60, 0), "claims");
         SecurityContextHolder.clearContext();
     }
 
@@ -62,9 +69,10 @@ class JwtFilterUnitTest {
     }
 
     /**
-     * Test case for a valid JWT token. Verifies that: - JwtService methods are
-     * called to extract username and role. - SecurityContext is correctly
-     * populated with a UsernamePasswordAuthenticationToken.
+     * Test case for a valid JWT token. Verifies that: - JwtService verifies the
+     * token once. - SecurityContext is correctly populated with a
+     * UsernamePasswordAuthenticationToken built from the claims, without a
+     * user lookup.
      */
     @Test
     void doFilter_ValidToken_SetsAuthentication() throws ServletException, IOException {
@@ -78,16 +86,14 @@ class JwtFilterUnitTest {
         request.addHeader("Authorization", "Bearer " + token);
 
         // Stub JwtService behavior
-        when(jwtService.extractUsername(token)).thenReturn("john");
-        when(jwtService.extractRole(token)).thenReturn(Role.USER);
-        when(jwtService.validateToken(token)).thenReturn(true);
+        when(jwtService.verify(token)).thenReturn(Optional.of(verifiedToken("john", Role.USER)));
 
         // Call the filter
         jwtFilter.doFilterInternal(request, response, filterChain);
 
         // Verify JwtService interactions
-        verify(jwtService).extractUsername(token);
-        verify(jwtService).extractRole(token);
+        verify(jwtService).verify(token);
+        verify(userDetailsService, never()).loadUserByUsername("john");
 
         // Verify that SecurityContext has authentication set
         var authentication = SecurityContextHolder.getContext().getAuthentication();
@@ -99,8 +105,7 @@ class JwtFilterUnitTest {
 
     /**
      * Test case for an invalid JWT token. Verifies that: - JwtService is called
-     * to validate the token. - JwtService does NOT extract username or role. -
-     * SecurityContext remains empty.
+     * to verify the token. - No user is loaded. - SecurityContext remains empty.
      */
     @Test
     void doFilter_InvalidToken_DoesNotSetAuthentication() throws ServletException, IOException {
@@ -114,18 +119,45 @@ class JwtFilterUnitTest {
         request.addHeader("Authorization", "Bearer " + token);
 
         // Stub JwtService behavior: token is invalid
-        when(jwtService.validateToken(token)).thenReturn(false);
+        when(jwtService.verify(token)).thenReturn(Optional.empty());
 
         // Call the filter
         jwtFilter.doFilterInternal(request, response, filterChain);
 
         // Verify JwtService interactions
-        verify(jwtService).validateToken(token);
-        verify(jwtService, never()).extractUsername(any());
-        verify(jwtService, never()).extractRole(any());
+        verify(jwtService).verify(token);
+        verify(userDetailsService, never()).loadUserByUsername("john");
 
         // Verify that SecurityContext has no authentication
         assertNull(SecurityContextHolder.getContext().getAuthentication(),
                 "Authentication should not be set for invalid token");
     }
+
+    /**
+     * Test case for database principal mode with the user cache enabled.
+     * Verifies that the user is loaded once and later requests are served
+     * from the cache.
+     */
+    @Test
+    void doFilter_DatabaseMode_LoadsUserOnceWithCache() throws ServletException, IOException {
+        JwtFilter databaseFilter = new JwtFilter(jwtService, userDetailsService, new UserDetailsCache(60, 100), "database");
+        UserDetails john = User.withUsername("john").password("encoded").roles("USER").build();
+        when(jwtService.verify("validToken")).thenReturn(Optional.of(verifiedToken("john", Role.USER)));
+        when(userDetailsService.loadUserByUsername("john")).thenReturn(john);
+
+        for (int i = 0; i < 3; i++) {
+            SecurityContextHolder.clearContext();
+            MockHttpServletRequest request = new MockHttpServletRequest();
+            request.addHeader("Authorization", "Bearer validToken");
+            databaseFilter.doFilterInternal(request, new MockHttpServletResponse(), new MockFilterChain());
+
+            assertEquals(john, SecurityContextHolder.getContext().getAuthentication().getPrincipal());
+        }
+
+        verify(userDetailsService, times(1)).loadUserByUsername("john");
+    }
+
+    private static JwtService.VerifiedToken verifiedToken(String username, Role role) {
+        return new JwtService.VerifiedToken(username, role, Instant.now().plusSeconds(3600));
+    }
 }
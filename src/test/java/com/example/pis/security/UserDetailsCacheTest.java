@@ -0,0 +1,79 @@
+package com.example.pis.security;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.core.userdetails.User;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.security.core.userdetails.UsernameNotFoundException;
+
+import com.example.pis.support.MutableClock;
+
+/**
+ * Unit tests for UserDetailsCache expiry, invalidation and bounds.
+ */
+class UserDetailsCacheTest {
+
+    private final MutableClock clock =
+            new MutableClock(Instant.parse("2025-01-01T00:00:00Z"));
+    private final AtomicInteger loads = new AtomicInteger();
+    private final Function<String, UserDetails> loader = username -> {
+        loads.incrementAndGet();
+        if (username.startsWith("missing")) {
+            throw new UsernameNotFoundException("User not found");
+        }
+        return User.withUsername(username).password("encoded").roles("USER").build();
+    };
+
+    @Test
+    void get_cachesUntilTtl() {
+        UserDetailsCache cache = new UserDetailsCache(Duration.ofSeconds(60), 10, clock);
+
+        cache.get("john", loader);
+        cache.get("john", loader);
+        clock.advance(Duration.ofSeconds(61));
+        cache.get("john", loader);
+
+        assertEquals(2, loads.get());
+        assertEquals(1, cache.stats().hits());
+    }
+
+    @Test
+    void invalidate_forcesReload() {
+        UserDetailsCache cache = new UserDetailsCache(Duration.ofSeconds(60), 10, clock);
+        cache.get("john", loader);
+
+        cache.invalidate("john");
+        cache.get("john", loader);
+
+        assertEquals(2, loads.get());
+    }
+
+    @Test
+    void get_doesNotCacheMissingUsers() {
+        UserDetailsCache cache = new UserDetailsCache(Duration.ofSeconds(60), 10, clock);
+
+        assertThrows(UsernameNotFoundException.class, () -> cache.get("missing", loader));
+        assertThrows(UsernameNotFoundException.class, () -> cache.get("missing", loader));
+        assertEquals(2, loads.get());
+    }
+
+    @Test
+    void get_isBoundedAndDisabledAtZero() {
+        UserDetailsCache bounded = new UserDetailsCache(Duration.ofSeconds(60), 2, clock);
+        for (String user : new String[] {"a", "b", "c"}) {
+            bounded.get(user, loader);
+        }
+        assertEquals(2, bounded.stats().size());
+
+        UserDetailsCache disabled = new UserDetailsCache(Duration.ofSeconds(60), 0, clock);
+        disabled.get("john", loader);
+        disabled.get("john", loader);
+        assertEquals(0, disabled.stats().size());
+    }
+}
@@ -0,0 +1,83 @@
+package com.example.pis.security;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.Test;
+
+import com.example.pis.exception.CryptographyException;
+
+/**
+ * Unit tests for WebhookSignatureVerifier.
+ */
+class WebhookSignatureVerifierTest {
+
+    private static final String MTN_SECRET = "mtn-secret";
+    private final WebhookSignatureVerifier verifier =
+            new WebhookSignatureVerifier(Map.of("mtn", MTN_SECRET, "airtel", "airtel-secret"), 2);
+
+    @Test
+    void verify_acceptsMatchingSignature() throws Exception {
+        byte[] payload = "{\"id\":\"evt-1\"}".getBytes(StandardCharsets.UTF_8);
+
+        assertTrue(verifier.verify("mtn", payload, sign(MTN_SECRET, payload)));
+    }
+
+    @Test
+    void verify_rejectsSignatureFromOtherSecret() throws Exception {
+        byte[] payload = "{\"id\":\"evt-1\"}".getBytes(StandardCharsets.UTF_8);
+
+        assertFalse(verifier.verify("airtel", payload, sign(MTN_SECRET, payload)));
+    }
+
+    @Test
+    void verify_pooledMacIsResetBetweenUses() throws Exception {
+        byte[] first = "first".getBytes(StandardCharsets.UTF_8);
+        byte[] second = "second".getBytes(StandardCharsets.UTF_8);
+
+        assertFalse(verifier.verify("mtn", first, new byte[32]));
+        assertTrue(verifier.verify("mtn", second, sign(MTN_SECRET, second)));
+        assertTrue(verifier.verify("mtn", first, sign(MTN_SECRET, first)));
+    }
+
+    @Test
+    void verify_isSafeUnderConcurrency() throws Exception {
+        ExecutorService pool = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<Boolean>> results = new ArrayList<>();
+            for (int i = 0; i < 200; i++) {
+                byte[] payload = ("{\"id\":\"evt-" + i + "\"}").getBytes(StandardCharsets.UTF_8);
+                byte[] signature = sign(MTN_SECRET, payload);
+                results.add(pool.submit(() -> verifier.verify("mtn", payload, signature)));
+            }
+            for (Future<Boolean> result : results) {
+                assertTrue(result.get());
+            }
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    void verify_failsForUnconfiguredProvider() {
+        assertThrows(CryptographyException.class,
+                () -> verifier.verify("stripe", new byte[0], new byte[32]));
+    }
+
+    private static byte[] sign(String secret, byte[] payload) throws Exception {
+        Mac mac = Mac.getInstance("HmacSHA256");
+        mac.init(new SecretKeySpec(secret.getBytes(StandardCharsets.UTF_8), "HmacSHA256"));
+        return mac.doFinal(payload);
+    }
+}
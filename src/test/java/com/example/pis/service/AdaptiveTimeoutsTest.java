@@ -0,0 +1,61 @@
+package com.example.pis.service;
+
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.env.MockEnvironment;
+
+/**
+ * Unit tests for AdaptiveTimeouts percentile tracking and clamping.
+ */
+class AdaptiveTimeoutsTest {
+
+    private final MockEnvironment env = new MockEnvironment()
+            .withProperty("provider.http.default.readTimeoutMs", "30000")
+            .withProperty("provider.http.default.minReadTimeoutMs", "100")
+            .withProperty("provider.http.default.minSamples", "10")
+            .withProperty("provider.http.default.latencyWindow", "100")
+            .withProperty("provider.http.airtel.adaptiveTimeout", "false");
+    private final AdaptiveTimeouts timeouts = new AdaptiveTimeouts(env);
+
+    @Test
+    void usesConfiguredTimeoutUntilEnoughSamples() {
+        record("mtn", "collect", 9, 200);
+
+        assertEquals(Duration.ofSeconds(30), timeouts.timeoutFor("mtn", "collect"));
+        assertTrue(timeouts.latency("mtn", "collect", 95).isEmpty());
+    }
+
+    @Test
+    void derivesTimeoutFromPercentileTimesMultiplier() {
+        record("mtn", "collect", 100, 200);
+
+        assertEquals(Duration.ofMillis(600), timeouts.timeoutFor("mtn", "collect"));
+        assertEquals(Duration.ofMillis(200), timeouts.latency("mtn", "collect", 95).orElseThrow());
+        assertEquals(Duration.ofSeconds(30), timeouts.fixedTimeout("mtn"));
+    }
+
+    @Test
+    void clampsToMinimumAndKeepsEndpointsApart() {
+        record("mtn", "token", 100, 5);
+        record("mtn", "collect", 100, 2_000);
+
+        assertEquals(Duration.ofMillis(100), timeouts.timeoutFor("mtn", "token"));
+        assertEquals(Duration.ofSeconds(6), timeouts.timeoutFor("mtn", "collect"));
+    }
+
+    @Test
+    void disabledProviderKeepsConfiguredTimeout() {
+        record("airtel", "collect", 100, 50);
+
+        assertEquals(Duration.ofSeconds(30), timeouts.timeoutFor("airtel", "collect"));
+    }
+
+    private void record(String provider, String operation, int samples, long millis) {
+        for (int i = 0; i < samples; i++) {
+            timeouts.record(provider, operation, Duration.ofMillis(millis));
+        }
+    }
+}
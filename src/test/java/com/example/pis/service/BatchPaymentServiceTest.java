@@ -0,0 +1,205 @@
+package com.example.pis.service;
+
+import java.net.SocketTimeoutException;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import org.springframework.mock.env.MockEnvironment;
+import org.springframework.web.client.ResourceAccessException;
+
+import com.example.pis.dto.BatchItemResult;
+import com.example.pis.dto.BatchPaymentRequest;
+import com.example.pis.dto.BatchPaymentRequest.Item;
+import com.example.pis.dto.MtnResponseDTO;
+import com.example.pis.entity.PaymentTransaction;
+import com.example.pis.enums.PaymentStatus;
+import com.example.pis.exception.BatchValidationException;
+import com.example.pis.exception.ProviderUnavailableException;
+import com.example.pis.repository.PaymentOutboxRepository;
+import com.example.pis.repository.PaymentTransactionRepository;
+
+/**
+ * Unit tests for BatchPaymentService validation, batched inserts and resumption.
+ */
+class BatchPaymentServiceTest {
+
+    private MtnService mtnService;
+    private PaymentTransactionRepository txRepo;
+    private BatchPaymentService service;
+
+    @BeforeEach
+    void setUp() {
+        mtnService = mock(MtnService.class);
+        txRepo = mock(PaymentTransactionRepository.class);
+        when(txRepo.transition(any(), any(), any(), any(), any())).thenReturn(1);
+        service = new BatchPaymentService(mtnService, mock(AirtelService.class),
+                new PaymentTransactionService(txRepo, mock(ProviderResponseStore.class), new IdempotencyCache(600, 5, 0, 1),
+                        mock(PaymentOutboxRepository.class)),
+                new MockEnvironment().withProperty("payments.batch.default.parallelism", "2"),
+                10, Duration.ofSeconds(60), Clock.systemUTC());
+    }
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        service.shutdown();
+    }
+
+    @Test
+    void prepare_reportsEveryInvalidItemAndPersistsNothing() {
+        BatchPaymentRequest request = new BatchPaymentRequest(List.of(
+                new Item("256700000001", 1000L, "UGX", "B-1"),
+                new Item("12", 1000L, "UGX", "B-2"),
+                new Item("256700000003", 0L, "XXX", "B-3"),
+                new Item("256700000004", 1000L, "UGX", "B-1")));
+
+        BatchValidationException ex = assertThrows(BatchValidationException.class,
+                () -> service.prepare("mtn", "withdraw", request));
+
+        assertEquals(List.of(
+                "items[1].phone: Phone number must contain 9–15 digits",
+                "items[2].amount: Amount must be greater than 0",
+                "items[2].currency: Unsupported currency: XXX",
+                "items[3].reference: Duplicate reference in batch: B-1"), ex.getErrors());
+        verify(txRepo, never()).saveAll(any());
+    }
+
+    @Test
+    void run_insertsNewItemsInOneBatchAndCallsTheProviderForEach() {
+        when(txRepo.findByReferenceIn(anyCollection())).thenReturn(List.of());
+        when(mtnService.initiateWithdrawal(anyString(), anyLong(), anyString(), anyString()))
+                .thenReturn(new MtnResponseDTO("202", "SUCCESS"));
+
+        List<BatchItemResult> results = run(new BatchPaymentRequest(List.of(
+                new Item("256700000001", 1000L, "ugx", "B-1"),
+                new Item("256700000002", 2000L, "UGX", " B-2 "))));
+
+        verify(txRepo, times(1)).saveAll(argThat(rows -> ((List<?>) rows).size() == 2));
+        verify(txRepo, times(1)).findByReferenceIn(anyCollection());
+        verify(mtnService).initiateWithdrawal("256700000002", 2000L, "B-2", "UGX");
+        assertEquals(2, results.size());
+        results.forEach(r -> {
+            assertEquals(BatchItemResult.PROCESSED, r.outcome());
+            assertEquals(PaymentStatus.INITIATED, r.status());
+        });
+    }
+
+    @Test
+    void run_resumesOnlyStalePendingItemsOfAResubmittedBatch() {
+        PaymentTransaction done = pending("B-1", Instant.now().minus(Duration.ofMinutes(5)));
+        done.markFailed();
+        PaymentTransaction stale = pending("B-2", Instant.now().minus(Duration.ofMinutes(5)));
+        PaymentTransaction recent = pending("B-3", Instant.now());
+        when(txRepo.findByReferenceIn(anyCollection())).thenReturn(List.of(done, stale, recent));
+        when(mtnService.initiateWithdrawal(anyString(), anyLong(), anyString(), anyString()))
+                .thenReturn(new MtnResponseDTO("202", "SUCCESS"));
+
+        List<BatchItemResult> results = run(new BatchPaymentRequest(List.of(
+                new Item("256700000001", 1000L, "UGX", "B-1"),
+                new Item("256700000002", 1000L, "UGX", "B-2"),
+                new Item("256700000003", 1000L, "UGX", "B-3"))));
+
+        verify(txRepo, never()).saveAll(any());
+        verify(mtnService, times(1)).initiateWithdrawal(anyString(), anyLong(), anyString(), anyString());
+        verify(mtnService).initiateWithdrawal(eq("256700000002"), anyLong(), eq("B-2"), anyString());
+        assertEquals(BatchItemResult.EXISTING, outcome(results, "B-1"));
+        assertEquals(BatchItemResult.DEFERRED, outcome(results, "B-3"));
+        assertEquals(BatchItemResult.PROCESSED, outcome(results, "B-2"));
+    }
+
+    @Test
+    void run_leavesItemsPendingWhenTheProviderIsUnavailable() {
+        when(txRepo.findByReferenceIn(anyCollection())).thenReturn(List.of());
+        when(mtnService.initiateWithdrawal(anyString(), anyLong(), anyString(), anyString()))
+                .thenThrow(new ProviderUnavailableException("mtn", "Circuit open", Duration.ofSeconds(30)));
+
+        List<BatchItemResult> results = run(new BatchPaymentRequest(List.of(
+                new Item("256700000001", 1000L, "UGX", "B-1"))));
+
+        assertEquals(1, results.size());
+        assertEquals(BatchItemResult.DEFERRED, results.get(0).outcome());
+        assertEquals(PaymentStatus.PENDING, results.get(0).status());
+        verify(txRepo, never()).transition(any(), any(), any(), any(), any());
+    }
+
+    @Test
+    void run_leavesItemsPendingWhenTheProviderCallTimesOut() {
+        when(txRepo.findByReferenceIn(anyCollection())).thenReturn(List.of());
+        when(mtnService.initiateWithdrawal(anyString(), anyLong(), anyString(), anyString()))
+                .thenThrow(new ResourceAccessException("Read timed out", new SocketTimeoutException()));
+
+        List<BatchItemResult> results = run(new BatchPaymentRequest(List.of(
+                new Item("256700000001", 1000L, "UGX", "B-1"))));
+
+        assertEquals(BatchItemResult.DEFERRED, results.get(0).outcome());
+        assertEquals(PaymentStatus.PENDING, results.get(0).status());
+        verify(txRepo, never()).transition(any(), any(), any(), any(), any());
+    }
+
+    @Test
+    void prepare_rejectsReferencesUsedForADifferentPayment() {
+        when(txRepo.findByReferenceIn(anyCollection())).thenReturn(List.of(pending("B-1", Instant.now())));
+
+        BatchValidationException ex = assertThrows(BatchValidationException.class, () -> service.prepare(
+                "mtn", "withdraw", new BatchPaymentRequest(List.of(new Item("256700000001", 999L, "UGX", "B-1")))));
+
+        assertEquals(List.of("items[0].reference: Reference already used by a different payment: B-1"), ex.getErrors());
+    }
+
+    private List<BatchItemResult> run(BatchPaymentRequest request) {
+        List<BatchItemResult> results = new ArrayList<>();
+        service.run(service.prepare("mtn", "withdraw", request), results::add);
+        return results;
+    }
+
+    private static String outcome(List<BatchItemResult> results, String reference) {
+        return results.stream().filter(r -> r.reference().equals(reference)).findFirst().orElseThrow().outcome();
+    }
+
+    @Test
+    void prepare_rejectsACollectionReferenceResubmittedAsAWithdrawal() {
+        PaymentTransaction collection = PaymentTransactionService.pending("mtn", "collect", "B-1", 1000L, "UGX");
+        collection.setCreatedAt(Instant.now().minus(Duration.ofMinutes(5)));
+        when(txRepo.findByReferenceIn(anyCollection())).thenReturn(List.of(collection));
+
+        BatchValidationException ex = assertThrows(BatchValidationException.class, () -> service.prepare(
+                "mtn", "withdraw", new BatchPaymentRequest(List.of(new Item("256700000001", 1000L, "UGX", "B-1")))));
+
+        assertEquals(List.of("items[0].reference: Reference already used by a different payment: B-1"), ex.getErrors());
+        verify(mtnService, never()).initiateWithdrawal(anyString(), anyLong(), anyString(), anyString());
+    }
+
+    @Test
+    void prepare_rejectsRowsWithoutAnOperation() {
+        PaymentTransaction legacy = pending("B-1", Instant.now().minus(Duration.ofMinutes(5)));
+        legacy.setOperation(null);
+        when(txRepo.findByReferenceIn(anyCollection())).thenReturn(List.of(legacy));
+
+        assertThrows(BatchValidationException.class, () -> service.prepare(
+                "mtn", "withdraw", new BatchPaymentRequest(List.of(new Item("256700000001", 1000L, "UGX", "B-1")))));
+    }
+
+    private static PaymentTransaction pending(String reference, Instant createdAt) {
+        PaymentTransaction tx = PaymentTransactionService.pending("mtn", "withdraw", reference, 1000L, "UGX");
+        tx.setCreatedAt(createdAt);
+        return tx;
+    }
+}
@@ -0,0 +1,129 @@
+package com.example.pis.service;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.Test;
+
+import com.example.pis.dto.PaymentTransactionSummary;
+import com.example.pis.enums.PaymentStatus;
+import com.example.pis.support.MutableClock;
+
+/**
+ * Unit tests for IdempotencyCache expiry, bounds, claims and statistics.
+ */
+class IdempotencyCacheTest {
+
+    private final MutableClock clock = new MutableClock(Instant.parse("2025-01-01T00:00:00Z"));
+    private final AtomicInteger loads = new AtomicInteger();
+    private final Function<String, Optional<PaymentTransactionSummary>> loader = reference -> {
+        loads.incrementAndGet();
+        return reference.startsWith("unknown") ? Optional.empty() : Optional.of(summary(reference, PaymentStatus.SUCCESS));
+    };
+
+    private IdempotencyCache cache(int maxEntries) {
+        return new IdempotencyCache(Duration.ofSeconds(600), Duration.ofSeconds(5), maxEntries,
+                Duration.ofSeconds(5), clock);
+    }
+
+    @Test
+    void find_cachesSettledOutcomesUntilTtl() {
+        IdempotencyCache cache = cache(10);
+
+        cache.find("ref-1", loader);
+        cache.find("ref-1", loader);
+        clock.advance(Duration.ofSeconds(601));
+        cache.find("ref-1", loader);
+
+        assertEquals(2, loads.get());
+        assertEquals(1, cache.stats().hits());
+        assertEquals(2, cache.stats().misses());
+    }
+
+    @Test
+    void put_keepsPendingOutcomesOnlyBriefly() {
+        IdempotencyCache cache = cache(10);
+        cache.put(summary("ref-1", PaymentStatus.PENDING));
+
+        assertEquals(PaymentStatus.PENDING, cache.find("ref-1", loader).orElseThrow().status());
+        clock.advance(Duration.ofSeconds(6));
+
+        assertEquals(PaymentStatus.SUCCESS, cache.find("ref-1", loader).orElseThrow().status());
+        assertEquals(1, loads.get());
+    }
+
+    @Test
+    void find_doesNotCacheUnknownReferences() {
+        IdempotencyCache cache = cache(10);
+
+        cache.find("unknown-1", loader);
+        cache.find("unknown-1", loader);
+
+        assertEquals(2, loads.get());
+        assertEquals(0, cache.stats().size());
+    }
+
+    @Test
+    void put_evictsOldestBeyondMaxEntries() {
+        IdempotencyCache cache = cache(2);
+
+        cache.put(summary("ref-1", PaymentStatus.SUCCESS));
+        cache.put(summary("ref-2", PaymentStatus.SUCCESS));
+        cache.put(summary("ref-3", PaymentStatus.SUCCESS));
+
+        assertEquals(2, cache.stats().size());
+        cache.find("ref-1", loader);
+        assertEquals(1, loads.get());
+    }
+
+    @Test
+    void claim_isExclusiveAndDuplicatesReceiveTheReleasedOutcome() throws Exception {
+        IdempotencyCache cache = cache(10);
+        assertTrue(cache.claim("ref-1"));
+        assertFalse(cache.claim("ref-1"));
+
+        CompletableFuture<Optional<PaymentTransactionSummary>> duplicate = new CompletableFuture<>();
+        Thread waiter = new Thread(() -> duplicate.complete(cache.find("ref-1", loader)));
+        waiter.start();
+        while (waiter.getState() != Thread.State.TIMED_WAITING) {
+            Thread.onSpinWait();
+        }
+        cache.release("ref-1", summary("ref-1", PaymentStatus.FAILED));
+
+        assertEquals(PaymentStatus.FAILED, duplicate.get(5, TimeUnit.SECONDS).orElseThrow().status());
+        assertEquals(0, loads.get());
+        assertEquals(1, cache.stats().waits());
+        assertTrue(cache.claim("ref-1"));
+    }
+
+    @Test
+    void release_withoutOutcomeSendsDuplicatesToTheLoader() {
+        IdempotencyCache cache = cache(10);
+        assertTrue(cache.claim("ref-1"));
+        cache.release("ref-1", null);
+
+        assertEquals(PaymentStatus.SUCCESS, cache.find("ref-1", loader).orElseThrow().status());
+        assertEquals(1, loads.get());
+    }
+
+    @Test
+    void claim_refusesReferencesAlreadyCached() {
+        IdempotencyCache cache = cache(10);
+        cache.put(summary("ref-1", PaymentStatus.SUCCESS));
+
+        assertFalse(cache.claim("ref-1"));
+        assertTrue(cache.claim(""));
+    }
+
+    private static PaymentTransactionSummary summary(String reference, PaymentStatus status) {
+        return new PaymentTransactionSummary(1L, reference, "mtn", null, status, 500L, "UGX", null, Instant.now());
+    }
+}
@@ -0,0 +1,96 @@
+package com.example.pis.service;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.Test;
+
+import com.example.pis.support.MutableClock;
+
+/**
+ * Unit tests for InMemoryEventIdStore deduplication, expiry and bounds.
+ */
+class InMemoryEventIdStoreTest {
+
+    private final MutableClock clock =
+            new MutableClock(Instant.parse("2025-01-01T00:00:00Z"));
+
+    @Test
+    void markIfNew_acceptsFirstDeliveryOnly() {
+        InMemoryEventIdStore store = new InMemoryEventIdStore(Duration.ofMinutes(10), 100, clock);
+
+        assertTrue(store.markIfNew("mtn:evt-1"));
+        assertFalse(store.markIfNew("mtn:evt-1"));
+        assertTrue(store.markIfNew("airtel:evt-1"));
+    }
+
+    @Test
+    void markIfNew_acceptsAgainAfterTtl() {
+        InMemoryEventIdStore store = new InMemoryEventIdStore(Duration.ofMinutes(10), 100, clock);
+        store.markIfNew("evt-1");
+
+        clock.advance(Duration.ofMinutes(11));
+
+        assertTrue(store.markIfNew("evt-1"));
+        assertEquals(1, store.size());
+    }
+
+    @Test
+    void markIfNew_evictsOldestBeyondMaxEntries() {
+        InMemoryEventIdStore store = new InMemoryEventIdStore(Duration.ofMinutes(10), 3, clock);
+        for (int i = 0; i < 5; i++) {
+            store.markIfNew("evt-" + i);
+        }
+
+        assertEquals(3, store.size());
+        assertTrue(store.markIfNew("evt-0"));
+        assertFalse(store.markIfNew("evt-4"));
+    }
+
+    @Test
+    void forget_allowsRedelivery() {
+        InMemoryEventIdStore store = new InMemoryEventIdStore(Duration.ofMinutes(10), 100, clock);
+        store.markIfNew("evt-1");
+
+        store.forget("evt-1");
+
+        assertTrue(store.markIfNew("evt-1"));
+    }
+
+    @Test
+    void markIfNew_letsExactlyOneConcurrentDeliveryThrough() throws Exception {
+        InMemoryEventIdStore store = new InMemoryEventIdStore(Duration.ofMinutes(10), 100);
+        int deliveries = 32;
+        ExecutorService pool = Executors.newFixedThreadPool(deliveries);
+        CountDownLatch start = new CountDownLatch(1);
+        AtomicInteger accepted = new AtomicInteger();
+        try {
+            for (int i = 0; i < deliveries; i++) {
+                pool.execute(() -> {
+                    try {
+                        start.await();
+                        if (store.markIfNew("stripe:evt-race")) {
+                            accepted.incrementAndGet();
+                        }
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                });
+            }
+            start.countDown();
+        } finally {
+            pool.shutdown();
+            assertTrue(pool.awaitTermination(5, TimeUnit.SECONDS));
+        }
+
+        assertEquals(1, accepted.get());
+    }
+}
@@ -0,0 +1,88 @@
+package com.example.pis.service;
+
+import java.time.Duration;
+import java.time.Instant;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.dao.DataIntegrityViolationException;
+
+import com.example.pis.repository.ProcessedWebhookEventRepository;
+import com.example.pis.support.MutableClock;
+
+/**
+ * Unit tests for JdbcEventIdStore with a mocked repository.
+ */
+class JdbcEventIdStoreTest {
+
+    private final MutableClock clock =
+            new MutableClock(Instant.parse("2025-01-01T00:00:00Z"));
+    private final ProcessedWebhookEventRepository repository = mock(ProcessedWebhookEventRepository.class);
+    private final JdbcEventIdStore store = new JdbcEventIdStore(
+            repository,
+            new InMemoryEventIdStore(Duration.ofHours(1), 100, clock),
+            Duration.ofHours(1),
+            Duration.ofHours(1),
+            clock);
+
+    @AfterEach
+    void tearDown() {
+        store.shutdown();
+    }
+
+    @Test
+    void markIfNew_insertsOnceAndAnswersRepeatsFromMemory() {
+        assertTrue(store.markIfNew("mtn:evt-1"));
+        assertFalse(store.markIfNew("mtn:evt-1"));
+
+        verify(repository, times(1)).insert(eq("mtn:evt-1"), any(Instant.class));
+    }
+
+    @Test
+    void markIfNew_returnsFalseWhenAnotherNodeInsertedFirst() {
+        when(repository.insert(eq("mtn:evt-2"), any(Instant.class)))
+                .thenThrow(new DataIntegrityViolationException("duplicate key"));
+
+        assertFalse(store.markIfNew("mtn:evt-2"));
+        assertFalse(store.markIfNew("mtn:evt-2"));
+        verify(repository, times(2)).insert(eq("mtn:evt-2"), any(Instant.class));
+    }
+
+    @Test
+    void markIfNew_acceptsRetryOnceTheOtherNodeForgotTheId() {
+        when(repository.insert(eq("mtn:evt-4"), any(Instant.class)))
+                .thenThrow(new DataIntegrityViolationException("duplicate key"))
+                .thenReturn(1);
+
+        assertFalse(store.markIfNew("mtn:evt-4"));
+        // the inserting node failed to apply the event and deleted the row
+        assertTrue(store.markIfNew("mtn:evt-4"));
+    }
+
+    @Test
+    void markIfNew_releasesLocalMarkWhenDatabaseFails() {
+        when(repository.insert(eq("mtn:evt-3"), any(Instant.class)))
+                .thenThrow(new DataAccessResourceFailureException("db down"))
+                .thenReturn(1);
+
+        assertThrows(DataAccessResourceFailureException.class, () -> store.markIfNew("mtn:evt-3"));
+        assertTrue(store.markIfNew("mtn:evt-3"));
+    }
+
+    @Test
+    void purgeExpired_deletesRowsOlderThanTtl() {
+        store.purgeExpired();
+
+        verify(repository).deleteOlderThan(Instant.parse("2024-12-31T23:00:00Z"));
+    }
+}
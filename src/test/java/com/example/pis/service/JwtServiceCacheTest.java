@@ -0,0 +1,106 @@
+package com.example.pis.service;
+
+import java.time.Duration;
+import java.time.Instant;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.Test;
+
+import com.example.pis.entity.Role;
+import com.example.pis.support.MutableClock;
+
+/**
+ * Unit tests for JwtService single-parse verification and its verified-token cache.
+ */
+class JwtServiceCacheTest {
+
+    private static final String SECRET = "AAECAwQFBgcICQoLDA0ODxAREhMUFRYXGBkaGxwdHh8=";
+
+    private final MutableClock clock =
+            new MutableClock(Instant.now());
+
+    private JwtService service(int cacheSize) {
+        return new JwtService(SECRET, 3_600_000L, "test-issuer", "test-audience", cacheSize, clock);
+    }
+
+    @Test
+    void verify_returnsSubjectRoleAndExpiry() {
+        JwtService jwtService = service(10);
+        String token = jwtService.generateTokenWithClaims("alice", Role.ADMIN);
+
+        JwtService.VerifiedToken verified = jwtService.verify(token).orElseThrow();
+
+        assertEquals("alice", verified.username());
+        assertEquals(Role.ADMIN, verified.role());
+        assertTrue(verified.expiresAt().isAfter(Instant.now()));
+    }
+
+    @Test
+    void verify_tokenWithoutRoleHasNullRole() {
+        JwtService jwtService = service(10);
+
+        assertNull(jwtService.verify(jwtService.generateToken("bob")).orElseThrow().role());
+    }
+
+    @Test
+    void verify_repeatedTokenIsServedFromCache() {
+        JwtService jwtService = service(10);
+        String token = jwtService.generateTokenWithClaims("alice", Role.USER);
+
+        jwtService.verify(token);
+        jwtService.verify(token);
+        jwtService.verify(token);
+
+        JwtService.TokenCacheStats stats = jwtService.cacheStats();
+        assertEquals(2, stats.hits());
+        assertEquals(1, stats.misses());
+        assertEquals(1, stats.size());
+    }
+
+    @Test
+    void verify_rejectsTamperedTokenAndDoesNotCacheIt() {
+        JwtService jwtService = service(10);
+        String token = jwtService.generateTokenWithClaims("alice", Role.USER);
+        String tampered = token.substring(0, token.length() - 2) + "xx";
+
+        assertFalse(jwtService.verify(tampered).isPresent());
+        assertFalse(jwtService.verify(tampered).isPresent());
+        assertEquals(0, jwtService.cacheStats().size());
+    }
+
+    @Test
+    void verify_cachedEntryExpiresAtTokenExpiry() {
+        JwtService jwtService = service(10);
+        String token = jwtService.generateTokenWithClaims("alice", Role.USER);
+        jwtService.verify(token);
+
+        clock.advance(Duration.ofHours(2));
+        jwtService.verify(token);
+
+        assertEquals(0, jwtService.cacheStats().hits());
+        assertEquals(2, jwtService.cacheStats().misses());
+    }
+
+    @Test
+    void verify_cacheIsBounded() {
+        JwtService jwtService = service(2);
+        for (String user : new String[] {"a", "b", "c", "d"}) {
+            assertTrue(jwtService.verify(jwtService.generateTokenWithClaims(user, Role.USER)).isPresent());
+        }
+
+        assertEquals(2, jwtService.cacheStats().size());
+    }
+
+    @Test
+    void verify_disabledCacheStillVerifies() {
+        JwtService jwtService = service(0);
+        String token = jwtService.generateTokenWithClaims("alice", Role.USER);
+
+        assertTrue(jwtService.verify(token).isPresent());
+        assertTrue(jwtService.verify(token).isPresent());
+        assertEquals(0, jwtService.cacheStats().hits());
+    }
+}
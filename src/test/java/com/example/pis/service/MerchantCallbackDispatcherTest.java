@@ -0,0 +1,194 @@
+package com.example.pis.service;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.mock.env.MockEnvironment;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.example.pis.dto.OutboxMessage;
+import com.example.pis.dto.PendingCallback;
+import com.example.pis.entity.MerchantCallback;
+import com.example.pis.enums.PaymentStatus;
+import com.example.pis.repository.MerchantCallbackRepository;
+import com.example.pis.support.StubCallbackReceiver;
+import com.example.pis.support.StubCallbackReceiver.Received;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+/**
+ * Delivers callbacks to a {@link StubCallbackReceiver} over real HTTP: signing,
+ * retries, abandonment, deduplication and recovery of queued callbacks.
+ */
+class MerchantCallbackDispatcherTest {
+
+    private final AtomicLong ids = new AtomicLong();
+    private MerchantCallbackRepository repository;
+    private StubCallbackReceiver receiver;
+    private ProviderHttpClientFactory httpClientFactory;
+    private MerchantCallbackDispatcher dispatcher;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        repository = mock(MerchantCallbackRepository.class);
+        when(repository.save(any())).thenAnswer(invocation -> {
+            ReflectionTestUtils.setField(invocation.<MerchantCallback>getArgument(0), "id", ids.incrementAndGet());
+            return invocation.getArgument(0);
+        });
+        when(repository.findDue(any(), any(), any())).thenReturn(List.of());
+        when(repository.claim(any(), any(), any())).thenReturn(1);
+        receiver = StubCallbackReceiver.start("acme", "acme-secret");
+        MockEnvironment env = new MockEnvironment()
+                .withProperty("payments.callbacks.merchants", "acme")
+                .withProperty("payments.callbacks.acme.url", receiver.url().toString())
+                .withProperty("payments.callbacks.acme.secret", "acme-secret")
+                .withProperty("payments.callbacks.acme.referencePrefix", "acme-")
+                .withProperty("payments.callbacks.acme.concurrency", "2")
+                .withProperty("payments.callbacks.tickMillis", "5")
+                .withProperty("payments.callbacks.initialBackoffMillis", "20")
+                .withProperty("payments.callbacks.maxAttempts", "3");
+        httpClientFactory = new ProviderHttpClientFactory(env);
+        dispatcher = new MerchantCallbackDispatcher(repository, httpClientFactory,
+                new PaymentMetrics(new SimpleMeterRegistry()), new ObjectMapper().findAndRegisterModules(), env);
+    }
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        dispatcher.shutdown();
+        receiver.close();
+        httpClientFactory.shutdown();
+    }
+
+    @Test
+    void settledEvent_isDeliveredSignedWithEventIdAsCallbackId() throws InterruptedException {
+        dispatcher.start();
+
+        dispatcher.onPaymentEvent(event(42L, "acme-1", PaymentStatus.SUCCESS));
+
+        assertTrue(receiver.await(1, Duration.ofSeconds(2)));
+        verify(repository, timeout(2000)).markDelivered(eq(1L), any());
+        Received callback = receiver.received().get(0);
+        assertTrue(callback.signatureValid());
+        assertEquals("42", callback.callbackId());
+        assertTrue(new String(callback.body(), StandardCharsets.UTF_8).contains("\"reference\":\"acme-1\""));
+    }
+
+    @Test
+    void unsettledOrOtherMerchantsEvents_areNotQueued() {
+        dispatcher.start();
+
+        dispatcher.onPaymentEvent(event(1L, "acme-1", PaymentStatus.INITIATED));
+        dispatcher.onPaymentEvent(event(2L, "other-1", PaymentStatus.SUCCESS));
+
+        verify(repository, never()).save(any());
+    }
+
+    @Test
+    void serverError_isRetriedWithBackoffUntilDelivered() throws InterruptedException {
+        receiver.respondWith(503);
+        dispatcher.start();
+
+        dispatcher.onPaymentEvent(event(42L, "acme-1", PaymentStatus.FAILED));
+
+        assertTrue(receiver.await(2, Duration.ofSeconds(2)));
+        verify(repository).markRetry(eq(1L), any(), eq("HTTP 503"));
+        verify(repository, timeout(2000)).markDelivered(eq(1L), any());
+        assertEquals(1, dispatcher.stats().retried());
+    }
+
+    @Test
+    void clientError_isAbandonedWithoutRetry() {
+        receiver.respondWith(400);
+        dispatcher.start();
+
+        dispatcher.onPaymentEvent(event(42L, "acme-1", PaymentStatus.SUCCESS));
+
+        verify(repository, timeout(2000)).markAbandoned(eq(1L), any(), eq("HTTP 400"));
+        verify(repository, never()).markRetry(any(), any(), any());
+        assertEquals(1, receiver.received().size());
+    }
+
+    @Test
+    void redeliveredEvent_isQueuedOnce() throws InterruptedException {
+        // Stubbed before start: re-stubbing while the delivery thread calls the mock races with it
+        doAnswer(invocation -> {
+            ReflectionTestUtils.setField(invocation.<MerchantCallback>getArgument(0), "id", ids.incrementAndGet());
+            return invocation.getArgument(0);
+        }).doThrow(new DataIntegrityViolationException("idx_merchant_callbacks_event")).when(repository).save(any());
+        dispatcher.start();
+        dispatcher.onPaymentEvent(event(42L, "acme-1", PaymentStatus.SUCCESS));
+
+        dispatcher.onPaymentEvent(event(42L, "acme-1", PaymentStatus.SUCCESS));
+
+        assertTrue(receiver.await(1, Duration.ofSeconds(2)));
+        verify(repository, timeout(2000)).markDelivered(eq(1L), any());
+        assertEquals(1, receiver.received().size());
+        assertEquals(1, dispatcher.stats().duplicates());
+    }
+
+    @Test
+    void start_deliversCallbacksQueuedBeforeRestart() throws InterruptedException {
+        byte[] payload = "{\"reference\":\"acme-7\"}".getBytes(StandardCharsets.UTF_8);
+        when(repository.findDue(any(), any(), any()))
+                .thenReturn(List.of(new PendingCallback(7L, "acme", 99L, payload, Instant.now(), Instant.now(), 1)))
+                .thenReturn(List.of());
+
+        dispatcher.start();
+
+        assertTrue(receiver.await(1, Duration.ofSeconds(2)));
+        verify(repository, timeout(2000)).markDelivered(eq(7L), any());
+        assertEquals("99", receiver.received().get(0).callbackId());
+    }
+
+    @Test
+    void callbackClaimedByAnotherNode_isNotSent() throws InterruptedException {
+        when(repository.claim(any(), any(), any())).thenReturn(0);
+        dispatcher.start();
+
+        dispatcher.onPaymentEvent(event(42L, "acme-1", PaymentStatus.SUCCESS));
+
+        verify(repository, timeout(2000)).claim(eq(1L), any(), any());
+        assertFalse(receiver.await(1, Duration.ofMillis(200)));
+        verify(repository, never()).markDelivered(any(), any());
+        assertEquals(0, dispatcher.stats().scheduled());
+    }
+
+    @Test
+    void merchantWithoutReferencePrefix_isRejectedAtStartup() {
+        MockEnvironment env = new MockEnvironment()
+                .withProperty("payments.callbacks.merchants", "acme")
+                .withProperty("payments.callbacks.acme.url", receiver.url().toString())
+                .withProperty("payments.callbacks.acme.secret", "acme-secret")
+                .withProperty("payments.callbacks.acme.referencePrefix", " ");
+
+        assertThrows(IllegalStateException.class, () -> new MerchantCallbackDispatcher(repository, httpClientFactory,
+                new PaymentMetrics(new SimpleMeterRegistry()), new ObjectMapper(), env));
+    }
+
+    private static OutboxMessage event(Long eventId, String reference, PaymentStatus status) {
+        return new OutboxMessage(eventId, 10L, reference, "mtn", "fin-1", status, 1000L, "UGX",
+                Instant.parse("2025-01-01T12:00:00Z"));
+    }
+}
@@ -0,0 +1,154 @@
+package com.example.pis.service;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import org.springframework.mock.env.MockEnvironment;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.example.pis.dto.OutboxMessage;
+import com.example.pis.dto.PaymentTransactionSummary;
+import com.example.pis.entity.PaymentOutboxEvent;
+import com.example.pis.enums.PaymentStatus;
+import com.example.pis.repository.PaymentOutboxRepository;
+import com.example.pis.support.MutableClock;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+/**
+ * Unit tests for OutboxRelay batching, claiming, per-reference ordering and retry bookkeeping.
+ */
+class OutboxRelayTest {
+
+    private final MutableClock clock = new MutableClock(Instant.parse("2025-01-01T12:00:00Z"));
+    private final List<List<OutboxMessage>> published = new ArrayList<>();
+    private PaymentOutboxRepository repository;
+    private MerchantCallbackDispatcher callbacks;
+    private SimpleMeterRegistry registry;
+    private OutboxRelay relay;
+    private boolean sinkDown;
+
+    @BeforeEach
+    void setUp() {
+        repository = mock(PaymentOutboxRepository.class);
+        when(repository.findClaimed(anyCollection(), anyString()))
+                .thenAnswer(invocation -> List.copyOf(invocation.<Collection<Long>>getArgument(0)));
+        callbacks = mock(MerchantCallbackDispatcher.class);
+        registry = new SimpleMeterRegistry();
+        OutboxSink sink = new OutboxSink() {
+            @Override
+            public String name() {
+                return "test";
+            }
+
+            @Override
+            public void publish(List<OutboxMessage> messages) {
+                if (sinkDown) throw new IllegalStateException("sink down");
+                published.add(messages);
+            }
+        };
+        relay = new OutboxRelay(repository, sink, callbacks, new PaymentMetrics(registry),
+                new MockEnvironment()
+                        .withProperty("payments.outbox.batchSize", "10")
+                        .withProperty("payments.outbox.initialBackoffSeconds", "2"),
+                clock);
+    }
+
+    @Test
+    void relayBatch_deliversDueEventsInOrderAndMarksThemDispatched() {
+        when(repository.findUndispatched(any())).thenReturn(List.of(
+                event(1L, "ref-1", PaymentStatus.PENDING),
+                event(2L, "ref-2", PaymentStatus.PENDING),
+                event(3L, "ref-1", PaymentStatus.SUCCESS)));
+        clock.advance(Duration.ofSeconds(3));
+
+        assertEquals(3, relay.relayBatch());
+
+        assertEquals(List.of(1L, 2L, 3L), published.get(0).stream().map(OutboxMessage::eventId).toList());
+        verify(callbacks, times(3)).onPaymentEvent(any());
+        verify(repository).markDispatched(List.of(1L, 2L, 3L), clock.instant());
+        assertEquals(3, relay.stats().dispatched());
+        assertEquals(3, registry.get(PaymentMetrics.OUTBOX_LAG).timer().count());
+    }
+
+    @Test
+    void relayBatch_sinkFailureReschedulesWholeBatchWithBackoff() {
+        PaymentOutboxEvent retried = event(1L, "ref-1", PaymentStatus.SUCCESS);
+        ReflectionTestUtils.setField(retried, "attempts", 2);
+        when(repository.findUndispatched(any())).thenReturn(List.of(retried, event(2L, "ref-2", PaymentStatus.FAILED)));
+        sinkDown = true;
+
+        assertEquals(0, relay.relayBatch());
+
+        verify(repository).markFailed(List.of(1L, 2L), clock.instant().plusSeconds(8), "sink down");
+        verify(repository, never()).markDispatched(anyCollection(), any());
+        assertEquals(2, relay.stats().failed());
+    }
+
+    @Test
+    void relayBatch_eventAwaitingRetryHoldsBackLaterEventsForItsReference() {
+        PaymentOutboxEvent waiting = event(1L, "ref-1", PaymentStatus.INITIATED);
+        ReflectionTestUtils.setField(waiting, "nextAttemptAt", clock.instant().plusSeconds(60));
+        when(repository.findUndispatched(any())).thenReturn(List.of(
+                waiting,
+                event(2L, "ref-2", PaymentStatus.SUCCESS),
+                event(3L, "ref-1", PaymentStatus.SUCCESS)));
+
+        assertEquals(1, relay.relayBatch());
+
+        assertEquals(List.of(2L), published.get(0).stream().map(OutboxMessage::eventId).toList());
+        verify(repository).markDispatched(List.of(2L), clock.instant());
+    }
+
+    @Test
+    void relayBatch_eventClaimedByAnotherRelayHoldsBackLaterEventsForItsReference() {
+        PaymentOutboxEvent claimed = event(1L, "ref-1", PaymentStatus.INITIATED);
+        ReflectionTestUtils.setField(claimed, "claimedUntil", clock.instant().plusSeconds(30));
+        when(repository.findUndispatched(any())).thenReturn(List.of(
+                claimed,
+                event(2L, "ref-2", PaymentStatus.SUCCESS),
+                event(3L, "ref-1", PaymentStatus.SUCCESS)));
+
+        assertEquals(1, relay.relayBatch());
+
+        verify(repository).claim(eq(List.of(2L)), anyString(), eq(clock.instant().plusSeconds(60)), eq(clock.instant()));
+        verify(repository).markDispatched(List.of(2L), clock.instant());
+    }
+
+    @Test
+    void relayBatch_eventLostToAnotherRelayReleasesLaterEventsForItsReference() {
+        when(repository.findUndispatched(any())).thenReturn(List.of(
+                event(1L, "ref-1", PaymentStatus.INITIATED),
+                event(2L, "ref-2", PaymentStatus.SUCCESS),
+                event(3L, "ref-1", PaymentStatus.SUCCESS)));
+        when(repository.findClaimed(anyCollection(), anyString())).thenReturn(List.of(2L, 3L));
+
+        assertEquals(1, relay.relayBatch());
+
+        assertEquals(List.of(2L), published.get(0).stream().map(OutboxMessage::eventId).toList());
+        verify(repository).release(eq(List.of(3L)), anyString());
+        verify(repository).markDispatched(List.of(2L), clock.instant());
+    }
+
+    private PaymentOutboxEvent event(Long id, String reference, PaymentStatus status) {
+        PaymentOutboxEvent event = new PaymentOutboxEvent(new PaymentTransactionSummary(id * 10, reference, "mtn",
+                null, status, 1000L, "UGX", null, clock.instant()), clock.instant());
+        ReflectionTestUtils.setField(event, "id", id);
+        return event;
+    }
+}
@@ -0,0 +1,85 @@
+package com.example.pis.service;
+
+import java.net.SocketTimeoutException;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.client.HttpServerErrorException;
+import org.springframework.web.client.ResourceAccessException;
+
+import com.example.pis.service.PaymentMetrics.WebhookEventResult;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+/**
+ * Unit tests for PaymentMetrics outcome classification and tagging.
+ */
+class PaymentMetricsTest {
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private final PaymentMetrics metrics = new PaymentMetrics(registry);
+
+    @Test
+    void recordProviderCall_tagsSuccessWithHttpStatus() {
+        ResponseEntity<String> response = metrics.recordProviderCall("mtn", "collect",
+                () -> ResponseEntity.accepted().body(""), PaymentMetrics::httpStatus);
+
+        assertEquals(202, response.getStatusCode().value());
+        assertEquals(1, registry.get(PaymentMetrics.PROVIDER_REQUESTS)
+                .tags("provider", "mtn", "operation", "collect", "outcome", "success", "status", "202")
+                .timer().count());
+    }
+
+    @Test
+    void recordProviderCall_tagsServerErrorAndRethrows() {
+        assertThrows(HttpServerErrorException.class, () -> metrics.recordProviderCall("airtel", "withdraw",
+                () -> {
+                    throw new HttpServerErrorException(HttpStatus.SERVICE_UNAVAILABLE);
+                }, PaymentMetrics::httpStatus));
+
+        assertEquals(1, registry.get(PaymentMetrics.PROVIDER_REQUESTS)
+                .tags("provider", "airtel", "operation", "withdraw", "outcome", "server_error", "status", "503")
+                .timer().count());
+    }
+
+    @Test
+    void recordProviderCall_tagsSocketTimeoutAsTimeout() {
+        assertThrows(ResourceAccessException.class, () -> metrics.recordProviderCall("mtn", "token",
+                () -> {
+                    throw new ResourceAccessException("read timed out", new SocketTimeoutException());
+                }, PaymentMetrics::httpStatus));
+
+        assertEquals(1, registry.get(PaymentMetrics.PROVIDER_REQUESTS)
+                .tags("provider", "mtn", "operation", "token", "outcome", "timeout", "status", PaymentMetrics.NO_STATUS)
+                .timer().count());
+    }
+
+    @Test
+    void recordProviderCall_tracksInFlightCalls() {
+        AtomicReference<Double> during = new AtomicReference<>();
+
+        metrics.recordProviderCall("stripe", "intent", () -> {
+            during.set(registry.get(PaymentMetrics.PROVIDER_IN_FLIGHT).tag("provider", "stripe").gauge().value());
+            return "ok";
+        }, result -> 200);
+
+        assertEquals(1.0, during.get().doubleValue());
+        assertEquals(0.0, registry.get(PaymentMetrics.PROVIDER_IN_FLIGHT).tag("provider", "stripe").gauge().value());
+    }
+
+    @Test
+    void recordWebhookEvent_countsByResult() {
+        metrics.recordWebhookEvent("mtn", WebhookEventResult.NEW);
+        metrics.recordWebhookEvent("mtn", WebhookEventResult.DUPLICATE);
+        metrics.recordWebhookEvent("mtn", WebhookEventResult.DUPLICATE);
+
+        assertEquals(1, registry.get(PaymentMetrics.WEBHOOK_EVENTS).tags("provider", "mtn", "result", "new")
+                .counter().count());
+        assertEquals(2, registry.get(PaymentMetrics.WEBHOOK_EVENTS).tags("provider", "mtn", "result", "duplicate")
+                .counter().count());
+    }
+}
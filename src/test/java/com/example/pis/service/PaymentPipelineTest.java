@@ -0,0 +1,107 @@
+package com.example.pis.service;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Unit tests for PaymentPipeline queueing, saturation and statistics.
+ */
+class PaymentPipelineTest {
+
+    @Test
+    void submit_runsJobAndRecordsCompletion() throws Exception {
+        PaymentPipeline pipeline = new PaymentPipeline(2, 10, false);
+        CountDownLatch ran = new CountDownLatch(1);
+
+        assertTrue(pipeline.submit("ref-1", ran::countDown));
+        assertTrue(ran.await(5, TimeUnit.SECONDS));
+
+        pipeline.shutdown();
+        assertEquals(1, pipeline.stats().completed());
+    }
+
+    @Test
+    void submit_rejectsWhenQueueIsFull() throws Exception {
+        PaymentPipeline pipeline = new PaymentPipeline(1, 1, false);
+        CountDownLatch release = new CountDownLatch(1);
+        Runnable blocking = () -> {
+            try {
+                release.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        };
+
+        assertTrue(pipeline.submit("running", blocking));
+        assertTrue(pipeline.submit("queued", blocking));
+        assertFalse(pipeline.submit("rejected", blocking));
+
+        PaymentPipeline.PipelineStats stats = pipeline.stats();
+        assertEquals(1, stats.queueDepth());
+        assertEquals(1, stats.rejected());
+
+        release.countDown();
+        pipeline.shutdown();
+        assertEquals(2, pipeline.stats().completed());
+    }
+
+    @Test
+    void shutdown_rejectsNewJobsAndDrainsAcceptedOnes() throws Exception {
+        PaymentPipeline pipeline = new PaymentPipeline(1, 10, false, Duration.ofSeconds(5));
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch queuedRan = new CountDownLatch(1);
+        assertTrue(pipeline.submit("running", () -> await(release)));
+        assertTrue(pipeline.submit("queued", queuedRan::countDown));
+
+        CompletableFuture.delayedExecutor(100, TimeUnit.MILLISECONDS).execute(release::countDown);
+
+        assertEquals(List.of(), pipeline.drain());
+
+        assertFalse(pipeline.submit("late", () -> { }));
+        assertTrue(queuedRan.await(0, TimeUnit.SECONDS));
+        assertEquals(2, pipeline.stats().completed());
+        assertEquals(1, pipeline.stats().rejected());
+    }
+
+    @Test
+    void shutdown_reportsJobsDroppedWhenTheDrainTimesOut() throws Exception {
+        PaymentPipeline pipeline = new PaymentPipeline(1, 10, false, Duration.ofMillis(100));
+        CountDownLatch release = new CountDownLatch(1);
+        assertTrue(pipeline.submit("running", () -> await(release)));
+        assertTrue(pipeline.submit("queued", () -> { }));
+        while (pipeline.stats().activeWorkers() == 0) {
+            Thread.onSpinWait();
+        }
+
+        assertEquals(List.of("queued", "running"), pipeline.drain());
+    }
+
+    @Test
+    void submit_countsFailedJobs() throws Exception {
+        PaymentPipeline pipeline = new PaymentPipeline(1, 10, false);
+
+        assertTrue(pipeline.submit("boom", () -> {
+            throw new IllegalStateException("provider down");
+        }));
+
+        pipeline.shutdown();
+        assertEquals(1, pipeline.stats().failed());
+        assertEquals(0, pipeline.stats().completed());
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
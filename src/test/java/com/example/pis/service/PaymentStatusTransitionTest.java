@@ -0,0 +1,127 @@
+package com.example.pis.service;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+
+import com.example.pis.dto.PaymentStatusUpdate;
+import com.example.pis.entity.PaymentOutboxEvent;
+import com.example.pis.entity.PaymentTransaction;
+import com.example.pis.enums.PaymentStatus;
+import com.example.pis.repository.PaymentOutboxRepository;
+import com.example.pis.repository.PaymentProviderResponseRepository;
+import com.example.pis.repository.PaymentTransactionRepository;
+import com.example.pis.service.PaymentTransactionService.StatusUpdateResult;
+
+/**
+ * Compare-and-set status updates against the database: duplicate and out-of-order
+ * callbacks, and the race between a callback and the request's own outcome.
+ */
+@SpringBootTest
+@ActiveProfiles("test")
+class PaymentStatusTransitionTest {
+
+    @Autowired
+    private PaymentTransactionService txService;
+
+    @Autowired
+    private PaymentTransactionRepository txRepo;
+
+    @Autowired
+    private PaymentProviderResponseRepository responseRepo;
+
+    @Autowired
+    private PaymentOutboxRepository outboxRepo;
+
+    @SuppressWarnings("unused")
+    @BeforeEach
+    void setUp() {
+        responseRepo.deleteAll();
+        txRepo.deleteAll();
+        outboxRepo.deleteAll();
+    }
+
+    @Test
+    void apply_ignoresDuplicateAndLateCallbacks() {
+        txService.open("mtn", "collect", "cas-1", 1000L, "UGX");
+
+        assertEquals(StatusUpdateResult.APPLIED, apply("mtn", "cas-1", "fin-1", PaymentStatus.SUCCESS));
+        assertEquals(StatusUpdateResult.STALE, apply("mtn", "cas-1", "fin-1", PaymentStatus.SUCCESS));
+        assertEquals(StatusUpdateResult.STALE, apply("mtn", "cas-1", null, PaymentStatus.INITIATED));
+        assertEquals(StatusUpdateResult.STALE, apply("mtn", "cas-1", null, PaymentStatus.FAILED));
+
+        PaymentTransaction stored = txRepo.findByReference("cas-1").orElseThrow();
+        assertEquals(PaymentStatus.SUCCESS, stored.getStatus());
+        assertEquals("fin-1", stored.getProviderTransactionId());
+    }
+
+    @Test
+    void apply_byProviderTransactionIdReversesSettledPayment() {
+        txService.open("stripe", "intent", "cas-2", 1000L, "USD");
+        apply("stripe", "cas-2", "pi_123", PaymentStatus.SUCCESS);
+
+        assertEquals(StatusUpdateResult.APPLIED, apply("stripe", null, "pi_123", PaymentStatus.REVERSED));
+        assertEquals(StatusUpdateResult.UNKNOWN, apply("stripe", null, "pi_unknown", PaymentStatus.REVERSED));
+        assertEquals(StatusUpdateResult.UNKNOWN, apply("mtn", "cas-2", null, PaymentStatus.FAILED));
+        assertEquals(PaymentStatus.REVERSED, txRepo.findByReference("cas-2").orElseThrow().getStatus());
+    }
+
+    @Test
+    void apply_reversalOfUnsettledPaymentIsStale() {
+        txService.open("stripe", "intent", "cas-6", 1000L, "USD");
+        apply("stripe", "cas-6", "pi_456", PaymentStatus.INITIATED);
+
+        assertEquals(StatusUpdateResult.STALE, apply("stripe", "cas-6", null, PaymentStatus.REVERSED));
+        assertEquals(StatusUpdateResult.STALE, apply("stripe", null, "pi_456", PaymentStatus.REVERSED));
+        assertEquals(PaymentStatus.INITIATED, txRepo.findByReference("cas-6").orElseThrow().getStatus());
+    }
+
+    @Test
+    void complete_afterCallbackSettledTheRow_keepsCallbackOutcome() {
+        PaymentTransaction tx = txService.open("mtn", "collect", "cas-3", 1000L, "UGX");
+        apply("mtn", "cas-3", null, PaymentStatus.FAILED);
+
+        assertFalse(txService.complete(tx, "mtn", null, "fin-3", true));
+        assertEquals(PaymentStatus.FAILED, tx.getStatus());
+        assertEquals(PaymentStatus.FAILED, txRepo.findByReference("cas-3").orElseThrow().getStatus());
+    }
+
+    @Test
+    void complete_afterInProgressCallback_stillSettles() {
+        PaymentTransaction tx = txService.open("airtel", "collect", "cas-4", 1000L, "UGX");
+        apply("airtel", "cas-4", "MP4", PaymentStatus.INITIATED);
+
+        assertTrue(txService.complete(tx, "airtel", null, null, true));
+        PaymentTransaction stored = txRepo.findByReference("cas-4").orElseThrow();
+        assertEquals(PaymentStatus.SUCCESS, stored.getStatus());
+        assertEquals("MP4", stored.getProviderTransactionId());
+    }
+
+    @Test
+    void outbox_recordsEachAppliedChangeInCommitOrder() {
+        PaymentTransaction tx = txService.open("mtn", "collect", "cas-5", 1000L, "UGX");
+        apply("mtn", "cas-5", "fin-5", PaymentStatus.SUCCESS);
+        apply("mtn", "cas-5", "fin-5", PaymentStatus.SUCCESS);
+        assertFalse(txService.fail(tx));
+        apply("mtn", null, "fin-5", PaymentStatus.REVERSED);
+
+        List<PaymentOutboxEvent> events = outboxRepo.findAll().stream()
+                .sorted((a, b) -> Long.compare(a.getId(), b.getId()))
+                .toList();
+        assertEquals(List.of(PaymentStatus.PENDING, PaymentStatus.SUCCESS, PaymentStatus.REVERSED),
+                events.stream().map(PaymentOutboxEvent::getStatus).toList());
+        assertEquals("fin-5", events.get(1).getProviderTransactionId());
+        assertEquals(tx.getId(), events.get(2).getTransactionId());
+    }
+
+    private StatusUpdateResult apply(String provider, String reference, String providerTxId, PaymentStatus status) {
+        return txService.apply(new PaymentStatusUpdate(provider, reference, providerTxId, status));
+    }
+}
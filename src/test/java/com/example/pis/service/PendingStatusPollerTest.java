@@ -0,0 +1,119 @@
+package com.example.pis.service;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import org.springframework.http.HttpStatus;
+import org.springframework.mock.env.MockEnvironment;
+import org.springframework.web.client.HttpServerErrorException;
+
+import com.example.pis.dto.AirtelResponseDTO;
+import com.example.pis.dto.MtnResponseDTO;
+import com.example.pis.dto.PendingTransaction;
+import com.example.pis.enums.PaymentStatus;
+import com.example.pis.repository.PaymentOutboxRepository;
+import com.example.pis.repository.PaymentTransactionRepository;
+import com.example.pis.support.MutableClock;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * Unit tests for PendingStatusPoller outcome mapping, batched writes and backoff.
+ */
+class PendingStatusPollerTest {
+
+    private final MutableClock clock = new MutableClock(Instant.parse("2025-01-01T12:00:00Z"));
+    private MtnService mtnService;
+    private AirtelService airtelService;
+    private PaymentTransactionRepository txRepo;
+    private PendingStatusPoller poller;
+
+    @BeforeEach
+    void setUp() {
+        mtnService = mock(MtnService.class);
+        airtelService = mock(AirtelService.class);
+        txRepo = mock(PaymentTransactionRepository.class);
+        when(txRepo.transitionAll(anyCollection(), anyCollection(), any()))
+                .thenAnswer(invocation -> invocation.<List<?>>getArgument(0).size());
+        poller = new PendingStatusPoller(
+                new PaymentTransactionService(txRepo, mock(ProviderResponseStore.class), new IdempotencyCache(600, 5, 0, 1),
+                        mock(PaymentOutboxRepository.class)),
+                mtnService, airtelService, new ObjectMapper(),
+                new MockEnvironment()
+                        .withProperty("payments.poller.default.concurrency", "2")
+                        .withProperty("payments.poller.initialBackoffSeconds", "30"),
+                clock);
+    }
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        poller.shutdown();
+    }
+
+    @Test
+    void poll_writesSettledOutcomesOncePerStatus() {
+        pending(tx(1L, "R-1", "mtn", "collect"), tx(2L, "R-2", "mtn", "withdraw"),
+                tx(3L, "R-3", "airtel", "collect"), tx(4L, "R-4", "mtn", null));
+        when(mtnService.getCollectionStatus("R-1")).thenReturn(new MtnResponseDTO("200", "{\"status\":\"SUCCESSFUL\"}"));
+        when(mtnService.getWithdrawalStatus("R-2")).thenReturn(new MtnResponseDTO("200", "{\"status\":\"FAILED\"}"));
+        when(airtelService.getCollectionStatus("R-3")).thenReturn(new AirtelResponseDTO("200",
+                "{\"status\":{\"success\":true},\"data\":{\"transaction\":{\"status\":\"TS\"}}}"));
+        when(mtnService.getCollectionStatus("R-4")).thenReturn(new MtnResponseDTO("200", "{\"status\":\"PENDING\"}"));
+
+        PendingStatusPoller.Cycle cycle = poller.poll();
+
+        assertEquals(new PendingStatusPoller.Cycle(4, 3, 0), cycle);
+        verify(txRepo).transitionAll(List.of(1L, 3L), PaymentStatus.SUCCESS.sources(), PaymentStatus.SUCCESS);
+        verify(txRepo).transitionAll(List.of(2L), PaymentStatus.FAILED.sources(), PaymentStatus.FAILED);
+        verify(txRepo, times(2)).transitionAll(anyCollection(), anyCollection(), any());
+    }
+
+    @Test
+    void poll_backsOffTransactionsStillInProgressOrFailing() {
+        pending(tx(1L, "R-1", "mtn", "collect"), tx(2L, "R-2", "airtel", "withdraw"));
+        when(mtnService.getCollectionStatus("R-1")).thenReturn(new MtnResponseDTO("200", "{\"status\":\"PENDING\"}"));
+        when(airtelService.getWithdrawalStatus("R-2"))
+                .thenThrow(new HttpServerErrorException(HttpStatus.BAD_GATEWAY));
+
+        assertEquals(new PendingStatusPoller.Cycle(2, 0, 1), poller.poll());
+        assertEquals(0, poller.poll().checked());
+        clock.advance(Duration.ofSeconds(31));
+        assertEquals(2, poller.poll().checked());
+        clock.advance(Duration.ofSeconds(31));
+        assertEquals(0, poller.poll().checked());
+
+        verify(mtnService, times(2)).getCollectionStatus("R-1");
+        verify(txRepo, never()).transitionAll(anyCollection(), anyCollection(), any());
+    }
+
+    @Test
+    void settledStatus_ignoresUnknownAndUnreadableBodies() {
+        assertEquals(PaymentStatus.FAILED, poller.settledStatus("mtn", "{\"status\":\"rejected\"}"));
+        assertNull(poller.settledStatus("airtel", "{\"data\":{\"transaction\":{\"status\":\"TIP\"}}}"));
+        assertNull(poller.settledStatus("mtn", "not json"));
+        assertNull(poller.settledStatus("mtn", ""));
+    }
+
+    private void pending(PendingTransaction... transactions) {
+        when(txRepo.findPendingPage(eq(PaymentStatus.PENDING), any(), any(), any(), any(), any())).thenReturn(List.of(transactions));
+        when(txRepo.findPendingPage(eq(PaymentStatus.INITIATED), any(), any(), any(), any(), any())).thenReturn(List.of());
+    }
+
+    private PendingTransaction tx(Long id, String reference, String provider, String operation) {
+        return new PendingTransaction(id, reference, provider, operation, PaymentStatus.PENDING,
+                clock.instant().minus(Duration.ofMinutes(10)));
+    }
+}
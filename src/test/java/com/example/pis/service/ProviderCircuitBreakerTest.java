@@ -0,0 +1,104 @@
+package com.example.pis.service;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.Test;
+
+import com.example.pis.service.ProviderCircuitBreaker.State;
+import com.example.pis.support.MutableClock;
+
+/**
+ * Unit tests for ProviderCircuitBreaker window evaluation and state transitions.
+ */
+class ProviderCircuitBreakerTest {
+
+    private static final Duration FAST = Duration.ofMillis(10);
+    private static final Duration SLOW = Duration.ofSeconds(2);
+
+    private final MutableClock clock = new MutableClock(Instant.parse("2024-01-01T00:00:00Z"));
+    private final List<String> transitions = new ArrayList<>();
+    private final ProviderCircuitBreaker breaker = new ProviderCircuitBreaker(
+            new ProviderCircuitBreaker.Settings(10, 4, 50, 80, Duration.ofSeconds(1), Duration.ofSeconds(30), 2),
+            clock,
+            (from, to) -> transitions.add(from + "->" + to));
+
+    @Test
+    void staysClosedBelowMinimumCalls() {
+        for (int i = 0; i < 3; i++) {
+            assertTrue(breaker.tryAcquirePermission());
+            breaker.onResult(true, FAST);
+        }
+        assertEquals(State.CLOSED, breaker.state());
+    }
+
+    @Test
+    void opensOnFailureRateAndFailsFast() {
+        failCalls(4);
+
+        assertEquals(State.OPEN, breaker.state());
+        assertFalse(breaker.tryAcquirePermission());
+        assertEquals(Duration.ofSeconds(30), breaker.retryAfter());
+        assertEquals(List.of("CLOSED->OPEN"), transitions);
+    }
+
+    @Test
+    void opensOnSlowCallRate() {
+        for (int i = 0; i < 4; i++) {
+            assertTrue(breaker.tryAcquirePermission());
+            breaker.onResult(false, SLOW);
+        }
+        assertEquals(State.OPEN, breaker.state());
+    }
+
+    @Test
+    void halfOpenClosesAfterSuccessfulTrialCalls() {
+        failCalls(4);
+        clock.advance(Duration.ofSeconds(30));
+
+        assertTrue(breaker.tryAcquirePermission());
+        assertTrue(breaker.tryAcquirePermission());
+        assertFalse(breaker.tryAcquirePermission(), "Only halfOpenCalls trial calls are allowed");
+        breaker.onResult(false, FAST);
+        breaker.onResult(false, FAST);
+
+        assertEquals(State.CLOSED, breaker.state());
+        assertEquals(List.of("CLOSED->OPEN", "OPEN->HALF_OPEN", "HALF_OPEN->CLOSED"), transitions);
+    }
+
+    @Test
+    void halfOpenReopensWhenTrialCallsFail() {
+        failCalls(4);
+        clock.advance(Duration.ofSeconds(30));
+
+        failCalls(2);
+
+        assertEquals(State.OPEN, breaker.state());
+        assertFalse(breaker.tryAcquirePermission());
+    }
+
+    @Test
+    void rateIsComputedOverTheSlidingWindow() {
+        for (int i = 0; i < 10; i++) {
+            assertTrue(breaker.tryAcquirePermission());
+            breaker.onResult(false, FAST);
+        }
+        failCalls(4);
+        assertEquals(State.CLOSED, breaker.state(), "4 failures in a window of 10 is below 50%");
+
+        failCalls(1);
+        assertEquals(State.OPEN, breaker.state());
+    }
+
+    private void failCalls(int count) {
+        for (int i = 0; i < count; i++) {
+            assertTrue(breaker.tryAcquirePermission());
+            breaker.onResult(true, FAST);
+        }
+    }
+}
@@ -0,0 +1,119 @@
+package com.example.pis.service;
+
+import java.time.Instant;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.mock.env.MockEnvironment;
+import org.springframework.web.client.HttpClientErrorException;
+import org.springframework.web.client.HttpServerErrorException;
+
+import com.example.pis.exception.ProviderUnavailableException;
+import com.example.pis.service.ProviderCircuitBreaker.State;
+import com.example.pis.support.MutableClock;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+/**
+ * Unit tests for ProviderGuard failure classification, fast-fail, bulkhead and retries.
+ */
+class ProviderGuardTest {
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private final MockEnvironment env = new MockEnvironment()
+            .withProperty("provider.resilience.default.windowSize", "4")
+            .withProperty("provider.resilience.default.minimumCalls", "4")
+            .withProperty("provider.resilience.mtn.maxConcurrentCalls", "1")
+            .withProperty("provider.resilience.default.retryBaseDelayMs", "1");
+    private final ProviderGuard guard = new ProviderGuard(env, new PaymentMetrics(registry),
+            new AdaptiveTimeouts(env), new MutableClock(Instant.parse("2024-01-01T00:00:00Z")));
+
+    @Test
+    void serverErrorsOpenTheBreakerAndLaterCallsFailFast() {
+        for (int i = 0; i < 4; i++) {
+            assertThrows(HttpServerErrorException.class, () -> guard.execute("airtel", "collect", () -> {
+                throw new HttpServerErrorException(HttpStatus.BAD_GATEWAY);
+            }, r -> 200));
+        }
+
+        assertEquals(State.OPEN, guard.state("airtel"));
+        ProviderUnavailableException ex = assertThrows(ProviderUnavailableException.class,
+                () -> guard.execute("airtel", "collect", () -> "never called", r -> 200));
+        assertEquals("airtel", ex.getProvider());
+        assertEquals(1, registry.get(PaymentMetrics.CALLS_REJECTED)
+                .tags("provider", "airtel", "reason", "circuit_open").counter().count());
+        assertEquals(1, registry.get(PaymentMetrics.CIRCUIT_TRANSITIONS)
+                .tags("provider", "airtel", "from", "closed", "to", "open").counter().count());
+        assertEquals(1.0, registry.get(PaymentMetrics.CIRCUIT_STATE)
+                .tags("provider", "airtel", "state", "open").gauge().value());
+    }
+
+    @Test
+    void clientErrorsDoNotOpenTheBreaker() {
+        for (int i = 0; i < 4; i++) {
+            assertThrows(HttpClientErrorException.class, () -> guard.execute("stripe", "intent", () -> {
+                throw new HttpClientErrorException(HttpStatus.BAD_REQUEST);
+            }, r -> 200));
+        }
+
+        assertEquals(State.CLOSED, guard.state("stripe"));
+    }
+
+    @Test
+    void executeIdempotent_retriesProviderFailuresThenSucceeds() {
+        AtomicInteger attempts = new AtomicInteger();
+
+        String result = guard.executeIdempotent("mtn", "token", () -> {
+            if (attempts.incrementAndGet() < 3) throw new HttpServerErrorException(HttpStatus.SERVICE_UNAVAILABLE);
+            return "token";
+        }, r -> 200);
+
+        assertEquals("token", result);
+        assertEquals(3, attempts.get());
+        assertEquals(2, registry.get(PaymentMetrics.CALL_RETRIES)
+                .tags("provider", "mtn", "operation", "token").counter().count());
+    }
+
+    @Test
+    void executeIdempotent_doesNotRetryClientErrors() {
+        AtomicInteger attempts = new AtomicInteger();
+
+        assertThrows(HttpClientErrorException.class, () -> guard.executeIdempotent("mtn", "status", () -> {
+            attempts.incrementAndGet();
+            throw new HttpClientErrorException(HttpStatus.NOT_FOUND);
+        }, r -> 200));
+
+        assertEquals(1, attempts.get());
+    }
+
+    @Test
+    void bulkheadRejectsCallsBeyondTheLimit() throws Exception {
+        CountDownLatch inCall = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            executor.submit(() -> guard.execute("mtn", "collect", () -> {
+                inCall.countDown();
+                release.await(5, TimeUnit.SECONDS);
+                return "ok";
+            }, r -> 202));
+            assertTrue(inCall.await(5, TimeUnit.SECONDS));
+
+            assertThrows(ProviderUnavailableException.class,
+                    () -> guard.execute("mtn", "withdraw", () -> "never called", r -> 202));
+            assertEquals(1, registry.get(PaymentMetrics.CALLS_REJECTED)
+                    .tags("provider", "mtn", "reason", "bulkhead_full").counter().count());
+        } finally {
+            release.countDown();
+            executor.shutdown();
+        }
+    }
+}
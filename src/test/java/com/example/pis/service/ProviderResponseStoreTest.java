@@ -0,0 +1,70 @@
+package com.example.pis.service;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.example.pis.entity.PaymentProviderResponse;
+import com.example.pis.entity.PaymentTransaction;
+import com.example.pis.repository.PaymentProviderResponseRepository;
+
+/**
+ * Unit tests for ProviderResponseStore encoding and compression threshold.
+ */
+class ProviderResponseStoreTest {
+
+    private static final String LARGE = "{\"status\":\"SUCCESSFUL\",\"payer\":\"256700000000\"}".repeat(40);
+
+    private final PaymentProviderResponseRepository repository = mock(PaymentProviderResponseRepository.class);
+    private final ProviderResponseStore store = new ProviderResponseStore(repository, true, 512);
+
+    @Test
+    void save_compressesLargeBodiesAndKeysThemByTransactionId() {
+        store.save(transaction(42L), "mtn", LARGE);
+
+        PaymentProviderResponse saved = captureSaved();
+        assertEquals(Long.valueOf(42), saved.getId());
+        assertEquals(PaymentProviderResponse.GZIP, saved.getEncoding());
+        assertTrue(saved.getBody().length < LARGE.length());
+        assertTrue(saved.isNew());
+    }
+
+    @Test
+    void save_storesSmallBodiesAsIs() {
+        store.save(transaction(7L), "airtel", "{\"status\":\"OK\"}");
+
+        PaymentProviderResponse saved = captureSaved();
+        assertEquals(PaymentProviderResponse.IDENTITY, saved.getEncoding());
+        assertArrayEquals("{\"status\":\"OK\"}".getBytes(StandardCharsets.UTF_8), saved.getBody());
+    }
+
+    @Test
+    void find_decodesCompressedBodies() {
+        PaymentProviderResponse stored = new PaymentProviderResponse(42L, "mtn", PaymentProviderResponse.GZIP,
+                ProviderResponseStore.gzip(LARGE.getBytes(StandardCharsets.UTF_8)));
+        when(repository.findById(42L)).thenReturn(Optional.of(stored));
+
+        assertEquals(Optional.of(LARGE), store.find(42L));
+    }
+
+    private PaymentProviderResponse captureSaved() {
+        ArgumentCaptor<PaymentProviderResponse> captor = ArgumentCaptor.forClass(PaymentProviderResponse.class);
+        verify(repository).save(captor.capture());
+        return captor.getValue();
+    }
+
+    private static PaymentTransaction transaction(Long id) {
+        PaymentTransaction tx = PaymentTransactionService.pending("mtn", "collect", "ref-" + id, 1000L, "UGX");
+        ReflectionTestUtils.setField(tx, "id", id);
+        return tx;
+    }
+}
@@ -0,0 +1,138 @@
+package com.example.pis.service;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.example.pis.support.MutableClock;
+
+/**
+ * Unit tests for ProviderTokenManager caching, expiry and single-flight behaviour.
+ */
+class ProviderTokenManagerTest {
+
+    private MutableClock clock;
+    private ProviderTokenManager manager;
+    private AtomicInteger fetches;
+
+    @SuppressWarnings("unused")
+    @BeforeEach
+    void setUp() {
+        clock = new MutableClock(Instant.parse("2025-01-01T00:00:00Z"));
+        manager = new ProviderTokenManager(Duration.ofSeconds(30), Duration.ofSeconds(60), clock);
+        fetches = new AtomicInteger();
+    }
+
+    @SuppressWarnings("unused")
+    @AfterEach
+    void tearDown() {
+        manager.shutdown();
+    }
+
+    @Test
+    void getToken_cachesUntilShortlyBeforeExpiry() {
+        manager.register("mtn", () -> new ProviderTokenManager.AccessToken(
+                "token-" + fetches.incrementAndGet(), Duration.ofSeconds(3600)));
+
+        assertEquals("token-1", manager.getToken("mtn"));
+        assertEquals("token-1", manager.getToken("mtn"));
+
+        clock.advance(Duration.ofSeconds(3600 - 31));
+        assertEquals("token-1", manager.getToken("mtn"));
+
+        clock.advance(Duration.ofSeconds(2));
+        assertEquals("token-2", manager.getToken("mtn"));
+
+        ProviderTokenManager.TokenStats stats = manager.stats("mtn");
+        assertEquals(2, stats.misses());
+        assertEquals(2, stats.hits());
+    }
+
+    @Test
+    void getToken_tokenShorterThanSkewIsStillCachedForHalfItsLifetime() throws InterruptedException {
+        manager.register("mtn", () -> new ProviderTokenManager.AccessToken(
+                "token-" + fetches.incrementAndGet(), Duration.ofSeconds(20)));
+
+        assertEquals("token-1", manager.getToken("mtn"));
+        clock.advance(Duration.ofSeconds(9));
+        assertEquals("token-1", manager.getToken("mtn"));
+        Thread.sleep(200);
+        assertEquals(1, fetches.get(), "background refresh must not be scheduled immediately");
+
+        clock.advance(Duration.ofSeconds(2));
+        assertEquals("token-2", manager.getToken("mtn"));
+    }
+
+    @Test
+    void getToken_concurrentCallersShareOneFetch() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        manager.register("airtel", () -> {
+            fetches.incrementAndGet();
+            try {
+                release.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return new ProviderTokenManager.AccessToken("shared", Duration.ofSeconds(3600));
+        });
+
+        ExecutorService pool = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<String>> results = new ArrayList<>();
+            for (int i = 0; i < 8; i++) {
+                results.add(pool.submit(() -> manager.getToken("airtel")));
+            }
+            Thread.sleep(100);
+            release.countDown();
+
+            for (Future<String> result : results) {
+                assertEquals("shared", result.get(5, TimeUnit.SECONDS));
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+
+        assertEquals(1, fetches.get());
+        assertEquals(1, manager.stats("airtel").refreshes());
+    }
+
+    @Test
+    void getToken_failedFetchIsRetriedOnNextCall() {
+        manager.register("mtn", () -> {
+            if (fetches.incrementAndGet() == 1) throw new IllegalStateException("Failed to get MTN token");
+            return new ProviderTokenManager.AccessToken("recovered", Duration.ofSeconds(3600));
+        });
+
+        assertThrows(IllegalStateException.class, () -> manager.getToken("mtn"));
+        assertEquals("recovered", manager.getToken("mtn"));
+        assertEquals(1, manager.stats("mtn").failures());
+    }
+
+    @Test
+    void invalidate_forcesRefetch() {
+        manager.register("mtn", () -> new ProviderTokenManager.AccessToken(
+                "token-" + fetches.incrementAndGet(), Duration.ofSeconds(3600)));
+
+        assertEquals("token-1", manager.getToken("mtn"));
+        manager.invalidate("mtn");
+        assertEquals("token-2", manager.getToken("mtn"));
+    }
+
+    @Test
+    void getToken_unknownProviderThrows() {
+        assertThrows(IllegalStateException.class, () -> manager.getToken("unknown"));
+    }
+}
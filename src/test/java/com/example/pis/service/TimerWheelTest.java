@@ -0,0 +1,59 @@
+package com.example.pis.service;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Unit tests for TimerWheel ordering and delays longer than one revolution.
+ */
+class TimerWheelTest {
+
+    private final TimerWheel wheel = new TimerWheel("test-timer", Duration.ofMillis(5), 4);
+
+    @AfterEach
+    void tearDown() {
+        wheel.close();
+    }
+
+    @Test
+    void firesTasksInDeadlineOrderAndNeverEarly() throws InterruptedException {
+        List<String> fired = new CopyOnWriteArrayList<>();
+        CountDownLatch done = new CountDownLatch(3);
+        long start = System.nanoTime();
+        long[] firstAt = new long[1];
+
+        wheel.schedule(() -> { fired.add("late"); done.countDown(); }, Duration.ofMillis(120));
+        wheel.schedule(() -> {
+            firstAt[0] = System.nanoTime() - start;
+            fired.add("early");
+            done.countDown();
+        }, Duration.ofMillis(40));
+        wheel.schedule(() -> { fired.add("now"); done.countDown(); }, Duration.ZERO);
+
+        assertTrue(done.await(2, TimeUnit.SECONDS));
+        assertEquals(List.of("now", "early", "late"), fired);
+        assertTrue(firstAt[0] >= TimeUnit.MILLISECONDS.toNanos(40), "fired after " + firstAt[0] + " ns");
+        assertEquals(0, wheel.pending());
+    }
+
+    @Test
+    void delayOfSeveralRevolutionsWaitsForItsRound() throws InterruptedException {
+        CountDownLatch fired = new CountDownLatch(1);
+        long start = System.nanoTime();
+
+        // 4 slots of 5 ms: 100 ms is five revolutions away
+        wheel.schedule(fired::countDown, Duration.ofMillis(100));
+
+        assertEquals(1, wheel.pending());
+        assertTrue(fired.await(2, TimeUnit.SECONDS));
+        assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(100));
+    }
+}
@@ -0,0 +1,71 @@
+package com.example.pis.service;
+
+import java.util.Optional;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import com.example.pis.dto.UserRequestDTO;
+import com.example.pis.entity.Role;
+import com.example.pis.repository.UserRepository;
+import com.example.pis.security.UserDetailsCache;
+
+/**
+ * Unit tests for UserService cache invalidation.
+ */
+class UserServiceTest {
+
+    private UserRepository repo;
+    private UserDetailsCache userDetailsCache;
+    private UserService userService;
+
+    @BeforeEach
+    void setUp() {
+        repo = mock(UserRepository.class);
+        userDetailsCache = mock(UserDetailsCache.class);
+        PasswordEncoder passwordEncoder = mock(PasswordEncoder.class);
+        when(passwordEncoder.encode(anyString())).thenReturn("hash");
+        when(repo.findByUsername("alice")).thenReturn(Optional.empty());
+        when(repo.save(any())).thenAnswer(invocation -> invocation.getArgument(0));
+        userService = new UserService(repo, passwordEncoder, mock(JwtService.class), userDetailsCache);
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
+    @Test
+    void registerUser_invalidatesCachedDetailsOnlyAfterCommit() {
+        TransactionSynchronizationManager.initSynchronization();
+
+        userService.registerUser(request("alice"));
+
+        verify(userDetailsCache, never()).invalidate(anyString());
+        TransactionSynchronizationManager.getSynchronizations().forEach(TransactionSynchronization::afterCommit);
+        verify(userDetailsCache).invalidate("alice");
+    }
+
+    @Test
+    void registerUser_withoutTransaction_invalidatesImmediately() {
+        userService.registerUser(request("alice"));
+
+        verify(userDetailsCache).invalidate("alice");
+    }
+
+    private static UserRequestDTO request(String username) {
+        return new UserRequestDTO(username, "secret-password", username + "@example.com", Role.USER);
+    }
+}
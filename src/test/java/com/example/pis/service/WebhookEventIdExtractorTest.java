@@ -0,0 +1,70 @@
+package com.example.pis.service;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import org.junit.jupiter.api.Test;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * Unit tests for WebhookEventIdExtractor.
+ */
+class WebhookEventIdExtractorTest {
+
+    private final WebhookEventIdExtractor extractor = new WebhookEventIdExtractor(new ObjectMapper());
+
+    @Test
+    void extract_prefersIdOverLaterFallbacks() {
+        assertEquals(Optional.of("evt-1"),
+                extract("{\"reference\":\"ref-9\",\"amount\":1000,\"id\":\"evt-1\"}"));
+    }
+
+    @Test
+    void extract_keysEventsWithoutIdOnPaymentAndStatus() {
+        assertEquals(Optional.of("ref-9@SUCCESSFUL"),
+                extract("{\"transactionId\":\"tx-3\",\"status\":\"SUCCESSFUL\",\"reference\":\"ref-9\"}"));
+        assertEquals(Optional.of("tx-3@TS"), extract("{\"status\":\"TS\",\"transactionId\":\"tx-3\"}"));
+        assertEquals(Optional.of("evt-2"), extract("{\"reference\":\"ref-9\",\"status\":\"PENDING\",\"eventId\":\"evt-2\"}"));
+    }
+
+    @Test
+    void extract_givesEachStatusOfAPaymentItsOwnKey() {
+        Optional<String> pending = extract("{\"reference\":\"ref-9\",\"status\":\"PENDING\"}");
+        Optional<String> settled = extract("{\"reference\":\"ref-9\",\"status\":\"SUCCESSFUL\"}");
+
+        assertNotEquals(pending, settled);
+        assertEquals(settled, extract("{\"status\":\"SUCCESSFUL\",\"reference\":\"ref-9\"}"));
+    }
+
+    @Test
+    void extract_ignoresNestedFields() {
+        assertEquals(Optional.of("ref-1@FAILED"),
+                extract("{\"payer\":{\"id\":\"nested\"},\"items\":[{\"id\":\"x\"}],\"reference\":\"ref-1\",\"status\":\"FAILED\"}"));
+    }
+
+    @Test
+    void extract_readsNumericIdsAsText() {
+        assertEquals(Optional.of("12345"), extract("{\"id\":12345}"));
+    }
+
+    @Test
+    void extract_stopsAtIdEvenIfRestIsMalformed() {
+        assertEquals(Optional.of("evt-1"), extract("{\"id\":\"evt-1\", broken"));
+    }
+
+    @Test
+    void extract_returnsEmptyForUnusablePayloads() {
+        assertEquals(Optional.empty(), extract("{\"status\":\"SUCCESSFUL\"}"));
+        assertEquals(Optional.empty(), extract("{\"reference\":\"ref-9\",\"amount\":1000}"));
+        assertEquals(Optional.empty(), extract("[{\"id\":\"evt-1\"}]"));
+        assertEquals(Optional.empty(), extract("not json"));
+        assertEquals(Optional.empty(), extract(""));
+    }
+
+    private Optional<String> extract(String payload) {
+        return extractor.extract(payload.getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,170 @@
+package com.example.pis.service;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+import org.springframework.dao.QueryTimeoutException;
+import org.springframework.mock.env.MockEnvironment;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.example.pis.dto.JournaledWebhookEvent;
+import com.example.pis.dto.PaymentStatusUpdate;
+import com.example.pis.entity.WebhookEvent;
+import com.example.pis.enums.PaymentStatus;
+import com.example.pis.repository.WebhookEventRepository;
+import com.example.pis.service.PaymentTransactionService.StatusUpdateResult;
+import com.example.pis.support.MutableClock;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+/**
+ * Unit tests for WebhookJournal ordering, replay and retry bookkeeping.
+ */
+class WebhookJournalTest {
+
+    private final MutableClock clock = new MutableClock(Instant.parse("2025-01-01T12:00:00Z"));
+    private final AtomicLong ids = new AtomicLong();
+    private WebhookEventRepository repository;
+    private PaymentTransactionService txService;
+    private WebhookJournal journal;
+
+    @BeforeEach
+    void setUp() {
+        repository = mock(WebhookEventRepository.class);
+        txService = mock(PaymentTransactionService.class);
+        when(repository.save(any())).thenAnswer(invocation -> {
+            ReflectionTestUtils.setField(invocation.<WebhookEvent>getArgument(0), "id", ids.incrementAndGet());
+            return invocation.getArgument(0);
+        });
+        when(repository.findDue(any(), any(), any(), any())).thenReturn(List.of());
+        journal = new WebhookJournal(repository, txService, new PaymentMetrics(new SimpleMeterRegistry()),
+                new MockEnvironment()
+                        .withProperty("webhook.journal.consumers", "2")
+                        .withProperty("webhook.journal.maxAttempts", "3")
+                        .withProperty("webhook.journal.initialBackoffSeconds", "5"),
+                clock);
+    }
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        journal.shutdown();
+    }
+
+    @Test
+    void append_appliesEventsForOneReferenceInArrivalOrder() {
+        List<PaymentStatus> appliedOrder = new CopyOnWriteArrayList<>();
+        when(txService.apply(any())).thenAnswer(invocation -> {
+            appliedOrder.add(invocation.<PaymentStatusUpdate>getArgument(0).status());
+            return StatusUpdateResult.APPLIED;
+        });
+
+        append(PaymentStatus.INITIATED);
+        append(PaymentStatus.SUCCESS);
+        append(PaymentStatus.REVERSED);
+
+        verify(repository, timeout(2000).times(3)).markProcessed(anyLong(), any());
+        assertEquals(List.of(PaymentStatus.INITIATED, PaymentStatus.SUCCESS, PaymentStatus.REVERSED), appliedOrder);
+        assertEquals(3, journal.stats().applied());
+    }
+
+    @Test
+    void append_withoutStatusChange_isJournaledAsProcessed() {
+        journal.append("mtn", "mtn:evt-1", Optional.empty(), payload());
+
+        ArgumentCaptor<WebhookEvent> saved = ArgumentCaptor.forClass(WebhookEvent.class);
+        verify(repository).save(saved.capture());
+        assertNotNull(saved.getValue().getProcessedAt());
+        verifyNoInteractions(txService);
+    }
+
+    @Test
+    void sweep_replaysEverythingOnceThenOnlyEventsOlderThanReplayWindow() {
+        JournaledWebhookEvent leftover = new JournaledWebhookEvent(7L, "mtn", "ref-7", "ref-7", null,
+                PaymentStatus.SUCCESS, clock.instant().minusSeconds(1), 0);
+        when(repository.findDue(any(), any(), any(), any())).thenReturn(List.of(leftover)).thenReturn(List.of());
+        when(txService.apply(any())).thenReturn(StatusUpdateResult.APPLIED);
+
+        assertEquals(1, journal.sweep());
+        journal.sweep();
+
+        ArgumentCaptor<Instant> receivedBefore = ArgumentCaptor.forClass(Instant.class);
+        verify(repository, times(2)).findDue(eq(clock.instant()), receivedBefore.capture(), any(), any());
+        assertEquals(List.of(clock.instant(), clock.instant().minusSeconds(30)), receivedBefore.getAllValues());
+        verify(repository, timeout(2000)).markProcessed(eq(7L), any());
+    }
+
+    @Test
+    void consume_failureIsRetriedWithBackoffThenAbandoned() {
+        when(txService.apply(any())).thenThrow(new QueryTimeoutException("db slow"));
+
+        journal.consume(event(0));
+        journal.consume(event(2));
+
+        verify(repository).markRetry(1L, clock.instant().plus(Duration.ofSeconds(5)), "db slow");
+        verify(repository).markAbandoned(1L, clock.instant(), "db slow");
+        verify(repository, never()).markProcessed(anyLong(), any());
+        assertEquals(2, journal.stats().failed());
+    }
+
+    @Test
+    void consume_eventAheadOfItsTransactionIsRetriedUntilTheTransactionExists() {
+        when(txService.apply(any())).thenReturn(StatusUpdateResult.UNKNOWN).thenReturn(StatusUpdateResult.APPLIED);
+
+        journal.consume(event(0));
+
+        verify(repository).markRetry(1L, clock.instant().plus(Duration.ofSeconds(5)),
+                "Unknown transaction: ref=ref-1, providerTxId=null");
+        verify(repository, never()).markProcessed(anyLong(), any());
+
+        clock.advance(Duration.ofSeconds(5));
+        journal.consume(event(1));
+
+        verify(repository).markProcessed(1L, clock.instant());
+        assertEquals(1, journal.stats().applied());
+        assertEquals(0, journal.stats().failed());
+    }
+
+    @Test
+    void consume_eventForATransactionThatNeverAppearsIsAbandoned() {
+        when(txService.apply(any())).thenReturn(StatusUpdateResult.UNKNOWN);
+
+        journal.consume(event(2));
+
+        verify(repository).markAbandoned(1L, clock.instant(), "Unknown transaction: ref=ref-1, providerTxId=null");
+        verify(repository, never()).markProcessed(anyLong(), any());
+    }
+
+    private void append(PaymentStatus status) {
+        journal.append("mtn", null, Optional.of(new PaymentStatusUpdate("mtn", "ref-1", null, status)), payload());
+    }
+
+    private JournaledWebhookEvent event(int attempts) {
+        return new JournaledWebhookEvent(1L, "mtn", "ref-1", "ref-1", null, PaymentStatus.SUCCESS,
+                clock.instant(), attempts);
+    }
+
+    private static byte[] payload() {
+        return "{\"status\":\"SUCCESSFUL\"}".getBytes(StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,74 @@
+package com.example.pis.service;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.Test;
+
+import com.example.pis.dto.PaymentStatusUpdate;
+import com.example.pis.enums.PaymentStatus;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * Unit tests for WebhookStatusParser and the PaymentStatus transition rules it feeds.
+ */
+class WebhookStatusParserTest {
+
+    private final WebhookStatusParser parser = new WebhookStatusParser(new ObjectMapper());
+
+    @Test
+    void parse_readsMtnCallbacks() {
+        assertEquals(Optional.of(new PaymentStatusUpdate("mtn", "ref-1", "987", PaymentStatus.SUCCESS)),
+                parse("mtn", "{\"externalId\":\"ref-1\",\"financialTransactionId\":\"987\",\"status\":\"SUCCESSFUL\"}"));
+        assertEquals(Optional.of(new PaymentStatusUpdate("mtn", "ref-2", null, PaymentStatus.FAILED)),
+                parse("mtn", "{\"reference\":\"ref-2\",\"status\":\"REJECTED\"}"));
+    }
+
+    @Test
+    void parse_readsAirtelCallbacks() {
+        assertEquals(Optional.of(new PaymentStatusUpdate("airtel", "ref-3", "MP210", PaymentStatus.INITIATED)),
+                parse("airtel", "{\"transaction\":{\"id\":\"ref-3\",\"airtel_money_id\":\"MP210\",\"status_code\":\"TIP\"}}"));
+        assertEquals(Optional.of(new PaymentStatusUpdate("airtel", "ref-4", null, PaymentStatus.SUCCESS)),
+                parse("airtel", "{\"reference\":\"ref-4\",\"status\":\"TS\"}"));
+    }
+
+    @Test
+    void parse_skipsNestedValuesItDoesNotRead() {
+        assertEquals(Optional.of(new PaymentStatusUpdate("mtn", "ref-5", "988", PaymentStatus.SUCCESS)),
+                parse("mtn", "{\"payer\":{\"partyId\":\"256700\",\"status\":\"FAILED\"},\"notes\":[{\"id\":1}],"
+                        + "\"externalId\":\"ref-5\",\"financialTransactionId\":988,\"status\":\"SUCCESSFUL\"}"));
+        assertEquals(Optional.of(new PaymentStatusUpdate("airtel", "ref-6", "MP211", PaymentStatus.FAILED)),
+                parse("airtel", "{\"transaction\":{\"meta\":{\"id\":\"x\"},\"id\":\"ref-6\","
+                        + "\"airtel_money_id\":\"MP211\",\"status_code\":\"TF\"},\"status\":\"TS\"}"));
+    }
+
+    @Test
+    void parse_ignoresBodiesWithoutStatusOrIdentifier() {
+        assertEquals(Optional.empty(), parse("mtn", "{\"externalId\":\"ref-1\",\"status\":\"WEIRD\"}"));
+        assertEquals(Optional.empty(), parse("mtn", "{\"status\":\"SUCCESSFUL\"}"));
+        assertEquals(Optional.empty(), parse("airtel", "not json"));
+        assertEquals(Optional.empty(), parse("mtn", "[]"));
+        assertEquals(Optional.empty(), parse("mtn", "{\"externalId\":\"ref-1\",\"status\":\"SUCCESSFUL\""));
+    }
+
+    @Test
+    void transitions_onlyMoveForward() {
+        assertTrue(PaymentStatus.PENDING.canTransitionTo(PaymentStatus.INITIATED));
+        assertTrue(PaymentStatus.INITIATED.canTransitionTo(PaymentStatus.SUCCESS));
+        assertTrue(PaymentStatus.SUCCESS.canTransitionTo(PaymentStatus.REVERSED));
+        assertFalse(PaymentStatus.SUCCESS.canTransitionTo(PaymentStatus.SUCCESS));
+        assertFalse(PaymentStatus.SUCCESS.canTransitionTo(PaymentStatus.INITIATED));
+        assertFalse(PaymentStatus.FAILED.canTransitionTo(PaymentStatus.SUCCESS));
+        assertFalse(PaymentStatus.REVERSED.canTransitionTo(PaymentStatus.FAILED));
+        assertFalse(PaymentStatus.PENDING.canTransitionTo(PaymentStatus.REVERSED));
+        assertFalse(PaymentStatus.INITIATED.canTransitionTo(PaymentStatus.REVERSED));
+        assertFalse(PaymentStatus.FAILED.canTransitionTo(PaymentStatus.REVERSED));
+    }
+
+    private Optional<PaymentStatusUpdate> parse(String provider, String body) {
+        return parser.parse(provider, body.getBytes(StandardCharsets.UTF_8));
+    }
+}
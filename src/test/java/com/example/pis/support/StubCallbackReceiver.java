@@ -0,0 +1,109 @@
+package com.example.pis.support;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import com.example.pis.security.CallbackSigner;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * Embedded merchant endpoint for callback tests.
+ *
+ * <p>Records every callback it receives, with whether its signature verified
+ * against the merchant secret, and answers 200 unless statuses were queued with
+ * {@link #respondWith}.</p>
+ */
+public final class StubCallbackReceiver implements AutoCloseable {
+
+    /**
+     * @param callbackId     {@code X-Callback-Id} header
+     * @param body           Raw request body
+     * @param signatureValid Whether {@code X-Callback-Signature} matched
+     * @param status         Status answered
+     */
+    public record Received(String callbackId, byte[] body, boolean signatureValid, int status) {}
+
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private final String merchant;
+    private final CallbackSigner signer;
+    private final Deque<Integer> statuses = new ArrayDeque<>();
+    private final List<Received> received = new CopyOnWriteArrayList<>();
+
+    private StubCallbackReceiver(String merchant, String secret) throws IOException {
+        this.merchant = merchant;
+        this.signer = new CallbackSigner(Map.of(merchant, secret), 1);
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 256);
+        executor = Executors.newCachedThreadPool(r -> {
+            Thread t = new Thread(r, "stub-merchant");
+            t.setDaemon(true);
+            return t;
+        });
+        server.setExecutor(executor);
+        server.createContext("/callbacks", this::handle);
+        server.start();
+    }
+
+    public static StubCallbackReceiver start(String merchant, String secret) throws IOException {
+        return new StubCallbackReceiver(merchant, secret);
+    }
+
+    public URI url() {
+        return URI.create("http://localhost:" + server.getAddress().getPort() + "/callbacks");
+    }
+
+    /** Answers the next callbacks with these statuses, in order, then 200 again. */
+    public synchronized void respondWith(int... codes) {
+        for (int code : codes) {
+            statuses.add(code);
+        }
+    }
+
+    public List<Received> received() {
+        return List.copyOf(received);
+    }
+
+    /** Waits until at least {@code count} callbacks arrived; returns false on timeout. */
+    public boolean await(int count, Duration timeout) throws InterruptedException {
+        long deadline = System.nanoTime() + timeout.toNanos();
+        while (received.size() < count) {
+            if (System.nanoTime() > deadline) return false;
+            Thread.sleep(10);
+        }
+        return true;
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try {
+            byte[] body = exchange.getRequestBody().readAllBytes();
+            String timestamp = exchange.getRequestHeaders().getFirst("X-Request-Timestamp");
+            String signature = exchange.getRequestHeaders().getFirst("X-Callback-Signature");
+            boolean valid = timestamp != null && signature != null
+                    && signer.sign(merchant, Long.parseLong(timestamp), body).equals(signature);
+            int status;
+            synchronized (this) {
+                status = statuses.isEmpty() ? 200 : statuses.poll();
+            }
+            received.add(new Received(exchange.getRequestHeaders().getFirst("X-Callback-Id"), body, valid, status));
+            exchange.sendResponseHeaders(status, -1);
+        } finally {
+            exchange.close();
+        }
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+}